@@ -324,6 +324,11 @@ public final class CompcTask extends FlexTask implements DynamicConfigurator
      *  Execute and Related Functions                                        *
      *=======================================================================*/
 
+    protected String getServiceTarget()
+    {
+        return outString.value();
+    }
+
     protected void prepareCommandline() throws BuildException
     {
         for (int i = 0; i < variables.length; i++) {
@@ -15,7 +15,9 @@ import flex.ant.config.ConfigVariable;
 import flex.ant.config.NestedAttributeElement;
 import flex.ant.config.OptionSpec;
 
+import org.apache.tools.ant.BuildEvent;
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.BuildListener;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.types.Commandline;
 import org.apache.tools.ant.types.Path;
@@ -67,6 +69,11 @@ public abstract class FlexTask extends Java
      */
     protected boolean fork;
 
+    /**
+     * service attribute
+     */
+    protected boolean service;
+
     /**
      * max memory attribute
      */
@@ -76,6 +83,12 @@ public abstract class FlexTask extends Java
 
     protected static OptionSpec rslpSpec = new OptionSpec(null, "runtime-shared-library-path", "rslp");
 
+    /**
+     * The compiler service, and the project reference it's kept under.
+     */
+    private static final String SERVICE_CLASS_NAME = "flex2.tools.CompilerService";
+    private static final String SERVICE_REFERENCE = "flex.ant.CompilerService";
+
     /**
      * @param toolName The build tool's name.
      * @param toolClassName The build tool's class name.
@@ -143,6 +156,20 @@ public abstract class FlexTask extends Java
         this.fork = f;
     }
 
+    /**
+     * Sets whether to compile through the compiler service, which keeps the compiler loaded
+     * and what it knows about each output target in memory until the build finishes. Tasks
+     * that build a target again compile it incrementally, SWCs are read once for all tasks,
+     * and tasks for different targets may run at the same time inside &lt;parallel&gt;.
+     * Ignored if fork is true.
+     *
+     * @param s if true then compile through the compiler service.
+     */
+    public void setService(boolean s)
+    {
+        this.service = s;
+    }
+
     /**
      * Sets the max memory of each VM
      *
@@ -199,6 +226,15 @@ public abstract class FlexTask extends Java
      */
     protected abstract void prepareCommandline() throws BuildException;
 
+    /**
+     * Returns the name the compiler service keeps this task's target under, usually the
+     * output file, or null if the task can't run in the compiler service.
+     */
+    protected String getServiceTarget()
+    {
+        return null;
+    }
+
     /**
      * Execute the task
      *
@@ -221,6 +257,8 @@ public abstract class FlexTask extends Java
 
         if (fork)
             executeOutOfProcess();
+        else if (service && getServiceTarget() != null)
+            executeInService();
         else
             executeInProcess();
 
@@ -308,6 +346,107 @@ public abstract class FlexTask extends Java
         }
     }
 
+    /**
+     * Executes the task in the compiler service of the project
+     *
+     */
+    private void executeInService() throws BuildException
+    {
+        Class serviceClass = resolveServiceClass();
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        try
+        {
+            Thread.currentThread().setContextClassLoader(serviceClass.getClassLoader());
+
+            log("FlexTask.execute: " + cmdl, Project.MSG_DEBUG);
+
+            int errorCount = 0;
+
+            try
+            {
+                Class threadLocalToolkitClass = Class.forName("flex2.compiler.util.ThreadLocalToolkit", true,
+                                                              serviceClass.getClassLoader());
+
+                Method toolMethod = serviceClass.getMethod(toolName, new Class[] {String.class, String[].class});
+                toolMethod.invoke(null, new Object[] {getServiceTarget(), cmdl.getArguments()});
+
+                Method errorCountMethod = threadLocalToolkitClass.getMethod("errorCount", (Class[]) null);
+                errorCount = ((Integer) errorCountMethod.invoke(null, (Object[]) null)).intValue();
+            }
+            catch (Exception e)
+            {
+                StringWriter stringWriter = new StringWriter();
+                PrintWriter printWriter = new PrintWriter(stringWriter);
+                e.printStackTrace(printWriter);
+                log(stringWriter.toString(), Project.MSG_DEBUG);
+                throw new BuildException("Unable to run " + toolName + ": " + e.getMessage(), e);
+            }
+
+            if (errorCount > 0)
+            {
+                throw new BuildException(toolName + " task failed");
+            }
+        }
+        finally
+        {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    /**
+     * Returns the compiler service of the project, loading it the first time. The service
+     * and the classloader behind it are shared by all tasks of the project and let go of when
+     * the build finishes.
+     */
+    private Class resolveServiceClass() throws BuildException
+    {
+        Project project = getProject();
+
+        synchronized (project)
+        {
+            Class serviceClass = (Class) project.getReference(SERVICE_REFERENCE);
+
+            if (serviceClass == null)
+            {
+                try
+                {
+                    serviceClass = Class.forName(SERVICE_CLASS_NAME, true, Thread.currentThread().getContextClassLoader());
+                }
+                catch (ClassNotFoundException ignoredClassNotFoundException)
+                {
+                    // The service loads both mxmlc and compc targets, so it comes from mxmlc.jar
+                    // whichever task asks for it first.
+                    File jarFile = new File(project.getProperty("FLEX_HOME") + "/lib", "mxmlc.jar");
+
+                    if (!jarFile.exists())
+                    {
+                        throw new BuildException("File does not exist: mxmlc.jar", getLocation());
+                    }
+
+                    try
+                    {
+                        URLClassLoader urlClassLoader = new URLClassLoader(new URL[] {jarFile.toURL()});
+                        serviceClass = Class.forName(SERVICE_CLASS_NAME, true, urlClassLoader);
+                    }
+                    catch (MalformedURLException malformedURLException)
+                    {
+                        throw new BuildException(malformedURLException, getLocation());
+                    }
+                    catch (ClassNotFoundException classNotFoundException)
+                    {
+                        throw new BuildException("The class not found in jar file: mxmlc.jar", getLocation());
+                    }
+                }
+
+                project.addReference(SERVICE_REFERENCE, serviceClass);
+                project.addBuildListener(new ServiceListener(serviceClass));
+            }
+
+            return serviceClass;
+        }
+    }
+
     private Class resolveClass(String className)
     {
         Class result = null;
@@ -368,4 +507,54 @@ public abstract class FlexTask extends Java
 
         return result;
     }
+
+    /**
+     * Clears the compiler service when the build finishes, so that the memory it holds
+     * doesn't outlive the build in IDEs that run several builds in one VM.
+     */
+    private static class ServiceListener implements BuildListener
+    {
+        private final Class serviceClass;
+
+        ServiceListener(Class serviceClass)
+        {
+            this.serviceClass = serviceClass;
+        }
+
+        public void buildFinished(BuildEvent event)
+        {
+            try
+            {
+                serviceClass.getMethod("clear", (Class[]) null).invoke(null, (Object[]) null);
+            }
+            catch (Exception e)
+            {
+                event.getProject().log("Unable to clear the compiler service: " + e.getMessage(), Project.MSG_DEBUG);
+            }
+        }
+
+        public void buildStarted(BuildEvent event)
+        {
+        }
+
+        public void targetStarted(BuildEvent event)
+        {
+        }
+
+        public void targetFinished(BuildEvent event)
+        {
+        }
+
+        public void taskStarted(BuildEvent event)
+        {
+        }
+
+        public void taskFinished(BuildEvent event)
+        {
+        }
+
+        public void messageLogged(BuildEvent event)
+        {
+        }
+    }
 } //End of FlexTask
@@ -303,6 +303,11 @@ public final class MxmlcTask extends FlexTask implements DynamicConfigurator
      *  Execute and Related Functions                                        *
      *=======================================================================*/
 
+    protected String getServiceTarget()
+    {
+        return output != null ? output : file;
+    }
+
     protected void prepareCommandline() throws BuildException
     {
         for (int i = 0; i < variables.length; i++) {
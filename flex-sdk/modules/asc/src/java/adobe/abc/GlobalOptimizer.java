@@ -113,16 +113,51 @@ public class GlobalOptimizer
 	final boolean SHOW_DFG =  false;
 	final boolean SHOW_CODE = false;
 	boolean STRIP_DEBUG_INFO = true;
+	int threads = 1; // how many threads optimize methods
+	
+	/**
+	 * where the log goes.  passes print to console, which is this stream
+	 * unless the method at hand is being optimized on several threads.
+	 */
+	final PrintStream output;
+	
+	/**
+	 * the log of the method being optimized on this thread, when optimizing
+	 * on several threads.
+	 */
+	final ThreadLocal<ByteArrayOutputStream> logs = new ThreadLocal<ByteArrayOutputStream>();
+	
+	final PrintStream console = new PrintStream(new OutputStream()
+	{
+		OutputStream out()
+		{
+			ByteArrayOutputStream log = logs.get();
+			return log != null ? log : output;
+		}
+		public void write(int b) throws IOException
+		{
+			out().write(b);
+		}
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out().write(b, off, len);
+		}
+	}, true);
+	
+	GlobalOptimizer(PrintStream output)
+	{
+		this.output = output;
+	}
 
 	public static void main(String[] args) throws IOException
 	{
 		if (args.length == 0)
 		{
-			System.out.println("usage: GlobalOptimizer [-obscure_natives] [imports] -- [exports]");
+			System.out.println("usage: GlobalOptimizer [-obscure_natives] [-threads n] [imports] -- [exports]");
 			return;
 		}
 
-		GlobalOptimizer go = new GlobalOptimizer(); 
+		GlobalOptimizer go = new GlobalOptimizer(System.out); 
  		List<InputAbc> a = new ArrayList<InputAbc>();
  		List<Integer> lengths = new ArrayList<Integer>();
 		String filename = null;
@@ -139,6 +174,10 @@ public class GlobalOptimizer
 				go.STRIP_DEBUG_INFO=false;
 				continue;
 			}
+			if(args[i].equals("-threads") && i+1 < args.length) {
+				go.threads = Math.max(1, Integer.parseInt(args[++i]));
+				continue;
+			}
 			if(args[i].equals("--")) {
 				split = a.size();
 				continue;
@@ -516,7 +555,7 @@ public class GlobalOptimizer
 				}
 			}
 			if (size > 0)
-				System.out.println("sizeof "+t+" "+size);
+				console.println("sizeof "+t+" "+size);
 			t.size = size;
 		}
 
@@ -2164,9 +2203,21 @@ public class GlobalOptimizer
 
 	List<Method> ready = new ArrayList<Method>();
 	
+	/**
+	 * methods made ready by the method being optimized on this thread,
+	 * when optimizing on several threads.
+	 */
+	final ThreadLocal<List<Method>> readied = new ThreadLocal<List<Method>>();
+	
+	List<Method> ready()
+	{
+		List<Method> r = readied.get();
+		return r != null ? r : ready;
+	}
+	
 	void readyType(Type t)
 	{
-		ready.add(t.init);
+		ready().add(t.init);
 		for (Binding b1: t.defs.values())
 			if (b1.method != null)
 				readyMethod(b1.method);
@@ -2175,7 +2226,7 @@ public class GlobalOptimizer
 	void readyMethod(Method m)
 	{
 		if (m.entry != null)
-			ready.add(m);
+			ready().add(m);
 	}
 	
 	void optimize(InputAbc a)
@@ -2183,10 +2234,161 @@ public class GlobalOptimizer
  		for (Type t: a.scripts)
 			readyType(t);
 		
+		if (threads > 1)
+		{
+			optimizeConcurrently();
+			return;
+		}
+		
 		while (!ready.isEmpty())
 			optimize(remove(ready));
 	}
 	
+	/**
+	 * optimize the ready methods on several threads.  the passes only change
+	 * the code of the method at hand; the types and bindings they look up are
+	 * only read.  the exception is the scope chain a method captures for the
+	 * classes and closures it creates, so the methods a method makes ready are
+	 * queued once it is done, the way they are when optimizing on one thread.
+	 * 
+	 * each method's log is buffered and printed in one piece when it's done.
+	 */
+	void optimizeConcurrently()
+	{
+		final MethodQueue queue = new MethodQueue();
+		Thread[] workers = new Thread[threads-1];
+		for (int i=0; i < workers.length; i++)
+		{
+			workers[i] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					work(queue);
+				}
+			}, "GlobalOptimizer."+i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+		
+		work(queue);
+		
+		for (Thread w: workers)
+		{
+			while (w.isAlive())
+			{
+				try
+				{
+					w.join();
+				}
+				catch (InterruptedException ex)
+				{
+					queue.fail(ex);
+				}
+			}
+		}
+		
+		if (queue.failure instanceof RuntimeException)
+			throw (RuntimeException) queue.failure;
+		if (queue.failure instanceof Error)
+			throw (Error) queue.failure;
+		if (queue.failure != null)
+			throw new RuntimeException(queue.failure);
+	}
+	
+	void work(MethodQueue queue)
+	{
+		List<Method> made = new ArrayList<Method>();
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		readied.set(made);
+		logs.set(log);
+		try
+		{
+			for (Method m; (m = queue.take()) != null; )
+			{
+				Throwable failure = null;
+				try
+				{
+					optimize(m);
+				}
+				catch (Throwable t)
+				{
+					failure = t;
+				}
+				output.write(log.toByteArray(), 0, log.size());
+				log.reset();
+				queue.done(m, made, failure);
+				made.clear();
+			}
+		}
+		finally
+		{
+			readied.set(null);
+			logs.set(null);
+		}
+	}
+	
+	/**
+	 * the ready methods, handed out to the threads of optimizeConcurrently().
+	 * the queue is only drained once it's empty and no method that could make
+	 * more methods ready is still being optimized.
+	 * 
+	 * a method can be made ready twice.  it isn't handed out again while it's
+	 * still being optimized, so the second pass sees the code of the first,
+	 * as it does on one thread.
+	 */
+	class MethodQueue
+	{
+		Set<Method> running = new HashSet<Method>();
+		Throwable failure;
+		
+		synchronized Method take()
+		{
+			try
+			{
+				Method m;
+				while ((m = next()) == null && !running.isEmpty() && failure == null)
+					wait();
+				if (m == null || failure != null)
+					return null;
+				running.add(m);
+				return m;
+			}
+			catch (InterruptedException ex)
+			{
+				fail(ex);
+				return null;
+			}
+		}
+		
+		/**
+		 * take the last ready method, as remove() does, skipping the ones
+		 * being optimized.
+		 */
+		Method next()
+		{
+			for (int i = ready.size()-1; i >= 0; i--)
+				if (!running.contains(ready.get(i)))
+					return ready.remove(i);
+			return null;
+		}
+		
+		synchronized void done(Method m, List<Method> made, Throwable t)
+		{
+			running.remove(m);
+			ready.addAll(made);
+			if (t != null)
+				fail(t);
+			notifyAll();
+		}
+		
+		synchronized void fail(Throwable t)
+		{
+			if (failure == null)
+				failure = t;
+			notifyAll();
+		}
+	}
+	
 	static class Ranker<T> implements Comparable
 	{
 		T value;
@@ -2291,7 +2493,7 @@ public class GlobalOptimizer
 			if (t == ANY)
 				return 0;
 			else if(t.emitAsAny()) {
-				System.out.println("Emitting: " + t + " as any");
+				console.println("Emitting: " + t + " as any");
 				return 0;
 			} else
 				return namePool.id(t.name);
@@ -2585,7 +2787,7 @@ public class GlobalOptimizer
 		
 		void sort()
 		{
-			System.out.println("NAMES RANK " + namePool.refs);
+			console.println("NAMES RANK " + namePool.refs);
 			intPool.sort();
 			uintPool.sort();
 			doublePool.sort();
@@ -2597,7 +2799,7 @@ public class GlobalOptimizer
 			methodPool1.sort();
 			methodPool2.countFrom = methodPool1.size();
 			methodPool2.sort();
-			System.out.println("NAMES " + namePool.values);
+			console.println("NAMES " + namePool.values);
 			
 			// topological sort of the classes, base classes come first
 			TreeSet<Type> cs = new TreeSet<Type>(new Comparator<Type>()
@@ -3090,22 +3292,22 @@ public class GlobalOptimizer
 		for (int x: abc.intPool.values)
 			w.writeU30(x);
 		
-		System.out.println("ints count "+abc.intPool.size()+ " size " + (w.size()-pos));
+		console.println("ints count "+abc.intPool.size()+ " size " + (w.size()-pos));
 		pos = w.size();
 		
 		w.writeU30(abc.uintPool.size());
 		for (long x: abc.uintPool.values)
 			w.writeU30((int)x);
 
-		System.out.println("uints count "+abc.uintPool.size()+ " size " + (w.size()-pos));
+		console.println("uints count "+abc.uintPool.size()+ " size " + (w.size()-pos));
 		pos = w.size();
 		
-		System.out.println("doubles "+abc.doublePool.size());
+		console.println("doubles "+abc.doublePool.size());
 		w.writeU30(abc.doublePool.size());
 		for (double x: abc.doublePool.values)
 			w.write64(Double.doubleToLongBits(x));
 		
-		System.out.println("double count "+abc.doublePool.size()+ " size " + (w.size()-pos));
+		console.println("double count "+abc.doublePool.size()+ " size " + (w.size()-pos));
 		pos = w.size();
 
 		w.writeU30(abc.stringPool.size());
@@ -3114,13 +3316,13 @@ public class GlobalOptimizer
 			w.writeU30(s.length());
 			w.write(s.getBytes("UTF-8"));
 		}
-		System.out.println("strings count "+abc.stringPool.size()+ " size " + (w.size()-pos));
+		console.println("strings count "+abc.stringPool.size()+ " size " + (w.size()-pos));
 		pos = w.size();
 		
 		w.writeU30(abc.nsPool.size());
 		for (Namespace ns: abc.nsPool.values)
 			emitNamespace(abc, w, ns);
-		System.out.println("ns count "+abc.nsPool.size()+ " size " + (w.size()-pos));
+		console.println("ns count "+abc.nsPool.size()+ " size " + (w.size()-pos));
 		pos = w.size();
 		
 		w.writeU30(abc.nssetPool.size());
@@ -3130,7 +3332,7 @@ public class GlobalOptimizer
 			for (Namespace ns: nsset)
 				w.writeU30(abc.nsPool.id(ns));
 		}
-		System.out.println("nsset count "+abc.nssetPool.size()+ " size " + (w.size()-pos));
+		console.println("nsset count "+abc.nssetPool.size()+ " size " + (w.size()-pos));
 		pos = w.size();
 		
 		w.writeU30(abc.namePool.size());
@@ -3164,7 +3366,7 @@ public class GlobalOptimizer
 				assert (false);
 			}
 		}
-		System.out.println("name count "+abc.namePool.size()+ " size " + (w.size()-pos));
+		console.println("name count "+abc.namePool.size()+ " size " + (w.size()-pos));
 		pos = w.size();
 			
 		w.writeU30(abc.methodPool2.size());
@@ -3265,7 +3467,7 @@ public class GlobalOptimizer
 	void emitMethod(Abc abc, AbcWriter w, int method_id, Method m)
 	{
 		m.emit_id = method_id;
-		System.out.println("METHOD " + method_id + " was " + m.id);
+		console.println("METHOD " + method_id + " was " + m.id);
 		w.writeU30(m.params.length-1);
 		w.writeU30(abc.typeRef(m.returns));
 		for (int i=1, n=m.params.length; i < n; i++)
@@ -3568,7 +3770,7 @@ public class GlobalOptimizer
 			out.writeU30(from);
 			out.writeU30(to);
 			int off = pos.get(h.entry);
-			System.out.println("handler "+h.entry+ " ["+from+","+to+")->"+off);
+			console.println("handler "+h.entry+ " ["+from+","+to+")->"+off);
 			out.writeU30(off);
 			out.writeU30(abc.typeRef(h.type));
 			out.writeU30(abc.namePool.id(h.name));
@@ -3635,13 +3837,13 @@ public class GlobalOptimizer
 
 	void optimize(Method m)
 	{
-		System.out.println("OPTIMIZE "+m.id + " "+ m.name);
+		console.println("OPTIMIZE "+m.id + " "+ m.name);
 
 		if(m.entry == null)
 			return;
 		
-		System.out.println("BEFORE OPT");		
-		System.out.println("BEFORE OPT");
+		console.println("BEFORE OPT");		
+		console.println("BEFORE OPT");
 		print(dfs(m.entry.to));
 		
 		if (OUTPUT_DOT)
@@ -3651,7 +3853,7 @@ public class GlobalOptimizer
 		dvn(m);
 		if (cfgopt(m))
 		{
-			System.out.println("AFTER CFGOPT");
+			console.println("AFTER CFGOPT");
 			print(dfs(m.entry.to));
 			sccp(m);
 			dvn(m);
@@ -3660,7 +3862,7 @@ public class GlobalOptimizer
 		// find operations to fold together.
 		fold(m);
 		
-		System.out.println("AFTER FOLD");
+		console.println("AFTER FOLD");
 		print(dfs(m.entry.to));
 
 		if (OUTPUT_DOT)
@@ -3669,7 +3871,7 @@ public class GlobalOptimizer
 		insert_casts(m);
 		remove_phi(m);
 		printabc(schedule(m.entry.to));
-		System.out.println();
+		console.println();
 	}
 	
 	void fold(Method m)
@@ -3742,7 +3944,7 @@ public class GlobalOptimizer
 	
 	SetMap<Block,Edge> preds(Deque<Block> code)
 	{
-		SetMap<Block,Edge> pred = new SetMap<Block,Edge>();
+		SetMap<Block,Edge> pred = new SetMap<Block,Edge>(Edge.order);
 		for (Block b: code)
 			for (Edge s: b.succ())
 				pred.get(s.to).add(s);
@@ -3766,7 +3968,7 @@ public class GlobalOptimizer
 
 	SetMap<Block,Edge> allpreds(Deque<Block> code)
 	{
-		SetMap<Block,Edge> pred = new SetMap<Block,Edge>();
+		SetMap<Block,Edge> pred = new SetMap<Block,Edge>(Edge.order);
 		for (Block b: code)
 		{
 			for (Edge s: b.succ())
@@ -3847,7 +4049,7 @@ public class GlobalOptimizer
 					{
 						// phi nodes can only occur in nodes with more than one predecessor
 						assert(taken.first().op != OP_phi);
-						System.out.println("STRAIGHTEN "+s);
+						console.println("STRAIGHTEN "+s);
 						b.remove(last);
 						b.addAll(taken);
 						for (Edge edge: taken.succ())
@@ -3858,7 +4060,7 @@ public class GlobalOptimizer
 					Expr first = taken.first();
 					if (first.op == OP_returnvalue || first.op == OP_returnvoid)
 					{
-						System.out.println("PRUNE "+b+"->"+s);
+						console.println("PRUNE "+b+"->"+s);
 						last.op = first.op;
 						last.args = first.op == OP_returnvoid ? noexprs : new Expr[] { first.args[0] };
 						last.succ = noedges;
@@ -3870,7 +4072,7 @@ public class GlobalOptimizer
 							r.args[0] == first)
 					{
 						// successor block is returnvalue(phi)
-						System.out.println("PRUNE "+b+"->"+s);
+						console.println("PRUNE "+b+"->"+s);
 						int i = findPhiArg(first, last.succ[0]);
 						last.op = r.op;
 						last.args = new Expr[] { first.args[i] };
@@ -3896,7 +4098,7 @@ public class GlobalOptimizer
 							// cond is in phi contributed by this edge.  so we have a redundant test.
 							// we want to retarget the branch: and adjust any phi nodes that are affected.
 							Edge before = br.op == last.op ? br.succ[1] : br.succ[0];
-							System.out.println("SKIPTEST old "+out+" new "+before);
+							console.println("SKIPTEST old "+out+" new "+before);
 							phi.remove(i);
 							copyTargetPhi(phi, cond, before, out);
 							changed = true;
@@ -3950,7 +4152,7 @@ public class GlobalOptimizer
 		if (to.size()==1 && isJump(j))
 		{
 			// any edge targeting a jump can target the jump's target.
-			System.out.println("SKIP " + j.succ[0]);
+			console.println("SKIP " + j.succ[0]);
 			copyTarget(j.succ[0], edge);
 			return true;
 		}
@@ -3963,7 +4165,7 @@ public class GlobalOptimizer
 	 */
 	void invert(Expr br)
 	{
-		System.out.println("INVERT "+br);
+		console.println("INVERT "+br);
 
 		switch (br.op)
 		{
@@ -4094,6 +4296,14 @@ public class GlobalOptimizer
 					(from != null ? label+":"+from : "") + "->" + to;
 		}
 		
+		static final Comparator<Edge> order = new Comparator<Edge>()
+		{
+			public int compare(Edge a, Edge b)
+			{
+				return a.compareTo(b);
+			}
+		};
+		
 		public int compareTo(Edge e)
 		{
 			int d = label - e.label;
@@ -4379,6 +4589,24 @@ public class GlobalOptimizer
 		return out;
 	}
 	
+	static Object[] copyOf(Object[] in, int newlen)
+	{
+		Object[] out = new Object[newlen];
+		if (newlen > in.length)
+			newlen = in.length;
+		System.arraycopy(in, 0, out, 0, newlen);
+		return out;
+	}
+	
+	static long[] copyOf(long[] in, int newlen)
+	{
+		long[] out = new long[newlen];
+		if (newlen > in.length)
+			newlen = in.length;
+		System.arraycopy(in, 0, out, 0, newlen);
+		return out;
+	}
+	
 	/**
 	 * sparse conditional constant propagation
 	 * @param code
@@ -4389,14 +4617,14 @@ public class GlobalOptimizer
 		Deque<Block> code = dfs(m.entry.to);
 		EdgeMap<Expr> uses = findUses(code);
 
-		Map<Expr,Object> values = new TreeMap<Expr,Object>();
-		Map<Expr,Typeref> types = new TreeMap<Expr,Typeref>();
-		Set<Edge> reached = new TreeSet<Edge>();
+		Map<Expr,Object> values = new IdMap<Expr,Object>();
+		Map<Expr,Typeref> types = new IdMap<Expr,Typeref>();
+		Set<Edge> reached = new IdSet<Edge>(Edge.order);
 		
 		sccp_analyze(m, uses, values, types, reached);
 
-		System.out.println("REACHED " + reached);
-		System.out.println("TYPES " + types);
+		console.println("REACHED " + reached);
+		console.println("TYPES " + types);
 	
 		sccp_cfgopt(values, types, reached);
 		
@@ -4977,8 +5205,8 @@ public class GlobalOptimizer
 	Map<Expr,Typeref> verify_types(Method m, Deque<Block> code, Map<Block,Block> idom)
 	{
 		EdgeMap<Expr> uses = findUses(code);
-		Map<Expr,Typeref> types = new TreeMap<Expr,Typeref>();
-		Set<Expr> work = new WorkSet<Expr>();
+		Map<Expr,Typeref> types = new IdMap<Expr,Typeref>();
+		WorkSet<Expr> work = new WorkSet<Expr>();
 		for (Block b: code)
 			work.addAll(b.exprs);
 		do
@@ -5000,8 +5228,8 @@ public class GlobalOptimizer
 
 	void sccp_analyze(Method m, EdgeMap<Expr> uses, Map<Expr, Object> values, Map<Expr, Typeref> types, Set<Edge> reached)
 	{
-		Set<Edge> flowWork = new WorkSet<Edge>();
-		Set<Expr> ssaWork = new WorkSet<Expr>();
+		WorkSet<Edge> flowWork = new WorkSet<Edge>(Edge.order);
+		WorkSet<Expr> ssaWork = new WorkSet<Expr>();
 		Set<Expr> ready = new WorkSet<Expr>();
 
 		flowWork.add(m.entry);
@@ -5083,7 +5311,7 @@ public class GlobalOptimizer
 						if((etype.t == atype.t) && etype.nullable)
 							continue;
 						
-						System.out.println("MISSING CAST " + a + " " + atype+"->"+etype+" on " + p);
+						console.println("MISSING CAST " + a + " " + atype+"->"+etype+" on " + p);
 						if (isCritical(p,pred))
 						{
 							split(p, m, pred);
@@ -5098,7 +5326,7 @@ public class GlobalOptimizer
 			}
 		}
 		
-		System.out.println("VERIFY TYPES "+types);
+		console.println("VERIFY TYPES "+types);
 	}
 	
 	Expr upcast(Expr a, Method m, Type t)
@@ -6441,30 +6669,443 @@ public class GlobalOptimizer
 		return false;
 	}
 	
-	static class SetMap<K,V extends Indexable> extends TreeMap<K, Set<V>>
+	static final long[] nobits = new long[0];
+	static final Object[] noelements = new Object[0];
+
+	/**
+	 * a set of the exprs, blocks or edges of one method.  membership is
+	 * a bitset indexed by id(), so add/remove/contains don't compare or
+	 * allocate.  iterates in id order, or in the given order if there is one.
+	 */
+	static class IdSet<E extends Indexable> extends AbstractSet<E>
+	{
+		final Comparator<? super E> order;
+		Object key; // if this is one of the sets of a SetMap
+		long[] bits = nobits;
+		Object[] elements = noelements; // by id
+		int size;
+		
+		IdSet()
+		{
+			this(null);
+		}
+		
+		IdSet(Comparator<? super E> order)
+		{
+			this.order = order;
+		}
+		
+		public int size()
+		{
+			return size;
+		}
+		
+		public boolean contains(Object o)
+		{
+			if (!(o instanceof Indexable))
+				return false;
+			int id = ((Indexable)o).id();
+			return id < elements.length && elements[id] == o;
+		}
+		
+		public boolean add(E e)
+		{
+			int id = e.id();
+			if (id >= elements.length)
+				grow(id);
+			if (elements[id] != null)
+				return false;
+			elements[id] = e;
+			bits[id>>6] |= 1L << id;
+			size++;
+			return true;
+		}
+		
+		public boolean remove(Object o)
+		{
+			if (!contains(o))
+				return false;
+			clear(((Indexable)o).id());
+			return true;
+		}
+		
+		void clear(int id)
+		{
+			elements[id] = null;
+			bits[id>>6] &= ~(1L << id);
+			size--;
+		}
+		
+		public void clear()
+		{
+			Arrays.fill(bits, 0);
+			Arrays.fill(elements, null);
+			size = 0;
+		}
+		
+		@SuppressWarnings("unchecked")
+		public boolean addAll(Collection<? extends E> c)
+		{
+			if (!(c instanceof IdSet))
+				return super.addAll(c);
+			
+			IdSet<? extends E> s = (IdSet<? extends E>) c;
+			if (s.elements.length > elements.length)
+				grow(s.elements.length-1);
+			int before = size;
+			for (int i=0, n=s.bits.length; i < n; i++)
+			{
+				long add = s.bits[i] & ~bits[i];
+				if (add == 0)
+					continue;
+				bits[i] |= add;
+				size += Long.bitCount(add);
+				for (; add != 0; add &= add-1)
+				{
+					int id = (i<<6) + Long.numberOfTrailingZeros(add);
+					elements[id] = s.elements[id];
+				}
+			}
+			return size != before;
+		}
+		
+		/**
+		 * remove and return the first element, the one iteration would start with.
+		 */
+		@SuppressWarnings("unchecked")
+		E removeFirst()
+		{
+			int first = -1;
+			if (order == null)
+			{
+				first = next(0);
+			}
+			else
+			{
+				for (int id = next(0); id != -1; id = next(id+1))
+					if (first == -1 || order.compare((E)elements[id], (E)elements[first]) < 0)
+						first = id;
+			}
+			if (first == -1)
+				throw new NoSuchElementException();
+			E e = (E) elements[first];
+			clear(first);
+			return e;
+		}
+		
+		/**
+		 * the smallest id >= from in the set, or -1.
+		 */
+		int next(int from)
+		{
+			int i = from>>6;
+			if (i >= bits.length)
+				return -1;
+			long word = bits[i] & (-1L << from);
+			while (word == 0)
+			{
+				if (++i == bits.length)
+					return -1;
+				word = bits[i];
+			}
+			return (i<<6) + Long.numberOfTrailingZeros(word);
+		}
+		
+		public Iterator<E> iterator()
+		{
+			if (order != null)
+				return sortedIterator();
+			
+			return new Iterator<E>()
+			{
+				int last = -1;
+				int next = IdSet.this.next(0);
+				
+				public boolean hasNext()
+				{
+					return next != -1;
+				}
+				
+				@SuppressWarnings("unchecked")
+				public E next()
+				{
+					if (next == -1)
+						throw new NoSuchElementException();
+					last = next;
+					next = IdSet.this.next(next+1);
+					return (E) elements[last];
+				}
+				
+				public void remove()
+				{
+					if (last == -1 || elements[last] == null)
+						throw new IllegalStateException();
+					clear(last);
+				}
+			};
+		}
+		
+		@SuppressWarnings("unchecked")
+		Iterator<E> sortedIterator()
+		{
+			final E[] a = (E[]) new Indexable[size];
+			int i = 0;
+			for (int id = next(0); id != -1; id = next(id+1))
+				a[i++] = (E) elements[id];
+			Arrays.sort(a, order);
+			
+			return new Iterator<E>()
+			{
+				int next = 0;
+				
+				public boolean hasNext()
+				{
+					return next < a.length;
+				}
+				
+				public E next()
+				{
+					if (next == a.length)
+						throw new NoSuchElementException();
+					return a[next++];
+				}
+				
+				public void remove()
+				{
+					if (next == 0 || !IdSet.this.remove(a[next-1]))
+						throw new IllegalStateException();
+				}
+			};
+		}
+		
+		void grow(int id)
+		{
+			int n = Math.max(id+1, elements.length*2);
+			elements = copyOf(elements, n);
+			bits = copyOf(bits, (n+63)>>6);
+		}
+	}
+	
+	/**
+	 * a map from the exprs, blocks or edges of one method to values, kept in
+	 * an array indexed by id().  ids are handed out densely by the method, so
+	 * lookups don't compare or box, and it iterates in id order like a TreeMap
+	 * of exprs or blocks does.
+	 */
+	static class IdMap<K extends Indexable, V> extends AbstractMap<K,V>
 	{
-		public Set<V> get(K e)
+		final IdSet<K> keys = new IdSet<K>();
+		Object[] values = noelements; // by id
+		
+		public int size()
 		{
-			Set<V> s = super.get(e);
+			return keys.size;
+		}
+		
+		public boolean containsKey(Object k)
+		{
+			return keys.contains(k);
+		}
+		
+		@SuppressWarnings("unchecked")
+		public V get(Object k)
+		{
+			return keys.contains(k) ? (V) values[((Indexable)k).id()] : null;
+		}
+		
+		@SuppressWarnings("unchecked")
+		public V put(K k, V v)
+		{
+			int id = k.id();
+			if (id >= values.length)
+				values = copyOf(values, Math.max(id+1, values.length*2));
+			V old = keys.add(k) ? null : (V) values[id];
+			values[id] = v;
+			return old;
+		}
+		
+		public V remove(Object k)
+		{
+			V old = get(k);
+			if (keys.remove(k))
+				values[((Indexable)k).id()] = null;
+			return old;
+		}
+		
+		public void clear()
+		{
+			keys.clear();
+			Arrays.fill(values, null);
+		}
+		
+		public Set<K> keySet()
+		{
+			return keys;
+		}
+		
+		public Set<Map.Entry<K,V>> entrySet()
+		{
+			return new AbstractSet<Map.Entry<K,V>>()
+			{
+				public int size()
+				{
+					return keys.size;
+				}
+				
+				public Iterator<Map.Entry<K,V>> iterator()
+				{
+					final Iterator<K> i = keys.iterator();
+					return new Iterator<Map.Entry<K,V>>()
+					{
+						public boolean hasNext()
+						{
+							return i.hasNext();
+						}
+						
+						public Map.Entry<K,V> next()
+						{
+							return new IdEntry(i.next());
+						}
+						
+						public void remove()
+						{
+							i.remove();
+						}
+					};
+				}
+			};
+		}
+		
+		class IdEntry implements Map.Entry<K,V>
+		{
+			final K key;
+			
+			IdEntry(K key)
+			{
+				this.key = key;
+			}
+			
+			public K getKey()
+			{
+				return key;
+			}
+			
+			@SuppressWarnings("unchecked")
+			public V getValue()
+			{
+				return (V) values[key.id()];
+			}
+			
+			public V setValue(V v)
+			{
+				return put(key, v);
+			}
+			
+			public boolean equals(Object o)
+			{
+				if (!(o instanceof Map.Entry))
+					return false;
+				Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+				V v = getValue();
+				return key == e.getKey() && (v == null ? e.getValue() == null : v.equals(e.getValue()));
+			}
+			
+			public int hashCode()
+			{
+				V v = getValue();
+				return key.hashCode() ^ (v == null ? 0 : v.hashCode());
+			}
+			
+			public String toString()
+			{
+				return key + "=" + getValue();
+			}
+		}
+	}
+	
+	/**
+	 * a set of V's for each K, created the first time it is asked for.
+	 * the sets are kept in an array indexed by the key's id().
+	 */
+	static class SetMap<K extends Indexable, V extends Indexable>
+	{
+		final Comparator<? super V> order;
+		Object[] sets = noelements;
+		int size;
+		
+		SetMap()
+		{
+			this(null);
+		}
+		
+		SetMap(Comparator<? super V> order)
+		{
+			this.order = order;
+		}
+		
+		@SuppressWarnings("unchecked")
+		Set<V> get(K k)
+		{
+			int id = k.id();
+			if (id >= sets.length)
+				sets = copyOf(sets, Math.max(id+1, sets.length*2));
+			IdSet<V> s = (IdSet<V>) sets[id];
 			if (s == null)
-				put(e,s = new TreeSet<V>());
+			{
+				sets[id] = s = new IdSet<V>(order);
+				s.key = k;
+				size++;
+			}
 			return s;
 		}
-		static final long serialVersionUID=0;
+		
+		boolean containsKey(K k)
+		{
+			int id = k.id();
+			return id < sets.length && sets[id] != null;
+		}
+		
+		boolean isEmpty()
+		{
+			return size == 0;
+		}
+		
+		public String toString()
+		{
+			StringBuilder b = new StringBuilder();
+			b.append('{');
+			for (Object o: sets)
+			{
+				if (o == null)
+					continue;
+				IdSet<?> s = (IdSet<?>) o;
+				if (b.length() > 1)
+					b.append(", ");
+				b.append(s.key).append('=').append(s);
+			}
+			b.append('}');
+			return b.toString();
+		}
 	}
 	
 	static class EdgeMap<E extends Indexable> extends SetMap<E,E>
 	{
-		public Set<E> get(E e)
-		{
-			return super.get(e);
-		}
-		static final long serialVersionUID=0;
 	}
 	
-	static class WorkSet<E extends Indexable> extends TreeSet<E>
+	/**
+	 * a work list that hands out its elements in id order (or the given order),
+	 * and holds each element at most once.
+	 */
+	static class WorkSet<E extends Indexable> extends IdSet<E>
 	{
-		static final long serialVersionUID=0;
+		WorkSet()
+		{
+		}
+		
+		WorkSet(Comparator<? super E> order)
+		{
+			super(order);
+		}
 	}
 	
 	boolean isCritical(Edge e, SetMap<Block,Edge>pred)
@@ -6475,7 +7116,7 @@ public class GlobalOptimizer
 	void split(Edge e, Method m, SetMap<Block,Edge>pred)
 	{
 		assert(e.handler == null); // can't split exception edges
-		System.out.println("SPLIT "+e);
+		console.println("SPLIT "+e);
 		Expr j = new Expr(m, OP_jump);
 		Block d = new Block(m);
 		Block to = e.to;
@@ -6552,7 +7193,7 @@ public class GlobalOptimizer
 		Map<Block,Deque<Expr>> exprs = new TreeMap<Block,Deque<Expr>>();
 		ConflictGraph conflicts = new ConflictGraph();
 		
-		System.out.println("BEFORE SCHED");
+		console.println("BEFORE SCHED");
 		print(code);
 		
 		restused:
@@ -6566,7 +7207,7 @@ public class GlobalOptimizer
 					break restused;
 			m.flags &= ~(METHOD_Arguments|METHOD_Needrest);
 			m.flags |= METHOD_IgnoreRest;
-			System.out.println("IGNORE_REST for "+m.name);
+			console.println("IGNORE_REST for "+m.name);
 		}
 
 		sched_greedy(m, code, locals, pred, exprs, conflicts);
@@ -6663,7 +7304,7 @@ public class GlobalOptimizer
 		m.max_stack = max_stack;
 		m.max_scope = max_scope;
 		
-		System.out.println("AFTER SCHED "+m.name+" local_count="+m.local_count+" max_stack="+max_stack+" max_scope="+max_scope);
+		console.println("AFTER SCHED "+m.name+" local_count="+m.local_count+" max_stack="+max_stack+" max_scope="+max_scope);
 		
 		// some of the edges we split didn't need to be.
 		cfgopt(m);
@@ -6680,8 +7321,8 @@ public class GlobalOptimizer
 				if (locals.containsKey(e.id))
 					alloc2(e,conflicts,locals);
 
-		System.out.println("CONFLICTS " + conflicts);
-		System.out.println("LOCALS "+locals);
+		console.println("CONFLICTS " + conflicts);
+		console.println("LOCALS "+locals);
 	}
 	
 	void update_depth(Block b, int stkdepth, Map<Block,Integer> stkin, int scpdepth, Map<Block,Integer> scpin)
@@ -6930,7 +7571,7 @@ public class GlobalOptimizer
 			while (work.peek() == b) 
 				work.remove(); // remove dups
 
-			Set<Expr> live = new TreeSet<Expr>();
+			Set<Expr> live = new IdSet<Expr>();
 			Deque<Expr> in = new ArrayDeque<Expr>(b.exprs);
 			Deque<Expr> stk = new ArrayDeque<Expr>();
 			Deque<Expr> scp = new ArrayDeque<Expr>();
@@ -6943,7 +7584,7 @@ public class GlobalOptimizer
 			exprs.put(b,out);
 			listings.put(b,verbose);
 
-			Set<Expr>phis = new TreeSet<Expr>();
+			Set<Expr>phis = new IdSet<Expr>();
 			while (!in.isEmpty() || !stk.isEmpty())
 			{
 				while (!stk.isEmpty() && hasStackEffect(in.peekLast()))
@@ -7026,18 +7667,18 @@ public class GlobalOptimizer
 			
 			fwd_state(m, locals, pred, liveout, stkout, scpout, work, b, live, stk, scp, verbose, out, phis);
 		}
-		System.out.println("STK_LIVEOUT " + liveout);
-		System.out.println("CONFLICTS " + cg);
+		console.println("STK_LIVEOUT " + liveout);
+		console.println("CONFLICTS " + cg);
 
 		for (Block b: code)
 		{
-			System.out.println("");
-			System.out.println(b);
+			console.println("");
+			console.println(b);
 			for (Object o: listings.get(b)) 
 				if (o instanceof Expr) 
 					print((Expr)o); 
 				else 
-					System.out.println(o);
+					console.println(o);
 		}		
 		return cg;
 	}
@@ -7104,7 +7745,7 @@ public class GlobalOptimizer
 			while (work.peek() == b) 
 				work.remove(); // remove dups
 
-			Set<Expr> live = new TreeSet<Expr>();
+			Set<Expr> live = new IdSet<Expr>();
 			Deque<Expr> in = new ArrayDeque<Expr>(b.exprs);
 			Deque<Expr> stk = new ArrayDeque<Expr>();
 			Deque<Expr> scp = new ArrayDeque<Expr>();
@@ -7125,7 +7766,7 @@ public class GlobalOptimizer
 			exprs.put(b,out);
 			listings.put(b,verbose);
 			
-			Set<Expr>phis = new TreeSet<Expr>();
+			Set<Expr>phis = new IdSet<Expr>();
 
 			while (!in.isEmpty())
 			{
@@ -7197,19 +7838,19 @@ public class GlobalOptimizer
 			
 			fwd_state(m, locals, pred, liveout, stkout, scpout, work, b, live, stk, scp, verbose, out, phis);
 		}
-		System.out.println("SCHED LIVEOUT " + liveout);
-		System.out.println("SCHED STKOUT " + stkout);
-		System.out.println("SCHED CONFLICTS " + cg);
+		console.println("SCHED LIVEOUT " + liveout);
+		console.println("SCHED STKOUT " + stkout);
+		console.println("SCHED CONFLICTS " + cg);
 
 		for (Block b: code)
 		{
-			System.out.println("");
-			System.out.println(b);
+			console.println("");
+			console.println(b);
 			for (Object o: listings.get(b)) 
 				if (o instanceof Expr) 
 					print((Expr)o); 
 				else 
-					System.out.println(o);
+					console.println(o);
 		}		
 		return cg;
 	}
@@ -7323,7 +7964,7 @@ public class GlobalOptimizer
 	{
 		if (phis.isEmpty() || live.isEmpty())
 			return live;
-		Set<Expr> copy = new TreeSet<Expr>();
+		Set<Expr> copy = new IdSet<Expr>();
 		for (Expr e: live)
 			copy.add(phis.contains(e) ? e.args[findPhiArg(e, p)] : e);
 		return copy;
@@ -7456,7 +8097,7 @@ public class GlobalOptimizer
 	{
 		EdgeMap<Expr> uses = findUses(code);
 		Map<Expr,Expr> map = new HashMap<Expr,Expr>();
-		Set<Expr> work = new WorkSet<Expr>();
+		WorkSet<Expr> work = new WorkSet<Expr>();
 		for (Block b: code)
 		{
 			for (Expr e: b)
@@ -7563,7 +8204,7 @@ public class GlobalOptimizer
 		Map<Block,Block> idom = idoms(code,pred);
 		EdgeMap<Block> loops = findLoops(code,idom,pred);
 		if (!loops.isEmpty())
-			System.out.println("LOOPS "+loops);
+			console.println("LOOPS "+loops);
 		
 		for (Block b: code)
 		{
@@ -7668,7 +8309,7 @@ public class GlobalOptimizer
 		}
 		while (changed);
 		
-		Map<Block,Block> map = new TreeMap<Block,Block>();
+		Map<Block,Block> map = new IdMap<Block,Block>();
 		for (Block b: all)
 			if (b != entry)
 				map.put(b, doms[b.postorder]);
@@ -7699,28 +8340,9 @@ public class GlobalOptimizer
 		return e.from.postorder < e.to.postorder && dominates(e.to, e.from, idom);
 	}
 	
-	Block remove(Set<Block>work)
-	{
-		Iterator<Block> i = work.iterator();
-		Block b = i.next();
-		i.remove();
-		return b;
-	}
-	
-	Expr remove(Set<Expr>work)
+	<E extends Indexable> E remove(WorkSet<E>work)
 	{
-		Iterator<Expr> i = work.iterator();
-		Expr e = i.next();
-		i.remove();
-		return e;
-	}
-	
-	Edge remove(Set<Edge>work)
-	{
-		Iterator<Edge> i = work.iterator();
-		Edge e = i.next();
-		i.remove();
-		return e;
+		return work.removeFirst();
 	}
 	
 	Method remove(List<Method> list)
@@ -7751,11 +8373,11 @@ public class GlobalOptimizer
 			for (Edge s: b.succ())
 				if (isLoop(s, idom))
 				{
-					System.out.println("backedge "+s);
+					console.println("backedge "+s);
 					Block h = s.to;
 					// find the set of blocks that are in the loop body.
 					Set<Block> loop = loops.get(h);
-					Set<Block> work = new WorkSet<Block>();
+					WorkSet<Block> work = new WorkSet<Block>();
 					for (Edge p: pred.get(h))
 					{
 						if (isLoop(p,idom) && !loop.contains(p.from) && p.from != h)
@@ -8435,7 +9057,7 @@ public class GlobalOptimizer
 	
 	void print(Expr e)
 	{
-		PrintWriter pw = new PrintWriter(System.out);
+		PrintWriter pw = new PrintWriter(console);
 		printssa(e, pw);
 		pw.flush();
 	}
@@ -8512,16 +9134,16 @@ public class GlobalOptimizer
 	
 	void print(Deque<Block> blocks)
 	{
-		System.out.println(blocks);
-		PrintWriter pw = new PrintWriter(System.out);
+		console.println(blocks);
+		PrintWriter pw = new PrintWriter(console);
 		for (Block b: blocks)
 			print(b,pw);
 		pw.flush();
 	}
 	void printabc(Deque<Block> blocks)
 	{
-		System.out.println(blocks);
-		PrintWriter pw = new PrintWriter(System.out);
+		console.println(blocks);
+		PrintWriter pw = new PrintWriter(console);
 		for (Block b: blocks)
 			printabc(b,pw);
 		pw.flush();
@@ -11,8 +11,6 @@
 
 package macromedia.abc;
 
-import macromedia.asc.util.IntegerPool;
-
 import java.io.*;
 import java.util.*;
 
@@ -190,9 +188,38 @@ public class BytecodeBuffer
 	public void writeBytes(BytecodeBuffer b, int start, int end)
 	{
 		resize(end - start);
-		for (int i = start; i < end; i++)
+		System.arraycopy(b.bytecodes, start, bytecodes, size, end - start);
+		size += end - start;
+	}
+
+	/**
+	 * The number of bytes that writeU32(v) writes.
+	 */
+	public static int sizeOfU32(long v)
+	{
+		if (v < 0)
+		{
+			return 5;
+		}
+		else if (v < 128)
+		{
+			return 1;
+		}
+		else if (v < 16384)
 		{
-			bytecodes[size++] = b.bytecodes[i];
+			return 2;
+		}
+		else if (v < 2097152)
+		{
+			return 3;
+		}
+		else if (v < 268435456)
+		{
+			return 4;
+		}
+		else
+		{
+			return 5;
 		}
 	}
 
@@ -200,7 +227,7 @@ public class BytecodeBuffer
 	{
 		if (size + increment > bytecodes.length)
 		{
-			byte[] temp = new byte[bytecodes.length * 3 / 2 + 1];
+			byte[] temp = new byte[Math.max(bytecodes.length * 3 / 2 + 1, size + increment)];
 			System.arraycopy(bytecodes, 0, temp, 0, bytecodes.length);
 			bytecodes = temp;
 		}
@@ -342,20 +369,34 @@ public class BytecodeBuffer
 
 	public int hashCode(int start, int end)
 	{
-		long hash = 1234;
-
+		int hash = end - start;
 		for (int j = start; j < end; j++)
 		{
-			hash ^= bytecodes[j];
+			hash = 31 * hash + (bytecodes[j] & 0xff);
 		}
-
-		return (int) ((hash >> 32) ^ hash);
+		return hash ^ (hash >>> 16);
 	}
 
 	public void writeTo(OutputStream out) throws IOException
 	{
 		out.write(bytecodes, 0, size);
 	}
+
+	/**
+	 * Returns the bytes that have been written. A buffer that was created with the exact size
+	 * hands over its array instead of a copy.
+	 */
+	public byte[] toByteArray()
+	{
+		if (size == bytecodes.length)
+		{
+			return bytecodes;
+		}
+
+		byte[] b = new byte[size];
+		System.arraycopy(bytecodes, 0, b, 0, size);
+		return b;
+	}
 	
 	public int minorVersion()
 	{
@@ -363,126 +404,165 @@ public class BytecodeBuffer
 	}
 }
 
+/**
+ * Byte ranges, numbered from 1 in the order they're stored in, that can be found again by
+ * their bytes. The ranges and their hashes are kept in arrays and looked up through an open
+ * addressed table, so neither storing nor finding a range allocates anything per entry.
+ */
 class ByteArrayPool
 {
 	ByteArrayPool()
 	{
-		map = new HashMap();
-		wrappers = new Stack();
-		key = newByteArray();
+		buffers = new BytecodeBuffer[16];
+		starts = new int[16];
+		ends = new int[16];
+		hashes = new int[16];
+		table = new int[32];
 	}
 
-	protected Map map;
-	Stack wrappers;
-	private ByteArray key;
+	private BytecodeBuffer[] buffers;
+	private int[] starts, ends, hashes;
+	private int count;
+
+	// C: the numbers of the entries, 0 where there's none; kept at most half full.
+	private int[] table;
 
-	ByteArray newByteArray()
+	int count()
 	{
-		return new ByteArray();
+		return count;
 	}
 
 	int store(BytecodeBuffer b, int start, int end)
 	{
-		ByteArray a = wrappers.isEmpty() ? null : (ByteArray) wrappers.pop();
+		return store(b, start, end, b.hashCode(start, end));
+	}
 
-		if (a == null)
+	/**
+	 * Stores a range that isn't in the pool yet.
+	 *
+	 * @param hash b.hashCode(start, end)
+	 * @return the number of the new entry
+	 */
+	int store(BytecodeBuffer b, int start, int end, int hash)
+	{
+		if (count == buffers.length)
 		{
-			a = newByteArray();
+			int length = count * 2;
+			BytecodeBuffer[] oldBuffers = buffers;
+			buffers = new BytecodeBuffer[length];
+			System.arraycopy(oldBuffers, 0, buffers, 0, count);
+			starts = grow(starts, length);
+			ends = grow(ends, length);
+			hashes = grow(hashes, length);
 		}
 
-		a.clear();
-		a.b = b;
-		a.start = start;
-		a.end = end;
-		a.init();
+		buffers[count] = b;
+		starts[count] = start;
+		ends[count] = end;
+		hashes[count] = hash;
+		count++;
 
-		Integer index = IntegerPool.getNumber(map.size() + 1);
-		map.put(a, index);
+		if (count * 2 > table.length)
+		{
+			table = new int[table.length * 2];
+			for (int index = 1; index <= count; index++)
+			{
+				insert(index);
+			}
+		}
+		else
+		{
+			insert(count);
+		}
 
-		return index.intValue();
+		return count;
 	}
 
 	int contains(BytecodeBuffer b, int start, int end)
 	{
-		key.clear();
-		key.b = b;
-		key.start = start;
-		key.end = end;
-		key.hash = 0;
-		key.init();
-
-		Integer index = (Integer) map.get(key);
-		return (index != null) ? index.intValue() : -1;
+		return contains(b, start, end, b.hashCode(start, end));
 	}
 
-	void clear()
+	/**
+	 * @param hash b.hashCode(start, end)
+	 * @return the number of the entry with the same bytes, or -1
+	 */
+	int contains(BytecodeBuffer b, int start, int end, int hash)
 	{
-		for (Iterator i = map.keySet().iterator(); i.hasNext();)
+		int mask = table.length - 1;
+		for (int i = hash & mask; ; i = (i + 1) & mask)
 		{
-			ByteArray a = (ByteArray) i.next();
-			a.clear();
-			wrappers.push(a);
-		}
+			int index = table[i];
+			if (index == 0)
+			{
+				return -1;
+			}
 
-		map.clear();
+			int k = index - 1;
+			if (hashes[k] == hash && b.same(buffers[k], start, end, starts[k], ends[k]))
+			{
+				return index;
+			}
+		}
 	}
 
-	void writeTo(BytecodeBuffer b)
+	void clear()
 	{
-		Map sortedMap = new TreeMap();
-
-		for (Iterator i = map.keySet().iterator(); i.hasNext();)
-		{
-			Object key = i.next(); // ByteArray
-			Object value = map.get(key); // Integer
-			sortedMap.put(value, key);
-		}
-
-		b.writeU32((sortedMap.size() == 0) ? 0 : sortedMap.size() + 1);
+		Arrays.fill(buffers, 0, count, null);
+		Arrays.fill(table, 0);
+		count = 0;
+	}
 
-		for (Iterator i = sortedMap.keySet().iterator(); i.hasNext();)
+	private void insert(int index)
+	{
+		int mask = table.length - 1;
+		int i = hashes[index - 1] & mask;
+		while (table[i] != 0)
 		{
-			Integer index = (Integer) i.next();
-			ByteArray a = (ByteArray) sortedMap.get(index);
-			b.writeBytes(a.b, a.start, a.end);
+			i = (i + 1) & mask;
 		}
+		table[i] = index;
 	}
-}
 
-class ByteArray
-{
-	BytecodeBuffer b;
-	int start, end, hash;
-
-	void clear()
+	private static int[] grow(int[] a, int length)
 	{
-		b = null;
-		start = 0;
-		end = 0;
-		hash = 0;
+		int[] temp = new int[length];
+		System.arraycopy(a, 0, temp, 0, a.length);
+		return temp;
 	}
 
-	void init()
+	/**
+	 * The number of bytes that writeTo() writes.
+	 */
+	int encodedSize()
 	{
-		hash = b.hashCode(start, end);
+		return BytecodeBuffer.sizeOfU32((count == 0) ? 0 : count + 1) + sizeOfEntries();
 	}
 
-	public boolean equals(Object obj)
+	int sizeOfEntries()
 	{
-		if (obj instanceof ByteArray)
+		int size = 0;
+		for (int k = 0; k < count; k++)
 		{
-			ByteArray a = (ByteArray) obj;
-			return b.same(a.b, start, end, a.start, a.end);
-		}
-		else
-		{
-			return false;
+			size += ends[k] - starts[k];
 		}
+		return size;
 	}
 
-	public int hashCode()
+	void writeTo(BytecodeBuffer b)
 	{
-		return hash;
-	}	
-}
+		b.writeU32((count == 0) ? 0 : count + 1);
+		writeEntries(b);
+	}
 
+	/**
+	 * Writes the entries in the order they were stored in.
+	 */
+	void writeEntries(BytecodeBuffer b)
+	{
+		for (int k = 0; k < count; k++)
+		{
+			b.writeBytes(buffers[k], starts[k], ends[k]);
+		}
+	}
+}
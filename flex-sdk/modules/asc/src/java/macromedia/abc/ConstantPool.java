@@ -100,21 +100,33 @@ public class ConstantPool
 
     public static ConstantPool merge(ConstantPool[] pools)
     {
-        // create a new ConstantPool big enough for the combined pools.
-        int preferredSize = 0;
+        return merge(pools, 1);
+    }
+
+    /**
+     * Merges the pools like merge(ConstantPool[]), but finds the duplicate ints, uints, doubles,
+     * decimals and strings up front, on the given number of threads. The merged pool comes out
+     * the same either way.
+     */
+    public static ConstantPool merge(ConstantPool[] pools, int threads)
+    {
         boolean hasDecimal = false;
 
         for (int i = 0, size = pools.length; i < size; i++)
         {
             if (pools[i].decimalpositions.length > 0)
                 hasDecimal = true;
-            preferredSize += pools[i].mnEnd;
         }
 
+        // C: the merged pool has no bytes of its own; writeTo() writes them out of the history.
         ConstantPool newPool = new ConstantPool(hasDecimal); // make room for decimal in the one we create
-        newPool.in = new BytecodeBuffer(preferredSize);
         newPool.history = new IndexHistory(pools, hasDecimal);
 
+        if (threads > 1)
+        {
+            newPool.history.findDuplicates(threads);
+        }
+
         return newPool;
     }
 
@@ -167,6 +179,7 @@ public class ConstantPool
     BytecodeBuffer in;
     IndexHistory history;
     private int size;
+    private int[] hashes;
 
     int[] intpositions;
     int[] uintpositions;
@@ -191,6 +204,48 @@ public class ConstantPool
         return size;
     }
 
+    /**
+     * Hashes the bytes of the ints, uints, doubles, decimals and strings for merging, unless
+     * that's done already. PostLink calls it on the thread that decoded the pool.
+     */
+    public void hashConstants()
+    {
+        if (hashes == null)
+        {
+            int[] h = new int[size - count(nspositions) - count(nsspositions) - count(mnpositions)];
+            int k = hash(h, 0, intpositions, intEnd);
+            k = hash(h, k, uintpositions, uintEnd);
+            k = hash(h, k, doublepositions, doubleEnd);
+            k = hash(h, k, decimalpositions, decimalEnd);
+            hash(h, k, strpositions, strEnd);
+            hashes = h;
+        }
+    }
+
+    /**
+     * The hashes of the ints, uints, doubles, decimals and strings, in that order.
+     */
+    int[] hashes()
+    {
+        hashConstants();
+        return hashes;
+    }
+
+    private int hash(int[] h, int k, int[] positions, int endPos)
+    {
+        for (int j = 1, length = positions.length; j < length; j++)
+        {
+            int end = (j != length - 1) ? positions[j + 1] : endPos;
+            h[k++] = in.hashCode(positions[j], end);
+        }
+        return k;
+    }
+
+    private static int count(int[] positions)
+    {
+        return (positions.length == 0) ? 0 : (positions.length - 1);
+    }
+
     public int getInt(int index)
     {
         if (index == 0)
@@ -588,10 +643,24 @@ public class ConstantPool
         return new MultiName(name, ns);
     }
 
+    /**
+     * The number of bytes that writeTo() writes for a merged pool.
+     */
+    public int encodedSize()
+    {
+        return history.encodedSize();
+    }
+
+    public void writeTo(BytecodeBuffer b)
+    {
+        history.writeTo(b);
+    }
+
     public void writeTo(OutputStream out) throws IOException
     {
-        history.writeTo(in);
-        in.writeTo(out);
+        BytecodeBuffer b = new BytecodeBuffer(encodedSize());
+        history.writeTo(b);
+        b.writeTo(out);
     }
 }
 
@@ -631,9 +700,9 @@ final class IndexHistory
 		if (hasDecimal)
 			decimalP = new ByteArrayPool();
 		stringP = new ByteArrayPool();
-		nsP = new NSPool();
-		nssP = new NSSPool();
-		mnP = new MultiNamePool();
+		nsP = new ByteArrayPool();
+		nssP = new ByteArrayPool();
+		mnP = new ByteArrayPool();
 
 		total = 0;
 		duplicate = 0;
@@ -664,6 +733,121 @@ final class IndexHistory
     }
 
 
+	/**
+	 * For every int, uint, double, decimal and string slot in map, the slot of the first entry
+	 * in the pools with the same bytes. null unless findDuplicates() has been called.
+	 */
+	private int[] leaders;
+
+	/**
+	 * Groups the equal ints, uints, doubles, decimals and strings of all the pools, so that
+	 * decodeOnDemand() doesn't need to look them up in the ByteArrayPools. Unlike namespaces
+	 * and multinames, their bytes don't depend on the merged indices, so they can be grouped
+	 * before the merge starts: the pools are hashed, then the entries are split into shards by
+	 * hash, and each shard is grouped on its own. Merged indices are still handed out in the
+	 * order the entries are first used, so the merged pool doesn't change.
+	 */
+	void findDuplicates(int threads)
+	{
+		final int[] leaders = new int[map.length];
+		final int shards = threads * 4;
+
+		new Tasks()
+		{
+			protected void run(int poolIndex)
+			{
+				pools[poolIndex].hashConstants();
+			}
+		}.run(pools.length, threads);
+
+		new Tasks()
+		{
+			protected void run(int shard)
+			{
+				ByteArrayPool group = new ByteArrayPool();
+				IntList slots = new IntList(); // the slot of each entry in group
+
+				for (int kind = cp_int; kind <= cp_string; kind++)
+				{
+					if (kind == cp_decimal && !hasDecimal)
+					{
+						continue;
+					}
+
+					group.clear();
+					slots.clear();
+
+					for (int poolIndex = 0, size = pools.length; poolIndex < size; poolIndex++)
+					{
+						BytecodeBuffer b = pools[poolIndex].in;
+						int[] hashes = pools[poolIndex].hashes();
+						int[] positions = positions(poolIndex, kind);
+						int endPos = endPos(poolIndex, kind);
+
+						for (int j = 1, length = positions.length; j < length; j++)
+						{
+							int slot = calculateIndex(poolIndex, kind, j);
+							int hash = hashes[slot - poolSizes[poolIndex]];
+							if ((hash & 0x7fffffff) % shards == shard)
+							{
+								int end = (j != length - 1) ? positions[j + 1] : endPos;
+								int index = group.contains(b, positions[j], end, hash);
+								if (index == -1)
+								{
+									group.store(b, positions[j], end, hash);
+									slots.add(slot);
+									leaders[slot] = slot;
+								}
+								else
+								{
+									leaders[slot] = slots.get(index - 1);
+								}
+							}
+						}
+					}
+				}
+			}
+		}.run(shards, threads);
+
+		this.leaders = leaders;
+	}
+
+	private int[] positions(int poolIndex, int kind)
+	{
+		ConstantPool pool = pools[poolIndex];
+		switch (kind)
+		{
+		case cp_int:
+			return pool.intpositions;
+		case cp_uint:
+			return pool.uintpositions;
+		case cp_double:
+			return pool.doublepositions;
+		case cp_decimal:
+			return pool.decimalpositions;
+		default:
+			return pool.strpositions;
+		}
+	}
+
+	private int endPos(int poolIndex, int kind)
+	{
+		ConstantPool pool = pools[poolIndex];
+		switch (kind)
+		{
+		case cp_int:
+			return pool.intEnd;
+		case cp_uint:
+			return pool.uintEnd;
+		case cp_double:
+			return pool.doubleEnd;
+		case cp_decimal:
+			return pool.decimalEnd;
+		default:
+			return pool.strEnd;
+		}
+	}
+
 	public int getIndex(int poolIndex, int kind, int index)
 	{
 		if (index == 0)
@@ -683,6 +867,15 @@ final class IndexHistory
 		}
 	}
 
+	int encodedSize()
+	{
+		int size = intP.encodedSize() + uintP.encodedSize() + doubleP.encodedSize();
+		if (hasDecimal)
+			size += decimalP.encodedSize();
+		size += stringP.encodedSize() + nsP.encodedSize() + nssP.encodedSize() + mnP.encodedSize();
+		return size;
+	}
+
 	public void writeTo(BytecodeBuffer b)
 	{
 		intP.writeTo(b);
@@ -826,8 +1019,14 @@ final class IndexHistory
 
 	    int start = positions[j];
 	    int end = (j != length - 1) ? positions[j + 1] : endPos;
+	    int hash = 0;
+	    boolean shared = true;
 
-	    if (kind == cp_ns)
+	    if (kind <= cp_string)
+	    {
+		    hash = pool.hashes()[j2 - poolSizes[poolIndex]];
+	    }
+	    else if (kind == cp_ns)
 	    {
 		    int pos = positions[j];
 		    int originalPos = poolIn.pos();
@@ -838,6 +1037,9 @@ final class IndexHistory
 		    switch (nsKind)
 		    {
 		    case CONSTANT_PrivateNamespace:
+                // Private namespaces are only equal if they are literally the same namespace,
+                // the name is not important.
+                shared = false;
                 if( this.disableDebuggingInfo )
                 {
                     in_ns.writeU32(0); // name not important for private namespace
@@ -860,6 +1062,7 @@ final class IndexHistory
             poolIn.seek(originalPos);
             end = in_ns.size();
             poolIn = in_ns;
+            hash = poolIn.hashCode(start, end);
 	    }
 	    else if (kind == cp_nsset)
 	    {
@@ -897,6 +1100,7 @@ final class IndexHistory
 		    poolIn.seek(originalPos);
 		    end = in_nsset.size();
 		    poolIn = in_nsset;
+		    hash = poolIn.hashCode(start, end);
 	    }
 	    else if (kind == cp_mn)
 	    {
@@ -977,17 +1181,38 @@ final class IndexHistory
 		    poolIn.seek(originalPos);
 		    end = in_mn.size();
 		    poolIn = in_mn;
+		    hash = poolIn.hashCode(start, end);
 	    }
 
-	    int newIndex = baPool.contains(poolIn, start, end);
-	    if (newIndex == -1)
+	    int newIndex;
+	    if (leaders != null && kind <= cp_string)
 	    {
-		    newIndex = baPool.store(poolIn, start, end);
+		    // C: the leader's slot holds the merged index of the whole group once any of it is used.
+		    int leader = leaders[j2];
+		    newIndex = map[leader];
+		    if (newIndex == 0)
+		    {
+			    newIndex = baPool.store(poolIn, start, end, hash);
+			    map[leader] = newIndex;
+		    }
+		    else
+		    {
+			    duplicate++;
+			    duplicateBytes += (end - start);
+		    }
 	    }
 	    else
 	    {
-		    duplicate++;
-		    duplicateBytes += (end - start);
+		    newIndex = shared ? baPool.contains(poolIn, start, end, hash) : -1;
+		    if (newIndex == -1)
+		    {
+			    newIndex = baPool.store(poolIn, start, end, hash);
+		    }
+		    else
+		    {
+			    duplicate++;
+			    duplicateBytes += (end - start);
+		    }
 	    }
 
 	    total++;
@@ -999,292 +1224,3 @@ final class IndexHistory
 	    }
     }
 }
-
-final class NSPool extends ByteArrayPool
-{
-	NSPool()
-	{
-		super();
-	}
-
-	ByteArray newByteArray()
-	{
-		return new NS();
-	}
-}
-
-final class NS extends ByteArray
-{
-	int nsKind = 0, index = 0;
-
-	void init()
-	{
-		super.init();
-
-		int originalPos = b.pos();
-		b.seek(start);
-		nsKind = b.readU8();
-		switch (nsKind)
-		{
-		case CONSTANT_PrivateNamespace:
-		case CONSTANT_Namespace:
-        case CONSTANT_PackageNamespace:
-        case CONSTANT_PackageInternalNs:
-        case CONSTANT_ProtectedNamespace:
-        case CONSTANT_ExplicitNamespace:
-        case CONSTANT_StaticProtectedNs:				
-			index = b.readU32();
-			break;
-		default:
-			assert false; // can't possibly happen...
-		}
-		b.seek(originalPos);
-
-		long num = 1234 ^ nsKind ^ index;
-		hash = (int) ((num >> 32) ^ num);
-	}
-
-	void clear()
-	{
-		super.clear();
-		nsKind = 0;
-		index = 0;
-	}
-
-	public boolean equals(Object obj)
-	{
-        boolean equal = false;
-		if (obj instanceof NS)
-		{
-            NS ns = (NS) obj;
-            if( this.nsKind == CONSTANT_PrivateNamespace )
-            {
-                // Private namespaces are only equal if they are literally the same namespace,
-                // the name is not important.
-                equal = (this.b == ns.b) && (this.start == ns.start) && (this.end == ns.end);
-            }
-            else
-            {
-                equal = (ns.nsKind == this.nsKind) && (ns.index == this.index);
-            }
-		}
-        return equal;
-	}
-}
-
-
-final class NSSPool extends ByteArrayPool
-{
-	NSSPool()
-	{
-		super();
-	}
-
-	ByteArray newByteArray()
-	{
-		return new NSS();
-	}
-}
-
-final class NSS extends ByteArray
-{
-	int[] set = null;
-	int size = 0;
-
-	void init()
-	{
-		super.init();
-
-		int originalPos = b.pos();
-		b.seek(start);
-		int count = b.readU32();
-
-		if (set == null || count > set.length)
-		{
-			set = new int[count];
-		}
-		size = count;
-
-		for (int k = 0; k < count; k++)
-		{
-			set[k] = b.readU32();
-		}
-		b.seek(originalPos);
-
-		long num = 1234;
-		for (int k = 0; k < count; k++)
-		{
-			num ^= set[k];
-		}
-		hash = (int) ((num >> 32) ^ num);
-	}
-
-	void clear()
-	{
-		super.clear();
-		size = 0;
-	}
-
-	public boolean equals(Object obj)
-	{
-		if (obj instanceof NSS)
-		{
-			NSS nss = (NSS) obj;
-			if (size == nss.size)
-			{
-				for (int i = 0; i < size; i++)
-				{
-					if (set[i] != nss.set[i])
-					{
-						return false;
-					}
-				}
-				return true;
-			}
-			else
-			{
-				return false;
-			}
-		}
-		else
-		{
-			return false;
-		}
-	}
-}
-
-final class MultiNamePool extends ByteArrayPool
-{
-	MultiNamePool()
-	{
-		super();
-	}
-
-	ByteArray newByteArray()
-	{
-		return new MN();
-	}
-}
-
-final class MN extends ByteArray
-{
-	int constKind = 0, index1 = 1, index2 = 1;
-
-	void init()
-	{
-		super.init();
-
-		int originalPos = b.pos();
-		b.seek(start);
-		constKind = b.readU8();
-
-		switch (constKind)
-		{
-		case CONSTANT_Qname:
-		case CONSTANT_QnameA:
-		{
-			index1 = b.readU32();
-			index2 = b.readU32();
-			long num = 1234 ^ constKind ^ index1 ^ index2;
-			hash = (int) ((num >> 32) ^ num);
-			break;
-		}
-		case CONSTANT_Multiname:
-		case CONSTANT_MultinameA:
-		{
-			index1 = b.readU32();
-			index2 = b.readU32();
-			long num = 1234 ^ constKind ^ index1 ^ index2;
-			hash = (int) ((num >> 32) ^ num);
-			break;
-		}
-		case CONSTANT_RTQname:
-		case CONSTANT_RTQnameA:
-		{
-			index1 = b.readU32();
-			long num = 1234 ^ constKind ^ index1;
-			hash = (int) ((num >> 32) ^ num);
-			break;
-		}
-		case CONSTANT_RTQnameL:
-		case CONSTANT_RTQnameLA:
-		{
-			long num = 1234 ^ constKind;
-			hash = (int) ((num >> 32) ^ num);
-			break;
-		}
-		case CONSTANT_MultinameL:
-		case CONSTANT_MultinameLA:
-		{
-			index1 = b.readU32();
-			long num = 1234 ^ constKind ^ index1;
-			hash = (int) ((num >> 32) ^ num);
-			break;
-		}
-        case CONSTANT_TypeName:
-        {
-            index1 = b.readU32();
-            int count = b.readU32();
-            // Only 1 typeparam for now.
-            index2 = b.readU32();
-            long num = 1234 ^ constKind ^ index1 ^ index2;
-            hash = (int) ((num >> 32) ^ num);
-            break;
-        }
-        default:
-			assert false; // can't possibly happen...
-		}
-
-		b.seek(originalPos);
-	}
-
-	void clear()
-	{
-		super.clear();
-		constKind = 0;
-		index1 = 0;
-		index2 = 0;
-	}
-
-	public boolean equals(Object obj)
-	{
-		if (obj instanceof MN)
-		{
-			MN mn = (MN) obj;
-
-			switch (constKind)
-			{
-			case CONSTANT_Qname:
-			case CONSTANT_QnameA:
-			case CONSTANT_Multiname:
-			case CONSTANT_MultinameA:
-			{
-				return (constKind == mn.constKind) && (index1 == mn.index1) && (index2 == mn.index2);
-			}
-			case CONSTANT_RTQname:
-			case CONSTANT_RTQnameA:
-			{
-				return (constKind == mn.constKind) && (index1 == mn.index1);
-			}
-			case CONSTANT_RTQnameL:
-			case CONSTANT_RTQnameLA:
-				return (constKind == mn.constKind);
-			case CONSTANT_MultinameL:
-			case CONSTANT_MultinameLA:
-			{
-				return (constKind == mn.constKind) && (index1 == mn.index1);
-			}
-            case CONSTANT_TypeName:
-            {
-                return ( constKind == mn.constKind && index1 == mn.index1 && index2 == mn.index2 );
-            }
-            default:
-				return false;
-			}
-		}
-		else
-		{
-			return false;
-		}
-	}
-}
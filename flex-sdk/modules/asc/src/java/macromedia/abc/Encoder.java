@@ -15,9 +15,6 @@ import static macromedia.asc.embedding.avmplus.ActionBlockConstants.*;
 import macromedia.asc.util.IntegerPool;
 import macromedia.asc.util.IntList;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
 import java.util.*;
 
 /**
@@ -80,9 +77,18 @@ public class Encoder implements Visitor
     }
 
 	public void addConstantPools(ConstantPool[] pools)
+	{
+		addConstantPools(pools, 1);
+	}
+
+	/**
+	 * @param threads the number of threads that look for duplicate constants before the merge
+	 * @see ConstantPool#merge(ConstantPool[], int)
+	 */
+	public void addConstantPools(ConstantPool[] pools, int threads)
 	{
         this.pools = pools;
-		pool = ConstantPool.merge(pools);
+		pool = ConstantPool.merge(pools, threads);
         if( disableDebugging )
             pool.history.disableDebugging();
 	}
@@ -277,29 +283,24 @@ public class Encoder implements Visitor
 		System.out.println();
 		*/
 		
-		int size = pool.in.size() + methodInfo.size() + metadataInfo.size() + classInfo.size() + scriptInfo.size() + methodBodies.size();
-		ByteArrayOutputStream baos = new ByteArrayOutputStream(size);
+		// C: every section's size is known by now, so the ABC is written once, into an array
+		//    of the exact size, which is handed out as it is.
+		int size = 4 + pool.encodedSize() + methodInfo.size() + metadataInfo.encodedSize() + classInfo.size() +
+		           scriptInfo.size() + methodBodies.size();
+		BytecodeBuffer abc = new BytecodeBuffer(size);
 
-		try
-		{
-			baos.write((byte) minorVersion);
-			baos.write((byte) (minorVersion >> 8));
-			baos.write((byte) majorVersion);
-			baos.write((byte) (majorVersion >> 8));
+		abc.writeU16(minorVersion);
+		abc.writeU16(majorVersion);
 
-			pool.writeTo(baos);
-			methodInfo.writeTo(baos);
-			metadataInfo.writeTo(baos);
-			classInfo.writeTo(baos);
-			scriptInfo.writeTo(baos);
-			methodBodies.writeTo(baos);
-		}
-		catch (IOException ex)
-		{
-			return null;
-		}
+		pool.writeTo(abc);
+		abc.writeBytes(methodInfo, 0, methodInfo.size());
+		metadataInfo.writeTo(abc);
+		abc.writeBytes(classInfo, 0, classInfo.size());
+		abc.writeBytes(scriptInfo, 0, scriptInfo.size());
+		abc.writeBytes(methodBodies, 0, methodBodies.size());
 
-		return baos.toByteArray();
+		assert abc.size() == size;
+		return abc.toByteArray();
 	}
 
 	public void methodInfo(int returnType, int[] paramTypes, int nativeName, int flags, int[] values, int[] value_kinds, int[] param_names)
@@ -2781,19 +2782,36 @@ public class Encoder implements Visitor
 		}
 	}
 
+    /**
+     * Where the entries of each pool start when the entries of all the pools are numbered
+     * one after the other.
+     */
+    private static int[] offsets(int[] sizes)
+    {
+        int[] offsets = new int[sizes.length];
+        for (int i = 1; i < sizes.length; i++)
+        {
+            offsets[i] = offsets[i - 1] + sizes[i - 1];
+        }
+        return offsets;
+    }
+
     class ByteArrayPool2 extends ByteArrayPool
     {
         ByteArrayPool2(int[] sizes)
         {
             this.sizes = sizes;
-            indexes = new HashMap<Integer, Integer>();
+            offsets = offsets(sizes);
+            int total = (sizes.length == 0) ? 0 : offsets[sizes.length - 1] + sizes[sizes.length - 1];
+            indexes = new int[total];
+            Arrays.fill(indexes, -1);
         }
 
         int size = 0;
 
-        private int[] sizes;
+        private int[] sizes, offsets;
 
-        private Map<Integer, Integer> indexes;
+        private int[] indexes;
 
         int addByteArray(int poolIndex, int oldIndex, BytecodeBuffer ba)
         {
@@ -2804,27 +2822,13 @@ public class Encoder implements Visitor
                 size += ba.size();
             }
             // ByteArrayPool is 1 based, we want zero based for metadataInfos
-            indexes.put(IntegerPool.getNumber(calcIndex(poolIndex, oldIndex)), IntegerPool.getNumber(index-1));
+            indexes[offsets[poolIndex] + oldIndex] = index - 1;
             return index;
         }
 
-        private int calcIndex(int poolIndex, int oldIndex)
-        {
-            int newIndex = 0;
-            for (int i = 0; i < poolIndex; i++)
-            {
-                newIndex += sizes[i];
-            }
-            newIndex += oldIndex;
-
-            return newIndex;
-        }
-
         int getIndex(int poolIndex, int oldIndex)
         {
-            int newIndex = calcIndex(poolIndex, oldIndex);
-            Integer i = indexes.get(IntegerPool.getNumber(newIndex));
-            return i != null ? i.intValue() : -1;
+            return (oldIndex >= 0 && oldIndex < sizes[poolIndex]) ? indexes[offsets[poolIndex] + oldIndex] : -1;
         }
 
         int size()
@@ -2832,32 +2836,15 @@ public class Encoder implements Visitor
             return size;
         }
 
-        void writeTo(BytecodeBuffer b)
+        int encodedSize()
         {
-            Map sortedMap = new TreeMap();
-
-            for (Iterator i = map.keySet().iterator(); i.hasNext();)
-            {
-                Object key = i.next(); // ByteArray
-                Object value = map.get(key); // Integer
-                sortedMap.put(value, key);
-            }
-
-            b.writeU32((sortedMap.size() == 0) ? 0 : sortedMap.size() );
-
-            for (Iterator i = sortedMap.keySet().iterator(); i.hasNext();)
-            {
-                Integer index = (Integer) i.next();
-                ByteArray a = (ByteArray) sortedMap.get(index);
-                b.writeBytes(a.b, a.start, a.end);
-            }
+            return BytecodeBuffer.sizeOfU32(count()) + size;
         }
 
-        void writeTo(OutputStream os) throws java.io.IOException
+        void writeTo(BytecodeBuffer b)
         {
-            BytecodeBuffer b = new BytecodeBuffer(size());
-            writeTo(b);
-            b.writeTo(os);
+            b.writeU32(count());
+            writeEntries(b);
         }
     }
 
@@ -2866,23 +2853,16 @@ public class Encoder implements Visitor
 		BytecodeBuffer2(int estimatedSize, int[] sizes)
 		{
 			super(estimatedSize);
-			this.sizes = sizes;
+			this.offsets = offsets(sizes);
 			this.estimatedSize = estimatedSize;
 		}
 
-		private int[] sizes;
+		private int[] offsets;
 		int estimatedSize;
 
 		int getIndex(int poolIndex, int oldIndex)
 		{
-			int newIndex = 0;
-			for (int i = 0; i < poolIndex; i++)
-			{
-				newIndex += sizes[i];
-			}
-			newIndex += oldIndex;
-
-			return newIndex;
+			return offsets[poolIndex] + oldIndex;
 		}
 	}
 
@@ -0,0 +1,122 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package macromedia.abc;
+
+/**
+ * A batch of numbered tasks that are run on a few threads, the calling thread being one of
+ * them. Tasks are handed out in order, one at a time, so each one only needs to touch state
+ * that belongs to its number. run() returns once every task is done; if a task fails, no new
+ * ones are started and the first failure is rethrown on the calling thread.
+ */
+public abstract class Tasks
+{
+	private int next, count;
+	private Throwable failure;
+
+	/**
+	 * Runs task 0 to count-1.
+	 *
+	 * @param threads the most threads to use; 1 runs every task on the calling thread
+	 */
+	public final void run(int count, int threads)
+	{
+		this.next = 0;
+		this.count = count;
+		this.failure = null;
+
+		Thread[] workers = new Thread[Math.max(0, Math.min(threads, count) - 1)];
+		for (int i = 0; i < workers.length; i++)
+		{
+			workers[i] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					work();
+				}
+			}, "macromedia.abc.tasks." + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+
+		work();
+
+		boolean interrupted = false;
+		for (int i = 0; i < workers.length; i++)
+		{
+			while (workers[i].isAlive())
+			{
+				try
+				{
+					workers[i].join();
+				}
+				catch (InterruptedException ex)
+				{
+					interrupted = true;
+				}
+			}
+		}
+
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		if (failure instanceof RuntimeException)
+		{
+			throw (RuntimeException) failure;
+		}
+		else if (failure instanceof Error)
+		{
+			throw (Error) failure;
+		}
+		else if (failure != null)
+		{
+			throw new RuntimeException(failure);
+		}
+	}
+
+	/**
+	 * Does task number i.
+	 */
+	protected abstract void run(int i) throws Exception;
+
+	private void work()
+	{
+		while (true)
+		{
+			int task;
+			synchronized (this)
+			{
+				if (next == count || failure != null)
+				{
+					return;
+				}
+				task = next++;
+			}
+
+			try
+			{
+				run(task);
+			}
+			catch (Throwable t)
+			{
+				synchronized (this)
+				{
+					if (failure == null)
+					{
+						failure = t;
+					}
+				}
+			}
+		}
+	}
+}
@@ -12,6 +12,7 @@
 package macromedia.asc.embedding;
 
 import macromedia.abc.AbcParser;
+import macromedia.abc.Tasks;
 import macromedia.asc.embedding.avmplus.ActionBlockEmitter;
 import macromedia.asc.embedding.avmplus.GlobalBuilder;
 import macromedia.asc.parser.*;
@@ -25,6 +26,7 @@ import macromedia.asc.util.graph.Vertex;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -33,9 +35,18 @@ import java.util.List;
 
 /**
  * asc batch compiler
+ *
+ * usage: BatchCompiler [-threads n] files...
+ *
+ * With -threads, the .as files of a round are parsed on n threads and the finished ABC files
+ * are encoded and written on n threads.  Flow analysis, constant evaluation and code
+ * generation still go one file at a time, since they define and look up types, namespaces
+ * and slots in the ContextStatics that all the files share.  The output is the same as with
+ * one thread.
  */
 public class BatchCompiler
 {
+	private static int threads = 1;
 	private static List<File> file;
 	private static List<Context> cx;
 	private static List<ActionBlockEmitter> emitter;
@@ -101,6 +112,12 @@ public class BatchCompiler
 		file = new ArrayList<File>(args.length);
 		for (int i = 0, length = args.length; i < length; i++)
 		{
+			if (args[i].equals("-threads") && i + 1 < length)
+			{
+				threads = Math.max(1, Integer.parseInt(args[++i]));
+				continue;
+			}
+
 			File f = new File(args[i]);
 			if (f.exists() && f.isFile())
 			{
@@ -117,7 +134,7 @@ public class BatchCompiler
 		emitter = new ArrayList<ActionBlockEmitter>(file.size());
 		for (int i = 0, length = file.size(); i < length; i++)
 		{
-			emitter.add(new ActionBlockEmitter(cx.get(i), file.get(i).getPath(), new StringPrintWriter(), new StringPrintWriter(), false, false, false, false));
+			emitter.add(newEmitter(cx.get(i), file.get(i)));
 		}
 
 		node = new ArrayList<ProgramNode>(file.size());
@@ -126,10 +143,33 @@ public class BatchCompiler
 		type = new HashSet<Pair>();
 	}
 
+	private static ActionBlockEmitter newEmitter(Context context, File f)
+	{
+		return new ActionBlockEmitter(context, f.getPath(), new StringPrintWriter(), new StringPrintWriter(), false, false, false, false);
+	}
+
 	private static void parse(int start, int end) throws Throwable
 	{
+		final ProgramNode[] preparsed = preparse(start, end);
+
 		for (int i = start; i < end; i++)
 		{
+			ProgramNode program = (preparsed != null) ? preparsed[i - start] : null;
+			if (program != null && cx.get(i).isLocalParseCurrent())
+			{
+				cx.get(i).setLocalParseState(false);
+				node.add(program);
+				cx.get(i).getNodeFactory().pkg_defs.clear();
+				continue;
+			}
+			else if (program != null || (preparsed != null && file.get(i).getName().endsWith(".as")))
+			{
+				// C: the parse on the worker thread is thrown away, along with what it left in its context.
+				Context context = new Context(s);
+				cx.set(i, context);
+				emitter.set(i, newEmitter(context, file.get(i)));
+			}
+
 			cx.get(i).setEmitter(emitter.get(i));
 			cx.get(i).setScriptName(file.get(i).getName());
 			cx.get(i).setPath(file.get(i).getParent());
@@ -147,6 +187,91 @@ public class BatchCompiler
 		}
 	}
 
+	/**
+	 * Parses the .as files in [start, end) on several threads, each with a parse state of its
+	 * own.  parse() then takes the results in order, unless a parse ran into a problem, which
+	 * it reports by parsing again, or would have come out differently after the files ahead
+	 * of it.  Returns null if there's nothing to do it for.
+	 */
+	private static ProgramNode[] preparse(final int start, int end)
+	{
+		int count = 0;
+		for (int i = start; i < end; i++)
+		{
+			if (file.get(i).getName().endsWith(".as"))
+			{
+				count++;
+			}
+		}
+
+		if (threads < 2 || count < 2)
+		{
+			return null;
+		}
+
+		// C: the Parser creates these on first use, which mustn't happen on several threads at once.
+		cx.get(start).noType();
+		cx.get(start).intType();
+
+		final ProgramNode[] preparsed = new ProgramNode[end - start];
+		final Problems[] problems = new Problems[end - start];
+
+		for (int i = start; i < end; i++)
+		{
+			if (file.get(i).getName().endsWith(".as"))
+			{
+				Context context = cx.get(i);
+				context.setLocalParseState(true);
+				context.setEmitter(emitter.get(i));
+				context.setScriptName(file.get(i).getName());
+				context.setPath(file.get(i).getParent());
+				// C: not setHandler(), which would make it the handler of every context.
+				context.handler = problems[i - start] = new Problems();
+			}
+		}
+
+		int errCount = s.errCount;
+
+		new Tasks()
+		{
+			protected void run(int n)
+			{
+				int i = start + n;
+				if (problems[n] == null)
+				{
+					return;
+				}
+
+				try
+				{
+					ProgramNode program = new Parser(cx.get(i), new FileInputStream(file.get(i)), file.get(i).getPath(), null).parseProgram();
+					if (problems[n].count == 0)
+					{
+						preparsed[n] = program;
+					}
+				}
+				catch (Throwable t)
+				{
+					// C: parse() runs into it again, on this thread.
+				}
+			}
+		}.run(end - start, threads);
+
+		// C: the errors are counted again when parse() reports them.
+		s.errCount = errCount;
+
+		for (int i = start; i < end; i++)
+		{
+			if (problems[i - start] != null)
+			{
+				problems[i - start].done = true;
+				cx.get(i).handler = null;
+			}
+		}
+
+		return preparsed;
+	}
+
 	private static void fa_part1(int start, int end)
 	{
 		for (int i = start; i < end; i++)
@@ -478,6 +603,10 @@ public class BatchCompiler
 
 	private static void cg() throws Throwable
 	{
+		// C: with several threads, the generated code is encoded and written once it's all there.
+		final List<File> generated = new ArrayList<File>();
+		final List<Emitter> generators = new ArrayList<Emitter>();
+
 		for (int i = 0, length = file.size(); i < length; i++)
 		{
 			if (cx.get(i).errorCount() == 0 && file.get(i).getName().endsWith(".as") && emitter.get(i) != null)
@@ -487,15 +616,17 @@ public class BatchCompiler
 				CodeGenerator generator = new CodeGenerator(cx.get(i).getEmitter());
 				node.get(i).evaluate(cx.get(i), generator);
 
-				ByteList bytes = new ByteList();
-				cx.get(i).getEmitter().emit(bytes);
+				if (threads < 2)
+				{
+					System.err.println(file.get(i).getName() + ": " + write(cx.get(i).getEmitter(), file.get(i)));
+				}
+				else
+				{
+					generated.add(file.get(i));
+					generators.add(cx.get(i).getEmitter());
+				}
 				// String str = ((ActionBlockEmitter) cx.get(i).getEmitter()).il_str();
 				emitter.set(i, null);
-				FileOutputStream out = new FileOutputStream(new File(file.get(i).getParentFile(), file.get(i).getName().substring(0, file.get(i).getName().length() - "as".length()) + "abc"));
-				System.err.println(file.get(i).getName() + ": " + bytes.size());
-				out.write(bytes.toByteArray());
-				out.flush();
-				out.close();
 
 				/*
 				FileWriter fout = new FileWriter(new File(file.get(i).getParentFile(), file.get(i).getName().substring(0, file.get(i).getName().length() - "as".length()) + "il"));
@@ -507,6 +638,35 @@ public class BatchCompiler
 				cx.get(i).popScope();
 			}
 		}
+
+		final int[] sizes = new int[generated.size()];
+
+		new Tasks()
+		{
+			protected void run(int n) throws Exception
+			{
+				sizes[n] = write(generators.get(n), generated.get(n));
+			}
+		}.run(generated.size(), threads);
+
+		for (int n = 0, size = generated.size(); n < size; n++)
+		{
+			System.err.println(generated.get(n).getName() + ": " + sizes[n]);
+		}
+	}
+
+	/**
+	 * Writes the ABC that an emitter generated for a .as file next to it, and returns its size.
+	 */
+	private static int write(Emitter e, File f) throws IOException
+	{
+		ByteList bytes = new ByteList();
+		e.emit(bytes);
+		FileOutputStream out = new FileOutputStream(new File(f.getParentFile(), f.getName().substring(0, f.getName().length() - "as".length()) + "abc"));
+		out.write(bytes.toByteArray());
+		out.flush();
+		out.close();
+		return bytes.size();
 	}
 
 	private static void resolveExpression() throws Throwable
@@ -598,7 +758,7 @@ public class BatchCompiler
 			{
 				file.add(f);
 				cx.add(context);
-				emitter.add(new ActionBlockEmitter(context, f.getPath(), new StringPrintWriter(), new StringPrintWriter(), false, false, false, false));
+				emitter.add(newEmitter(context, f));
 				where = file.size() - 1;
 			}
 			return where;
@@ -607,6 +767,46 @@ public class BatchCompiler
 		return -1;
 	}
 
+	/**
+	 * Counts the errors and warnings of a parse on a worker thread, instead of reporting them.
+	 * The parse keeps copies of its context, for unresolved namespaces, so once the parse is
+	 * over, whatever still comes here is printed the way a context without a handler prints it.
+	 */
+	static class Problems extends CompilerHandler
+	{
+		int count;
+		boolean done;
+
+		public void error(String filename, int ln, int col, String msg, String source)
+		{
+			report(filename, ln, col, msg, source);
+		}
+
+		public void warning(String filename, int ln, int col, String msg, String source)
+		{
+			report(filename, ln, col, msg, source);
+		}
+
+		private void report(String filename, int ln, int col, String msg, String source)
+		{
+			if (!done)
+			{
+				count++;
+				return;
+			}
+
+			System.err.println(msg);
+			System.err.println("   " + filename + ", Ln " + ln + ", Col " + col + ": ");
+
+			if (source.length() > 0)
+			{
+				System.err.println("   " + source);
+				System.err.println("   " + InputBuffer.getLinePointer(col));
+			}
+			System.err.println();
+		}
+	}
+
 	static class Pair
 	{
 		Pair(int i, int where)
@@ -51,7 +51,7 @@ public class IdentifierNode extends Node
 
 		if (intern)
 		{
-            this.name = name.intern();
+            this.name = NamePool.intern(name);
 		}
 		else
 		{
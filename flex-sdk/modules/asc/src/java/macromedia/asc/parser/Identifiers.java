@@ -0,0 +1,191 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package macromedia.asc.parser;
+
+import macromedia.asc.util.NamePool;
+
+/**
+ * Identifier text shared by every Scanner of a ContextStatics. The Scanner looks identifiers
+ * up by the characters in its line buffer, so an identifier that has been seen before costs
+ * no allocation and all of its occurrences share one String, the one NamePool hands out.
+ *
+ * Scanners on different threads may share the table. Like NamePool, it is split into segments
+ * with a lock each, picked by the hash of the identifier, so parallel parses rarely wait on
+ * each other.
+ */
+public final class Identifiers
+{
+    private static final int SEGMENTS = 16;
+
+    public Identifiers()
+    {
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            segments[i] = new Segment();
+        }
+    }
+
+    private final Segment[] segments;
+
+    /**
+     * Returns the String for chars[0, length), creating it the first time.
+     */
+    public String intern(char[] chars, int length)
+    {
+        int hash = 0;
+        for (int i = 0; i < length; i++)
+        {
+            hash = 31 * hash + chars[i];
+        }
+
+        int spread = hash ^ (hash >>> 16);
+        return segments[spread & (SEGMENTS - 1)].intern(chars, length, hash, spread >>> 4);
+    }
+
+    /**
+     * Returns the shared instance of s, adding s if there is none yet.
+     */
+    public String intern(String s)
+    {
+        int hash = s.hashCode();
+        int spread = hash ^ (hash >>> 16);
+        return segments[spread & (SEGMENTS - 1)].intern(s, hash, spread >>> 4);
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            size += segments[i].size();
+        }
+        return size;
+    }
+
+    public void clear()
+    {
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            segments[i].clear();
+        }
+    }
+
+    private static boolean matches(String s, char[] chars, int length)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            if (s.charAt(i) != chars[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An open addressing table of the identifiers whose hashes pick this segment. The slot
+     * is found from the hash bits that didn't pick the segment.
+     */
+    private static final class Segment
+    {
+        Segment()
+        {
+            clear();
+        }
+
+        private String[] table;
+        private int[] hashes;
+        private int size;
+
+        synchronized String intern(char[] chars, int length, int hash, int slot)
+        {
+            int mask = table.length - 1;
+            for (int i = slot & mask; ; i = (i + 1) & mask)
+            {
+                String s = table[i];
+                if (s == null)
+                {
+                    s = NamePool.intern(new String(chars, 0, length));
+                    insert(i, s, hash);
+                    return s;
+                }
+                if (hashes[i] == hash && s.length() == length && matches(s, chars, length))
+                {
+                    return s;
+                }
+            }
+        }
+
+        synchronized String intern(String s, int hash, int slot)
+        {
+            int mask = table.length - 1;
+            for (int i = slot & mask; ; i = (i + 1) & mask)
+            {
+                String t = table[i];
+                if (t == null)
+                {
+                    s = NamePool.intern(s);
+                    insert(i, s, hash);
+                    return s;
+                }
+                if (hashes[i] == hash && t.equals(s))
+                {
+                    return t;
+                }
+            }
+        }
+
+        synchronized int size()
+        {
+            return size;
+        }
+
+        synchronized void clear()
+        {
+            table = new String[64];
+            hashes = new int[64];
+            size = 0;
+        }
+
+        private void insert(int index, String s, int hash)
+        {
+            table[index] = s;
+            hashes[index] = hash;
+
+            // C: keep the load factor under 1/2
+            if (++size * 2 > table.length)
+            {
+                String[] oldTable = table;
+                int[] oldHashes = hashes;
+                table = new String[oldTable.length * 2];
+                hashes = new int[oldTable.length * 2];
+
+                int mask = table.length - 1;
+                for (int i = 0; i < oldTable.length; i++)
+                {
+                    if (oldTable[i] != null)
+                    {
+                        int h = oldHashes[i];
+                        int j = ((h ^ (h >>> 16)) >>> 4) & mask;
+                        while (table[j] != null)
+                        {
+                            j = (j + 1) & mask;
+                        }
+                        table[j] = oldTable[i];
+                        hashes[j] = oldHashes[i];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -738,46 +738,7 @@ public final class NodeFactory implements ErrorConstants
 			else
 				identifier = this.identifier("anonymous",pos);
 		}
-		StringBuffer internal_name = new StringBuffer(identifier.name.length() + 6);
-
-		if (!fun_names.containsKey(identifier.name))
-		{
-			fun_names.put(identifier.name, 0);
-		}
-
-		int num = fun_names.get(identifier.name);
-
-		if (USE_DEFINED_NAME_AS_INTERNAL_NAME)
-		{
-			// if( fun_names[identifier.name]==0 )
-			if (num == 0)
-			{
-				internal_name.append(identifier.name);
-				num++;
-				fun_names.put(identifier.name, num);
-			}
-			else
-			{
-				internal_name.append(identifier.name);
-				internal_name.append('$').append(num);
-				num++;
-				fun_names.put(identifier.name, num);
-			}
-		}
-		else
-		{
-			/*
-	        internal_name  = identifier.name;
-	        internal_name += "$";
-			char buf[9];
-			sprintf(buf,"%d",fun_names[identifier.name]++);
-			internal_name += buf;
-			*/
-			internal_name.append(identifier.name);
-			internal_name.append('$').append(num);
-			num++;
-			fun_names.put(identifier.name, num);
-		}
+		String internal_name = internalName(identifier.name);
 
 		// ISSUE: refactor to make use of internal_name and identifier clearer.
 	        boolean userBody = false;
@@ -806,7 +767,12 @@ public final class NodeFactory implements ErrorConstants
 			}
 		}
 
-		FunctionCommonNode  fexpr = new FunctionCommonNode(cx, null/*use_stmts*/, internal_name.toString(), identifier, signature, body, userBody);
+		FunctionCommonNode  fexpr = new FunctionCommonNode(cx, null/*use_stmts*/, internal_name, identifier, signature, body, userBody);
+		if (local_functions != null)
+		{
+			local_functions.add(fexpr);
+			local_function_names.add(identifier.name);
+		}
 
 		fexpr.needsArguments = has_rest ? METHOD_Needrest : (has_arguments ? METHOD_Arguments : 0);  // order is important, rest overrides arguments
 
@@ -816,6 +782,52 @@ public final class NodeFactory implements ErrorConstants
 		return node;
 	}
 
+	private String internalName(String name)
+	{
+		StringBuffer internal_name = new StringBuffer(name.length() + 6);
+
+		if (!fun_names.containsKey(name))
+		{
+			fun_names.put(name, 0);
+		}
+
+		int num = fun_names.get(name);
+
+		if (USE_DEFINED_NAME_AS_INTERNAL_NAME)
+		{
+			// if( fun_names[identifier.name]==0 )
+			if (num == 0)
+			{
+				internal_name.append(name);
+				num++;
+				fun_names.put(name, num);
+			}
+			else
+			{
+				internal_name.append(name);
+				internal_name.append('$').append(num);
+				num++;
+				fun_names.put(name, num);
+			}
+		}
+		else
+		{
+			/*
+	        internal_name  = identifier.name;
+	        internal_name += "$";
+			char buf[9];
+			sprintf(buf,"%d",fun_names[identifier.name]++);
+			internal_name += buf;
+			*/
+			internal_name.append(name);
+			internal_name.append('$').append(num);
+			num++;
+			fun_names.put(name, num);
+		}
+
+		return internal_name.toString();
+	}
+
 	public FunctionNameNode functionName(int kind, IdentifierNode name)
 	{
 		return functionName(kind, name, -1);
@@ -1334,13 +1346,13 @@ public final class NodeFactory implements ErrorConstants
 						if( base_name != null && pname != null )
 						{
 							String compound_name = new StringBuffer(base_name.length() + pname.name.length() + 1).append(base_name).append(".").append(pname.name).toString();
-							if( compound_names.contains(compound_name) )
+							if( isCompoundName(compound_name) )
 							{
 								selector = this.getExpression(this.identifier(compound_name,selector.pos()));
 //                                selector.is_package = true;
 								base = memb.base;
 							}
-							else if( compound_names.contains(base_name) )
+							else if( isCompoundName(base_name) )
 							{
 								LiteralStringNode nsn = literalString(bname.name,memb.pos()-1);
 								selector = this.getExpression(this.qualifiedIdentifier(nsn,pname,selector.pos()));
@@ -1364,7 +1376,7 @@ public final class NodeFactory implements ErrorConstants
 		{
 			selector.setMode(EMPTY_TOKEN);
             IdentifierNode ident = selector.expr instanceof IdentifierNode ? (IdentifierNode) selector.expr : null;
-            if( ident != null && compound_names.contains(ident.name) )
+            if( ident != null && isCompoundName(ident.name) )
             {
                 selector.is_package = true;
             }
@@ -2551,6 +2563,73 @@ public final class NodeFactory implements ErrorConstants
         this.cx = cx;
     }
 
+	// compound_names and fun_names carry over from one program to the next.  A factory from
+	// localFactory() parses a program on another thread, before the ones ahead of it are
+	// done, so it remembers what it did with them; see isLocalParseCurrent() and publish().
+	private Set<String> compound_misses;
+	private ObjectList<FunctionCommonNode> local_functions;
+	private ObjectList<String> local_function_names;
+
+	private boolean isCompoundName(String name)
+	{
+		if (compound_names.contains(name))
+		{
+			return true;
+		}
+		if (compound_misses != null)
+		{
+			compound_misses.add(name);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a factory for parsing the next program on another thread.  It knows the
+	 * compound names that this factory knows now.
+	 */
+	public NodeFactory localFactory(Context cx)
+	{
+		NodeFactory f = new NodeFactory(cx);
+		f.compound_names.addAll(compound_names);
+		f.compound_misses = new HashSet<String>();
+		f.local_functions = new ObjectList<FunctionCommonNode>();
+		f.local_function_names = new ObjectList<String>();
+		return f;
+	}
+
+	/**
+	 * Tells whether the program that f parsed would come out the same if this factory parsed
+	 * it now.  It wouldn't if a compound name that f looked for and didn't know has been
+	 * added here since.
+	 */
+	public boolean isLocalParseCurrent(NodeFactory f)
+	{
+		for (String name : f.compound_misses)
+		{
+			if (compound_names.contains(name))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Takes over the compound names that f added, and gives the functions that f created the
+	 * internal names that this factory would have given them, as if it had parsed the
+	 * program itself.
+	 */
+	public void publish(NodeFactory f)
+	{
+		compound_names.addAll(f.compound_names);
+		for (int i = 0, size = f.local_functions.size(); i < size; i++)
+		{
+			f.local_functions.get(i).internal_name = internalName(f.local_function_names.get(i));
+		}
+		f.local_functions.clear();
+		f.local_function_names.clear();
+	}
+
     public static void main(String[] args)
 	{
 		ContextStatics statics = new ContextStatics();
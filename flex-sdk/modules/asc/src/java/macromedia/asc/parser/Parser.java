@@ -6032,7 +6032,7 @@ XMLElementContent
         }
 
         // make sure that we check the include path trail. This is to stop infinite recursion.
-        if (ctx.statics.includePaths.contains(fixed_filespec))
+        if (ctx.getIncludePaths().contains(fixed_filespec))
         {
             error(syntax_error, kError_Parser_FileIncludesItself, fixed_filespec);
             try { in.close(); } catch (IOException ex) {}
@@ -6041,7 +6041,7 @@ XMLElementContent
         else
         {
             // add the file name to the include path trail.
-            ctx.statics.includePaths.push_back(fixed_filespec);
+            ctx.getIncludePaths().push_back(fixed_filespec);
         }
 
         // To get proper path resolution for included files inside of include directives,
@@ -6057,6 +6057,7 @@ XMLElementContent
         ProgramNode second = null;
     	if (!ctx.scriptAssistParsing){
 	        Context cx = new Context(ctx.statics);
+	        cx.setLocalParseState(ctx);
 	        try
 	        {
 	            // cx.setEmitter(ctx.getEmitter());
@@ -6080,7 +6081,7 @@ XMLElementContent
 	        {
 	            ctx.setPath(oldCtxPathSpec);
 	            // now we can remove the filename...
-	            ctx.statics.includePaths.removeLast();
+	            ctx.getIncludePaths().removeLast();
 	            if (in != null)
 		        {
 			        try { in.close(); } catch (IOException ex) {}
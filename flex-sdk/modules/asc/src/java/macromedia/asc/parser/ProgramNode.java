@@ -21,7 +21,7 @@ import macromedia.asc.util.*;
 import macromedia.asc.semantics.*;
 
 import java.util.Set;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 
 /**
  * Node
@@ -54,14 +54,16 @@ public class ProgramNode extends Node
 	public int state = Inheritance;
 
     public Namespaces used_def_namespaces = new Namespaces(); // don't delete
-	
-    public Set<ReferenceValue> import_def_unresolved = new HashSet<ReferenceValue>();
-    public Set<ReferenceValue> package_unresolved = new HashSet<ReferenceValue>();
-	public Set<ReferenceValue> ns_unresolved = new HashSet<ReferenceValue>();
-	public Set<ReferenceValue> fa_unresolved = new HashSet<ReferenceValue>();
-	public Set<ReferenceValue> ce_unresolved = new HashSet<ReferenceValue>();
-	public Set<ReferenceValue> body_unresolved = new HashSet<ReferenceValue>();
-	public Set<ReferenceValue> rt_unresolved = new HashSet<ReferenceValue>();
+
+	// ReferenceValue hashes by identity. Keep the order in which FlowAnalyzer found them so the
+	// dependencies reach the compiler, and the sources they pull in, in the same order every time.
+    public Set<ReferenceValue> import_def_unresolved = new LinkedHashSet<ReferenceValue>();
+    public Set<ReferenceValue> package_unresolved = new LinkedHashSet<ReferenceValue>();
+	public Set<ReferenceValue> ns_unresolved = new LinkedHashSet<ReferenceValue>();
+	public Set<ReferenceValue> fa_unresolved = new LinkedHashSet<ReferenceValue>();
+	public Set<ReferenceValue> ce_unresolved = new LinkedHashSet<ReferenceValue>();
+	public Set<ReferenceValue> body_unresolved = new LinkedHashSet<ReferenceValue>();
+	public Set<ReferenceValue> rt_unresolved = new LinkedHashSet<ReferenceValue>();
 
 	public ProgramNode(Context cx, StatementListNode statements)
 	{
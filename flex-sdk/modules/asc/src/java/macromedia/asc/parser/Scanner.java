@@ -38,7 +38,9 @@ public final class Scanner implements ErrorConstants
     private static final int slashdiv_context = 0x1;
     private static final int slashregexp_context = 0x2;
 
-    private ObjectList<Token> tokens;   // vector of token instances.
+    private IntList token_classes;          // token class of each token instance,
+    private ObjectList<String> lexemes;     // and its text. No Token objects are made.
+    private char[] identifier_chars = new char[64];
     private IntList slash_context = new IntList();  // slashdiv_context or slashregexp_context
     private boolean isFirstTokenOnLine;
     //private Writer err;
@@ -53,7 +55,8 @@ public final class Scanner implements ErrorConstants
     private void init(Context cx)
     {
         ctx = cx;
-        tokens = new ObjectList<Token>(200);
+        token_classes = new IntList(200);
+        lexemes = new ObjectList<String>(200);
         state = start_state;
         level = 0;
         slash_context.add(slashregexp_context);
@@ -175,8 +178,46 @@ public final class Scanner implements ErrorConstants
 
     public int makeTokenInstance(int token_class, String lexeme)
     {
-        tokens.add(new Token(token_class, lexeme));
-        return tokens.size() - 1; /* return the tokenid */
+        return addTokenInstance(token_class, Token.unescape(token_class, lexeme));
+    }
+
+    /*
+     * makeIdentifierInstance() --
+     * Make an identifier instance from the text since the last mark. The text is looked up
+     * in the identifier table of the context without making a String first, so an identifier
+     * seen before allocates nothing and every occurrence shares the same String.
+     */
+
+    public int makeIdentifierInstance()
+    {
+        StringBuffer line = input.curr_line;
+        int from = input.markCol - 1;
+        int length = input.colPos - from;
+
+        if (length > identifier_chars.length)
+        {
+            identifier_chars = new char[Math.max(length, identifier_chars.length * 2)];
+        }
+        line.getChars(from, input.colPos, identifier_chars, 0);
+
+        for (int i = 0; i < length; i++)
+        {
+            if (identifier_chars[i] == '\\')
+            {
+                // escaped identifiers are rare, take the long way
+                String lexeme = Token.unescape(IDENTIFIER_TOKEN, input.copy());
+                return addTokenInstance(IDENTIFIER_TOKEN, ctx.statics.identifiers.intern(lexeme));
+            }
+        }
+
+        return addTokenInstance(IDENTIFIER_TOKEN, ctx.statics.identifiers.intern(identifier_chars, length));
+    }
+
+    private int addTokenInstance(int token_class, String lexeme)
+    {
+        token_classes.add(token_class);
+        lexemes.add(lexeme);
+        return token_classes.size() - 1; /* return the tokenid */
     }
 
     /*
@@ -194,7 +235,7 @@ public final class Scanner implements ErrorConstants
         }
 
         // otherwise, get instance data from the instance vector.
-        return tokens.get(token_id).getTokenClass();
+        return token_classes.get(token_id);
     }
 
     /*
@@ -213,7 +254,7 @@ public final class Scanner implements ErrorConstants
         }
 
         // otherwise, get instance data from the instance vector.
-        return tokens.get(token_id).getTokenText();
+        return Token.getTokenText(token_classes.get(token_id), lexemes.get(token_id));
     }
 
     /*
@@ -231,7 +272,7 @@ public final class Scanner implements ErrorConstants
         }
 
         // otherwise, get tokenSourceText (which includes string delimiters)
-        String fulltext = tokens.get( token_id ).getTokenSource();
+        String fulltext = lexemes.get( token_id );
         is_single_quoted[0] = (fulltext.charAt(0) == '\'' ? true : false);
         String enclosedText = fulltext.substring(1, fulltext.length() - 1);
         
@@ -771,7 +812,7 @@ public final class Scanner implements ErrorConstants
                                 default:
                                     retract();
                                     state = start_state;
-                                    return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                                    return makeIdentifierInstance();
                             }
                     }
 
@@ -2192,7 +2233,7 @@ public final class Scanner implements ErrorConstants
                             }
                             retract();
                             state = start_state;
-                            return (HAS_ASOPERATOR) ? AS_TOKEN : makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return (HAS_ASOPERATOR) ? AS_TOKEN : makeIdentifierInstance();
                     }
 
                     /*
@@ -2372,7 +2413,7 @@ public final class Scanner implements ErrorConstants
                             }
                             retract();
                             state = start_state;
-                            return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return makeIdentifierInstance();
                     }
 
                     /*
@@ -2620,7 +2661,7 @@ public final class Scanner implements ErrorConstants
                             }
                             retract();
                             state = start_state;
-                            return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return makeIdentifierInstance();
                     }
 
                     /*
@@ -2993,7 +3034,7 @@ public final class Scanner implements ErrorConstants
                             }
                             retract();
                             state = start_state;
-                            return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return makeIdentifierInstance();
                     }
 
                     /*
@@ -3725,7 +3766,7 @@ public final class Scanner implements ErrorConstants
                         default:
                             retract();
                             state = start_state;
-                            return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return makeIdentifierInstance();
                     }
 
                     /*
@@ -4221,7 +4262,7 @@ public final class Scanner implements ErrorConstants
                             }
                             retract();
                             state = start_state;
-                            return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return makeIdentifierInstance();
                     }
 
                     /*
@@ -4470,7 +4511,7 @@ public final class Scanner implements ErrorConstants
                         default:
                             retract();
                             state = start_state;
-                            return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return makeIdentifierInstance();
                     }
 
                     /*
@@ -5087,7 +5128,7 @@ public final class Scanner implements ErrorConstants
                             }
                             retract();
                             state = start_state;
-                            return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return makeIdentifierInstance();
                     }
 
                     /*
@@ -6621,7 +6662,7 @@ public final class Scanner implements ErrorConstants
                             }
                             retract();
                             state = start_state;
-                            return (HAS_ISOPERATOR) ? IS_TOKEN : makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return (HAS_ISOPERATOR) ? IS_TOKEN : makeIdentifierInstance();
                     }
 
                     /*
@@ -6751,7 +6792,7 @@ public final class Scanner implements ErrorConstants
                             }
                             retract();
                             state = start_state;
-                            return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return makeIdentifierInstance();
                     }
 
                     /*
@@ -7104,7 +7145,7 @@ public final class Scanner implements ErrorConstants
                             }
                             retract();
                             state = start_state;
-                            return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());//return native_token;
+                            return makeIdentifierInstance();//return native_token;
                     }
 
                     /*
@@ -8422,7 +8463,7 @@ public final class Scanner implements ErrorConstants
                             }
                             retract();
                             state = start_state;
-                            return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return makeIdentifierInstance();
                     }
 
                     /*
@@ -8570,7 +8611,7 @@ public final class Scanner implements ErrorConstants
                             }
                             retract();
                             state = start_state;
-                            return makeTokenInstance(IDENTIFIER_TOKEN, input.copy());
+                            return makeIdentifierInstance();
                     }
 
                     /*
@@ -10120,7 +10161,7 @@ public final class Scanner implements ErrorConstants
                         case '0': case '1': case '2': case '3': case '4': case '5': 
                         case '6': case '7': case '8': case '9':
                             state = A_state; continue;
-                        default: retract(); state = start_state; return makeTokenInstance( IDENTIFIER_TOKEN, input.copy() );
+                        default: retract(); state = start_state; return makeIdentifierInstance();
                     }
 
                     /*
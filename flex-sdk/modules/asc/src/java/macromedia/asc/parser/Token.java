@@ -34,6 +34,17 @@ public final class Token
 	private String lexeme;
 
 	public Token(int tokenClass, String lexeme)
+	{
+		this.tokenClass = tokenClass;
+		this.lexeme = unescape(tokenClass, lexeme);
+	}
+
+	/*
+	 * Replace the unicode escapes in the lexeme of a token instance. The Scanner stores its
+	 * tokens without Token objects and uses this directly.
+	 */
+
+	static String unescape(int tokenClass, String lexeme)
 	{
         // InputBuffer's escapeString handles all escapes in a string, including u's
 		// RegExp literals should not escape the u's either
@@ -77,15 +88,10 @@ public final class Token
                     buffer.append(lexeme.charAt(x));
                 }
             }
-		    this.tokenClass = tokenClass;
-		    this.lexeme = buffer.toString();
+		    return buffer.toString();
         }
 
-        else
-        {
-            this.tokenClass = tokenClass;
-            this.lexeme = lexeme;
-        }
+        return lexeme;
 	}
 
 	public int getTokenClass()
@@ -98,6 +104,11 @@ public final class Token
 	 */
 
 	public String getTokenText()
+	{
+		return getTokenText(tokenClass, lexeme);
+	}
+
+	static String getTokenText(int tokenClass, String lexeme)
 	{
 		if (tokenClass == STRINGLITERAL_TOKEN)
 		{
@@ -105,7 +105,7 @@ public final class FlowAnalyzer extends Emitter implements Evaluator, ErrorConst
     // unresolved member expressions
     private ObjectList<Set<ReferenceValue>> rt_unresolved_sets = new ObjectList<Set<ReferenceValue>>();
     // temporary container for accumulating unresolved ReferenceValues...
-    private Set<ReferenceValue> unresolved = new HashSet<ReferenceValue>();
+    private Set<ReferenceValue> unresolved = new LinkedHashSet<ReferenceValue>();
     // this is for the ProgramNode's allocateTemp() value because FA processes ProgramNode twice.
     private int programNode_temp;
 
@@ -333,7 +333,7 @@ public class ObjectValue extends Value implements Comparable
     		return false;
     	}
     	boolean ret = false;
-    	ret = names == null ? false : (names.get(name, Names.getTypeFromKind(kind)) != null);
+    	ret = names == null ? false : names.containsName(name, Names.getTypeFromKind(kind));
 
         // When in init only mode, only set slots defined in this object should be visible.
         // Any slots defined in the base class should not be visible.  
@@ -85,6 +85,12 @@ public final class Context implements ErrorConstants
     private static int contextIds=0;
     private int contextId;
 
+    // private parse state, see setLocalParseState()
+    private boolean localParseState;
+    private NodeFactory localNodeFactory;
+    private ObjectList<String> localIncludePaths;
+    private String localPathspec, localScriptname;
+
     private TreeMap<UnresolvedNamespace, ObjectList<ObjectValue>> unresolved_namespaces;
 	public ObjectList<Node>    comments = new ObjectList<Node>();
 	public boolean scriptAssistParsing = false;
@@ -96,7 +102,7 @@ public final class Context implements ErrorConstants
         this.handler = null;
 	this.qualified_origin = "";
         err = null;
-        contextId = contextIds++;
+        contextId = nextContextId();
         if (statics != null)
         {
             if (statics.nodeFactory == null)
@@ -146,6 +152,11 @@ public final class Context implements ErrorConstants
         return new Context(this);
     }
 
+    private static synchronized int nextContextId()
+    {
+        return contextIds++;
+    }
+
     public int getId()
     {
         return contextId;
@@ -206,16 +217,20 @@ public final class Context implements ErrorConstants
 
     public String errorString(int error)
     {
-        if (statics.errorCodeMap.get(error) == null)
+        // parse workers (see setLocalParseState()) report errors through the same statics
+        synchronized (statics.errorCodeMap)
         {
-            AscError[] errorConsts = allErrorConstants[statics.languageID];
-            for(int x = 0; x < kNumErrorConstants; x++)
+            if (statics.errorCodeMap.get(error) == null)
             {
-                statics.errorCodeMap.put(errorConsts[x].code,errorConsts[x].errorMsg);
+                AscError[] errorConsts = allErrorConstants[statics.languageID];
+                for(int x = 0; x < kNumErrorConstants; x++)
+                {
+                    statics.errorCodeMap.put(errorConsts[x].code,errorConsts[x].errorMsg);
+                }
             }
-        }
 
-        return statics.errorCodeMap.get(error);
+            return statics.errorCodeMap.get(error);
+        }
     }
 
     // This method implements sprintf-like functionality for %s string argument insertions.  Using sprintf would
@@ -910,26 +925,46 @@ public final class Context implements ErrorConstants
 
     public void setPath(String pathspec)
     {
-        statics.pathspec = pathspec;
+        if (localParseState)
+        {
+            localPathspec = pathspec;
+        }
+        else
+        {
+            statics.pathspec = pathspec;
+        }
     }
 
     public String path()
     {
-        return statics.pathspec;
+        return localParseState ? localPathspec : statics.pathspec;
     }
 
     public void setScriptName(String scriptname)
     {
-        statics.scriptname = scriptname;
+        if (localParseState)
+        {
+            localScriptname = scriptname;
+        }
+        else
+        {
+            statics.scriptname = scriptname;
+        }
     }
 
     public String scriptName()
     {
-        return statics.scriptname;
+        return localParseState ? localScriptname : statics.scriptname;
     }
 
     public NodeFactory getNodeFactory()
     {
+        if (localNodeFactory != null)
+        {
+            localNodeFactory.setContext(this);
+            return localNodeFactory;
+        }
+
         if (statics.nodeFactory == null)
         {
             statics.nodeFactory = new NodeFactory(this);
@@ -942,6 +977,73 @@ public final class Context implements ErrorConstants
         return statics.nodeFactory;
     }
 
+    /**
+     * When local is true, this context parses with its own NodeFactory, include path trail,
+     * path and script name instead of the ones in ContextStatics, so that several contexts
+     * sharing the same statics can run the Parser on different threads. The caller must make
+     * sure the lazily created builtin types (noType(), intType()) already exist in the statics.
+     * Switching back to false publishes the path, the script name and what the NodeFactory
+     * carries from one program to the next to the statics, as a serial parse would have left
+     * them; check isLocalParseCurrent() first.
+     */
+    public void setLocalParseState(boolean local)
+    {
+        if (local == localParseState)
+        {
+            return;
+        }
+
+        if (local)
+        {
+            localNodeFactory = statics.nodeFactory.localFactory(this);
+            localIncludePaths = new ObjectList<String>();
+            localPathspec = statics.pathspec;
+            localScriptname = statics.scriptname;
+        }
+        else
+        {
+            statics.pathspec = localPathspec;
+            statics.scriptname = localScriptname;
+            statics.nodeFactory.publish(localNodeFactory);
+            localNodeFactory = null;
+            localIncludePaths = null;
+            localPathspec = null;
+            localScriptname = null;
+        }
+
+        localParseState = local;
+    }
+
+    /**
+     * Tells whether what this context parsed with its own parse state would come out the same
+     * if it were parsed now with the statics, after the contexts ahead of it published theirs.
+     * If it wouldn't, the program should be parsed again by a context that isn't local.
+     */
+    public boolean isLocalParseCurrent()
+    {
+        return !localParseState || statics.nodeFactory.isLocalParseCurrent(localNodeFactory);
+    }
+
+    /**
+     * Lets an include parser share the parse state of the including context.
+     */
+    public void setLocalParseState(Context cx)
+    {
+        if (cx.localParseState)
+        {
+            localParseState = true;
+            localNodeFactory = cx.localNodeFactory;
+            localIncludePaths = cx.localIncludePaths;
+            localPathspec = cx.localPathspec;
+            localScriptname = cx.localScriptname;
+        }
+    }
+
+    public ObjectList<String> getIncludePaths()
+    {
+        return localIncludePaths != null ? localIncludePaths : statics.includePaths;
+    }
+
     public ByteCodeFactory getByteCodeFactory()
     {
         if (statics.bytecodeFactory == null)
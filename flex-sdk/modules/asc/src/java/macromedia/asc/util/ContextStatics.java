@@ -14,6 +14,7 @@ package macromedia.asc.util;
 import macromedia.asc.embedding.CompilerHandler;
 import macromedia.asc.embedding.avmplus.ByteCodeFactory;
 import macromedia.asc.embedding.avmplus.Features;
+import macromedia.asc.parser.Identifiers;
 import macromedia.asc.parser.NodeFactory;
 import macromedia.asc.parser.MetaDataNode;
 import macromedia.asc.semantics.Emitter;
@@ -125,6 +126,13 @@ public class ContextStatics
      * Never null, you are always free to clear it.
      */
     public final ObjectList<String> use_namespaces = new ObjectList<String>();
+
+    /**
+     * Identifier text shared by the Scanners of this context.
+     *
+     * @see macromedia.asc.parser.Scanner#makeIdentifierInstance()
+     */
+    public final Identifiers identifiers = new Identifiers();
     
     /**
      * Returns a list filled with namespaces that should be automatically
@@ -223,6 +231,7 @@ public class ContextStatics
 		}
 
         errorCodeMap.clear();
+        identifiers.clear();
 		_publicNamespace = null;
 		_anyNamespace = null;
         _noType = null;
@@ -0,0 +1,76 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package macromedia.asc.util;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Interns namespace URIs, local names and the other names the compilers keep around, so that
+ * every copy of a name shares one String. asc already compares names with == and assumes
+ * they're String.intern()'ed, so the pool hands out the String.intern() instances too; it only
+ * saves the trip to the VM's string table for names it has seen before.
+ *
+ * The pool is split into segments with a lock each, so threads compiling in parallel rarely
+ * wait on each other. Entries are weak: a name goes away once nothing else refers to it,
+ * which matters to long running hosts like fcsh.
+ */
+public final class NamePool
+{
+	private static final int SEGMENTS = 16;
+
+	private static final Segment[] segments;
+
+	static
+	{
+		segments = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++)
+		{
+			segments[i] = new Segment();
+		}
+	}
+
+	private NamePool()
+	{
+	}
+
+	/**
+	 * Returns the canonical instance of s, the same one s.intern() returns. null stays null.
+	 */
+	public static String intern(String s)
+	{
+		if (s == null)
+		{
+			return null;
+		}
+
+		int h = s.hashCode();
+		return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)].intern(s);
+	}
+
+	private static final class Segment
+	{
+		private final WeakHashMap<String, WeakReference<String>> map = new WeakHashMap<String, WeakReference<String>>();
+
+		synchronized String intern(String s)
+		{
+			WeakReference<String> ref = map.get(s);
+			String t = (ref != null) ? ref.get() : null;
+			if (t == null)
+			{
+				t = s.intern();
+				map.put(t, new WeakReference<String>(t));
+			}
+			return t;
+		}
+	}
+}
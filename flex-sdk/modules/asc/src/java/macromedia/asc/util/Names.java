@@ -198,6 +198,27 @@ public final class Names
 		return map.entrySet();
 	}
 	
+	/**
+	 * Tells whether get(name, type) would return qualifiers, without collecting them.
+	 */
+	public boolean containsName(String name, int type)
+	{
+		if (this == EMPTY_NAMES)
+		{
+			return false;
+		}
+
+		if (names != null)
+		{
+			int i = find(name, type, capacity());
+			if (names[i] != null)
+			{
+				return true;
+			}
+		}
+		return delegate.containsName(name, type);
+	}
+
 	public Qualifiers get(String name, int type)
 	{
 		if (this == EMPTY_NAMES)
@@ -14,16 +14,45 @@ package macromedia.asc.util;
 import macromedia.asc.semantics.*;
 
 /**
+ * The slots of an object, sorted by id.
+ *
+ * Lookups by id use binary search until there are INDEX_SIZE slots. Bigger tables, e.g. the
+ * instance traits of a class with many members, get an open-addressed index of ids to positions,
+ * built on the first lookup and rebuilt on the first lookup after the list changes. Slots
+ * appended since then are searched on their own until there are as many of them as there are
+ * indexed ones, so filling a table while looking it up doesn't rebuild the index every time.
+ *
  * @author Jeff Dyer
  */
 public final class Slots extends ObjectList<Slot>
 {
+	private static final int INDEX_SIZE = 16;
+
+	// C: replaced, never changed, so that a thread that reads it sees a whole index.
+	private Index index;
+	private int indexModCount; // the modCount that index is good for
+
 	public boolean put(Slot slot)
 	{
+		int size = size();
+		int id = slot.id;
+
+		// C: ids are handed out in increasing order, so most slots go at the end.
+		if (size == 0 || at(size - 1).id < id)
+		{
+			// C: appending doesn't move the indexed slots, so the index still holds for them.
+			boolean indexed = (index != null && indexModCount == modCount);
+			add(slot);
+			if (indexed)
+			{
+				indexModCount = modCount;
+			}
+			return true;
+		}
+
 		// Find the position for this character using binary search
 		int lo = -1;
-		int hi = size();
-		int id = slot.id;
+		int hi = size;
 		
 		while (hi - lo > 1) {
 			int pivot = (lo+hi)>>1;
@@ -52,6 +81,23 @@ public final class Slots extends ObjectList<Slot>
 		// fail fast if the id is not in the range of slot id's in this object
 		if( hi > lo && (id < at(lo).id || id > at(hi).id) )
 			return null;
+
+		if (hi >= INDEX_SIZE)
+		{
+			Index x = index;
+			if (x == null || indexModCount != modCount || hi - x.size >= x.size)
+			{
+				index = x = new Index(this);
+				indexModCount = modCount;
+			}
+			int i = x.find(id);
+			if (i != -1)
+			{
+				return at(i);
+			}
+			// C: not indexed, but it may have been appended since.
+			lo = x.size;
+		}
 		
 		while (lo <= hi) {
 			int pivot = (lo+hi)>>1;
@@ -69,5 +115,68 @@ public final class Slots extends ObjectList<Slot>
 		
 		return null;
 	}
-}
 
+	public Slot set(int i, Slot slot)
+	{
+		// C: set() doesn't count as a change to the list (modCount), so drop the index here.
+		index = null;
+		return super.set(i, slot);
+	}
+
+	/**
+	 * Slot ids hashed to positions in the list, with linear probing.
+	 */
+	private static final class Index
+	{
+		Index(Slots slots)
+		{
+			int size = slots.size();
+			int bits = 2;
+			while ((1 << bits) < size * 2)
+			{
+				bits++;
+			}
+
+			this.size = size;
+			this.shift = 32 - bits;
+			this.ids = new int[1 << bits];
+			this.positions = new int[1 << bits];
+
+			int mask = ids.length - 1;
+			for (int p = 0; p < size; p++)
+			{
+				int id = slots.at(p).id;
+				int i = hash(id);
+				while (positions[i] != 0)
+				{
+					i = (i + 1) & mask;
+				}
+				ids[i] = id;
+				positions[i] = p + 1;
+			}
+		}
+
+		final int size;
+		private final int shift;
+		private final int[] ids;
+		private final int[] positions; // position + 1, 0 for an empty entry
+
+		int find(int id)
+		{
+			int mask = ids.length - 1;
+			for (int i = hash(id); positions[i] != 0; i = (i + 1) & mask)
+			{
+				if (ids[i] == id)
+				{
+					return positions[i] - 1;
+				}
+			}
+			return -1;
+		}
+
+		private int hash(int id)
+		{
+			return (id * 0x9E3779B9) >>> shift;
+		}
+	}
+}
@@ -0,0 +1,223 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flash.swf.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import flash.fonts.FontManager;
+import flash.swf.Header;
+import flash.swf.Tag;
+import flash.swf.TagDecoder;
+import flash.swf.TagEncoder;
+import flash.swf.TagHandler;
+import flash.swf.TagValues;
+import flash.swf.builder.tags.FontBuilder;
+import flash.swf.tags.DefineFont3;
+import flash.swf.tags.DefineShape;
+import flash.swf.types.Rect;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times SwfDecoder and SwfEncoder on the tags that are mostly bit fields: glyph outlines and
+ * shape records, with their rects and matrices.
+ *
+ *   decodeFont     TagDecoder over a SWF with one DefineFont3
+ *   encodeFont     TagEncoder, the same DefineFont3
+ *   decodeShapes   TagDecoder over a SWF with the shapes of a skin SWF
+ *   encodeShapes   TagEncoder, the same shapes
+ *
+ * The DefineFont3 is what mxmlc embeds for the printable ASCII characters of
+ * MyriadWebPro.ttf, made with FontBuilder and the JRE font manager. The shapes are the
+ * DefineShape tags of frameworks/themes/AeonGraphical/AeonGraphical.swf, or of the SWF
+ * given with -p swf=..., less the ones with bitmap fills. Paths are relative to the SDK
+ * given by the benchmarks.sdk system property (the current directory by default).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms256m", "-Xmx256m", "-Djava.awt.headless=true" })
+public class ShapeBenchmark
+{
+    static final File sdk = new File(System.getProperty("benchmarks.sdk", "."));
+
+    static final String FONT = "frameworks/projects/framework/asdoc/en_US/mx/effects/examples/assets/MyriadWebPro.ttf";
+
+    @State(Scope.Benchmark)
+    public static class Font
+    {
+        List<Tag> tags;
+        byte[] swf;
+
+        @Setup(Level.Trial)
+        public void build() throws IOException
+        {
+            List<String> managers = Collections.singletonList("flash.fonts.JREFontManager");
+            FontManager manager = FontManager.create(managers, null);
+
+            FontBuilder builder = new FontBuilder(TagValues.stagDefineFont3, manager, "Myriad",
+                                                  new File(sdk, FONT).toURI().toURL(), java.awt.Font.PLAIN, true, false);
+            builder.addCharset(' ', 0x7F - ' ');
+
+            tags = new ArrayList<Tag>();
+            tags.add(builder.build());
+            swf = encode(tags);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Shapes
+    {
+        @Param({ "frameworks/themes/AeonGraphical/AeonGraphical.swf" })
+        public String swf;
+
+        List<Tag> tags;
+        byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException
+        {
+            final List<Tag> shapes = new ArrayList<Tag>();
+            TagHandler handler = new TagHandler()
+            {
+                public void defineShape(DefineShape tag)
+                {
+                    add(tag);
+                }
+
+                public void defineShape2(DefineShape tag)
+                {
+                    add(tag);
+                }
+
+                public void defineShape3(DefineShape tag)
+                {
+                    add(tag);
+                }
+
+                private void add(DefineShape tag)
+                {
+                    // C: a bitmap fill would need the bitmap in the SWF too
+                    if (!tag.getReferences().hasNext())
+                    {
+                        shapes.add(tag);
+                    }
+                }
+            };
+
+            FileInputStream in = new FileInputStream(new File(sdk, swf));
+            try
+            {
+                new TagDecoder(in).parse(handler);
+            }
+            finally
+            {
+                in.close();
+            }
+
+            tags = shapes;
+            bytes = encode(tags);
+        }
+    }
+
+    @Benchmark
+    public int decodeFont(Font font) throws IOException
+    {
+        return decode(font.swf);
+    }
+
+    @Benchmark
+    public byte[] encodeFont(Font font) throws IOException
+    {
+        return encode(font.tags);
+    }
+
+    @Benchmark
+    public int decodeShapes(Shapes shapes) throws IOException
+    {
+        return decode(shapes.bytes);
+    }
+
+    @Benchmark
+    public byte[] encodeShapes(Shapes shapes) throws IOException
+    {
+        return encode(shapes.tags);
+    }
+
+    static int decode(byte[] swf) throws IOException
+    {
+        final int[] count = new int[1];
+        new TagDecoder(new ByteArrayInputStream(swf)).parse(new TagHandler()
+        {
+            public void defineFont3(DefineFont3 tag)
+            {
+                count[0]++;
+            }
+
+            public void defineShape(DefineShape tag)
+            {
+                count[0]++;
+            }
+
+            public void defineShape2(DefineShape tag)
+            {
+                count[0]++;
+            }
+
+            public void defineShape3(DefineShape tag)
+            {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    static byte[] encode(List<Tag> tags) throws IOException
+    {
+        Header header = new Header();
+        header.version = 9;
+        header.size = new Rect(500 * 20, 375 * 20);
+        header.rate = 24 << 8;
+
+        TagEncoder encoder = new TagEncoder();
+        encoder.header(header);
+        for (Tag tag : tags)
+        {
+            tag.visit(encoder);
+        }
+        encoder.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeTo(out);
+        return out.toByteArray();
+    }
+}
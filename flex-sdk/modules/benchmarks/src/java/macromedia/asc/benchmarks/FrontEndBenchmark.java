@@ -0,0 +1,310 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package macromedia.asc.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import macromedia.abc.AbcParser;
+import macromedia.asc.embedding.CompilerHandler;
+import macromedia.asc.embedding.avmplus.ActionBlockEmitter;
+import macromedia.asc.embedding.avmplus.GlobalBuilder;
+import macromedia.asc.parser.ImportNode;
+import macromedia.asc.parser.NodeFactory;
+import macromedia.asc.parser.Parser;
+import macromedia.asc.parser.ProgramNode;
+import macromedia.asc.parser.Scanner;
+import macromedia.asc.parser.Tokens;
+import macromedia.asc.semantics.CodeGenerator;
+import macromedia.asc.semantics.ConfigurationEvaluator;
+import macromedia.asc.semantics.ConstantEvaluator;
+import macromedia.asc.semantics.FlowAnalyzer;
+import macromedia.asc.semantics.FlowGraphEmitter;
+import macromedia.asc.semantics.ObjectValue;
+import macromedia.asc.semantics.TypeValue;
+import macromedia.asc.util.Context;
+import macromedia.asc.util.ContextStatics;
+import macromedia.asc.util.ObjectList;
+import macromedia.asc.util.StringPrintWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the ActionScript front end, one phase per benchmark, over framework sources:
+ *
+ *   scanner            tokenizes the source
+ *   parser             Parser.parseProgram()
+ *   flowAnalyzer       both FlowAnalyzer passes, builtin.abc and playerglobal.abc imported
+ *   constantEvaluator  ConstantEvaluator, after flow analysis
+ *   codeGenerator      CodeGenerator into an ActionBlockEmitter, after flow and constant evaluation
+ *
+ * Each phase only pays for itself: whatever it needs from the earlier phases is done in a
+ * per-invocation @Setup. The sources are compiled one at a time, the way asc compiles a file,
+ * so references to other framework classes stay unresolved. The errors that come with it go
+ * to a handler that drops them; the analyzer and the code generator walk the whole tree either way.
+ *
+ * The sources are looked up in frameworks/projects/framework/src of the SDK given by the
+ * benchmarks.sdk system property (the current directory by default). Use -p file=... to pick
+ * other ones.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class FrontEndBenchmark
+{
+    static
+    {
+        // C: see Compiler.init()
+        TypeValue.init();
+        ObjectValue.init();
+    }
+
+    static final File sdk = new File(System.getProperty("benchmarks.sdk", "."));
+
+    static final CompilerHandler quiet = new CompilerHandler()
+    {
+        public void error(String filename, int ln, int col, String msg, String source, int code)
+        {
+        }
+
+        public void error(String filename, int ln, int col, String msg, String source)
+        {
+        }
+
+        public void warning(String filename, int ln, int col, String msg, String source, int code)
+        {
+        }
+
+        public void warning(String filename, int ln, int col, String msg, String source)
+        {
+        }
+    };
+
+    @State(Scope.Thread)
+    public static class Source
+    {
+        @Param({ "mx/core/UIComponent.as",
+                 "mx/core/FlexSprite.as",
+                 "mx/controls/listClasses/ListBase.as",
+                 "mx/controls/Button.as",
+                 "mx/collections/ListCollectionView.as",
+                 "mx/utils/StringUtil.as" })
+        public String file;
+
+        String origin;
+        String text;
+        ContextStatics statics;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException
+        {
+            File f = new File(sdk, "frameworks/projects/framework/src/" + file);
+            origin = f.getPath();
+            text = read(f);
+            statics = newStatics();
+        }
+
+        /**
+         * A Context for one compilation, with the same setup as the one Compiler.doCompile() uses.
+         */
+        Context newContext(ContextStatics statics)
+        {
+            Context cx = new Context(statics);
+            cx.setPath(new File(origin).getAbsoluteFile().getParent());
+            String name = new File(origin).getName();
+            cx.setScriptName(name.substring(0, name.lastIndexOf('.')));
+            cx.setHandler(quiet);
+            cx.setEmitter(new ActionBlockEmitter(cx, cx.scriptName(), new StringPrintWriter(), new StringPrintWriter(),
+                                                 false, false, false, false));
+            return cx;
+        }
+
+        ProgramNode parse(Context cx)
+        {
+            return new Parser(cx, text, origin).parseProgram();
+        }
+    }
+
+    /**
+     * One file on its way through the phases, with a fresh ContextStatics since analysis
+     * leaves its mark there.
+     */
+    static final class Compilation
+    {
+        Compilation(Source source) throws IOException
+        {
+            cx = source.newContext(newStatics());
+            node = source.parse(cx);
+
+            ObjectList<ImportNode> imports = new ObjectList<ImportNode>();
+            imports.push_back(importAbc(cx, "modules/asc/abc/builtin.abc"));
+            imports.push_back(importAbc(cx, "modules/asc/abc/playerglobal.abc"));
+            node.imports = imports;
+            node.pkgdefs.clear();
+            node.pkgdefs.addAll(cx.getNodeFactory().pkg_defs);
+
+            cx.pushScope(new ObjectValue(cx, new GlobalBuilder(), null));
+            node.evaluate(cx, new ConfigurationEvaluator());
+        }
+
+        final Context cx;
+        final ProgramNode node;
+
+        void analyze()
+        {
+            FlowAnalyzer flower = new FlowAnalyzer(new FlowGraphEmitter(cx, cx.scriptName(), false));
+            // 1. ProgramNode.state == Inheritance
+            node.evaluate(cx, flower);
+            // 2. ProgramNode.state == else
+            node.evaluate(cx, flower);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Parsed
+    {
+        Compilation compilation;
+
+        @Setup(Level.Invocation)
+        public void parse(Source source) throws IOException
+        {
+            compilation = new Compilation(source);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Flowed
+    {
+        Compilation compilation;
+
+        @Setup(Level.Invocation)
+        public void analyze(Source source) throws IOException
+        {
+            compilation = new Compilation(source);
+            compilation.analyze();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Analyzed
+    {
+        Compilation compilation;
+
+        @Setup(Level.Invocation)
+        public void analyze(Source source) throws IOException
+        {
+            compilation = new Compilation(source);
+            compilation.analyze();
+            compilation.node.evaluate(compilation.cx, new ConstantEvaluator(compilation.cx));
+        }
+    }
+
+    @Benchmark
+    public int scanner(Source source)
+    {
+        Scanner scanner = new Scanner(new Context(source.statics), source.text, source.origin);
+        int tokens = 0;
+        while (scanner.nexttoken(true) != Tokens.EOS_TOKEN)
+        {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    @Benchmark
+    public ProgramNode parser(Source source)
+    {
+        return source.parse(source.newContext(source.statics));
+    }
+
+    @Benchmark
+    public ProgramNode flowAnalyzer(Parsed parsed)
+    {
+        parsed.compilation.analyze();
+        return parsed.compilation.node;
+    }
+
+    @Benchmark
+    public int constantEvaluator(Flowed flowed)
+    {
+        Context cx = flowed.compilation.cx;
+        flowed.compilation.node.evaluate(cx, new ConstantEvaluator(cx));
+        return cx.errorCount();
+    }
+
+    @Benchmark
+    public int codeGenerator(Analyzed analyzed)
+    {
+        Context cx = analyzed.compilation.cx;
+        analyzed.compilation.node.evaluate(cx, new CodeGenerator(cx.getEmitter()));
+        return cx.errorCount();
+    }
+
+    static ContextStatics newStatics()
+    {
+        ContextStatics statics = new ContextStatics();
+        statics.handler = quiet;
+        return statics;
+    }
+
+    static ImportNode importAbc(Context cx, String path) throws IOException
+    {
+        Context cx2 = new Context(cx.statics);
+        String filespec = new File(sdk, path).getPath();
+        ProgramNode program = new AbcParser(cx2, filespec).parseAbc();
+        NodeFactory nodeFactory = cx2.getNodeFactory();
+        ImportNode node = nodeFactory.Import(cx2, nodeFactory.literalString(filespec, 0), program);
+        nodeFactory.pkg_defs.clear();
+        return node;
+    }
+
+    static String read(File f) throws IOException
+    {
+        InputStream in = new FileInputStream(f);
+        try
+        {
+            byte[] bytes = new byte[(int) f.length()];
+            int n = 0;
+            while (n < bytes.length)
+            {
+                int r = in.read(bytes, n, bytes.length - n);
+                if (r < 0)
+                {
+                    break;
+                }
+                n += r;
+            }
+            String text = new String(bytes, 0, n, "UTF-8");
+            return text.startsWith("\uFEFF") ? text.substring(1) : text;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
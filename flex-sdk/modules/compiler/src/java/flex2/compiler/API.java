@@ -44,6 +44,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.File;
+import java.nio.channels.WritableByteChannel;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.*;
@@ -191,7 +192,7 @@ public final class API
 	private static void batch1(List sources, List units, DependencyGraph igraph, DependencyGraph dgraph,
 	                           SymbolTable symbolTable, flex2.compiler.Compiler[] compilers, SourceList sourceList,
 	                           SourcePath sourcePath, ResourceContainer resources, CompilerSwcContext swcContext,
-	                           Configuration configuration)
+	                           Configuration configuration, WorkerPool pool)
 	{
 		int start = 0, end = sources.size();
 
@@ -203,6 +204,8 @@ public final class API
 			}
 
 			if (tooManyErrors() || forcedToStop()) break;
+
+			preparse(sources, compilers, symbolTable, start, end, pool);
 			
 			if (!parse1(sources, units, igraph, dgraph, compilers, symbolTable, start, end))
 			{
@@ -326,7 +329,7 @@ public final class API
 	private static void batch2(List sources, List units, DependencyGraph igraph, DependencyGraph dgraph,
 	                           SymbolTable symbolTable, flex2.compiler.Compiler[] compilers, SourceList sourceList,
 	                           SourcePath sourcePath, ResourceContainer resources, CompilerSwcContext swcContext,
-	                           Configuration configuration)
+	                           Configuration configuration, WorkerPool pool)
 	{
 		CompilerConfiguration config = (configuration != null) ? configuration.getCompilerConfiguration() : null;
 		List targets = new ArrayList(sources.size());
@@ -349,6 +352,8 @@ public final class API
 		{
 			int postprocessCount = 0;
 
+			preparse(targets, compilers, symbolTable, 0, targets.size(), pool);
+
 			// 1. targets.size() == sources.size()
 			// 2. targets.get(i) == sources.get(i) or targets.get(i) == null
 			for (int i = 0, size = targets.size(); i < size; i++)
@@ -1105,35 +1110,62 @@ public final class API
 							  CompilerSwcContext swcContext, Configuration configuration, boolean useFileSpec)
 		throws CompilerException
 	{
-		do
+		int threads = configuration.getCompilerConfiguration().parallelThreads();
+		WorkerPool pool = (threads > 1) ? new WorkerPool(threads) : null;
+
+		try
 		{
-			units.clear();
-			if (useFileSpec || configuration.getCompilerConfiguration().useConservativeAlgorithm())
+			do
 			{
-				batch1(sources, units, igraph, dgraph, symbolTable, compilers, sourceList, sourcePath, resources, swcContext, configuration);
-			}
-			else
-			{
-				batch2(sources, units, igraph, dgraph, symbolTable, compilers, sourceList, sourcePath, resources, swcContext, configuration);
-			}
-			symbolTable.perCompileData.reuse();
+				units.clear();
+				if (useFileSpec || configuration.getCompilerConfiguration().useConservativeAlgorithm())
+				{
+					batch1(sources, units, igraph, dgraph, symbolTable, compilers, sourceList, sourcePath, resources, swcContext, configuration, pool);
+				}
+				else
+				{
+					batch2(sources, units, igraph, dgraph, symbolTable, compilers, sourceList, sourcePath, resources, swcContext, configuration, pool);
+				}
+				symbolTable.perCompileData.reuse();
+				discardPreparsed(compilers);
 
-			if (swcContext.errorLocations().size() > 0)
-			{
-				for (Iterator it = swcContext.errorLocations().iterator(); it.hasNext();)
+				if (swcContext.errorLocations().size() > 0)
+				{
+					for (Iterator it = swcContext.errorLocations().iterator(); it.hasNext();)
+					{
+						ThreadLocalToolkit.log(new IncompatibleSWCArchive((String) it.next()));
+					}
+				}
+
+				if (ThreadLocalToolkit.errorCount() > 0)
 				{
-					ThreadLocalToolkit.log(new IncompatibleSWCArchive((String) it.next()));
+					throw new CompilerException();
 				}
+
+				if (forcedToStop()) break;
+			}
+			while (unitsReset(units) > 0);
+		}
+		finally
+		{
+			if (pool != null)
+			{
+				pool.shutdown();
+				discardPreparsed(compilers);
 			}
+		}
+	}
 
-			if (ThreadLocalToolkit.errorCount() > 0)
+	// C: the compilers outlive the compile in fcsh, so nothing pre-parsed may stay behind.
+	private static void discardPreparsed(Compiler[] compilers)
+	{
+		for (int i = 0, length = compilers.length; i < length; i++)
+		{
+			if (compilers[i] instanceof ConcurrentCompiler)
 			{
-				throw new CompilerException();
+				((ConcurrentCompiler) compilers[i]).discardPreparsed();
 			}
-			
-			if (forcedToStop()) break;
 		}
-		while (unitsReset(units) > 0);
 	}
 
 	public static List compileSwc(FileSpec fileSpec,
@@ -2054,7 +2086,9 @@ public final class API
         // temporary compiler to get a syntax tree, for signature generation
         final flex2.compiler.as3.Compiler asc
             = new flex2.compiler.as3.Compiler(configuration.getCompilerConfiguration());
-        asc.addCompilerExtension(SignatureExtension.getInstance());
+        // no signatures get written to the file system here, since this code should be as fast
+        // as possible. Don't worry though, it WILL happen later during re-compilation.
+        asc.addCompilerExtension(new SignatureExtension());
         
         // create a new CompilationUnit if no error occur
         // then grab the signature if no signature error occur
@@ -2073,15 +2107,7 @@ public final class API
                                             source.isDebuggable(),        source.getFileIncludesSet(),
                                             source.getFileIncludeTimes(), source.getLogger()));
     
-            // HACK: Forcefully disable any chance of signatures getting emitted to
-            //       the filesystem -- since this code should be as fast as possible.
-            //       Don't worry though, it WILL happen later during re-compilation.
-            final String tmp = SignatureExtension.signatureDirectory;
-            SignatureExtension.signatureDirectory = null;
-            {
-                u = asc.parse1(tmpSource, SymbolTable.newSymbolTable(configuration));
-            }
-            SignatureExtension.signatureDirectory = tmp;
+            u = asc.parse1(tmpSource, SymbolTable.newSymbolTable(configuration));
         }
         ThreadLocalToolkit.setLogger(original);
         
@@ -2254,6 +2280,52 @@ public final class API
 		return s;
 	}
 
+	/**
+	 * Runs ConcurrentCompiler.preparse() on the worker pool for the Sources in [start, end) that
+	 * are waiting for parse1(). parse1() still runs on this thread in source order, so the
+	 * compilation units and the reported problems do not depend on the number of threads.
+	 */
+	private static void preparse(List sources, flex2.compiler.Compiler[] compilers, final SymbolTable symbolTable,
+	                             int start, int end, WorkerPool pool)
+	{
+		if (pool == null || end - start < 2)
+		{
+			return;
+		}
+
+		List tasks = new ArrayList(end - start); // List<Runnable>
+
+		for (int i = start; i < end; i++)
+		{
+			final Source s = (Source) sources.get(i);
+
+			if (s == null || s.isCompiled() || getCompilationUnitWorkflow(s) != preprocess ||
+				(s.getLogger() != null && s.getLogger().errorCount() > 0))
+			{
+				continue;
+			}
+
+			flex2.compiler.Compiler c = getCompiler(s, compilers);
+			if (c instanceof ConcurrentCompiler)
+			{
+				final ConcurrentCompiler cc = (ConcurrentCompiler) c;
+				tasks.add(new Runnable()
+				{
+					public void run()
+					{
+						cc.preparse(s, symbolTable);
+					}
+				});
+			}
+		}
+
+		if (tasks.size() > 1)
+		{
+			symbolTable.prepareForConcurrentParsing();
+			pool.run(tasks);
+		}
+	}
+
 	private static boolean parse1(List sources, List units, DependencyGraph igraph, DependencyGraph dgraph,
 								 flex2.compiler.Compiler[] compilers, SymbolTable symbolTable,
 								 int start, int end)
@@ -4084,6 +4156,26 @@ public final class API
 		}
 	}
 
+	/**
+	 * Encode movie straight into out, a frame at a time when out is a FileChannel, instead of
+	 * holding on to the whole SWF.
+	 *
+	 * @see flash.swf.TagEncoder#setOutput(WritableByteChannel)
+	 */
+	public static void encode(Movie movie, WritableByteChannel out) throws IOException
+	{
+		TagEncoder encoder = new TagEncoder();
+		encoder.setOutput(out);
+		new MovieEncoder(encoder).export(movie);
+		encoder.writeTo(out);
+
+		if (ThreadLocalToolkit.getBenchmark() != null)
+		{
+            LocalizationManager l10n = ThreadLocalToolkit.getLocalizationManager();
+			ThreadLocalToolkit.getBenchmark().benchmark(l10n.getLocalizedTextString(new SWFEncoding()));
+		}
+	}
+
 	public static void encode(ConsoleApplication app, OutputStream out) throws IOException
 	{
 		List abcList = app.getABCs();
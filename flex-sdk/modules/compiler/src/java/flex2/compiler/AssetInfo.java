@@ -21,6 +21,7 @@ public final class AssetInfo
     private VirtualFile path;
     private long creationTime;
     private Map args; //Map<String, String>
+    private Runnable decoder;
     
     public AssetInfo(DefineTag defineTag, VirtualFile path, long creationTime, Map args)
     {
@@ -47,6 +48,13 @@ public final class AssetInfo
 
     public DefineTag getDefineTag()
     {
+        // PersistenceStore defers decoding the tags of cached assets until they are needed.
+        Runnable r = decoder;
+        if (r != null)
+        {
+            r.run();
+        }
+
         return defineTag;
     }
 
@@ -61,5 +69,11 @@ public final class AssetInfo
     void setDefineTag(DefineTag defineTag)
     {
         this.defineTag = defineTag;
+        decoder = null;
+    }
+
+    void setDecoder(Runnable decoder)
+    {
+        this.decoder = decoder;
     }
 }
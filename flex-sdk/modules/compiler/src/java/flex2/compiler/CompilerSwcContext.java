@@ -67,6 +67,19 @@ public class CompilerSwcContext
 		this.compatibilityVersionString = compatibilityVersionString;
 	}
 
+	/**
+	 * Keeps the data that an incremental compile saves for each SWC script, the compilation
+	 * unit, in the given map instead of on the SwcScript. SWCs are shared by every compile
+	 * that uses the same SwcCache, so compiles that cache SWC compilation units and share a
+	 * SwcCache each need a map of their own.
+	 *
+	 * @param miscData Map<SwcScript, Map>
+	 */
+	public void setMiscData(Map miscData)
+	{
+		this.miscData = miscData;
+	}
+
     public int load( VirtualFile[] libPath,
                      VirtualFile[] rslPath,
                      VirtualFile[] themeFiles,
@@ -138,6 +151,13 @@ public class CompilerSwcContext
         }
 
         toQNameMap(def2script, name2script, swcGroup.getScriptMap()); // populate def2script
+
+        if (miscData != null)
+        {
+            // C: forget the compilation units of scripts that aren't loaded any more, i.e. their SWC
+            //    changed or was evicted from the SwcCache, so they go with the SWC.
+            miscData.keySet().retainAll(new HashSet(swcGroup.getScriptMap().values()));
+        }
         updateResourceBundles(swcGroup.getFiles(), format);
         
 	    Set qnames = swcGroup.getQNames();
@@ -398,13 +418,20 @@ public class CompilerSwcContext
         	u.expressions.add(new MultiName((String) i.next()));
         }
 
-	    Map misc = script.getMiscData();
+	    Map misc = (miscData != null) ? (Map) miscData.get(script) : script.getMiscData();
 	    if (misc == null)
 	    {
 		    if (cacheSwcCompilationUnits)
 		    {
 			    misc = new HashMap(4);
-			    script.setMiscData(misc);
+			    if (miscData != null)
+			    {
+				    miscData.put(script, misc);
+			    }
+			    else
+			    {
+				    script.setMiscData(misc);
+			    }
 		    }
 	    }
 	    else if (!fullCompile && misc.containsKey(CompilationUnit.COMPILATION_UNIT))
@@ -557,6 +584,7 @@ public class CompilerSwcContext
 	private StringBuffer ts = new StringBuffer(); // last modified time of all the swc and css files...
 	private boolean fullCompile; // whether or not this CompilerSwcContext participates in a full compilation...
 	private boolean cacheSwcCompilationUnits; // if true, we setup storage for intermediate type info objects when doing incremental compilation...
+	private Map miscData; // Map<SwcScript, Map>, if not null, the storage above is kept here rather than on the SwcScripts
 
 	private void toQNameMap(QNameMap qNameMap, Map scriptNameMap, Map scriptMap)
 	{
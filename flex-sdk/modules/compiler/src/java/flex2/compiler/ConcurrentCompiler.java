@@ -0,0 +1,38 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.compiler;
+
+/**
+ * Implemented by compilers that can do part of parse1() on a worker thread. API calls
+ * preparse() concurrently for the Sources that are ready for parse1() and then calls
+ * parse1() on the compiling thread, in source order, as usual.
+ *
+ * @see flex2.compiler.util.WorkerPool
+ */
+public interface ConcurrentCompiler extends Compiler
+{
+	/**
+	 * Does the thread-independent part of parse1(), e.g. scanning and parsing, and keeps
+	 * the result for the following parse1() call. The implementation must not touch
+	 * state shared with other Sources and must not report anything: if something goes
+	 * wrong, drop the result and let parse1() redo the work and report the problems.
+	 *
+	 * @return true if parse1() will pick up the result.
+	 */
+	boolean preparse(Source source, SymbolTable symbolTable);
+
+	/**
+	 * Drops the results of preparse() that no parse1() call picked up, e.g. because the
+	 * batch stopped on errors. API calls it at the end of every batch.
+	 */
+	void discardPreparsed();
+}
@@ -25,8 +25,13 @@ import flex2.compiler.io.ResourceFile;
 import flex2.compiler.io.VirtualFile;
 import flex2.compiler.util.*;
 import flex2.compiler.ResourceBundlePath;
+import macromedia.asc.util.NamePool;
 
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -36,8 +41,10 @@ import java.util.Map.Entry;
 final class PersistenceStore
 {
 	// C: If you update the encoding/decoding algorithm, please increment the minor version by 1. Thanks.
-	private static final int major_version = 3;
-	private static final int minor_version = 15;
+	private static final int major_version = 4;
+	private static final int minor_version = 0;
+
+	private static final boolean isWindows = System.getProperty("os.name", "").startsWith("Windows");
 
 	PersistenceStore(Configuration configuration, RandomAccessFile file)
 	{
@@ -57,6 +64,7 @@ final class PersistenceStore
 
     private final Configuration configuration;
 	private final RandomAccessFile file;
+	private ByteBuffer in; // the file being read
 	private final ArrayKey key;
     private final FontManager fontManager;
 
@@ -148,41 +156,47 @@ final class PersistenceStore
 				
 		writeConstantPool(pool, cp);
 
-		file.write(h.toByteArray());
+		// C: RandomAccessFile.writeInt() writes one byte at a time...
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file.getChannel())));
+
+		h.writeTo(out);
 
-		file.writeInt(cp.size());
-		file.write(cp.toByteArray());
+		out.writeInt(cp.size());
+		cp.writeTo(out);
 		
-		file.writeInt(fs.size());
-		file.write(fs.toByteArray());
+		out.writeInt(fs.size());
+		fs.writeTo(out);
+
+		out.writeInt(sl.size());
+		sl.writeTo(out);
 
-		file.writeInt(sl.size());
-		file.write(sl.toByteArray());
+		out.writeInt(sp.size());
+		sp.writeTo(out);
 
-		file.writeInt(sp.size());
-		file.write(sp.toByteArray());
+		out.writeInt(rbp.size());
+		rbp.writeTo(out);
 
-		file.writeInt(rbp.size());
-		file.write(rbp.toByteArray());
+		out.writeInt(count);
+		s.writeTo(out);
 
-		file.writeInt(count);
-		file.write(s.toByteArray());
+		out.writeInt(swcDefSignatureChecksums == null ? 0 : swcDefSignatureChecksums.size());
+		cs1.writeTo(out);
 
-		file.writeInt(swcDefSignatureChecksums == null ? 0 : swcDefSignatureChecksums.size());
-		file.write(cs1.toByteArray());
+		out.writeInt(swcFileChecksums == null ? 0 : swcFileChecksums.size());
+		cs2.writeTo(out);
 
-		file.writeInt(swcFileChecksums == null ? 0 : swcFileChecksums.size());
-		file.write(cs2.toByteArray());
+		out.writeInt(archiveFiles == null ? 0 : archiveFiles.size());
+		af.writeTo(out);
 
-        file.writeInt(archiveFiles == null ? 0 : archiveFiles.size());
-        file.write(af.toByteArray());
+		out.writeInt(totalCount);
+		out.writeInt(src.size());
+		out.writeInt(cu.size());
 
-		file.writeInt(totalCount);
-		file.writeInt(src.size());
-		file.writeInt(cu.size());
+		src.writeTo(out);
+		cu.writeTo(out);
 
-		file.write(src.toByteArray());
-		file.write(cu.toByteArray());
+		// C: don't close the stream. It would close the file, which belongs to the caller.
+		out.flush();
 
 		return totalCount;
 	}
@@ -242,73 +256,66 @@ final class PersistenceStore
             map.put(value, key);
         }
 
-        writeU32(out, map.size());
+        // C: the entries are preceded by their offsets so that read() can decode them on demand.
+        int[] offsets = new int[map.size()];
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        int index = 0;
 
-        for (Iterator i = map.keySet().iterator(); i.hasNext();)
+        for (Iterator i = map.keySet().iterator(); i.hasNext(); index++)
         {
             Object value = map.get(i.next());
+            offsets[index] = entries.size();
 
 			if (value instanceof String)
 			{
-				writeU8(out, 1);
+				writeU8(entries, 1);
 
 				byte[] b = ((String) value).getBytes("UTF8");
-				writeU32(out, b.length);
-				writeBytes(out, b);
+				writeU32(entries, b.length);
+				writeBytes(entries, b);
 			}
 			else if (value instanceof ArrayKey)
 			{
-				writeU8(out, 2);
+				writeU8(entries, 2);
 
 				String[] a = ((ArrayKey) value).a1;
-				writeU32(out, a == null ? 0 : a.length);
+				writeU32(entries, a == null ? 0 : a.length);
 
 				for (int j = 0, size = (a == null) ? 0 : a.length; j < size; j++)
 				{
-					writeU32(out, addString(pool, a[j]));
-				}
-			}
-			else if (value instanceof byte[])
-			{
-				writeU8(out, 3);
-
-				byte[] b = (byte[]) value;
-				writeU32(out, b.length);
-				if (b.length > 0)
-				{
-					writeBytes(out, b);
+					writeU32(entries, addString(pool, a[j]));
 				}
 			}
 			else if (value instanceof QName)
 			{
-				writeU8(out, 4);
+				writeU8(entries, 4);
 
 				QName qName = (QName) value;
-				writeU32(out, addString(pool, qName.getNamespace()));
-				writeU32(out, addString(pool, qName.getLocalPart()));
+				writeU32(entries, addString(pool, qName.getNamespace()));
+				writeU32(entries, addString(pool, qName.getLocalPart()));
 			}
 			else if (value instanceof MultiName)
 			{
-				writeU8(out, 5);
+				writeU8(entries, 5);
 
 				MultiName multiName = (MultiName) value;
-				writeU32(out, addStrings(pool, multiName.namespaceURI));
-				writeU32(out, addString(pool, multiName.localPart));
+				writeU32(entries, addStrings(pool, multiName.namespaceURI));
+				writeU32(entries, addString(pool, multiName.localPart));
 			}
 			else if (value instanceof flex2.compiler.abc.MetaData)
 			{
-				writeU8(out, 6);
+				writeU8(entries, 6);
 
 				flex2.compiler.abc.MetaData md = (flex2.compiler.abc.MetaData) value;
-				writeU32(out, addString(pool, md.getID()));
-				writeU32(out, md.count());
+				writeU32(entries, addString(pool, md.getID()));
+				writeU32(entries, md.count());
 				for (int j = 0, count = md.count(); j < count; j++)
 				{
 					String key = md.getKey(j);
 					String val = md.getValue(j);
 
-					writeU32(out, addString(pool, key == null ? "" : key));
-					writeU32(out, addString(pool, val));
+					writeU32(entries, addString(pool, key == null ? "" : key));
+					writeU32(entries, addString(pool, val));
 				}
 			}
 			else
@@ -316,6 +323,13 @@ final class PersistenceStore
 				assert false;
 			}
 		}
+
+		writeU32(out, offsets.length);
+		for (int i = 0; i < offsets.length; i++)
+		{
+			writeU32(out, offsets[i]);
+		}
+		entries.writeTo(out);
 	}
 
 	private void writeSourceNames(List sources, Map pool, OutputStream out) throws IOException
@@ -591,7 +605,9 @@ final class PersistenceStore
 
 	private void writeCompilationUnit(CompilationUnit u, Map pool, OutputStream cu) throws IOException
 	{
-		writeU32(cu, addBytes(pool, u.bytes.toByteArray()));
+		// C: the bytecode goes into the record itself, so read() can copy it into the ByteList in one go.
+		writeU32(cu, u.bytes.size());
+		cu.write(u.bytes.toByteArray(false), 0, u.bytes.size());
 		writeU32(cu, u.getWorkflow());
 		writeU32(cu, u.getState());
 
@@ -729,6 +745,7 @@ final class PersistenceStore
 				writeLong(cu, assetInfo.getCreationTime());
 
 				DefineTag asset = assetInfo.getDefineTag();
+				writeU8(cu, asset instanceof DefineFont ? 1 : 0);
 				frame.addSymbolClass(className, asset);
 
 				if (asset.name != null)
@@ -762,65 +779,80 @@ final class PersistenceStore
 	         Map swcFileChecksums,
 	         Map archiveFileChecksums) throws IOException
 	{
-		if (!readVersion())
-		{
-			LocalizationManager l10n = ThreadLocalToolkit.getLocalizationManager();
-			throw new IOException(l10n.getLocalizedTextString(new ObsoleteCacheFileFormat()));
-		}
+		in = load();
 
-		if (!readChecksum(checksums))
+		try
 		{
-			return -1;
-		}
+			if (!readVersion())
+			{
+				LocalizationManager l10n = ThreadLocalToolkit.getLocalizationManager();
+				throw new IOException(l10n.getLocalizedTextString(new ObsoleteCacheFileFormat()));
+			}
 
-		Object[] pool = readConstantPool();
+			if (!readChecksum(checksums))
+			{
+				return -1;
+			}
 
-		if (!readFileSpec(pool, fileSpec))
-		{
-			return -2;
-		}
+			ConstantPool pool = readConstantPool();
 
-		if (!readSourceList(pool, sourceList))
-		{
-			return -3;
-		}
+			if (!readFileSpec(pool, fileSpec))
+			{
+				return -2;
+			}
 
-		if (!readSourcePath(pool, sourcePath))
-		{
-			return -4;
-		}
+			if (!readSourceList(pool, sourceList))
+			{
+				return -3;
+			}
 
-		if (!readResourceBundlePath(pool, bundlePath))
-		{
-			return -5;
-		}
+			if (!readSourcePath(pool, sourcePath))
+			{
+				return -4;
+			}
+
+			if (!readResourceBundlePath(pool, bundlePath))
+			{
+				return -5;
+			}
 		
-		Map owners = new HashMap();
-		if (!readSourceNames(pool, sources, units, owners))
-		{
-			return -6;
-		}
+			Map owners = new HashMap();
+			if (!readSourceNames(pool, sources, units, owners))
+			{
+				return -6;
+			}
 		
-		if (!readSwcDefSignatureChecksums(pool, swcDefSignatureChecksums))
-		{
-			return -7;
-		}
+			if (!readSwcDefSignatureChecksums(pool, swcDefSignatureChecksums))
+			{
+				return -7;
+			}
 
-		if (!readFileChecksums(pool, swcFileChecksums))
-		{
-			return -8;
-		}
+			if (!readFileChecksums(pool, swcFileChecksums))
+			{
+				return -8;
+			}
 
-        if (!readFileChecksums(pool, archiveFileChecksums))
-        {
-            return -9;
-        }
+	        if (!readFileChecksums(pool, archiveFileChecksums))
+	        {
+	            return -9;
+	        }
 
-		int count = readCompilationUnits(pool, fileSpec, sourceList, sourcePath, resources, bundlePath,
-										 sources, units, owners);
-		resources.refresh();
+			int count = readCompilationUnits(pool, fileSpec, sourceList, sourcePath, resources, bundlePath,
+											 sources, units, owners);
+			resources.refresh();
 
-		return count;
+			return count;
+		}
+		catch (BufferUnderflowException ex)
+		{
+			LocalizationManager l10n = ThreadLocalToolkit.getLocalizationManager();
+			throw new IOException(l10n.getLocalizedTextString(new ObsoleteCacheFileFormat()));
+		}
+		finally
+		{
+			// C: don't hold on to the mapping. See load().
+			in = null;
+		}
 	}
 
 	private boolean readVersion() throws IOException
@@ -837,7 +869,7 @@ final class PersistenceStore
 		int targetCmdChecksum = readU32();
 		int targetLinkerChecksum = readU32();
 		int targetSwcChecksum = readU32();
-		/* String description = */ new String(readBytes(readU32()));
+		/* String description = */ skip(in, readU32());
 
 		boolean result = checksums[1] == targetCmdChecksum;
 		
@@ -849,61 +881,15 @@ final class PersistenceStore
 		return result;
 	}
 
-	private Object[] readConstantPool() throws IOException
+	private ConstantPool readConstantPool() throws IOException
 	{
-		readU32(); // skip size
-
-		Object[] pool = new Object[readU32()];
-
-		for (int i = 0; i < pool.length; i++)
-		{
-			switch (readU8())
-			{
-			case 1: // String
-				pool[i] = new String(readBytes(readU32()), "UTF8");
-				break;
-			case 2: // String[]
-				String[] strings = new String[readU32()];
-				for (int j = 0; j < strings.length; j++)
-				{
-					strings[j] = (String) pool[readU32()];
-				}
-				pool[i] = strings;
-				break;
-			case 3: // byte[]
-				pool[i] = readBytes(readU32());
-				break;
-			case 4: // QName
-				pool[i] = new QName((String) pool[readU32()], (String) pool[readU32()]);
-				break;
-			case 5: // MultiName
-				pool[i] = new MultiName((String[]) pool[readU32()], (String) pool[readU32()]);
-				break;
-			case 6: // MetaData
-				MetaData md = new MetaData((String) pool[readU32()], readU32());
-				for (int j = 0; j < md.count(); j++)
-				{
-					String key = (String) pool[readU32()];
-					if (key.length() > 0)
-					{
-						md.setKeyValue(j, key, (String) pool[readU32()]);
-					}
-					else
-					{
-						md.setValue(j, (String) pool[readU32()]);
-					}
-				}
-				pool[i] = md;
-				break;
-			default:
-				assert false;
-			}
-		}
+		int size = readU32();
+		ConstantPool pool = new ConstantPool(slice(in, size));
 
 		return pool;
 	}
 
-	private boolean readSourceNames(Object[] pool, List sources, List units, Map owners) throws IOException
+	private boolean readSourceNames(ConstantPool pool, List sources, List units, Map owners) throws IOException
 	{
 		int size = readU32();
 		
@@ -912,7 +898,7 @@ final class PersistenceStore
 		
 		for (int i = 0; i < size; i++)
 		{
-			String name = (String) pool[readU32()];
+			String name = (String) pool.get(readU32());
 			if (!"null".equals(name))
 			{
 				owners.put(name, new Integer(readU8()));
@@ -928,13 +914,13 @@ final class PersistenceStore
 		return true;
 	}
 	
-	private boolean readSwcDefSignatureChecksums(Object[] pool, Map swcDefSignatureChecksums) throws IOException
+	private boolean readSwcDefSignatureChecksums(ConstantPool pool, Map swcDefSignatureChecksums) throws IOException
 	{
 		int size = readU32();
 		
 		for (int i = 0; i < size; i++)
 		{
-			QName qName = (QName) pool[readU32()];
+			QName qName = (QName) pool.get(readU32());
 			long ts = readLong();
 			if (swcDefSignatureChecksums != null) swcDefSignatureChecksums.put(qName, new Long(ts));
 		}
@@ -942,13 +928,13 @@ final class PersistenceStore
 		return true;
 	}
 
-    private boolean readFileChecksums(Object[] pool, Map m) throws IOException
+    private boolean readFileChecksums(ConstantPool pool, Map m) throws IOException
     {
         int size = readU32();
 
         for (int i = 0; i < size; i++)
         {
-            String fileName = (String) pool[readU32()];
+            String fileName = (String) pool.get(readU32());
             long ts = readLong();
             if (m != null) m.put(fileName, new Long(ts));
         }
@@ -956,7 +942,7 @@ final class PersistenceStore
         return true;
     }
 
-	private boolean readFileSpec(Object[] pool, FileSpec fileSpec) throws IOException
+	private boolean readFileSpec(ConstantPool pool, FileSpec fileSpec) throws IOException
 	{
 		int size = readU32();
 		if (size > 0 && fileSpec == null)
@@ -974,7 +960,7 @@ final class PersistenceStore
 
 		for (int i = 0; i < length; i++)
 		{
-			mimeTypes[i] = (String) pool[readU32()];
+			mimeTypes[i] = (String) pool.get(readU32());
 		}
 
 		length = readU32();
@@ -982,7 +968,7 @@ final class PersistenceStore
 
 		for (int i = 0; i < length; i++)
 		{
-			sources[i] = (String) pool[readU32()];
+			sources[i] = (String) pool.get(readU32());
 		}
 
 		// check FileSpec
@@ -1026,7 +1012,7 @@ final class PersistenceStore
 		return true;
 	}
 
-	private boolean readSourceList(Object[] pool, SourceList sourceList) throws IOException
+	private boolean readSourceList(ConstantPool pool, SourceList sourceList) throws IOException
 	{
 		int size = readU32();
 		if (size > 0 && sourceList == null)
@@ -1044,7 +1030,7 @@ final class PersistenceStore
 
 		for (int i = 0; i < length; i++)
 		{
-			mimeTypes[i] = (String) pool[readU32()];
+			mimeTypes[i] = (String) pool.get(readU32());
 		}
 
 		length = readU32();
@@ -1053,7 +1039,7 @@ final class PersistenceStore
 		// classpath
 		for (int i = 0; i < length; i++)
 		{
-			paths[i] = (String) pool[readU32()];
+			paths[i] = (String) pool.get(readU32());
 		}
 
 		length = readU32();
@@ -1061,7 +1047,7 @@ final class PersistenceStore
 
 		for (int i = 0; i < length; i++)
 		{
-			sources[i] = (String) pool[readU32()];
+			sources[i] = (String) pool.get(readU32());
 		}
 
 		// check SourceList
@@ -1105,7 +1091,7 @@ final class PersistenceStore
 		return true;
 	}
 
-	private boolean readSourcePath(Object[] pool, SourcePath sourcePath) throws IOException
+	private boolean readSourcePath(ConstantPool pool, SourcePath sourcePath) throws IOException
 	{
 		int size = readU32();
 		if (size > 0 && sourcePath == null)
@@ -1123,7 +1109,7 @@ final class PersistenceStore
 
 		for (int i = 0; i < length; i++)
 		{
-			mimeTypes[i] = (String) pool[readU32()];
+			mimeTypes[i] = (String) pool.get(readU32());
 		}
 
 		length = readU32();
@@ -1132,7 +1118,7 @@ final class PersistenceStore
 		// classpath
 		for (int i = 0; i < length; i++)
 		{
-			paths[i] = (String) pool[readU32()];
+			paths[i] = (String) pool.get(readU32());
 		}
 
 		length = readU32();
@@ -1142,8 +1128,8 @@ final class PersistenceStore
 		// filename
 		for (int i = 0; i < length; i++)
 		{
-			classNames[i] = (String) pool[readU32()];
-			sources[i] = (String) pool[readU32()];
+			classNames[i] = (String) pool.get(readU32());
+			sources[i] = (String) pool.get(readU32());
 		}
 
 		// check SourcePath
@@ -1196,7 +1182,7 @@ final class PersistenceStore
 		return true;
 	}
 
-	private boolean readResourceBundlePath(Object[] pool, ResourceBundlePath bundlePath) throws IOException
+	private boolean readResourceBundlePath(ConstantPool pool, ResourceBundlePath bundlePath) throws IOException
 	{
 		int size = readU32();
 		if (size > 0 && bundlePath == null)
@@ -1214,7 +1200,7 @@ final class PersistenceStore
 
 		for (int i = 0; i < length; i++)
 		{
-			mimeTypes[i] = (String) pool[readU32()];
+			mimeTypes[i] = (String) pool.get(readU32());
 		}
 
 		length = readU32();
@@ -1223,7 +1209,7 @@ final class PersistenceStore
 		
 		for (int i = 0; i < length; i++)
 		{
-			locales[i] = (String) pool[readU32()];
+			locales[i] = (String) pool.get(readU32());
 			
 			size = readU32();
 			String[] paths = new String[size];
@@ -1231,7 +1217,7 @@ final class PersistenceStore
 			// classpath
 			for (int j = 0; j < size; j++)
 			{
-				paths[j] = (String) pool[readU32()];
+				paths[j] = (String) pool.get(readU32());
 			}
 			
 			rbDirectories.put(locales[i], paths);
@@ -1245,8 +1231,8 @@ final class PersistenceStore
 		// filename
 		for (int i = 0; i < length; i++)
 		{
-			bundleNames[i] = (String) pool[readU32()];
-			sources[i] = (String) pool[readU32()];
+			bundleNames[i] = (String) pool.get(readU32());
+			sources[i] = (String) pool.get(readU32());
 			
 			size = readU32();
 			rFiles[i] = list = new String[size];
@@ -1254,13 +1240,13 @@ final class PersistenceStore
 			
 			for (int j = 0; j < size; j++)
 			{
-				list[j] = (String) pool[readU32()];
+				list[j] = (String) pool.get(readU32());
 				if ("null".equals(list[j]))
 				{
 					list[j] = null;
 				}
 				
-				list2[j] = (String) pool[readU32()];
+				list2[j] = (String) pool.get(readU32());
 				if ("null".equals(list2[j]))
 				{
 					list2[j] = null;
@@ -1348,14 +1334,14 @@ final class PersistenceStore
 		return true;
 	}
 
-	private int readCompilationUnits(Object[] pool, FileSpec fileSpec, SourceList sourceList, SourcePath sourcePath,
+	private int readCompilationUnits(ConstantPool pool, FileSpec fileSpec, SourceList sourceList, SourcePath sourcePath,
 	                                 ResourceContainer resources, ResourceBundlePath bundlePath,
 	                                 List sources, List units, Map owners) throws IOException
 	{
 		int src_count = readU32(), src_size = readU32(), cu_size = readU32();
 
-		ByteArrayInputStream src_in = new ByteArrayInputStream(readBytes(src_size));
-		ByteArrayInputStream cu_in = new ByteArrayInputStream(readBytes(cu_size));
+		ByteBuffer src_in = slice(in, src_size);
+		ByteBuffer cu_in = slice(in, cu_size);
 
 		Map m = sourcePath.sources(), mappings = new HashMap(), rbMappings = new HashMap();
 		
@@ -1403,16 +1389,16 @@ final class PersistenceStore
 		return src_count;
 	}
 
-	private void readCompilationUnit(Object[] pool, Map mappings, Map rbMappings, InputStream src_in, InputStream cu_in,
+	private void readCompilationUnit(ConstantPool pool, Map mappings, Map rbMappings, ByteBuffer src_in, ByteBuffer cu_in,
 	                                 FileSpec fileSpec, SourceList sourceList, SourcePath sourcePath,
 	                                 ResourceContainer resources, ResourceBundlePath bundlePath, Map owners)
 	    throws IOException
 	{
 		PathResolver resolver = ThreadLocalToolkit.getPathResolver();
 
-		String name = (String) pool[readU32(src_in)];
-		String relativePath = (String) pool[readU32(src_in)];
-		String shortName = (String) pool[readU32(src_in)];
+		String name = (String) pool.get(readU32(src_in));
+		String relativePath = (String) pool.get(readU32(src_in));
+		String shortName = (String) pool.get(readU32(src_in));
 		int owner = readU8(src_in);
 
 		VirtualFile pathRoot = null;
@@ -1424,7 +1410,7 @@ final class PersistenceStore
 			// C: Unfortunately, PathResolver itself is not a complete solution. For each type
 			//    of VirtualFile, there must be a mechanism to recognize the name format and
 			//    construct an appropriate VirtualFile instance.
-			pathRoot = resolver.resolve((String) pool[readU32(src_in)]);
+			pathRoot = resolver.resolve((String) pool.get(readU32(src_in)));
 		}
 
 		boolean isInternal = (readU8(src_in) == 1);
@@ -1448,7 +1434,7 @@ final class PersistenceStore
 
 		for (int i = 0; i < size; i++)
 		{
-			String fileName = (String) pool[readU32(src_in)];
+			String fileName = (String) pool.get(readU32(src_in));
 			VirtualFile f = resolver.resolve(fileName);
 			long ts = readLong(src_in);
 
@@ -1467,17 +1453,17 @@ final class PersistenceStore
 
 		for (int i = 0; i < size; i++)
 		{
-			String path = (String) pool[readU32(src_in)];
+			String path = (String) pool.get(readU32(src_in));
 			if (path.length() == 0)
 			{
 				path = null;
 			}
-			String warning = (String) pool[readU32(src_in)];
+			String warning = (String) pool.get(readU32(src_in));
 			if (warning.length() == 0)
 			{
 				warning = null;
 			}
-			String source = (String) pool[readU32(src_in)];
+			String source = (String) pool.get(readU32(src_in));
 			if (source.length() == 0)
 			{
 				source = null;
@@ -1495,7 +1481,7 @@ final class PersistenceStore
 		}
 
 
-		byte[] abc = (hasUnit) ? (byte[]) pool[readU32(cu_in)] : null;
+		byte[] abc = (hasUnit) ? readBytes(cu_in, readU32(cu_in)) : null;
 		Source s = null;
 
 		if (owner == 0) // FileSpec
@@ -1621,21 +1607,29 @@ final class PersistenceStore
             
             u.setSignatureChecksum(signatureChecksum);
 
-			u.bytes.addAll(abc);
+			if (owner == 3)
+			{
+				// C: the ResourceContainer Source holds on to abc...
+				u.bytes.addAll(abc);
+			}
+			else
+			{
+				u.bytes.set(abc, abc.length);
+			}
 			u.setWorkflow(readU32(cu_in));
 			u.setState(readU32(cu_in));
 
 			size = readU32(cu_in);
 			for (int i = 0; i < size; i++)
 			{
-				u.topLevelDefinitions.add(pool[readU32(cu_in)]);
+				u.topLevelDefinitions.add(pool.get(readU32(cu_in)));
 			}
 
 			size = readU32(cu_in);
 			for (int i = 0; i < size; i++)
 			{
-				MultiName mName = (MultiName) pool[readU32(cu_in)];
-				QName qName = (QName) pool[readU32(cu_in)];
+				MultiName mName = (MultiName) pool.get(readU32(cu_in));
+				QName qName = (QName) pool.get(readU32(cu_in));
 				u.inheritanceHistory.put(mName, qName);
 				u.inheritance.add(qName);
 			}
@@ -1643,8 +1637,8 @@ final class PersistenceStore
 			size = readU32(cu_in);
 			for (int i = 0; i < size; i++)
 			{
-				MultiName mName = (MultiName) pool[readU32(cu_in)];
-				QName qName = (QName) pool[readU32(cu_in)];
+				MultiName mName = (MultiName) pool.get(readU32(cu_in));
+				QName qName = (QName) pool.get(readU32(cu_in));
 				u.typeHistory.put(mName, qName);
 				u.types.add(qName);
 			}
@@ -1652,8 +1646,8 @@ final class PersistenceStore
 			size = readU32(cu_in);
 			for (int i = 0; i < size; i++)
 			{
-				MultiName mName = (MultiName) pool[readU32(cu_in)];
-				QName qName = (QName) pool[readU32(cu_in)];
+				MultiName mName = (MultiName) pool.get(readU32(cu_in));
+				QName qName = (QName) pool.get(readU32(cu_in));
 				u.namespaceHistory.put(mName, qName);
 				u.namespaces.add(qName);
 			}
@@ -1661,8 +1655,8 @@ final class PersistenceStore
 			size = readU32(cu_in);
 			for (int i = 0; i < size; i++)
 			{
-				MultiName mName = (MultiName) pool[readU32(cu_in)];
-				QName qName = (QName) pool[readU32(cu_in)];
+				MultiName mName = (MultiName) pool.get(readU32(cu_in));
+				QName qName = (QName) pool.get(readU32(cu_in));
 				u.expressionHistory.put(mName, qName);
 				u.expressions.add(qName);
 			}
@@ -1673,16 +1667,16 @@ final class PersistenceStore
 			{
 				u.auxGenerateInfo = new HashMap();
 
-				String baseLoaderClass = (String) pool[readU32(cu_in)];
+				String baseLoaderClass = (String) pool.get(readU32(cu_in));
 				u.auxGenerateInfo.put("baseLoaderClass", baseLoaderClass.length() > 0 ? baseLoaderClass : null);
 
-				String generateLoaderClass = (String) pool[readU32(cu_in)];
+				String generateLoaderClass = (String) pool.get(readU32(cu_in));
 				u.auxGenerateInfo.put("generateLoaderClass", generateLoaderClass.length() > 0 ? generateLoaderClass : null);
 
-				String className = (String) pool[readU32(cu_in)];
+				String className = (String) pool.get(readU32(cu_in));
 				u.auxGenerateInfo.put("windowClass", className.length() > 0 ? className : null);
 
-				String preLoader = (String) pool[readU32(cu_in)];
+				String preLoader = (String) pool.get(readU32(cu_in));
 				u.auxGenerateInfo.put("preloaderClass", preLoader.length() > 0 ? preLoader : null);
 
 				u.auxGenerateInfo.put("usePreloader", new Boolean(readU8(cu_in) == 1));
@@ -1693,8 +1687,8 @@ final class PersistenceStore
 				size = readU32(cu_in);
 				for (int i = 0; i < size; i++)
 				{
-					String key = (String) pool[readU32(cu_in)];
-					String value = (String) pool[readU32(cu_in)];
+					String key = (String) pool.get(readU32(cu_in));
+					String value = (String) pool.get(readU32(cu_in));
 
 					rootAttributeMap.put(key, value);
 				}
@@ -1724,20 +1718,21 @@ final class PersistenceStore
 		}
 	}
 
-	private void readAssets(final Object[] pool, final CompilationUnit u, final InputStream cu_in) throws IOException
+	private void readAssets(final ConstantPool pool, final CompilationUnit u, final ByteBuffer cu_in) throws IOException
 	{
 		int size = readU32(cu_in);
 		if (size > 0)
 		{
 			int assetCount = readU32(cu_in);
 			final Map assets = new HashMap();
+			boolean hasFonts = false;
 
 			PathResolver resolver = ThreadLocalToolkit.getPathResolver();
 
 			for (int i = 0; i < assetCount; i++)
 			{
-				String className = (String) pool[readU32(cu_in)];
-				String pathName = (String) pool[readU32(cu_in)];
+				String className = (String) pool.get(readU32(cu_in));
+				String pathName = (String) pool.get(readU32(cu_in));
 
 				VirtualFile f = null;
 				if (pathName.length() == 0)
@@ -1753,45 +1748,95 @@ final class PersistenceStore
 					}
 				}
 
-				assets.put(className, new AssetInfo(null, f, readLong(cu_in), null));
+				AssetInfo assetInfo = new AssetInfo(null, f, readLong(cu_in), null);
+				assets.put(className, assetInfo);
+				hasFonts |= readU8(cu_in) == 1;
+
+				// C: Assets.isUpdated() only needs the path and the creation time.
+				u.getAssets().add(className, assetInfo);
 			}
 
 			int swfSize = readU32(cu_in);
-			ByteArrayInputStream in = new ByteArrayInputStream(readBytes(cu_in, swfSize));
+			AssetDecoder decoder = new AssetDecoder(readBytes(cu_in, swfSize), assets);
+
+			// We special case DefineFont tags so that the FontManager
+			// can cache them and avoid re-creating them on subsequent
+			// compiles. Everything else is decoded when the linker asks
+			// for the tags, i.e. only if the unit is reused.
+			if (hasFonts && fontManager != null)
+			{
+				decoder.run();
+			}
+			else
+			{
+				for (Iterator i = assets.values().iterator(); i.hasNext();)
+				{
+					((AssetInfo) i.next()).setDecoder(decoder);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes the SWF that holds the DefineTags of a CompilationUnit's assets.
+	 */
+	private final class AssetDecoder implements Runnable
+	{
+		AssetDecoder(byte[] swf, Map assets)
+		{
+			this.swf = swf;
+			this.assets = assets;
+		}
+
+		private byte[] swf;
+		private final Map assets; // Map<String, AssetInfo>
+
+		public synchronized void run()
+		{
+			if (swf == null)
+			{
+				return;
+			}
 
 			Movie movie = new Movie();
 			MovieDecoder movieDecoder = new MovieDecoder(movie);
-			TagDecoder tagDecoder = new TagDecoder(in);
-			tagDecoder.parse(movieDecoder);
+			movieDecoder.setDecodeBitmaps(false);
+			TagDecoder tagDecoder = new TagDecoder(new ByteArrayInputStream(swf));
+
+			try
+			{
+				tagDecoder.parse(movieDecoder);
+			}
+			catch (IOException ex)
+			{
+				// C: it's a ByteArrayInputStream and the bytes were written by TagEncoder...
+				throw new RuntimeException(ex);
+			}
+			swf = null;
 
-            for (Iterator frames = movie.frames.iterator(); frames.hasNext(); )
+			for (Iterator frames = movie.frames.iterator(); frames.hasNext(); )
 			{
-			    Frame frame = (Frame) frames.next();
+				Frame frame = (Frame) frames.next();
 
-			    for (Iterator it = frame.symbolClass.class2tag.entrySet().iterator(); it.hasNext();)
-			    {
+				for (Iterator it = frame.symbolClass.class2tag.entrySet().iterator(); it.hasNext();)
+				{
 					Map.Entry e = (Map.Entry) it.next();
 					String className = (String) e.getKey();
 					DefineTag tag = (DefineTag) e.getValue();
 					AssetInfo assetInfo = (AssetInfo) assets.get(className);
 					assetInfo.setDefineTag(tag);
 
-					u.getAssets().add(className, assetInfo);
-
-                    // We special case DefineFont tags so that the FontManager 
-					// can cache them and avoid re-creating them on subsequent
-                    // compiles.
-                    if (fontManager != null && tag instanceof DefineFont)
-                    {
-                        VirtualFile f = assetInfo.getPath();
-                        String path = null;
-                        if (f != null)
-                        {
-                            path = f.getURL();
-                        }
-
-                        fontManager.loadDefineFont((DefineFont)tag, path);
-                    }
+					if (fontManager != null && tag instanceof DefineFont)
+					{
+						VirtualFile f = assetInfo.getPath();
+						String path = null;
+						if (f != null)
+						{
+							path = f.getURL();
+						}
+
+						fontManager.loadDefineFont((DefineFont)tag, path);
+					}
 				}
 			}
 		}
@@ -1814,11 +1859,6 @@ final class PersistenceStore
 		return index.intValue();
 	}
 
-	private int addBytes(Map pool, byte[] b)
-	{
-		return addObject(pool, b);
-	}
-
 	private int addString(Map pool, String s)
 	{
 		return addObject(pool, s);
@@ -1940,58 +1980,159 @@ final class PersistenceStore
 		out.write(num & 0xFF);
 	}
 
-	private byte[] readBytes(int length) throws IOException
+	/**
+	 * Maps the rest of the file. On Windows, the file is read into the heap instead: a mapping
+	 * can't be unmapped explicitly, and while it is alive, Windows doesn't let the tools truncate
+	 * or delete the cache file, which they do right after a compile.
+	 */
+	private ByteBuffer load() throws IOException
 	{
-		byte[] b = new byte[length];
-		file.readFully(b);
+		FileChannel channel = file.getChannel();
+		long position = channel.position();
+		int size = (int) (channel.size() - position);
+
+		if (!isWindows)
+		{
+			return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		}
+
+		ByteBuffer b = ByteBuffer.allocate(size);
+		while (b.hasRemaining() && channel.read(b) != -1)
+		{
+		}
+		b.flip();
 		return b;
 	}
 
+	private ByteBuffer slice(ByteBuffer in, int length)
+	{
+		ByteBuffer b = in.slice();
+		skip(in, length);
+		b.limit(length);
+		return b;
+	}
+
+	private void skip(ByteBuffer in, int length)
+	{
+		// C: a truncated file reads as an obsolete one, see read().
+		if (length < 0 || length > in.remaining())
+		{
+			throw new BufferUnderflowException();
+		}
+		in.position(in.position() + length);
+	}
+
 	private int readU32() throws IOException
 	{
-		return file.readInt();
+		return in.getInt();
 	}
 
 	private int readU8() throws IOException
 	{
-		return file.read();
+		return in.get() & 0xFF;
 	}
 
-	private byte[] readBytes(InputStream in, int length) throws IOException
+	private byte[] readBytes(ByteBuffer in, int length) throws IOException
 	{
 		byte[] b = new byte[length];
-
-		for (int size = 0, start = 0, len = length - size; (size = in.read(b, start, len)) != -1 && start + size < length;)
-		{
-			start += size;
-			len -= size;
-		}
-
+		in.get(b);
 		return b;
 	}
 
 	private long readLong() throws IOException
 	{
-		return ((long) (readU32()) << 32) + (readU32() & 0xFFFFFFFFL);
+		return in.getLong();
 	}
 	
-	private long readLong(InputStream in) throws IOException
+	private long readLong(ByteBuffer in) throws IOException
 	{
-		return ((long) (readU32(in)) << 32) + (readU32(in) & 0xFFFFFFFFL);
+		return in.getLong();
 	}
 
-	private int readU32(InputStream in) throws IOException
+	private int readU32(ByteBuffer in) throws IOException
 	{
-		return ((in.read() << 24) + (in.read() << 16) + (in.read() << 8) + in.read());
+		return in.getInt();
 	}
 
-	private int readU8(InputStream in) throws IOException
+	private int readU8(ByteBuffer in) throws IOException
 	{
-		return in.read();
+		return in.get() & 0xFF;
 	}
 
 	// Helper classes
 
+	/**
+	 * The constant pool of a cache file. The entries are decoded the first time they are used.
+	 */
+	private final class ConstantPool
+	{
+		ConstantPool(ByteBuffer in)
+		{
+			offsets = new int[in.getInt()];
+			for (int i = 0; i < offsets.length; i++)
+			{
+				offsets[i] = in.getInt();
+			}
+			entries = in.slice();
+			values = new Object[offsets.length];
+		}
+
+		private final int[] offsets;
+		private final ByteBuffer entries;
+		private final Object[] values;
+
+		Object get(int index) throws IOException
+		{
+			Object value = values[index];
+			if (value == null)
+			{
+				value = values[index] = decode(offsets[index]);
+			}
+			return value;
+		}
+
+		private Object decode(int offset) throws IOException
+		{
+			ByteBuffer in = entries.duplicate();
+			in.position(offset);
+
+			switch (readU8(in))
+			{
+			case 1: // String
+				return NamePool.intern(new String(readBytes(in, readU32(in)), "UTF8"));
+			case 2: // String[]
+				String[] strings = new String[readU32(in)];
+				for (int j = 0; j < strings.length; j++)
+				{
+					strings[j] = (String) get(readU32(in));
+				}
+				return strings;
+			case 4: // QName
+				return new QName((String) get(readU32(in)), (String) get(readU32(in)));
+			case 5: // MultiName
+				return new MultiName((String[]) get(readU32(in)), (String) get(readU32(in)));
+			case 6: // MetaData
+				MetaData md = new MetaData((String) get(readU32(in)), readU32(in));
+				for (int j = 0; j < md.count(); j++)
+				{
+					String key = (String) get(readU32(in));
+					if (key.length() > 0)
+					{
+						md.setKeyValue(j, key, (String) get(readU32(in)));
+					}
+					else
+					{
+						md.setValue(j, (String) get(readU32(in)));
+					}
+				}
+				return md;
+			default:
+				assert false;
+				return null;
+			}
+		}
+	}
+
 	private class ArrayKey
 	{
 		ArrayKey()
@@ -244,14 +244,14 @@ public final class SymbolTable
 		}
 	}
 	
-	public void registerClass(String className, Class cls)
+	public synchronized void registerClass(String className, Class cls)
 	{
 		assert className.indexOf('/') == -1;
 
 		classTable.put(className, cls);
 	}
 
-	public Class getClass(String className)
+	public synchronized Class getClass(String className)
 	{
 		assert className == null || className.indexOf('/') == -1;
 
@@ -293,7 +293,7 @@ public final class SymbolTable
 	 * It is possible for a Source to define multiple definitions. This method creates mappings between
 	 * the definitions and the Source instance.
 	 */
-	void registerQNames(QNameList qNames, Source source)
+	synchronized void registerQNames(QNameList qNames, Source source)
 	{
 		for (int i = 0, size = qNames.size(); i < size; i++)
 		{
@@ -309,7 +309,7 @@ public final class SymbolTable
 	 * @param qName ClassDefinitionNode.cframe.classname
 	 * @param source Source
 	 */
-	public void registerQName(QName qName, Source source)
+	public synchronized void registerQName(QName qName, Source source)
 	{
 		Source old = (Source) qNameTable.get(qName);
 		if (old == null)
@@ -322,7 +322,7 @@ public final class SymbolTable
 		}
 	}
 	
-	public void registerResourceBundle(String rbName, Source source)
+	public synchronized void registerResourceBundle(String rbName, Source source)
 	{
 		/*
 		Source old = (Source) rbNameTable.get(rbName);
@@ -338,7 +338,7 @@ public final class SymbolTable
 	 * If API.resolveMultiName() is successful, the QName result should be associated with a Source object.
 	 * This method allows for quick lookups given a qname.
 	 */
-	public Source findSourceByQName(QName qName)
+	public synchronized Source findSourceByQName(QName qName)
 	{
 		return (Source) qNameTable.get(qName);
 	}
@@ -347,12 +347,12 @@ public final class SymbolTable
 	 * If API.resolveMultiName() is successful, the QName result should be associated with a Source object.
 	 * This method allows for quick lookups given a qname.
 	 */
-	public Source findSourceByQName(String namespaceURI, String localPart)
+	public synchronized Source findSourceByQName(String namespaceURI, String localPart)
 	{
 		return (Source) qNameTable.get(namespaceURI, localPart);
 	}
 	
-	public Source findSourceByResourceBundleName(String rbName)
+	public synchronized Source findSourceByResourceBundleName(String rbName)
 	{
 		return (Source) rbNameTable.get(rbName);
 	}
@@ -360,12 +360,12 @@ public final class SymbolTable
 	/**
 	 * If API.resolveMultiName() successfully resolves a multiname to a qname, the result will be stored here.
 	 */
-	void registerMultiName(MultiName multiName, QName qName)
+	synchronized void registerMultiName(MultiName multiName, QName qName)
 	{
 		multiNames.put(multiName, qName);
 	}
 	
-	void registerResourceBundleName(String rbName, QName[] qNames)
+	synchronized void registerResourceBundleName(String rbName, QName[] qNames)
 	{
 		rbNames.put(rbName, qNames);
 	}
@@ -374,16 +374,27 @@ public final class SymbolTable
 	 * If API.resolveMultiName() successfully resolves a multiname to a qname, the result will be stored here.
 	 * This method allows for quick lookup.
 	 */
-	public QName isMultiNameResolved(MultiName multiName)
+	public synchronized QName isMultiNameResolved(MultiName multiName)
 	{
 		return (QName) multiNames.get(multiName);
 	}
 	
-	public QName[] isResourceBundleResolved(String rbName)
+	public synchronized QName[] isResourceBundleResolved(String rbName)
 	{
 		return (QName[]) rbNames.get(rbName);
 	}
 
+	/**
+	 * Creates the lazily initialized parts of perCompileData that the asc Parser touches, so that
+	 * ConcurrentCompiler.preparse() can run on several threads at once.
+	 */
+	public synchronized void prepareForConcurrentParsing()
+	{
+		macromedia.asc.util.Context cx = new macromedia.asc.util.Context(perCompileData);
+		cx.noType();
+		cx.intType();
+	}
+
 	/**
 	 * placeholder for transient data
 	 */
@@ -437,7 +448,7 @@ public final class SymbolTable
                       configuration.getTargetPlayerRequiredUseNamespaces());
     }
     
-    public void register(String rbName, QName[] qNames, Source source)
+    public synchronized void register(String rbName, QName[] qNames, Source source)
     {
 		if (source != null)
 		{
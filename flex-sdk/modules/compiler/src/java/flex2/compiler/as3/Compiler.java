@@ -12,6 +12,7 @@
 package flex2.compiler.as3;
 
 import flex2.compiler.CompilationUnit;
+import flex2.compiler.Logger;
 import flex2.compiler.Source;
 import flex2.compiler.SymbolTable;
 import flex2.compiler.as3.reflect.TypeTable;
@@ -38,7 +39,7 @@ import java.util.*;
 /**
  * @author Clement Wong
  */
-public class Compiler implements flex2.compiler.Compiler
+public class Compiler implements flex2.compiler.ConcurrentCompiler
 {
 	static
 	{
@@ -182,6 +183,7 @@ public class Compiler implements flex2.compiler.Compiler
 	private List compilerExtensions; // List<Extension>
 	private flex2.compiler.as3.Configuration configuration;
     private boolean coachWarningsAsErrors = false;
+	private Map preparsed = Collections.synchronizedMap(new HashMap()); // Map<Source, Object[]{Context, ProgramNode}>
 
 	public boolean isSupported(String mimeType)
 	{
@@ -203,107 +205,77 @@ public class Compiler implements flex2.compiler.Compiler
 		return source;
 	}
 
-	public CompilationUnit parse1(Source source, SymbolTable symbolTable)
+	public boolean preparse(Source source, SymbolTable symbolTable)
 	{
 		CompilationUnit unit = source.getCompilationUnit();
 
 		if ((unit != null) && (unit.getSyntaxTree() != null))
 		{
-			return unit;
+			return false;
 		}
 
-		String path = source.getName();
-		BufferedInputStream in = null;
-		ProgramNode node = null;
+		// C: a disconnected logger only counts. If anything is reported, parse1() parses
+		//    again on the compiling thread so that the messages come out in order.
+		Logger original = ThreadLocalToolkit.getLogger();
+		LocalLogger local = new LocalLogger(null);
+		ThreadLocalToolkit.setLogger(local);
 
-		flex2.compiler.Context context = new flex2.compiler.Context();
+		try
+		{
+			macromedia.asc.util.Context cx = newContext(source, symbolTable, true);
+			ProgramNode node = parse(source, cx);
 
-		macromedia.asc.util.Context cx = new macromedia.asc.util.Context(symbolTable.perCompileData);
-		cx.setScriptName(source.getName());
-		cx.setPath(source.getParent());
+			if (node == null || local.errorCount() > 0 || local.warningCount() > 0)
+			{
+				return false;
+			}
 
-		cx.setEmitter(symbolTable.emitter);
-		cx.setHandler(new CompilerHandler(source));
-		symbolTable.perCompileData.handler = cx.getHandler();
+			preparsed.put(source, new Object[] { cx, node });
+			return true;
+		}
+		finally
+		{
+			ThreadLocalToolkit.setLogger(original);
+		}
+	}
 
-		context.setAttribute("cx", cx);
-        
-		// conditional compilation: add config settings from the compiler configuration
-        // this must be done BEFORE parsing
-        final ObjectList arr = configuration.getDefine();
-        if (arr != null)
-        {
-            cx.config_vars.addAll(arr);
-        }
+	public void discardPreparsed()
+	{
+		preparsed.clear();
+	}
 
-		if (source.isTextBased())
+	public CompilationUnit parse1(Source source, SymbolTable symbolTable)
+	{
+		CompilationUnit unit = source.getCompilationUnit();
+		Object[] result = (Object[]) preparsed.remove(source);
+
+		if ((unit != null) && (unit.getSyntaxTree() != null))
 		{
-			Parser parser = null;
-			if (configuration.doc())
-			{
-				parser = new Parser(cx, source.getInputText(), path, true, false);
-			}
-			else
-			{
-				parser = new Parser(cx, source.getInputText(), path);
-			}
-			node = parser.parseProgram();
+			return unit;
+		}
 
-			source.close();
+		ProgramNode node = null;
 
-			cleanNodeFactory(cx.getNodeFactory());
+		flex2.compiler.Context context = new flex2.compiler.Context();
+		macromedia.asc.util.Context cx;
+
+		// C: a pre-parse that depended on something parsed ahead of it is thrown away.
+		if (result != null && ((macromedia.asc.util.Context) result[0]).isLocalParseCurrent())
+		{
+			cx = (macromedia.asc.util.Context) result[0];
+			node = (ProgramNode) result[1];
+			cx.setLocalParseState(false);
+			symbolTable.perCompileData.handler = cx.getHandler();
 		}
 		else
 		{
-			try
-			{
-				in = new BufferedInputStream(source.getInputStream());
-				Parser parser = null;
-				if (configuration.doc())
-				{
-					if (configuration.getEncoding() == null)
-					{
-						parser = new Parser(cx, in, path, true, false);
-					}
-					else
-					{
-						parser = new Parser(cx, in, path, configuration.getEncoding(), true, false);
-					}
-				}
-				else
-				{
-					if (configuration.getEncoding() == null)
-					{
-						parser = new Parser(cx, in, path);
-					}
-					else
-					{
-						parser = new Parser(cx, in, path, configuration.getEncoding());
-					}
-				}
-				node = parser.parseProgram();
-
-				cleanNodeFactory(cx.getNodeFactory());
-			}
-			catch (IOException ex)
-			{
-				ThreadLocalToolkit.logError(source.getNameForReporting(), ex.getLocalizedMessage());
-			}
-			finally
-			{
-				if (in != null)
-				{
-					try
-					{
-						in.close();
-					}
-					catch (IOException ex)
-					{
-					}
-				}
-			}
+			cx = newContext(source, symbolTable, false);
+			symbolTable.perCompileData.handler = cx.getHandler();
+			node = parse(source, cx);
 		}
 
+		context.setAttribute("cx", cx);
+
 		if (ThreadLocalToolkit.errorCount() > 0)
 		{
 			return null;
@@ -377,6 +349,104 @@ public class Compiler implements flex2.compiler.Compiler
 		return unit;
 	}
 
+	private macromedia.asc.util.Context newContext(Source source, SymbolTable symbolTable, boolean local)
+	{
+		macromedia.asc.util.Context cx = new macromedia.asc.util.Context(symbolTable.perCompileData);
+		cx.setLocalParseState(local);
+		cx.setScriptName(source.getName());
+		cx.setPath(source.getParent());
+
+		cx.setEmitter(symbolTable.emitter);
+		cx.setHandler(new CompilerHandler(source));
+
+		// conditional compilation: add config settings from the compiler configuration
+		// this must be done BEFORE parsing
+		final ObjectList arr = configuration.getDefine();
+		if (arr != null)
+		{
+			cx.config_vars.addAll(arr);
+		}
+
+		return cx;
+	}
+
+	private ProgramNode parse(Source source, macromedia.asc.util.Context cx)
+	{
+		String path = source.getName();
+		BufferedInputStream in = null;
+		ProgramNode node = null;
+
+		if (source.isTextBased())
+		{
+			Parser parser = null;
+			if (configuration.doc())
+			{
+				parser = new Parser(cx, source.getInputText(), path, true, false);
+			}
+			else
+			{
+				parser = new Parser(cx, source.getInputText(), path);
+			}
+			node = parser.parseProgram();
+
+			source.close();
+
+			cleanNodeFactory(cx.getNodeFactory());
+		}
+		else
+		{
+			try
+			{
+				in = new BufferedInputStream(source.getInputStream());
+				Parser parser = null;
+				if (configuration.doc())
+				{
+					if (configuration.getEncoding() == null)
+					{
+						parser = new Parser(cx, in, path, true, false);
+					}
+					else
+					{
+						parser = new Parser(cx, in, path, configuration.getEncoding(), true, false);
+					}
+				}
+				else
+				{
+					if (configuration.getEncoding() == null)
+					{
+						parser = new Parser(cx, in, path);
+					}
+					else
+					{
+						parser = new Parser(cx, in, path, configuration.getEncoding());
+					}
+				}
+				node = parser.parseProgram();
+
+				cleanNodeFactory(cx.getNodeFactory());
+			}
+			catch (IOException ex)
+			{
+				ThreadLocalToolkit.logError(source.getNameForReporting(), ex.getLocalizedMessage());
+			}
+			finally
+			{
+				if (in != null)
+				{
+					try
+					{
+						in.close();
+					}
+					catch (IOException ex)
+					{
+					}
+				}
+			}
+		}
+
+		return node;
+	}
+
 	public void parse2(CompilationUnit unit, SymbolTable symbolTable)
 	{
 		TypeTable typeTable = (TypeTable) symbolTable.getContext().getAttribute(AttrTypeTable);
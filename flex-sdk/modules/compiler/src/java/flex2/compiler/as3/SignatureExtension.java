@@ -45,7 +45,8 @@ import flex2.compiler.util.CompilerMessage.CompilerWarning;
  *      compiler.keep-generated-signatures
  *      compiler.signature-directory [default: generated-signatures]
  * 
- * This class is NOT thread-safe. Not that this matters...
+ * An instance keeps no state besides its signature directory, so compiles on several threads
+ * can share one.
  *      
  * @author Jono Spiro
  */
@@ -57,37 +58,25 @@ public final class SignatureExtension implements Extension
     public static final String WARNING_ATTRIBUTE = "SignatureExtension.warning";
 
     /**
-     * Don't mess with this directly, please. Mess with it indirectly using init() :~)
+     * Where to write the .sig files, or null not to write them. Compiles on several threads
+     * each have their own extension, so this isn't static.
      */
-    public static String signatureDirectory;
-    
-    /** singleton instance */
-    private static SignatureExtension _instance;
-
+    private final String signatureDirectory;
     
     
-    /** private since we're a singleton */
-    private SignatureExtension() {}
     
-    
-
     /**
-     * Be sure that you init() the class before using it.
+     * Creates an extension that only computes the signature checksums.
      */
-    public static SignatureExtension getInstance()
+    public SignatureExtension()
     {
-        if (_instance == null)
-            _instance = new SignatureExtension();
-            
-        return _instance;
+        signatureDirectory = null;
     }
     
-    
-
     /**
-     * Initializes the singleton; be sure you do this before using the extension.
+     * Creates an extension that also writes the signatures out if the configuration says so.
      */
-    public static void init(CompilerConfiguration compilerConfig)
+    public SignatureExtension(CompilerConfiguration compilerConfig)
     {
         assert compilerConfig != null;
         
@@ -166,7 +155,7 @@ public final class SignatureExtension implements Extension
     
     
     
-    private static void doSignatureGeneration(final CompilationUnit unit)
+    private void doSignatureGeneration(final CompilationUnit unit)
     {
         // debug("doSignatureGeneration(" + unit.getSource().getName() + ")");
         
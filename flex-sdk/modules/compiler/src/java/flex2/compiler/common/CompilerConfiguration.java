@@ -1114,6 +1114,38 @@ public class CompilerConfiguration implements flex2.compiler.as3.Configuration,
 	    };
 	}
 
+    //
+    // 'compiler.parallel-threads' option (hidden)
+    //
+
+	private int parallelThreads = 1;
+
+	public int parallelThreads()
+	{
+		return parallelThreads;
+	}
+
+	public void cfgParallelThreads(ConfigurationValue cv, int n) throws ConfigurationException
+	{
+		if (n < 1)
+		{
+			throw new flex2.compiler.common.ConfigurationException.GreaterThanZero(cv.getVar(), cv.getSource(), cv.getLine());
+		}
+
+		parallelThreads = n;
+	}
+
+	public static ConfigurationInfo getParallelThreadsInfo()
+	{
+	    return new AdvancedConfigurationInfo()
+	    {
+	        public boolean isHidden()
+	        {
+	            return true;
+	        }
+	    };
+	}
+
     //
     // 'compiler.metadata-export' option (incomplete)
     //
@@ -1536,6 +1568,131 @@ public class CompilerConfiguration implements flex2.compiler.as3.Configuration,
         };
     }
 
+    //
+    // 'compiler.swc-index-directory' option
+    //
+
+    private String swcIndexDirectory;
+
+    public String getSwcIndexDirectory()
+    {
+        return swcIndexDirectory;
+    }
+
+    public void cfgSwcIndexDirectory( ConfigurationValue cv, String path ) throws ConfigurationException
+    {
+        File dir = new File(path);
+        if (!dir.isAbsolute())
+        {
+            dir = new File(configResolver.resolve(".").getNameForReporting(), path);
+        }
+
+        if (!(dir.isDirectory() || dir.mkdirs()))
+        {
+            throw new ConfigurationException.NotDirectory( path, cv.getVar(), cv.getSource(), cv.getLine() );
+        }
+
+        swcIndexDirectory = FileUtils.canonicalPath(dir);
+    }
+
+    public static ConfigurationInfo getSwcIndexDirectoryInfo()
+    {
+        return new ConfigurationInfo(new String[] { "directory" } )
+        {
+            public boolean isPath()
+            {
+                return true;
+            }
+
+            public boolean isAdvanced()
+            {
+                return true;
+            }
+
+            public boolean isHidden()
+            {
+                return true;
+            }
+        };
+    }
+
+    //
+    // 'compiler.swc-cache-size' option (hidden)
+    //
+
+    private int swcCacheSize;
+
+    /**
+     * The most memory, in megabytes, that a SwcCache kept between compiles should use for SWCs; 0 for no limit.
+     */
+    public int getSwcCacheSize()
+    {
+        return swcCacheSize;
+    }
+
+    /**
+     * The value of getSwcCacheSize() in bytes, as SwcCache.setMaxSize() takes it.
+     */
+    public long getSwcCacheMaxBytes()
+    {
+        return (swcCacheSize > 0) ? swcCacheSize * 1024L * 1024L : -1;
+    }
+
+    public void cfgSwcCacheSize( ConfigurationValue cv, int size )
+    {
+        swcCacheSize = size;
+    }
+
+    public static ConfigurationInfo getSwcCacheSizeInfo()
+    {
+        return new AdvancedConfigurationInfo()
+        {
+            public boolean isHidden()
+            {
+                return true;
+            }
+        };
+    }
+
+    //
+    // 'compiler.swc-unit-cache-size' option (hidden)
+    //
+
+    private int swcUnitCacheSize;
+
+    /**
+     * The most memory, in megabytes of bytecode, that a compile target should use for the compilation
+     * units it keeps between incremental compiles for SWC scripts; 0 for no limit.
+     */
+    public int getSwcUnitCacheSize()
+    {
+        return swcUnitCacheSize;
+    }
+
+    /**
+     * The value of getSwcUnitCacheSize() in bytes, as SwcUnitCache.setMaxSize() takes it.
+     */
+    public long getSwcUnitCacheMaxBytes()
+    {
+        return (swcUnitCacheSize > 0) ? swcUnitCacheSize * 1024L * 1024L : -1;
+    }
+
+    public void cfgSwcUnitCacheSize( ConfigurationValue cv, int size )
+    {
+        swcUnitCacheSize = size;
+    }
+
+    public static ConfigurationInfo getSwcUnitCacheSizeInfo()
+    {
+        return new AdvancedConfigurationInfo()
+        {
+            public boolean isHidden()
+            {
+                return true;
+            }
+        };
+    }
+
     //
     // 'compiler.source-path' option
     //
@@ -0,0 +1,228 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.compiler.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import flex2.compiler.swc.zip.ZipEntry;
+import flex2.compiler.swc.zip.ZipFile;
+
+/**
+ * VirtualFile implementation used by SwcDynamicArchive for archives opened in mapped mode.
+ * Nothing is read until the bytes are requested. Stored entries are streamed straight out of
+ * the mapping and deflated entries are inflated once, into an array of the exact size. Once the
+ * archive has been changed or replaced on disk, e.g. by SwcDynamicArchive.save(), the entry is
+ * read from the file again the way unmapped archives read it.
+ */
+public class MappedZipEntryFile implements VirtualFile
+{
+	public MappedZipEntryFile(File archive, ZipFile zipFile, ZipEntry entry, String name, String mimeType)
+	{
+		this.archive = archive;
+		this.zipFile = zipFile;
+		this.entry = entry;
+		this.name = name;
+		this.mimeType = mimeType;
+	}
+
+	private File archive;
+	private ZipFile zipFile;
+	private ZipEntry entry;
+	private String name;
+	private String mimeType;
+	private byte[] bytes;
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public String getNameForReporting()
+	{
+		return name;
+	}
+
+	public String getURL()
+	{
+		return "memory://" + name;
+	}
+
+	public String getParent()
+	{
+		return null;
+	}
+
+	public boolean isDirectory()
+	{
+		return false;
+	}
+
+	public long size()
+	{
+		return entry.getSize();
+	}
+
+	public String getMimeType()
+	{
+		return mimeType;
+	}
+
+	public InputStream getInputStream() throws IOException
+	{
+		synchronized (this)
+		{
+			if (bytes != null)
+			{
+				return new ByteArrayInputStream(bytes);
+			}
+		}
+
+		if (entry.getMethod() == ZipEntry.STORED && !zipFile.hasChanged())
+		{
+			return zipFile.getInputStream(entry);
+		}
+
+		return new ByteArrayInputStream(toByteArray());
+	}
+
+	public synchronized byte[] toByteArray() throws IOException
+	{
+		if (bytes == null && zipFile.hasChanged())
+		{
+			bytes = reread();
+		}
+		else if (bytes == null)
+		{
+			ByteBuffer data = zipFile.getData(entry);
+
+			if (entry.getMethod() == ZipEntry.STORED)
+			{
+				bytes = new byte[data.remaining()];
+				data.get(bytes);
+			}
+			else if (entry.getMethod() == ZipEntry.DEFLATED)
+			{
+				bytes = inflate(data, (int) entry.getSize());
+			}
+			else
+			{
+				throw new ZipException("unsupported compression method " + entry.getMethod() + " in " + name);
+			}
+		}
+		return bytes;
+	}
+
+	private byte[] reread() throws IOException
+	{
+		ZipFile z = new ZipFile(archive);
+		try
+		{
+			ZipEntry ze = z.getEntry(entry.getName());
+			if (ze == null)
+			{
+				throw new FileNotFoundException(name);
+			}
+			return new InMemoryFile(z.getInputStream(ze), ze.getSize(), name, mimeType, ze.getTime()).toByteArray();
+		}
+		finally
+		{
+			z.close();
+		}
+	}
+
+	private byte[] inflate(ByteBuffer data, int size) throws IOException
+	{
+		// C: Inflater wants an extra dummy byte for nowrap, see its javadocs.
+		byte[] in = new byte[data.remaining() + 1];
+		data.get(in, 0, in.length - 1);
+
+		byte[] out = new byte[size];
+		Inflater inflater = new Inflater(true);
+		try
+		{
+			inflater.setInput(in);
+
+			int count = 0;
+			while (count < size)
+			{
+				int n = inflater.inflate(out, count, size - count);
+				if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+				{
+					break;
+				}
+				count += n;
+			}
+
+			if (count != size)
+			{
+				throw new ZipException("invalid entry size (expected " + size + " but got " + count + " bytes) in " + name);
+			}
+		}
+		catch (DataFormatException ex)
+		{
+			throw new ZipException(ex.getMessage() + " in " + name);
+		}
+		finally
+		{
+			inflater.end();
+		}
+
+		return out;
+	}
+
+	public long getLastModified()
+	{
+		return entry.getTime();
+	}
+
+	public VirtualFile resolve(String relative)
+	{
+		return null;
+	}
+
+	/**
+	 * The mapping is released by the garbage collector once the last file of the archive is gone.
+	 */
+	public void close()
+	{
+	}
+
+	public boolean equals(Object obj)
+	{
+		if (obj instanceof MappedZipEntryFile)
+		{
+			return (this == obj) || getName().equals(((MappedZipEntryFile) obj).getName());
+		}
+		else
+		{
+			return false;
+		}
+	}
+
+	public int hashCode()
+	{
+		return getName().hashCode();
+	}
+
+	public boolean isTextBased()
+	{
+		return false;
+	}
+}
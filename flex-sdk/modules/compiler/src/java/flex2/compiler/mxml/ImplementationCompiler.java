@@ -68,8 +68,7 @@ class ImplementationCompiler implements flex2.compiler.Compiler
                 // currently, both configs reference same object, and are CompilerConfigurations
                 && !((CompilerConfiguration)ascConfiguration).getDisableIncrementalOptimizations())
         {
-            // SignatureExtension was already initialized in flex2.tools.API.getCompilers()
-            asc.addCompilerExtension(SignatureExtension.getInstance());
+            asc.addCompilerExtension(new SignatureExtension((CompilerConfiguration)ascConfiguration));
         }
         String gendir = (mxmlConfiguration.keepGeneratedActionScript()? mxmlConfiguration.getGeneratedDirectory() : null);
 		asc.addCompilerExtension(new EmbedExtension(transcoders, gendir, mxmlConfiguration.showDeprecationWarnings()));
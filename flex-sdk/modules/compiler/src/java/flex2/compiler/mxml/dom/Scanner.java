@@ -133,7 +133,7 @@ public class Scanner extends DefaultHandler implements TokenManager
 		}
 	}
 
-    private static ClassLoader getXercesClassLoader() throws IOException
+    private static synchronized ClassLoader getXercesClassLoader() throws IOException
     {
         if (xercesClassLoader == null)
         {
@@ -13,6 +13,7 @@ package flex2.compiler.swc;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
@@ -84,8 +85,15 @@ public class Swc
 
     // not public on purpose- use SwcCache.getSwcGroup() instead
     Swc( SwcArchive archive, boolean load ) throws Exception
+    {
+        this( archive, load, null );
+    }
+
+    // not public on purpose- use SwcCache.getSwcGroup() instead
+    Swc( SwcArchive archive, boolean load, SwcIndex index ) throws Exception
     {
         this.archive = archive;
+        this.index = index;
         if (load)
         {
             read();
@@ -418,20 +426,34 @@ public class Swc
 	    {
 		    archive.load();
 
-		    VirtualFile catalogFile = archive.getFile( CATALOG_XML );
-		    if (catalogFile == null)
+		    String digest = null;
+		    if (index != null && !(archive instanceof SwcDirectoryArchive))
 		    {
-			    throw new SwcException.CatalogNotFound();
+			    digest = index.digest(new File(archive.getLocation()));
 		    }
-		    stream = catalogFile.getInputStream();
-		    CatalogReader reader = new CatalogReader(new BufferedInputStream(stream), this, archive);
-		    reader.read();
 
-		    versions = reader.getVersions();
-		    features = reader.getFeatures();
-		    components = reader.getComponents();
-		    libraries = reader.getLibraries();
-		    catalogFiles = reader.getFiles();
+		    if (digest == null || !index.read(this, digest))
+		    {
+			    VirtualFile catalogFile = archive.getFile( CATALOG_XML );
+			    if (catalogFile == null)
+			    {
+				    throw new SwcException.CatalogNotFound();
+			    }
+			    stream = catalogFile.getInputStream();
+			    CatalogReader reader = new CatalogReader(new BufferedInputStream(stream), this, archive);
+			    reader.read();
+
+			    versions = reader.getVersions();
+			    features = reader.getFeatures();
+			    components = reader.getComponents();
+			    libraries = reader.getLibraries();
+			    catalogFiles = reader.getFiles();
+
+			    if (digest != null)
+			    {
+				    index.write(this, digest);
+			    }
+		    }
 
 			/**
 			 * version checking:
@@ -477,6 +499,20 @@ public class Swc
 		archive.close();
 	}
 
+    /**
+     * The uncompressed size of the files in the SWC, which is about the memory the Swc takes once its
+     * library is decoded.
+     */
+    long getSize()
+    {
+        long size = 0;
+        for (Iterator it = archive.getFiles().values().iterator(); it.hasNext();)
+        {
+            size += Math.max(0, ((VirtualFile) it.next()).size());
+        }
+        return size;
+    }
+
     public Iterator getComponentIterator()
     {
         return components.values().iterator();
@@ -588,6 +624,7 @@ public class Swc
 
     // changed from private to protected to support Flash Authoring - jkamerer 2007.07.30
     protected final SwcArchive archive;
+    private final SwcIndex index;
     private long lastModified = -1;
 
     /** Each object in the Map is of type SwcLibrary.
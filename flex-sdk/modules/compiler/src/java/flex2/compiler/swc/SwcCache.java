@@ -37,9 +37,15 @@ import flex2.compiler.util.ThreadLocalToolkit;
  * not, then we look for SWCs in the directory.  If we have a cached SWC, we check the timestampe and return
  * the cache SWC if its the same.
  *
- * For now, we are just synchronizing on the whole cache on each get or export.  We could add more logic to do
- * read/write synchronization on specific SwcGroups.  From tests though it looks like the two layers of caching will
- * provide enough for performance.
+ * A SwcCache may be used by compiles on several threads at once.  Loads and exports of a SWC lock one of a few
+ * stripes, picked by the SWC's path, so a SWC is loaded once while other SWCs load in parallel.  Once loaded, a
+ * Swc is only read by the compiler; the parts that are read lazily are synchronized, and the data that a compile
+ * keeps for the next incremental compile is kept by the compile target when it asks for that (see
+ * CompilerSwcContext.setMiscData() and SwcUnitCache, which bounds that data on its own).  An evicted Swc
+ * stays usable by the SwcGroups that have it.
+ *
+ * The cache keeps up to CACHE_MAX_SIZE SWCs and, if setMaxSize() was called, evicts the least recently used
+ * SWCs once the uncompressed size of the SWCs it keeps goes over the max size.
  *
  * @author Brian Deitte
  */
@@ -62,6 +68,21 @@ public class SwcCache
 	// changed from private to protected to support Flash Authoring - jkamerer 2007.07.30
 	protected boolean lazyRead = false;
 
+    // on-disk catalog index shared with other processes, null if disabled
+    private volatile SwcIndex index;
+
+    // statistics, see getHitCount() and so on
+    private long hitCount, missCount, loadTime;
+
+    // locks for loading and exporting SWCs, picked by location
+    private final Object[] stripes = new Object[16];
+    {
+        for (int i = 0; i < stripes.length; i++)
+        {
+            stripes[i] = new Object();
+        }
+    }
+
     /**
      * Loads the current path SWCs and returns a SwcGroup. There will be one SwcGroup per compile,
      * and this is the piece that the compiler will mostly deal with for SWCs.
@@ -75,7 +96,7 @@ public class SwcCache
         return getSwcGroup( urls );
     }
 
-    public synchronized SwcGroup getSwcGroup(String[] paths)
+    public SwcGroup getSwcGroup(String[] paths)
     {
         SwcGroup group;
         String path;
@@ -91,7 +112,7 @@ public class SwcCache
     }
 
     // todo - this could be made much more efficient by avoiding re-merging swcs
-    public synchronized SwcGroup getSwcGroup(List groups)
+    public SwcGroup getSwcGroup(List groups)
     {
         Map swcs = new LinkedHashMap();
         for (Iterator it = groups.iterator(); it.hasNext();)
@@ -113,7 +134,16 @@ public class SwcCache
     /**
      * Saves the given SWC to disk and adds to the cache
      */
-    public synchronized boolean export(Swc swc)
+    public boolean export(Swc swc)
+            throws FileNotFoundException, IOException
+    {
+        synchronized (stripe(swc.getLocation()))
+        {
+            return exportSwc(swc);
+        }
+    }
+
+    private boolean exportSwc(Swc swc)
             throws FileNotFoundException, IOException
     {
         try
@@ -199,18 +229,33 @@ public class SwcCache
         return map;
     }
 
+    private Object stripe(String location)
+    {
+        int h = (location == null) ? 0 : location.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
     // changed from private to protected to support Flash Authoring - jkamerer 2007.07.30
     protected Swc getSwc(File file)
+    {
+        String location = FileUtils.canonicalPath(file);
+        synchronized (stripe(location))
+        {
+            return getSwc(file, location);
+        }
+    }
+
+    private Swc getSwc(File file, String location)
     {
         Swc swc;
         try
         {
-            String location = FileUtils.canonicalPath(file);
             swc = (Swc)swcs.get(location);
 
             long lastModified = file.lastModified();
             if (swc == null || (lastModified != swc.getLastModified()))
             {
+                long start = System.currentTimeMillis();
                 if (Trace.swc)
                 {
                     Trace.trace("Getting new version of " + location + " (" + (swc == null ? "null" : swc.getLocation()) +
@@ -221,9 +266,15 @@ public class SwcCache
                         (SwcArchive) new SwcDirectoryArchive( location ) :
 	                    lazyRead ? new SwcLazyReadArchive( location ) : new SwcDynamicArchive( location );
 
-                swc = new Swc( archive, true );
+                swc = new Swc( archive, true, index );
                 swc.setLastModified(lastModified);
 
+                synchronized (this)
+                {
+                    missCount++;
+                    loadTime += System.currentTimeMillis() - start;
+                }
+
                 if (ThreadLocalToolkit.errorCount() > 0)
                 {
                     swc = null;
@@ -233,9 +284,16 @@ public class SwcCache
                     swcs.put(location, swc);
                 }
             }
-            else if (Trace.swc)
+            else
             {
-                Trace.trace("Loading cached version of " + location);
+                synchronized (this)
+                {
+                    hitCount++;
+                }
+                if (Trace.swc)
+                {
+                    Trace.trace("Loading cached version of " + location);
+                }
             }
         }
         catch(Exception e)
@@ -255,6 +313,66 @@ public class SwcCache
 	{
 		this.lazyRead = lazyRead;
 	}
+
+    /**
+     * Evicts the least recently used SWCs once the uncompressed size of the SWCs in the cache goes over
+     * the given number of bytes.  The SWC that was loaded last is kept even if it's bigger.  Pass -1 to only
+     * limit the number of SWCs, which is the default.
+     */
+    public void setMaxSize(long bytes)
+    {
+        swcs.setMaxWeight(bytes);
+    }
+
+    /**
+     * The uncompressed size of the SWCs in the cache.
+     */
+    public long getSize()
+    {
+        return swcs.getWeight();
+    }
+
+    /**
+     * The number of times a SWC was found in the cache, up to date.
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * The number of times a SWC was read because it wasn't in the cache or had changed.
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * The number of SWCs that were evicted to make room for others.
+     */
+    public long getEvictionCount()
+    {
+        return swcs.getEvictionCount();
+    }
+
+    /**
+     * The time spent reading SWCs, in milliseconds.
+     */
+    public synchronized long getLoadTime()
+    {
+        return loadTime;
+    }
+
+    /**
+     * Keeps pre-decoded SWC catalogs in the given directory, keyed by SWC digest, so that
+     * other builds and processes don't have to parse catalog.xml and library.swf again.
+     * Pass null to turn it off.
+     */
+    public synchronized void setIndexDirectory(String directory)
+    {
+        index = (directory == null) ? null : new SwcIndex(new File(directory));
+    }
     
 
     /**
@@ -291,17 +409,39 @@ public class SwcCache
             super(CACHE_INITIAL_SIZE, CACHE_MAX_SIZE);
         }
 
+        // the number of SWCs purged by the LRU policy
+        private long evictionCount;
+
         protected Object fetch(Object key)
         {
             return null;
         }
 
+        protected long weigh(Object value)
+        {
+            return (value instanceof Swc) ? ((Swc) value).getSize() : 0;
+        }
+
+        protected void handleLRUElementPurged(Object key, Object value)
+        {
+            // C: called with the lock held.  The Swc isn't closed, SwcGroups may still be using it.
+            if (value != null)
+            {
+                evictionCount++;
+            }
+        }
+
+        synchronized long getEvictionCount()
+        {
+            return evictionCount;
+        }
+
         /**
          * Get a list of swcs in the cache.
          * 
          * @return a list of swcs, each of type Swc. 
          */
-        public List getSwcs()
+        public synchronized List getSwcs()
         {
             ArrayList swcs = new ArrayList(size());
             for (Iterator iter = entrySet().iterator(); iter.hasNext();)
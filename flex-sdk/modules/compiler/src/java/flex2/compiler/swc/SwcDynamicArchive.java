@@ -14,6 +14,7 @@ package flex2.compiler.swc;
 import flex2.compiler.io.VirtualFile;
 import flex2.compiler.io.InMemoryFile;
 import flex2.compiler.io.FileUtil;
+import flex2.compiler.io.MappedZipEntryFile;
 import flex2.compiler.swc.zip.ZipEntry;
 import flex2.compiler.swc.zip.ZipFile;
 import flex2.compiler.swc.zip.ZipOutputStream;
@@ -55,14 +56,23 @@ public class SwcDynamicArchive implements SwcArchive
 	    ZipFile zipFile = null;
         try
         {
-	        zipFile = new ZipFile(path);
+	        zipFile = new ZipFile(new File(path), null, mapped);
 	        Enumeration e = zipFile.getEntries();
 	        while (e.hasMoreElements())
 	        {
 		        ZipEntry ze = (ZipEntry)e.nextElement();
-                InputStream inputStream = zipFile.getInputStream(ze);
-                VirtualFile f = new InMemoryFile( inputStream, ze.getSize(), path + "$" + ze.getName(),
-		                MimeMappings.getMimeType(ze.getName()), ze.getTime() );
+                VirtualFile f;
+                if (mapped)
+                {
+                    f = new MappedZipEntryFile( new File(path), zipFile, ze, path + "$" + ze.getName(),
+                            MimeMappings.getMimeType(ze.getName()) );
+                }
+                else
+                {
+                    InputStream inputStream = zipFile.getInputStream(ze);
+                    f = new InMemoryFile( inputStream, ze.getSize(), path + "$" + ze.getName(),
+                            MimeMappings.getMimeType(ze.getName()), ze.getTime() );
+                }
 
                 files.put( ze.getName(), f );
             }
@@ -171,4 +181,13 @@ public class SwcDynamicArchive implements SwcArchive
 
     protected final String path;
     protected Map files = new HashMap();
+
+    /**
+     * Entries are read through a read-only mapping of the archive when -Dflex.swc.mapped=true,
+     * except on Windows, where a live mapping would keep save() from replacing the file. It is
+     * off by default: a SWC that is truncated in place while one of its entries is being read
+     * from the mapping crashes the VM rather than failing the compile.
+     */
+    private static final boolean mapped = Boolean.getBoolean("flex.swc.mapped") &&
+                                          !System.getProperty("os.name", "").startsWith("Windows");
 }
@@ -0,0 +1,681 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.compiler.swc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.InflaterInputStream;
+
+import flash.swf.TagValues;
+import flash.util.Trace;
+import flex2.compiler.io.FileUtil;
+
+/**
+ * A directory of pre-decoded SWC catalogs that can be shared by builds and processes.
+ *
+ * An index file is named after the SHA-1 digest of the SWC file, so it never goes stale
+ * and is never rewritten. It holds everything CatalogReader gets out of catalog.xml, plus,
+ * for every library, the location of each DoABC in the (uncompressed) library SWF and the
+ * names in its SymbolClass tags. With that, SwcLibrary can slice out the bytecode of a script
+ * and only has to decode the library SWF when a script actually has symbols.
+ *
+ * Hashing a big SWC isn't free, so the digest is looked up first by the path, size and
+ * modification time of the SWC in a small key file; only a SWC that doesn't match a key
+ * file is hashed.
+ *
+ * Index and key files are written to a temporary file first and then renamed, so processes
+ * sharing the directory never see a partially written one.
+ */
+final class SwcIndex
+{
+    // C: If you change the index format or how the catalog is interpreted, please increment the version.
+    private static final int MAGIC = 0x53574349; // SWCI
+    private static final int VERSION = 1;
+
+    private static final String EXTENSION = ".swci";
+    private static final String KEY_EXTENSION = ".swck";
+
+    SwcIndex(File directory)
+    {
+        this.directory = directory;
+    }
+
+    private final File directory;
+
+    /**
+     * Returns the content address of a SWC file, from the key file for its path, size and
+     * modification time if there is one.
+     */
+    String digest(File swcFile) throws IOException
+    {
+        MessageDigest md = sha1();
+        String path = FileUtil.getCanonicalPath(swcFile);
+        md.update((path != null ? path : swcFile.getAbsolutePath()).getBytes("UTF8"));
+        md.update((":" + swcFile.length() + ":" + swcFile.lastModified()).getBytes("UTF8"));
+        String key = toHex(md.digest());
+
+        File f = new File(directory, key + KEY_EXTENSION);
+        if (f.length() == 40)
+        {
+            byte[] b = new byte[40];
+            InputStream in = new FileInputStream(f);
+            try
+            {
+                if (in.read(b) == b.length)
+                {
+                    return new String(b, "UTF8");
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+
+        String digest = contentDigest(swcFile);
+
+        File tmp = null;
+        try
+        {
+            tmp = File.createTempFile(key, ".tmp", directory);
+            OutputStream out = new FileOutputStream(tmp);
+            try
+            {
+                out.write(digest.getBytes("UTF8"));
+            }
+            finally
+            {
+                out.close();
+            }
+
+            if (tmp.renameTo(f))
+            {
+                tmp = null;
+            }
+        }
+        catch (IOException ex)
+        {
+            // C: not fatal, the SWC gets hashed again next time.
+            if (Trace.error)
+            {
+                ex.printStackTrace();
+            }
+        }
+        finally
+        {
+            if (tmp != null)
+            {
+                tmp.delete();
+            }
+        }
+
+        return digest;
+    }
+
+    private static String contentDigest(File swcFile) throws IOException
+    {
+        MessageDigest md = sha1();
+
+        InputStream in = new BufferedInputStream(new FileInputStream(swcFile));
+        try
+        {
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) != -1;)
+            {
+                md.update(buffer, 0, n);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        return toHex(md.digest());
+    }
+
+    private static MessageDigest sha1() throws IOException
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    private static String toHex(byte[] b)
+    {
+        StringBuffer buf = new StringBuffer(b.length * 2);
+        for (int i = 0; i < b.length; i++)
+        {
+            buf.append(Character.forDigit((b[i] >>> 4) & 0xf, 16));
+            buf.append(Character.forDigit(b[i] & 0xf, 16));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Populates the Swc from the index. Returns false if there is no usable index for the digest.
+     */
+    boolean read(Swc swc, String digest)
+    {
+        File f = new File(directory, digest + EXTENSION);
+        if (!f.isFile())
+        {
+            return false;
+        }
+
+        try
+        {
+            RandomAccessFile file = new RandomAccessFile(f, "r");
+            ByteBuffer in;
+            try
+            {
+                FileChannel channel = file.getChannel();
+                in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            finally
+            {
+                file.close();
+            }
+
+            if (in.getInt() != MAGIC || in.getInt() != VERSION)
+            {
+                return false;
+            }
+
+            String[] strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++)
+            {
+                byte[] b = new byte[in.getInt()];
+                in.get(b);
+                strings[i] = new String(b, "UTF8");
+            }
+
+            new Reader(in, strings).read(swc);
+
+            if (Trace.swc)
+            {
+                Trace.trace("Loaded the index of " + swc.getLocation() + " from " + f);
+            }
+            return true;
+        }
+        catch (Exception ex)
+        {
+            // C: a corrupted index is the same as no index. It gets replaced by write().
+            if (Trace.error)
+            {
+                ex.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Saves the catalog of a Swc that was just read. Failures are not fatal; the next
+     * process will simply read the SWC the normal way.
+     */
+    void write(Swc swc, String digest)
+    {
+        File tmp = null;
+        try
+        {
+            for (Iterator i = swc.libraries.values().iterator(); i.hasNext();)
+            {
+                ((SwcLibrary) i.next()).index();
+            }
+
+            Writer writer = new Writer();
+            writer.write(swc);
+
+            File f = new File(directory, digest + EXTENSION);
+            tmp = File.createTempFile(digest, ".tmp", directory);
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                out.writeInt(writer.strings.size());
+                for (Iterator i = writer.strings.keySet().iterator(); i.hasNext();)
+                {
+                    byte[] b = ((String) i.next()).getBytes("UTF8");
+                    out.writeInt(b.length);
+                    out.write(b);
+                }
+
+                writer.body.writeTo(out);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            // C: another process may have won the race. Either way, the index is the same.
+            if (tmp.renameTo(f))
+            {
+                tmp = null;
+
+                if (Trace.swc)
+                {
+                    Trace.trace("Saved the index of " + swc.getLocation() + " to " + f);
+                }
+            }
+        }
+        catch (Exception ex)
+        {
+            if (Trace.error)
+            {
+                ex.printStackTrace();
+            }
+        }
+        finally
+        {
+            if (tmp != null)
+            {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the uncompressed bytes of a SWF.
+     */
+    static byte[] uncompress(byte[] swf) throws IOException
+    {
+        if (swf.length < 8 || swf[0] != 'C' || swf[1] != 'W' || swf[2] != 'S')
+        {
+            return swf;
+        }
+
+        int length = (swf[4] & 0xff) | (swf[5] & 0xff) << 8 | (swf[6] & 0xff) << 16 | (swf[7] & 0xff) << 24;
+        byte[] b = new byte[length];
+        System.arraycopy(swf, 0, b, 0, 8);
+        b[0] = 'F';
+
+        InputStream in = new InflaterInputStream(new ByteArrayInputStream(swf, 8, swf.length - 8));
+        for (int pos = 8, n; pos < length && (n = in.read(b, pos, length - pos)) != -1;)
+        {
+            pos += n;
+        }
+        return b;
+    }
+
+    /**
+     * Walks the tags of an uncompressed SWF and collects the DoABC locations,
+     * Map<String, int[] {flag, offset, length}>, and the SymbolClass names.
+     */
+    static void scan(byte[] swf, Map abcs, Set symbols) throws IOException
+    {
+        int nbits = (swf[8] & 0xff) >>> 3;
+        int pos = 8 + (5 + 4 * nbits + 7) / 8 + 4;
+
+        while (pos + 2 <= swf.length)
+        {
+            int codeAndLength = u16(swf, pos);
+            int code = codeAndLength >>> 6;
+            int length = codeAndLength & 0x3f;
+            pos += 2;
+            if (length == 0x3f)
+            {
+                length = u32(swf, pos);
+                pos += 4;
+            }
+
+            if (code == TagValues.stagEnd)
+            {
+                break;
+            }
+            else if (code == TagValues.stagDoABC2)
+            {
+                int flag = u32(swf, pos);
+                int end = pos + 4;
+                while (swf[end] != 0)
+                {
+                    end++;
+                }
+                String name = new String(swf, pos + 4, end - pos - 4, "UTF8");
+                abcs.put(name, new int[] { flag, end + 1, pos + length - end - 1 });
+            }
+            else if (code == TagValues.stagSymbolClass)
+            {
+                int count = u16(swf, pos);
+                for (int i = 0, p = pos + 2; i < count; i++)
+                {
+                    int end = p + 2;
+                    while (swf[end] != 0)
+                    {
+                        end++;
+                    }
+                    symbols.add(new String(swf, p + 2, end - p - 2, "UTF8"));
+                    p = end + 1;
+                }
+            }
+
+            pos += length;
+        }
+    }
+
+    private static int u16(byte[] b, int pos)
+    {
+        return (b[pos] & 0xff) | (b[pos + 1] & 0xff) << 8;
+    }
+
+    private static int u32(byte[] b, int pos)
+    {
+        return u16(b, pos) | u16(b, pos + 2) << 16;
+    }
+
+    private static class Writer
+    {
+        final Map strings = new LinkedHashMap(); // Map<String, Integer>
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(body);
+
+        void write(Swc swc) throws IOException
+        {
+            Versions versions = swc.versions;
+            writeString(versions.getLibVersion());
+            writeString(versions.getFlexVersion());
+            writeString(versions.getFlexBuild());
+
+            Features features = swc.features;
+            out.writeBoolean(features.isDebug());
+            out.writeBoolean(features.hasExternalDeps());
+            out.writeBoolean(features.isScriptDeps());
+            out.writeBoolean(features.isComponents());
+            out.writeBoolean(features.isFiles());
+
+            out.writeInt(swc.components.size());
+            for (Iterator i = swc.components.values().iterator(); i.hasNext();)
+            {
+                Component c = (Component) i.next();
+                writeString(c.getClassName());
+                writeString(c.getName());
+                writeString(c.getUri());
+                writeString(c.getIcon());
+                writeString(c.getDocs());
+                writeString(c.getPreview());
+            }
+
+            out.writeInt(swc.catalogFiles.size());
+            for (Iterator i = swc.catalogFiles.values().iterator(); i.hasNext();)
+            {
+                SwcFile f = (SwcFile) i.next();
+                writeString(f.getName());
+                out.writeLong(f.getLastModified());
+            }
+
+            out.writeInt(swc.libraries.size());
+            for (Iterator i = swc.libraries.values().iterator(); i.hasNext();)
+            {
+                writeLibrary((SwcLibrary) i.next());
+            }
+        }
+
+        private void writeLibrary(SwcLibrary lib) throws IOException
+        {
+            writeString(lib.getPath());
+            writeStrings(lib.getMetadata());
+
+            out.writeInt(lib.getDigests().size());
+            for (Iterator i = lib.getDigests().values().iterator(); i.hasNext();)
+            {
+                Digest d = (Digest) i.next();
+                writeString(d.getType());
+                out.writeBoolean(d.isSigned());
+                writeString(d.getValue());
+            }
+
+            out.writeInt(lib.scripts.size());
+            for (Iterator i = lib.getScriptIterator(); i.hasNext();)
+            {
+                SwcScript script = (SwcScript) i.next();
+                writeString(script.getName());
+                out.writeLong(script.getLastModified());
+
+                Long checksum = script.getSignatureChecksum();
+                out.writeBoolean(checksum != null);
+                if (checksum != null)
+                {
+                    out.writeLong(checksum.longValue());
+                }
+
+                List defs = new ArrayList();
+                for (Iterator j = script.getDefinitionIterator(); j.hasNext();)
+                {
+                    defs.add(j.next());
+                }
+                writeStrings(defs);
+
+                // C: sort the types so that the same SWC always produces the same index.
+                SwcDependencySet deps = script.getDependencySet();
+                Set types = new TreeSet();
+                for (Iterator j = deps.getTypeIterator(); j.hasNext();)
+                {
+                    types.add(j.next());
+                }
+                out.writeInt(types.size());
+                for (Iterator j = types.iterator(); j.hasNext();)
+                {
+                    String type = (String) j.next();
+                    writeString(type);
+
+                    List names = new ArrayList();
+                    for (Iterator k = deps.getDependencyIterator(type); k.hasNext();)
+                    {
+                        names.add(k.next());
+                    }
+                    writeStrings(names);
+                }
+            }
+
+            writeStrings(lib.symbols);
+
+            Map abcs = new TreeMap(lib.abcs);
+            out.writeInt(abcs.size());
+            for (Iterator i = abcs.entrySet().iterator(); i.hasNext();)
+            {
+                Map.Entry e = (Map.Entry) i.next();
+                int[] abc = (int[]) e.getValue();
+                writeString((String) e.getKey());
+                out.writeInt(abc[0]);
+                out.writeInt(abc[1]);
+                out.writeInt(abc[2]);
+            }
+        }
+
+        private void writeStrings(Collection c) throws IOException
+        {
+            out.writeInt(c.size());
+            for (Iterator i = c.iterator(); i.hasNext();)
+            {
+                writeString((String) i.next());
+            }
+        }
+
+        private void writeString(String s) throws IOException
+        {
+            if (s == null)
+            {
+                out.writeInt(-1);
+                return;
+            }
+
+            Integer index = (Integer) strings.get(s);
+            if (index == null)
+            {
+                index = new Integer(strings.size());
+                strings.put(s, index);
+            }
+            out.writeInt(index.intValue());
+        }
+    }
+
+    private static class Reader
+    {
+        Reader(ByteBuffer in, String[] strings)
+        {
+            this.in = in;
+            this.strings = strings;
+        }
+
+        private final ByteBuffer in;
+        private final String[] strings;
+
+        void read(Swc swc)
+        {
+            Versions versions = new Versions();
+            versions.setLibVersion(readString());
+            versions.setFlexVersion(readString());
+            versions.setFlexBuild(readString());
+
+            Features features = new Features();
+            features.setDebug(readBoolean());
+            features.setExternalDeps(readBoolean());
+            features.setScriptDeps(readBoolean());
+            features.setComponents(readBoolean());
+            features.setFiles(readBoolean());
+
+            Map components = new HashMap();
+            for (int i = 0, size = in.getInt(); i < size; i++)
+            {
+                Component c = new Component();
+                c.setClassName(readString());
+                c.setName(readString());
+                c.setUri(readString());
+                c.setIcon(readString());
+                c.setDocs(readString());
+                c.setPreview(readString());
+                c.setLocation(swc.getLocation());
+                components.put(c.getClassName(), c);
+            }
+
+            Map files = new HashMap();
+            for (int i = 0, size = in.getInt(); i < size; i++)
+            {
+                String path = readString();
+                files.put(path, new SwcFile(path, in.getLong(), swc, swc.getArchive()));
+            }
+
+            Map libraries = new HashMap();
+            for (int i = 0, size = in.getInt(); i < size; i++)
+            {
+                SwcLibrary lib = readLibrary(swc);
+                libraries.put(lib.getPath(), lib);
+            }
+
+            swc.versions = versions;
+            swc.features = features;
+            swc.components = components;
+            swc.libraries = libraries;
+            swc.catalogFiles = files;
+        }
+
+        private SwcLibrary readLibrary(Swc swc)
+        {
+            SwcLibrary lib = new SwcLibrary(swc, readString());
+            lib.addMetadata(readStrings(new HashSet()));
+
+            Map digests = new HashMap();
+            for (int i = 0, size = in.getInt(); i < size; i++)
+            {
+                Digest d = new Digest();
+                d.setType(readString());
+                d.setSigned(readBoolean());
+                d.setValue(readString());
+                digests.put(flex2.compiler.swc.catalog.CatalogReader.createDigestHashValue(d.getType(), d.isSigned()), d);
+            }
+            lib.setDigests(digests);
+
+            for (int i = 0, size = in.getInt(); i < size; i++)
+            {
+                String name = readString();
+                long modtime = in.getLong();
+                Long checksum = readBoolean() ? new Long(in.getLong()) : null;
+                Set defs = (Set) readStrings(new TreeSet());
+
+                SwcDependencySet deps = new SwcDependencySet();
+                for (int j = 0, types = in.getInt(); j < types; j++)
+                {
+                    String type = readString();
+                    for (int k = 0, count = in.getInt(); k < count; k++)
+                    {
+                        deps.addDependency(type, readString());
+                    }
+                }
+
+                lib.addScript(name, defs, deps, modtime, checksum);
+            }
+
+            Set symbols = (Set) readStrings(new HashSet());
+
+            Map abcs = new HashMap();
+            for (int i = 0, size = in.getInt(); i < size; i++)
+            {
+                String name = readString();
+                abcs.put(name, new int[] { in.getInt(), in.getInt(), in.getInt() });
+            }
+
+            lib.setIndex(abcs, symbols);
+            return lib;
+        }
+
+        private Collection readStrings(Collection c)
+        {
+            for (int i = 0, size = in.getInt(); i < size; i++)
+            {
+                c.add(readString());
+            }
+            return c;
+        }
+
+        private String readString()
+        {
+            int index = in.getInt();
+            return index == -1 ? null : strings[index];
+        }
+
+        private boolean readBoolean()
+        {
+            return in.get() != 0;
+        }
+    }
+}
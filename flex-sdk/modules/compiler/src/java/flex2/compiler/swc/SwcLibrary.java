@@ -27,6 +27,7 @@ import java.util.LinkedList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
 import flash.swf.TagDecoder;
@@ -52,6 +53,12 @@ public class SwcLibrary
     private String location = null;
     private Set metadata;
     protected Map digests = new HashMap();
+
+    // from the SwcIndex, null if unknown
+    Map abcs; // Map<String, int[] {flag, offset, length}>, DoABC locations in the uncompressed library SWF
+    Set symbols; // Set<String>, the names in the SymbolClass tags
+    private byte[] swf; // the uncompressed library SWF, until every DoABC is copied out or parse()
+    private int loaded; // the number of DoABC copied out of swf
     
     
     public SwcLibrary( Swc swc, String path )
@@ -122,6 +129,14 @@ public class SwcLibrary
     {
         // stagSymbolClasses likes dots, no colons.
         name = name.replace( ':', '.' );
+
+        // no need to decode the SWF if the index says there is no such symbol.
+        if (!parsed && symbols != null && !symbols.contains( name ))
+        {
+            return null;
+        }
+
+        parse();
         return (DefineTag) def2symbol.get( name );
     }
 
@@ -133,14 +148,70 @@ public class SwcLibrary
     }
 
     /**
-     * The catalog should have been previously loaded such that we have a set of SwcScript objects.
-     * Parse the SWF and associate a DoABC with each, and keep track of the stagSymbolClass values.
+     * Associates a DoABC with the script. If the SwcIndex knows where the bytecode is, it is
+     * copied out of the library SWF. Otherwise, the whole SWF is parsed.
      */
-    protected void parse()
+    synchronized void loadDoABC( SwcScript script )
     {
-        if (parsed)
-            return;
+        int[] abc = (!parsed && abcs != null) ? (int[]) abcs.get( script.getName() ) : null;
+
+        if (abc != null)
+        {
+            try
+            {
+                byte[] swf = getSwf();
+                DoABC doABC = new DoABC( script.getName(), abc[0] );
+                doABC.abc = new byte[abc[2]];
+                System.arraycopy( swf, abc[1], doABC.abc, 0, abc[2] );
+                script.setDoABC( doABC );
+
+                // C: don't hold on to the whole SWF once every script has its bytecode.
+                if (++loaded >= abcs.size())
+                {
+                    this.swf = null;
+                }
+                return;
+            }
+            catch (IOException e)
+            {
+                // fall back to parse()
+            }
+        }
+
+        parse();
+    }
+
+    /**
+     * Records the DoABC locations and the symbols of the library SWF for SwcIndex.
+     */
+    synchronized void index() throws IOException
+    {
+        if (abcs == null)
+        {
+            Map abcs = new HashMap();
+            Set symbols = new HashSet();
+            SwcIndex.scan( swf != null ? swf : SwcIndex.uncompress( getSwfFile().toByteArray() ), abcs, symbols );
+            setIndex( abcs, symbols );
+        }
+    }
+
+    void setIndex( Map abcs, Set symbols )
+    {
+        this.abcs = abcs;
+        this.symbols = symbols;
+    }
+
+    private byte[] getSwf() throws IOException
+    {
+        if (swf == null)
+        {
+            swf = SwcIndex.uncompress( getSwfFile().toByteArray() );
+        }
+        return swf;
+    }
 
+    private VirtualFile getSwfFile()
+    {
         VirtualFile swcFile = swc.getArchive().getFile( path );
 
         if (swcFile == null)
@@ -148,17 +219,32 @@ public class SwcLibrary
             throw new SwcException.CatalogNotFound();
         }
 
+        return swcFile;
+    }
+
+    /**
+     * The catalog should have been previously loaded such that we have a set of SwcScript objects.
+     * Parse the SWF and associate a DoABC with each, and keep track of the stagSymbolClass values.
+     */
+    protected synchronized void parse()
+    {
+        if (parsed)
+            return;
+
         Movie movie = new Movie();
         MovieDecoder movieDecoder = new MovieDecoder( movie );
+        // C: the bitmaps only get linked, never looked at.
+        movieDecoder.setDecodeBitmaps( false );
 
         try
         {
-            TagDecoder tagDecoder = new TagDecoder( swcFile.getInputStream() );
+            TagDecoder tagDecoder = new TagDecoder( swf != null ? new ByteArrayInputStream( swf ) : getSwfFile().getInputStream() );
             tagDecoder.parse( movieDecoder );
         }
         catch (IOException e)
         {
         }
+        swf = null;
         int c1 = 0;
         def2symbol = new HashMap();
         for (Iterator frames = movie.frames.iterator(); frames.hasNext(); )
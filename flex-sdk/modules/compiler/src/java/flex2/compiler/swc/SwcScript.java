@@ -33,9 +33,9 @@ public class SwcScript
     private final Set defs;
     private final String name;
     private final SwcDependencySet deps;
-    private Set symbolClasses;
+    private volatile Set symbolClasses;
 	private Map misc;
-    private DoABC doABC;
+    private volatile DoABC doABC;
 
     public SwcScript( SwcLibrary library, String name, Set defs, SwcDependencySet deps, long modtime,
     				Long signatureChecksum )
@@ -57,7 +57,7 @@ public class SwcScript
     {
         if (doABC == null)
         {
-            library.parse();
+            library.loadDoABC( this );
             assert( doABC != null );
         }
 
@@ -66,7 +66,7 @@ public class SwcScript
 
     public SwcLibrary getLibrary()
     {
-        library.parse();
+        // C: SwcLibrary.getSymbol() parses the library SWF when it has to.
         return library;
     }
 
@@ -107,16 +107,19 @@ public class SwcScript
 	
 	public Set getSymbolClasses()
 	{
-		if (symbolClasses == null)
+		// C: SWCs may be shared by compiles on other threads, so the set is filled before it's published.
+		Set classes = symbolClasses;
+		if (classes == null)
 		{
-			symbolClasses = new HashSet();
+			classes = new HashSet();
 			for (Iterator i = getDefinitionIterator(); i.hasNext(); )
 			{
-				library.getSymbolClasses((String) i.next(), symbolClasses);
+				library.getSymbolClasses((String) i.next(), classes);
 			}
+			symbolClasses = classes;
 		}
 		
-		return symbolClasses;
+		return classes;
 	}
 	
 	// C: Only the Flex Compiler API (flex-compiler-oem.jar) uses this method.
@@ -0,0 +1,127 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.compiler.swc;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The data a compile target keeps for each SWC script between incremental compiles, mostly
+ * the script's compilation unit (see CompilerSwcContext.setMiscData()).  It is kept apart
+ * from the SwcCache, so that it can be bounded on its own: the SwcCache holds the catalogs
+ * and bytecode of the SWCs, this holds the type information built from them.
+ *
+ * The script data is weighed by the size of the script's bytecode, which the compilation
+ * unit's type information grows with.  Once setMaxSize() is given a limit, the least recently
+ * used scripts are evicted until the total fits.  An evicted script is simply compiled from
+ * the SWC again by the next compile that needs it.
+ *
+ * Only get(), put(), remove() and clear() keep track of the size.
+ */
+public class SwcUnitCache extends LinkedHashMap // Map<SwcScript, Map>
+{
+    public SwcUnitCache()
+    {
+        super(16, 0.75f, true);
+    }
+
+    // the weight of each script, as it was when the script was put
+    private final Map weights = new HashMap(); // Map<SwcScript, Long>
+
+    private long maxSize = -1;
+    private long size;
+    private long evictionCount;
+
+    /**
+     * Evicts the least recently used scripts once the size of the scripts in the cache goes
+     * over the given number of bytes.  The script that was put last is kept even if it's
+     * bigger.  Pass -1 for no limit, which is the default.
+     */
+    public void setMaxSize(long bytes)
+    {
+        maxSize = bytes;
+        evict(null);
+    }
+
+    /**
+     * The size of the bytecode of the scripts in the cache.
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * The number of scripts that were evicted to make room for others.
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    public Object put(Object key, Object value)
+    {
+        Object old = super.put(key, value);
+
+        Long weight = new Long(weigh(key));
+        Long oldWeight = (Long) weights.put(key, weight);
+        size += weight.longValue() - ((oldWeight != null) ? oldWeight.longValue() : 0);
+
+        evict(key);
+        return old;
+    }
+
+    public Object remove(Object key)
+    {
+        Long weight = (Long) weights.remove(key);
+        if (weight != null)
+        {
+            size -= weight.longValue();
+        }
+        return super.remove(key);
+    }
+
+    public void clear()
+    {
+        super.clear();
+        weights.clear();
+        size = 0;
+    }
+
+    private void evict(Object keep)
+    {
+        if (maxSize < 0)
+        {
+            return;
+        }
+
+        for (Iterator i = keySet().iterator(); size > maxSize && i.hasNext();)
+        {
+            Object key = i.next();
+            if (key != keep)
+            {
+                Long weight = (Long) weights.remove(key);
+                size -= weight.longValue();
+                i.remove();
+                evictionCount++;
+            }
+        }
+    }
+
+    private static long weigh(Object key)
+    {
+        // C: the DoABC was loaded when the compilation unit was created from the script.
+        return (key instanceof SwcScript) ? ((SwcScript) key).getDoABC().abc.length : 0;
+    }
+}
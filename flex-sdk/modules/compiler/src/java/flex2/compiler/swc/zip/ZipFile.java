@@ -19,11 +19,14 @@ package flex2.compiler.swc.zip;
 
 import flex2.compiler.swc.SwcException;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Enumeration;
@@ -92,6 +95,23 @@ public class ZipFile {
      */
     private RandomAccessFile archive;
 
+    /**
+     * The whole archive, if it has been opened in mapped mode.
+     */
+    private ByteBuffer mapping;
+
+    /**
+     * The mapped file, with its size and timestamp when it was mapped.
+     * A mapping doesn't survive the file being rewritten in place -
+     * touching the truncated part raises SIGBUS on most Unixes - so
+     * these are checked whenever an entry is opened.  Nothing is
+     * checked while a stream or slice is being read, so a file that is
+     * truncated at that moment still brings the VM down.
+     */
+    private File mappedFile;
+    private long mappedLength;
+    private long mappedTime;
+
     /**
      * Opens the given file for reading, assuming the platform's
      * native encoding for file names.
@@ -139,8 +159,42 @@ public class ZipFile {
      * @throws IOException if an error occurs while reading the file.
      */
     public ZipFile(File f, String encoding) throws IOException {
+        this(f, encoding, false);
+    }
+
+    /**
+     * Opens the given file for reading, assuming the specified
+     * encoding for file names.
+     *
+     * <p>In mapped mode the archive is mapped into memory, the
+     * directory is parsed straight from the mapping and the file
+     * handle is released before the constructor returns.  Entries
+     * stay readable after {@link #close} and {@link #getData} hands
+     * out slices of the mapping.  Entries can't be read any more once
+     * the file has been changed, see {@link #hasChanged}.</p>
+     *
+     * @param f the archive.
+     * @param encoding the encoding to use for file names
+     * @param map whether to map the archive instead of reading it
+     * through a RandomAccessFile.
+     *
+     * @throws IOException if an error occurs while reading the file.
+     */
+    public ZipFile(File f, String encoding, boolean map) throws IOException {
         this.encoding = encoding;
         archive = new RandomAccessFile(f, "r");
+        if (map) {
+            try {
+                FileChannel channel = archive.getChannel();
+                mappedFile = f;
+                mappedTime = f.lastModified();
+                mappedLength = channel.size();
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                      mappedLength);
+            } finally {
+                archive.close();
+            }
+        }
         populateFromCentralDirectory();
         resolveLocalFileHeaderData();
     }
@@ -162,6 +216,13 @@ public class ZipFile {
         archive.close();
     }
 
+    /**
+     * @return true if the archive has been opened in mapped mode.
+     */
+    public boolean isMapped() {
+        return mapping != null;
+    }
+
     /**
      * @return all entries as ZipEntry instances.
      */
@@ -191,6 +252,18 @@ public class ZipFile {
         if (start == null) {
             return null;
         }
+        if (mapping != null) {
+            MappedInputStream mis = new MappedInputStream(getData(ze));
+            switch (ze.getMethod()) {
+                case ZipEntry.STORED:
+                    return mis;
+                case ZipEntry.DEFLATED:
+                    mis.addDummy();
+                    return new InflaterInputStream(mis, new Inflater(true));
+                default:
+                    throw new SwcException.UnsupportedZipCompression(ze.getMethod() + "");
+            }
+        }
         BoundedInputStream bis =
             new BoundedInputStream(start.longValue(), ze.getCompressedSize());
         switch (ze.getMethod()) {
@@ -204,6 +277,51 @@ public class ZipFile {
         }
     }
 
+    /**
+     * Returns the data of the given entry, as stored in the archive,
+     * i.e. still compressed if the entry is DEFLATED.  The buffer is
+     * a read-only slice of the mapping, so nothing is copied.
+     *
+     * <p>The slice is only safe to read right away, while the file is
+     * known to be unchanged.</p>
+     *
+     * @param ze the entry to get the data for.
+     * @return the data - or <code>null</code> if the entry is not
+     * part of this archive or the archive is not mapped.
+     * @throws IOException if the file has changed since it was mapped.
+     */
+    public ByteBuffer getData(ZipEntry ze) throws IOException {
+        Long start = (Long) dataOffsets.get(ze);
+        if (start == null || mapping == null) {
+            return null;
+        }
+        checkMapping();
+        ByteBuffer data = mapping.asReadOnlyBuffer();
+        data.position((int) start.longValue());
+        data.limit((int) (start.longValue() + ze.getCompressedSize()));
+        return data.slice();
+    }
+
+    /**
+     * Whether the mapped file has been changed, replaced or removed
+     * since it was mapped, judging by its size and timestamp.  Callers
+     * should read the file again instead of the mapping if it has.
+     *
+     * @return <code>false</code> if the archive isn't mapped.
+     */
+    public boolean hasChanged() {
+        return mappedFile != null &&
+            (mappedFile.length() != mappedLength ||
+             mappedFile.lastModified() != mappedTime);
+    }
+
+    private void checkMapping() throws IOException {
+        if (hasChanged()) {
+            throw new IOException(mappedFile.getPath() +
+                                  " has changed since it was opened");
+        }
+    }
+
     private static final int CFH_LEN =
         /* version made by                 */ 2 +
         /* version needed to extract       */ 2 +
@@ -237,10 +355,10 @@ public class ZipFile {
         byte[] cfh = new byte[CFH_LEN];
 
         byte[] signatureBytes = new byte[4];
-        archive.readFully(signatureBytes);
+        readFully(signatureBytes);
         ZipLong sig = new ZipLong(signatureBytes);
         while (sig.equals(ZipOutputStream.CFH_SIG)) {
-            archive.readFully(cfh);
+            readFully(cfh);
             int off = 0;
             ZipEntry ze = new ZipEntry();
 
@@ -286,18 +404,18 @@ public class ZipFile {
             entries.put(ze, new Long((new ZipLong(cfh, off)).getValue()));
 
             byte[] fileName = new byte[fileNameLen];
-            archive.readFully(fileName);
+            readFully(fileName);
             ze.setName(getString(fileName));
 
             nameMap.put(ze.getName(), ze);
 
-            archive.skipBytes(extraLen);
+            skipBytes(extraLen);
 
             byte[] comment = new byte[commentLen];
-            archive.readFully(comment);
+            readFully(comment);
             ze.setComment(getString(comment));
 
-            archive.readFully(signatureBytes);
+            readFully(signatureBytes);
             sig = new ZipLong(signatureBytes);
         }
     }
@@ -335,18 +453,18 @@ public class ZipFile {
      */
     private void positionAtCentralDirectory()
         throws IOException {
-        long off = archive.length() - MIN_EOCD_SIZE;
-        archive.seek(off);
+        long off = length() - MIN_EOCD_SIZE;
+        seek(off);
         byte[] sig = ZipOutputStream.EOCD_SIG.getBytes();
-        int curr = archive.read();
+        int curr = read();
         boolean found = false;
         while (curr != -1) {
             if (curr == sig[0]) {
-                curr = archive.read();
+                curr = read();
                 if (curr == sig[1]) {
-                    curr = archive.read();
+                    curr = read();
                     if (curr == sig[2]) {
-                        curr = archive.read();
+                        curr = read();
                         if (curr == sig[3]) {
                             found = true;
                             break;
@@ -359,16 +477,16 @@ public class ZipFile {
             {
             	break;
             }
-            archive.seek(--off);
-            curr = archive.read();
+            seek(--off);
+            curr = read();
         }
         if (!found) {
             throw new SwcException.UnknownZipFormat("0");
         }
-        archive.seek(off + CFD_LOCATOR_OFFSET);
+        seek(off + CFD_LOCATOR_OFFSET);
         byte[] cfdOffset = new byte[4];
-        archive.readFully(cfdOffset);
-        archive.seek((new ZipLong(cfdOffset)).getValue());
+        readFully(cfdOffset);
+        seek((new ZipLong(cfdOffset)).getValue());
     }
 
     /**
@@ -399,15 +517,15 @@ public class ZipFile {
         while (e.hasMoreElements()) {
             ZipEntry ze = (ZipEntry) e.nextElement();
             long offset = ((Long) entries.get(ze)).longValue();
-            archive.seek(offset + LFH_OFFSET_FOR_FILENAME_LENGTH);
+            seek(offset + LFH_OFFSET_FOR_FILENAME_LENGTH);
             byte[] b = new byte[2];
-            archive.readFully(b);
+            readFully(b);
             int fileNameLen = (new ZipShort(b)).getValue();
-            archive.readFully(b);
+            readFully(b);
             int extraFieldLen = (new ZipShort(b)).getValue();
-            archive.skipBytes(fileNameLen);
+            skipBytes(fileNameLen);
             byte[] localExtraData = new byte[extraFieldLen];
-            archive.readFully(localExtraData);
+            readFully(localExtraData);
             ze.setExtra(localExtraData);
             dataOffsets.put(ze,
                             new Long(offset + LFH_OFFSET_FOR_FILENAME_LENGTH
@@ -415,6 +533,52 @@ public class ZipFile {
         }
     }
 
+    /*
+     * Random access to the archive, through the mapping if there is
+     * one.  Only used while the directory is read.
+     */
+
+    private long length() throws IOException {
+        return mapping != null ? mapping.limit() : archive.length();
+    }
+
+    private void seek(long pos) throws IOException {
+        if (mapping != null) {
+            if (pos < 0 || pos > mapping.limit()) {
+                throw new EOFException();
+            }
+            mapping.position((int) pos);
+        } else {
+            archive.seek(pos);
+        }
+    }
+
+    private int read() throws IOException {
+        if (mapping != null) {
+            return mapping.hasRemaining() ? mapping.get() & 0xff : -1;
+        }
+        return archive.read();
+    }
+
+    private void readFully(byte[] b) throws IOException {
+        if (mapping != null) {
+            if (mapping.remaining() < b.length) {
+                throw new EOFException();
+            }
+            mapping.get(b);
+        } else {
+            archive.readFully(b);
+        }
+    }
+
+    private void skipBytes(int n) throws IOException {
+        if (mapping != null) {
+            seek(mapping.position() + n);
+        } else {
+            archive.skipBytes(n);
+        }
+    }
+
     /**
      * Convert a DOS date/time field to a Date object.
      *
@@ -519,4 +683,71 @@ public class ZipFile {
         }
     }
 
+    /**
+     * InputStream over a slice of the mapping.
+     */
+    private static class MappedInputStream extends InputStream {
+        private ByteBuffer data;
+        private boolean addDummyByte = false;
+
+        MappedInputStream(ByteBuffer data) {
+            this.data = data;
+        }
+
+        public int read() throws IOException {
+            if (!data.hasRemaining()) {
+                if (addDummyByte) {
+                    addDummyByte = false;
+                    return 0;
+                }
+                return -1;
+            }
+            return data.get() & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!data.hasRemaining()) {
+                if (addDummyByte) {
+                    addDummyByte = false;
+                    b[off] = 0;
+                    return 1;
+                }
+                return -1;
+            }
+
+            if (len <= 0) {
+                return 0;
+            }
+
+            if (len > data.remaining()) {
+                len = data.remaining();
+            }
+            data.get(b, off, len);
+            return len;
+        }
+
+        public long skip(long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            if (n > data.remaining()) {
+                n = data.remaining();
+            }
+            data.position(data.position() + (int) n);
+            return n;
+        }
+
+        public int available() {
+            return data.remaining();
+        }
+
+        /**
+         * Inflater needs an extra dummy byte for nowrap - see
+         * Inflater's javadocs.
+         */
+        void addDummy() {
+            addDummyByte = true;
+        }
+    }
+
 }
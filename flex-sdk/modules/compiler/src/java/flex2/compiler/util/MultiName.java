@@ -11,10 +11,16 @@
 
 package flex2.compiler.util;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import macromedia.asc.util.NamePool;
+
 /**
+ * Names are taken from NamePool, like QName's. Single namespace sets are shared through nsMap,
+ * which is synchronized since names are created on more than one thread.
+ *
  * @author Clement Wong
  */
 public final class MultiName
@@ -22,7 +28,7 @@ public final class MultiName
 	private static final String Empty = "".intern();
 	private static final String[] EmptyNS = new String[] {Empty};
 
-	private static final Map nsMap = new HashMap();
+	private static final Map nsMap = Collections.synchronizedMap(new HashMap());
 
 	static
 	{
@@ -40,38 +46,37 @@ public final class MultiName
 		if (index == -1)
 		{
 			namespaceURI = EmptyNS;
-			localPart = qname;
+			localPart = NamePool.intern(qname);
 		}
 		else
 		{
-			String ns = qname.substring(0, index);
-			String[] nsSet = (String[]) nsMap.get(ns);
-			if (nsSet == null)
-			{
-				nsSet = new String[] {ns};
-				nsMap.put(ns, nsSet);
-			}
-			namespaceURI = nsSet;
-			localPart = qname.substring(index + 1);
+			namespaceURI = namespaceSet(qname.substring(0, index));
+			localPart = NamePool.intern(qname.substring(index + 1));
 		}
 	}
 
 	public MultiName(final String namespaceURI, final String localPart)
 	{
-		String[] nsSet = (String[]) nsMap.get(namespaceURI);
-		if (nsSet == null)
-		{
-			nsSet = new String[] {namespaceURI};
-			nsMap.put(namespaceURI, nsSet);
-		}
-		this.namespaceURI = nsSet;
-		this.localPart = localPart;
+		this.namespaceURI = namespaceSet(namespaceURI);
+		this.localPart = NamePool.intern(localPart);
 	}
 
 	public MultiName(final String[] namespaceURI, final String localPart)
 	{
 		this.namespaceURI = namespaceURI;
-		this.localPart = localPart;
+		this.localPart = NamePool.intern(localPart);
+	}
+
+	private static String[] namespaceSet(String namespaceURI)
+	{
+		String[] nsSet = (String[]) nsMap.get(namespaceURI);
+		if (nsSet == null)
+		{
+			// C: two threads may both get here; the loser's set is still a valid one
+			nsSet = new String[] {NamePool.intern(namespaceURI)};
+			nsMap.put(nsSet[0], nsSet);
+		}
+		return nsSet;
 	}
 
 	public String[] namespaceURI;
@@ -12,8 +12,12 @@
 package flex2.compiler.util;
 
 import flex2.compiler.SymbolTable;
+import macromedia.asc.util.NamePool;
 
 /**
+ * The namespace and the local part are taken from NamePool, so equal names share their
+ * Strings and the hash code is computed once, up front.
+ *
  * @author Clement Wong
  */
 public final class QName
@@ -31,21 +35,23 @@ public final class QName
 		if (index == -1)
 		{
 			namespaceURI = DEFAULT_NAMESPACE;
-			localPart = qname;
+			localPart = NamePool.intern(qname);
 		}
 		else
 		{
-			namespaceURI = qname.substring(0, index);
-			localPart = qname.substring(index + 1);
+			namespaceURI = NamePool.intern(qname.substring(0, index));
+			localPart = NamePool.intern(qname.substring(index + 1));
 		}
 		fullName = qname;
+		hash = hash(namespaceURI, localPart);
 	}
 
 	public QName(final String namespaceURI, final String localPart)
 	{
 		assert namespaceURI != null : "Null namespace";
-		this.namespaceURI = namespaceURI;
-		this.localPart = localPart;
+		this.namespaceURI = NamePool.intern(namespaceURI);
+		this.localPart = NamePool.intern(localPart);
+		hash = hash(this.namespaceURI, this.localPart);
 	}
 
     public QName(final String namespaceURI, final String localPart, final String preferredPrefix)
@@ -61,12 +67,14 @@ public final class QName
 		localPart = qName.localPart;
 		fullName = qName.fullName;
 		preferredPrefix = qName.preferredPrefix;
+		hash = qName.hash;
 	}
 
 	private String namespaceURI;
 	private String localPart;
 	private String fullName;
 	private String preferredPrefix;
+	private int hash;
 
 	public String getNamespace()
 	{
@@ -76,7 +84,9 @@ public final class QName
 	public void setNamespace(String namespaceURI)
 	{
 		assert namespaceURI != null : "Null namespace";
-		this.namespaceURI = namespaceURI;
+		this.namespaceURI = NamePool.intern(namespaceURI);
+		fullName = null;
+		hash = hash(this.namespaceURI, localPart);
 	}
 
 	public String getLocalPart()
@@ -86,7 +96,22 @@ public final class QName
 
 	public void setLocalPart(String localPart)
 	{
+		this.localPart = NamePool.intern(localPart);
+		fullName = null;
+		hash = hash(namespaceURI, this.localPart);
+	}
+
+	/**
+	 * Points this QName at another name without pooling the Strings. QNameMap uses it for
+	 * its lookup key, which never ends up in a map.
+	 */
+	void set(String namespaceURI, String localPart)
+	{
+		assert namespaceURI != null : "Null namespace";
+		this.namespaceURI = namespaceURI;
 		this.localPart = localPart;
+		fullName = null;
+		hash = hash(namespaceURI, localPart);
 	}
 
     public String getPreferredPrefix()
@@ -98,7 +123,8 @@ public final class QName
 	{
 		assert namespaceURI != null : "Null namespace";
 
-		boolean result = this.namespaceURI.equals(namespaceURI) && this.localPart.equals(localPart);
+		// C: pooled names are the same String, so equals() returns on its == check
+		boolean result = this.localPart.equals(localPart) && this.namespaceURI.equals(namespaceURI);
 
 		return result;
 	}
@@ -108,7 +134,7 @@ public final class QName
 		if (obj instanceof QName)
 		{
 			QName qName = (QName) obj;
-			return equals(qName.namespaceURI, qName.localPart);
+			return hash == qName.hash && equals(qName.namespaceURI, qName.localPart);
 		}
 		/*
 		else if (obj instanceof MultiName)
@@ -126,6 +152,16 @@ public final class QName
 
 	public int hashCode()
 	{
+		return hash;
+	}
+
+	private static int hash(String namespaceURI, String localPart)
+	{
+		if (localPart == null)
+		{
+			return 0;
+		}
+
 		int result;
 
 		if (namespaceURI.length() == 0)
@@ -34,15 +34,13 @@ public class QNameMap extends HashMap
 
 	public boolean containsKey(String ns, String name)
 	{
-		key.setNamespace(ns);
-		key.setLocalPart(name);
+		key.set(ns, name);
 		return containsKey(key);
 	}
 
 	public Object get(String ns, String name)
 	{
-		key.setNamespace(ns);
-		key.setLocalPart(name);
+		key.set(ns, name);
 		return get(key);
 	}
 
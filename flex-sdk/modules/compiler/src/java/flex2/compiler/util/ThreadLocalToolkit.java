@@ -522,4 +522,59 @@ public final class ThreadLocalToolkit
     {
     	return (CompilerControl) compilerControl.get();
     }
+
+    // Worker threads...
+
+    /**
+     * Captures the toolkit state of the current thread so that it can be installed on worker
+     * threads. The logger, benchmark and progress meter are not carried over; workers set up
+     * their own logger per task. The resolved path cache is copied, not shared.
+     */
+    public static Snapshot snapshot()
+    {
+        return new Snapshot();
+    }
+
+    public static final class Snapshot
+    {
+        private Snapshot()
+        {
+            localizationManager = localization.get();
+            pathResolver = resolver.get();
+            Map resolvedMap = (Map) resolved.get();
+            resolvedPaths = (resolvedMap != null) ? new HashMap(resolvedMap) : null;
+            mappings = mimeMappings.get();
+            control = compilerControl.get();
+        }
+
+        private Object localizationManager, pathResolver, mappings, control;
+        private Map resolvedPaths;
+
+        public void apply()
+        {
+            logger.set(null);
+            localization.set(localizationManager);
+            resolver.set(pathResolver);
+            resolved.set(resolvedPaths != null ? new HashMap(resolvedPaths) : null);
+            stopWatch.set(null);
+            mimeMappings.set(mappings);
+            progressMeter.set(null);
+            compilerControl.set(control);
+        }
+    }
+
+    /**
+     * Clears all toolkit state of the current thread.
+     */
+    public static void clear()
+    {
+        logger.set(null);
+        localization.set(null);
+        resolver.set(null);
+        resolved.set(null);
+        stopWatch.set(null);
+        mimeMappings.set(null);
+        progressMeter.set(null);
+        compilerControl.set(null);
+    }
 }
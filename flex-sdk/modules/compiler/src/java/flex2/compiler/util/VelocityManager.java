@@ -119,9 +119,11 @@ public class VelocityManager
 	}
 
 	/**
-	 * Look up the VelocityEngine instance configured with the given libs string
+	 * Look up the VelocityEngine instance configured with the given libs string.
+	 * Compiles on several threads share the engines, so this and getTemplate()
+	 * lock the class.
 	 */
-	private static final VelocityEngine getEngine(String lib)
+	private static final synchronized VelocityEngine getEngine(String lib)
 	{
 		String libKey = lib == null ? "" : lib;
 		VelocityEngine ve = (VelocityEngine) engines.get(libKey);
@@ -137,7 +139,7 @@ public class VelocityManager
 		return getTemplate(path, (String) null);
 	}
 
-	public static Template getTemplate(String path, String lib)
+	public static synchronized Template getTemplate(String path, String lib)
 	{
 		VelocityEngine ve = getEngine(lib);
 		String templateKey = path + (lib == null ? "" : lib);
@@ -225,7 +227,11 @@ public class VelocityManager
 
 		public static String getTimeStamp()
 		{
-			return dateTimeFormat.format(new Date(Now()));
+			// SimpleDateFormat isn't thread safe.
+			synchronized (dateTimeFormat)
+			{
+				return dateTimeFormat.format(new Date(Now()));
+			}
 		}
 
 		/**
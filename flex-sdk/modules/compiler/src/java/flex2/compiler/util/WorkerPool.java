@@ -0,0 +1,193 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.compiler.util;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A fixed number of daemon threads that run batches of Runnables. run() blocks until every
+ * task in the batch has finished. Before a worker picks up the first task of a batch, it installs
+ * the ThreadLocalToolkit state of the thread that submitted the batch.
+ *
+ * Only one batch runs at a time.
+ */
+public final class WorkerPool
+{
+	public WorkerPool(int threads)
+	{
+		queue = new LinkedList();
+		workers = new Thread[threads];
+
+		for (int i = 0; i < threads; i++)
+		{
+			workers[i] = new Thread(new Worker(), "flex2.compiler.worker." + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	private final LinkedList queue; // LinkedList<Runnable>
+	private final Thread[] workers;
+	private ThreadLocalToolkit.Snapshot snapshot;
+	private int batch, pending;
+	private Throwable failure;
+	private boolean shutdown;
+
+	public int size()
+	{
+		return workers.length;
+	}
+
+	/**
+	 * Runs the tasks and waits for all of them to finish. If a task throws, the first
+	 * exception is rethrown here after the rest of the batch has completed.
+	 */
+	public synchronized void run(List tasks) // List<Runnable>
+	{
+		if (tasks.size() == 0)
+		{
+			return;
+		}
+
+		if (shutdown)
+		{
+			throw new IllegalStateException("WorkerPool has been shut down");
+		}
+
+		snapshot = ThreadLocalToolkit.snapshot();
+		batch++;
+		failure = null;
+		pending = tasks.size();
+		queue.addAll(tasks);
+		notifyAll();
+
+		boolean interrupted = false;
+		while (pending > 0)
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException ex)
+			{
+				interrupted = true;
+			}
+		}
+
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		Throwable t = failure;
+		failure = null;
+		snapshot = null;
+
+		if (t instanceof RuntimeException)
+		{
+			throw (RuntimeException) t;
+		}
+		else if (t instanceof Error)
+		{
+			throw (Error) t;
+		}
+		else if (t != null)
+		{
+			throw new RuntimeException(t);
+		}
+	}
+
+	public synchronized void shutdown()
+	{
+		shutdown = true;
+		queue.clear();
+		notifyAll();
+	}
+
+	private class Worker implements Runnable
+	{
+		public void run()
+		{
+			int applied = 0;
+
+			try
+			{
+				while (true)
+				{
+					Runnable task;
+					ThreadLocalToolkit.Snapshot s;
+					int b;
+
+					synchronized (WorkerPool.this)
+					{
+						while (queue.isEmpty() && !shutdown)
+						{
+							try
+							{
+								WorkerPool.this.wait();
+							}
+							catch (InterruptedException ex)
+							{
+								// keep waiting until shutdown()
+							}
+						}
+
+						if (shutdown)
+						{
+							return;
+						}
+
+						task = (Runnable) queue.removeFirst();
+						s = snapshot;
+						b = batch;
+					}
+
+					if (b != applied)
+					{
+						s.apply();
+						applied = b;
+					}
+
+					try
+					{
+						task.run();
+					}
+					catch (Throwable t)
+					{
+						synchronized (WorkerPool.this)
+						{
+							if (failure == null)
+							{
+								failure = t;
+							}
+						}
+					}
+					finally
+					{
+						synchronized (WorkerPool.this)
+						{
+							if (--pending == 0)
+							{
+								WorkerPool.this.notifyAll();
+							}
+						}
+					}
+				}
+			}
+			finally
+			{
+				ThreadLocalToolkit.clear();
+			}
+		}
+	}
+}
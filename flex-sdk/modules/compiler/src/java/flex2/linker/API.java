@@ -35,8 +35,21 @@ public final class API
 	 */
 	public static Movie link(List units, PostLink postLink, Configuration configuration)
 	    throws LinkerException
+	{
+		return link(units, postLink, configuration, null);
+	}
+
+	/**
+	 * Put the compilation units together, reusing what the last link of the same target did.
+	 *
+	 * @param linkCache the cache of the target, or null
+	 * @throws LinkerException
+	 */
+	public static Movie link(List units, PostLink postLink, Configuration configuration, LinkCache linkCache)
+	    throws LinkerException
 	{
 	    FlexMovie movie = new FlexMovie( configuration );
+	    movie.setLinkCache( linkCache );
 	    movie.topLevelClass = FlexMovie.formatSymbolClassName( configuration.getRootClassName() );
 	    movie.generate( units );
 		if (ThreadLocalToolkit.getBenchmark() != null)
@@ -41,6 +41,11 @@ public class FlexMovie extends SimpleMovie
      */
 	private Set metadata;
     
+    /**
+     * What the last link of the same target did, or null.
+     */
+    private LinkCache linkCache;
+
     public FlexMovie( Configuration configuration )
     {
         super( configuration );
@@ -294,6 +299,20 @@ public class FlexMovie extends SimpleMovie
 	    }
 	}
 
+    /**
+     * Lets PostLink reuse the frames it merged in the last link of the same target. A cache
+     * must not be used by two links at once.
+     */
+    public void setLinkCache( LinkCache linkCache )
+    {
+        this.linkCache = linkCache;
+    }
+
+    public LinkCache getLinkCache()
+    {
+        return linkCache;
+    }
+
     /**
      * Get the set of metadata names that should be preserved when optimizing this movie. 
      *
@@ -0,0 +1,143 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.linker;
+
+import flash.swf.tags.DoABC;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the last link of a target did, so that the next link of the same target, after an
+ * incremental compile, can skip the work whose inputs haven't changed.
+ *
+ * The DoABC tags that PostLink merges are remembered by a digest of their inputs, so a frame
+ * whose units didn't change isn't decoded and encoded again. The dependency walk isn't kept:
+ * telling whether it would come out the same takes about as long as walking again.
+ *
+ * A LinkCache belongs to one target and must not be shared by links that run at the same time.
+ */
+public class LinkCache
+{
+	private Map merges = new HashMap(); // Map<String, Merge>, keyed by the name of the merged tag
+	private Map nextMerges = new HashMap(); // Map<String, Merge>
+
+	/**
+	 * Returns the tag that was merged from the same tags last time, or null.
+	 *
+	 * @param doABCs List<DoABC>
+	 * @param options anything else that the merge depends on
+	 */
+	public DoABC getMerge( String name, List doABCs, String options )
+	{
+		byte[] digest = digest( doABCs, options );
+		Merge m = (Merge) merges.get( name );
+
+		Merge next = new Merge();
+		next.digest = digest;
+		nextMerges.put( name, next );
+
+		if (m != null && m.tag != null && Arrays.equals( m.digest, digest ))
+		{
+			next.tag = m.tag;
+			return copy( m.tag );
+		}
+		return null;
+	}
+
+	/**
+	 * Remembers the tag that getMerge() couldn't find.
+	 */
+	public void putMerge( String name, DoABC tag )
+	{
+		Merge m = (Merge) nextMerges.get( name );
+		if (m != null)
+		{
+			m.tag = copy( tag );
+		}
+	}
+
+	/**
+	 * Forgets the merged tags that the link that just finished didn't ask for.
+	 */
+	public void finishMerges()
+	{
+		merges = nextMerges;
+		nextMerges = new HashMap();
+	}
+
+	/**
+	 * Forgets everything.
+	 */
+	public void clear()
+	{
+		merges = new HashMap();
+		nextMerges = new HashMap();
+	}
+
+	private static DoABC copy( DoABC tag )
+	{
+		DoABC t = new DoABC( tag.name, tag.flag );
+		t.abc = tag.abc;
+		return t;
+	}
+
+	private static byte[] digest( List doABCs, String options )
+	{
+		MessageDigest md;
+		try
+		{
+			md = MessageDigest.getInstance( "MD5" );
+		}
+		catch (NoSuchAlgorithmException ex)
+		{
+			throw new RuntimeException( ex );
+		}
+
+		update( md, options );
+		for (Iterator it = doABCs.iterator(); it.hasNext();)
+		{
+			DoABC tag = (DoABC) it.next();
+			update( md, tag.name );
+			md.update( (byte) tag.flag );
+			update( md, Integer.toString( tag.abc.length ) );
+			md.update( tag.abc );
+		}
+		return md.digest();
+	}
+
+	private static void update( MessageDigest md, String s )
+	{
+		if (s != null)
+		{
+			for (int i = 0, length = s.length(); i < length; i++)
+			{
+				char c = s.charAt( i );
+				md.update( (byte) (c >> 8) );
+				md.update( (byte) c );
+			}
+		}
+		md.update( (byte) 0 );
+		md.update( (byte) 0 );
+	}
+
+	private static class Merge
+	{
+		byte[] digest;
+		DoABC tag;
+	}
+}
@@ -181,6 +181,7 @@ public final class API extends Tool
 		Movie movie = new Movie();
 		TagDecoder tagDecoder = new TagDecoder(in);
 		MovieDecoder movieDecoder = new MovieDecoder(movie);
+		movieDecoder.setDecodeBitmaps(false);
 		tagDecoder.parse(movieDecoder);
 
 		// optimize
@@ -236,8 +237,7 @@ public final class API extends Tool
 		// signature generation should occur before other extensions can touch the syntax tree
         if (!compilerConfig.getDisableIncrementalOptimizations())
         {
-            SignatureExtension.init(compilerConfig);
-		    asc.addCompilerExtension(SignatureExtension.getInstance());
+		    asc.addCompilerExtension(new SignatureExtension(compilerConfig));
         }
 		final String gendir = (compilerConfig.keepGeneratedActionScript()
 		                            ? compilerConfig.getGeneratedDirectory()
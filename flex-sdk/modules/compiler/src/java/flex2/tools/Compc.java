@@ -128,6 +128,7 @@ public class Compc extends Tool
             SwcCache cache = new SwcCache();
 	        // lazy read should only be set by mxmlc/compc
 	        cache.setLazyRead(true);
+	        cache.setIndexDirectory(compilerConfig.getSwcIndexDirectory());
 	        // for compc the theme and include-libraries values have been purposely not passed in below.
 	        // This is done because the theme attribute doesn't make sense and the include-libraries value
 	        // actually causes issues when the default value is used with external libraries.
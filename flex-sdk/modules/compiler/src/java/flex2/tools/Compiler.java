@@ -143,6 +143,7 @@ public final class Compiler extends Tool
             SwcCache cache = new SwcCache();
 	        // lazy read should only be set by mxmlc/compc
 	        cache.setLazyRead(true);
+	        cache.setIndexDirectory(compilerConfig.getSwcIndexDirectory());
 	        
             swcContext.load( compilerConfig.getLibraryPath(),
                              Configuration.getAllExcludedLibraries(compilerConfig, configuration),
@@ -280,7 +281,8 @@ public final class Compiler extends Tool
                         configuration.getLicensesConfiguration().getLicenseMap(), 
                         sources);
 
-                OutputStream swfOut = new BufferedOutputStream(new FileOutputStream(outputFile));
+                FileOutputStream fileOut = new FileOutputStream(outputFile);
+                OutputStream swfOut = new BufferedOutputStream(fileOut);
 
                 // link
                 if (createProjector)
@@ -301,7 +303,7 @@ public final class Compiler extends Tool
                     }
                     else
                     {
-                        flex2.compiler.API.encode(movie, swfOut);
+                        flex2.compiler.API.encode(movie, fileOut.getChannel());
                     }
                 }
                 
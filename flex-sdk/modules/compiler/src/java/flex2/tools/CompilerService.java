@@ -0,0 +1,137 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.tools;
+
+import flash.localization.LocalizationManager;
+import flash.localization.ResourceBundleLocalizer;
+import flash.localization.XLRLocalizer;
+import flex2.compiler.swc.SwcCache;
+import flex2.compiler.util.ThreadLocalToolkit;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiles mxmlc and compc targets in a long running JVM, keeping what the compiler knows
+ * about each target in memory between compiles, the way fcsh does. The Flex Ant tasks use it
+ * to compile in-process without starting from scratch on every task.
+ *
+ * Targets are identified by a key chosen by the caller, usually the output file. A target
+ * compiled again with the same arguments is compiled incrementally; with other arguments, it's
+ * compiled from scratch. All the targets load SWCs through one SwcCache, so SWCs that several
+ * targets link against are read once, and SWCs exported by compc are picked up by the targets
+ * that use them.
+ *
+ * Different targets may be compiled on different threads at the same time. Compiles of the
+ * same target wait for each other. Messages go to the console logger of the calling thread,
+ * and ThreadLocalToolkit.errorCount() tells whether the compile succeeded, like it does after
+ * Compiler.mxmlc() and Compc.compc().
+ */
+public final class CompilerService
+{
+	private static final Map targets = new HashMap(); // Map<String, Entry>
+	private static SwcCache swcCache = new SwcCache();
+
+	private CompilerService()
+	{
+	}
+
+	/**
+	 * Compiles and links an application, like mxmlc.
+	 */
+	public static void mxmlc(String key, String[] args)
+	{
+		compile("mxmlc:" + key, args, false);
+	}
+
+	/**
+	 * Compiles a library and exports the SWC, like compc.
+	 */
+	public static void compc(String key, String[] args)
+	{
+		compile("compc:" + key, args, true);
+	}
+
+	/**
+	 * Forgets all targets and cached SWCs.
+	 */
+	public static void clear()
+	{
+		synchronized (targets)
+		{
+			targets.clear();
+			swcCache = new SwcCache();
+		}
+	}
+
+	private static void compile(String key, String[] args, boolean library)
+	{
+		flex2.compiler.API.useAS3();
+
+		LocalizationManager l10n = new LocalizationManager();
+		l10n.addLocalizer(new XLRLocalizer());
+		l10n.addLocalizer(new ResourceBundleLocalizer());
+		ThreadLocalToolkit.setLocalizationManager(l10n);
+
+		flex2.compiler.API.useConsoleLogger();
+
+		Entry e;
+		SwcCache cache;
+		synchronized (targets)
+		{
+			e = (Entry) targets.get(key);
+			if (e == null)
+			{
+				e = new Entry();
+				targets.put(key, e);
+			}
+			cache = swcCache;
+		}
+
+		synchronized (e)
+		{
+			Target s = e.target;
+
+			if (s != null && s.swcCache == cache && Arrays.equals(s.args, args))
+			{
+				SimpleShell.compile(s);
+				if (ThreadLocalToolkit.errorCount() == 0)
+				{
+					SimpleShell.link(s, true);
+				}
+			}
+			else
+			{
+				s = library ? new SwcTarget() : new Target();
+				s.swcCache = cache;
+
+				if (library)
+				{
+					SimpleShell.compc(args, (SwcTarget) s);
+				}
+				else
+				{
+					SimpleShell.mxmlc(args, s);
+				}
+
+				// C: only a target that built cleanly is worth recompiling incrementally.
+				e.target = (ThreadLocalToolkit.errorCount() == 0) ? s : null;
+			}
+		}
+	}
+
+	private static final class Entry
+	{
+		Target target;
+	}
+}
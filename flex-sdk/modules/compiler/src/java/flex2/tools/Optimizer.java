@@ -12,9 +12,9 @@
 package flex2.tools;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
@@ -24,9 +24,7 @@ import flash.localization.LocalizationManager;
 import flash.localization.ResourceBundleLocalizer;
 import flash.swf.Movie;
 import flash.swf.MovieDecoder;
-import flash.swf.MovieEncoder;
 import flash.swf.TagDecoder;
-import flash.swf.TagEncoder;
 import flex2.compiler.common.ConfigurationException;
 import flex2.compiler.common.DefaultsConfigurator;
 import flex2.compiler.config.ConfigurationBuffer;
@@ -98,21 +96,24 @@ public class Optimizer
         		Movie movie = new Movie();
         		TagDecoder tagDecoder = new TagDecoder(in);
         		MovieDecoder movieDecoder = new MovieDecoder(movie);
+        		movieDecoder.setDecodeBitmaps(false);
         		tagDecoder.parse(movieDecoder);
 
         		if (movie.version > 0) {
             		// optimize
             		flex2.tools.API.optimize(movie, configuration);
 
-                    //TODO PERFORMANCE: A lot of unnecessary recopying and buffering here
             		// encode
-            		TagEncoder handler = new TagEncoder();
-            		MovieEncoder encoder = new MovieEncoder(handler);
-            		encoder.export(movie);
-            		ByteArrayOutputStream out = new ByteArrayOutputStream();
-            		handler.writeTo(out);
-            		
-            		FileUtil.writeBinaryFile(output, out.toByteArray());
+            		FileOutputStream out = new FileOutputStream(FileUtil.openFile(output, true));
+            		try
+            		{
+            			flex2.compiler.API.encode(movie, out.getChannel());
+            		}
+            		finally
+            		{
+            			out.close();
+            		}
+
             		System.out.println(output + " (" + outputFile.length() + " bytes)");        			
         		}
         		else 
@@ -18,10 +18,12 @@ import flex2.compiler.mxml.lang.StandardDefs;
 import flex2.linker.Configuration;
 import flex2.linker.ConsoleApplication;
 import flex2.linker.FlexMovie;
+import flex2.linker.LinkCache;
 import macromedia.abc.BytecodeBuffer;
 import macromedia.abc.ConstantPool;
 import macromedia.abc.Decoder;
 import macromedia.abc.Encoder;
+import macromedia.abc.Tasks;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -104,13 +106,15 @@ public class PostLink implements flex2.linker.PostLink
 		List doABCs = new ArrayList(1);
 		doABCs.add(null);
 
+		LinkCache linkCache = (movie instanceof FlexMovie) ? ((FlexMovie) movie).getLinkCache() : null;
+
 		// abc merge... frame by frame... if merging fails on one of the frames, it will continue.
 		for (int i = 0, frameSize = movie.frames.size(); i < frameSize; i++)
 		{
 			Frame f = (Frame) movie.frames.get(i);
 			if (optimize)
 			{
-				merge(f.doABCs, movie.enableDebugger != null || keepDebugOpcodes, optimize, "frame" + (i + 1));
+				merge(f.doABCs, movie.enableDebugger != null || keepDebugOpcodes, optimize, "frame" + (i + 1), linkCache);
 			}
 			else
 			{
@@ -119,11 +123,62 @@ public class PostLink implements flex2.linker.PostLink
 					DoABC abc = (DoABC) f.doABCs.get(j);
 
 					doABCs.set(0, abc);
-					merge(doABCs, movie.enableDebugger != null || keepDebugOpcodes, optimize, abc.name);
+					merge(doABCs, movie.enableDebugger != null || keepDebugOpcodes, optimize, abc.name, linkCache);
 					f.doABCs.set(j, doABCs.get(0));
 				}
 			}
 		}
+
+		if (linkCache != null)
+		{
+			linkCache.finishMerges();
+		}
+	}
+
+	/**
+	 * Merges the tags, or takes the tag that was merged from the same tags by the last link.
+	 */
+	private void merge(List doABCs, boolean keepDebugOpcodes, boolean runPeephole, String name, LinkCache linkCache)
+	{
+		if (linkCache == null || doABCs.size() == 0)
+		{
+			merge(doABCs, keepDebugOpcodes, runPeephole, name);
+			return;
+		}
+
+		StringBuffer options = new StringBuffer();
+		options.append(keepDebugOpcodes).append(' ').append(runPeephole);
+		for (int m = 0; as3metadata != null && m < as3metadata.length; m++)
+		{
+			options.append(' ').append(as3metadata[m]);
+		}
+
+		DoABC doABC = linkCache.getMerge(name, doABCs, options.toString());
+		if (doABC != null)
+		{
+			doABCs.clear();
+			doABCs.add(doABC);
+			return;
+		}
+
+		Object first = doABCs.get(0);
+		merge(doABCs, keepDebugOpcodes, runPeephole, name);
+
+		// C: merge() leaves the tags alone when it fails, so only a new tag is worth keeping.
+		if (doABCs.size() == 1 && doABCs.get(0) != first)
+		{
+			linkCache.putMerge(name, (DoABC) doABCs.get(0));
+		}
+	}
+
+	/**
+	 * The number of threads that decode the DoABC tags of a frame and look for duplicate
+	 * constants before they're merged, 1 unless the flex.abc.merge.threads system property says
+	 * otherwise. The merged tag comes out the same either way.
+	 */
+	static int getMergeThreads()
+	{
+		return Math.max(1, Integer.getInteger("flex.abc.merge.threads", 1).intValue());
 	}
 
 	private void merge(List doABCs, boolean keepDebugOpcodes, boolean runPeephole, String name)
@@ -147,35 +202,37 @@ public class PostLink implements flex2.linker.PostLink
 			flag = 1;
 		}
 
-		Decoder[] decoders = new Decoder[abcSize];
-		ConstantPool[] pools = new ConstantPool[abcSize];
+		final Decoder[] decoders = new Decoder[abcSize];
+		final ConstantPool[] pools = new ConstantPool[abcSize];
+		final List tags = doABCs; // List<DoABC>
+		int threads = getMergeThreads();
 
-		// create decoders...
-		for (int j = 0; j < abcSize; j++)
+		// create decoders... they don't share anything, so the tags can be decoded in parallel,
+		// and their constants hashed while they're at hand. that only moves the hashing; the
+		// merge below still waits for every decoder, because each section of the merged pool
+		// starts with its total count.
+		try
 		{
-			DoABC tag = (DoABC) doABCs.get(j);
-			BytecodeBuffer in = new BytecodeBuffer(tag.abc);
-
-			try
-			{
-				// ThreadLocalToolkit.logInfo(tag.name);
-				decoders[j] = new Decoder(in);
-				majorVersion = decoders[j].majorVersion;
-				minorVersion = decoders[j].minorVersion;
-				pools[j] = decoders[j].constantPool;
-			}
-			catch (Throwable ex)
+			new Tasks()
 			{
-				StringWriter stringWriter = new StringWriter();
-				ex.printStackTrace(new PrintWriter(stringWriter));
-				assert false : stringWriter.toString();
-				skipFrame = true;
-				break;
-			}
-		}
+				protected void run(int j) throws Exception
+				{
+					DoABC tag = (DoABC) tags.get(j);
+					// ThreadLocalToolkit.logInfo(tag.name);
+					decoders[j] = new Decoder(new BytecodeBuffer(tag.abc));
+					pools[j] = decoders[j].constantPool;
+					pools[j].hashConstants();
+				}
+			}.run(abcSize, threads);
 
-		if (skipFrame)
+			majorVersion = decoders[abcSize - 1].majorVersion;
+			minorVersion = decoders[abcSize - 1].minorVersion;
+		}
+		catch (Throwable ex)
 		{
+			StringWriter stringWriter = new StringWriter();
+			ex.printStackTrace(new PrintWriter(stringWriter));
+			assert false : stringWriter.toString();
 			return;
 		}
 
@@ -183,7 +240,7 @@ public class PostLink implements flex2.linker.PostLink
 		// all the constant pools are merged here...
 		try
 		{
-			encoder.addConstantPools(pools);
+			encoder.addConstantPools(pools, threads);
 			if (!keepDebugOpcodes)
 			{
 				encoder.disableDebugging();
@@ -17,6 +17,7 @@ import flex2.compiler.*;
 import flex2.compiler.common.CompilerConfiguration;
 import flex2.compiler.common.Configuration;
 import flex2.compiler.common.DefaultsConfigurator;
+import flex2.compiler.common.FontsConfiguration;
 import flex2.compiler.config.ConfigurationBuffer;
 import flex2.compiler.config.ConfigurationException;
 import flex2.compiler.i18n.I18nUtils;
@@ -38,6 +39,9 @@ import java.io.*;
 import java.util.*;
 
 /**
+ * fcsh. Reads commands from stdin, or with -daemon [port], from clients of a
+ * local socket (see SimpleShellServer).
+ *
  * @author Clement Wong
  */
 public class SimpleShell extends Tool
@@ -58,6 +62,13 @@ public class SimpleShell extends Tool
 		localizationManager.addLocalizer( new ResourceBundleLocalizer() );
 		ThreadLocalToolkit.setLocalizationManager( localizationManager );
 
+		if (args.length > 0 && args[0].equals("-daemon"))
+		{
+			intro();
+			SimpleShellServer.serve(args.length > 1 ? Integer.parseInt(args[1]) : 0, localizationManager);
+			return;
+		}
+
 		intro();
 		prompt();
 		while ((s = r.readLine()) != null)
@@ -95,6 +106,36 @@ public class SimpleShell extends Tool
 	private static Map targets;
 	private static Map processes;
 
+	/**
+	 * Runs a command for SimpleShellServer. Commands from different clients run one at a time.
+	 *
+	 * @return the id of the target the command used, or null
+	 */
+	static synchronized String execute(String s)
+	{
+		String id = null;
+		StringTokenizer t = new StringTokenizer(s);
+		if (t.countTokens() == 2)
+		{
+			t.nextToken();
+			id = t.nextToken();
+			if (!targets.containsKey(id))
+			{
+				id = null;
+			}
+		}
+
+		int next = counter;
+		process(s);
+
+		return (counter != next) ? Integer.toString(next) : id;
+	}
+
+	static synchronized boolean isExiting()
+	{
+		return exit;
+	}
+
 	private static void process(String s)
 	{
 		LocalizationManager l10n = ThreadLocalToolkit.getLocalizationManager();
@@ -339,7 +380,11 @@ public class SimpleShell extends Tool
 
 	private static void compile(String id)
 	{
-		Target s = (Target) targets.get(id);
+		compile((Target) targets.get(id));
+	}
+
+	static void compile(Target s)
+	{
 		if (s instanceof SwcTarget)
 		{
 			compile_compc((SwcTarget) s);
@@ -400,6 +445,7 @@ public class SimpleShell extends Tool
             // load SWCs
 			CompilerSwcContext swcContext = new CompilerSwcContext(false, true,
 																   configuration.getCompatibilityVersionString());
+			swcContext.setMiscData(s.swcMiscData);
 	        // for compc the theme and include-libraries values have been purposely not passed in below.
 	        // This is done because the theme attribute doesn't make sense and the include-libraries value
 	        // actually causes issues when the default value is used with external libraries.
@@ -430,6 +476,12 @@ public class SimpleShell extends Tool
 				s.resources = new ResourceContainer();
 				recompile = true;
 			}
+			else if (s.configuration != null)
+			{
+				// C: same configuration, so the fonts loaded by the last compile can be used again.
+				FontsConfiguration fontsConfig = s.configuration.getCompilerConfiguration().getFontsConfiguration();
+				configuration.getCompilerConfiguration().getFontsConfiguration().setTopLevelManager(fontsConfig.getTopLevelManager());
+			}
 
 			// validate CompilationUnits in FileSpec and SourcePath
 			if (flex2.compiler.API.validateCompilationUnits(s.fileSpec, s.sourceList, s.sourcePath, s.bundlePath, s.resources,
@@ -544,6 +596,7 @@ public class SimpleShell extends Tool
 
 			CompilerSwcContext swcContext = new CompilerSwcContext(false, true,
 																   configuration.getCompatibilityVersionString());
+			swcContext.setMiscData(s.swcMiscData);
 			swcContext.load( compilerConfig.getLibraryPath(),
 							 Configuration.getAllExcludedLibraries(compilerConfig, configuration),         
                              compilerConfig.getThemeFiles(),
@@ -572,6 +625,12 @@ public class SimpleShell extends Tool
 				s.resources = new ResourceContainer();
 				recompile = true;
 			}
+			else if (s.configuration != null)
+			{
+				// C: same configuration, so the fonts loaded by the last compile can be used again.
+				FontsConfiguration fontsConfig = s.configuration.getCompilerConfiguration().getFontsConfiguration();
+				configuration.getCompilerConfiguration().getFontsConfiguration().setTopLevelManager(fontsConfig.getTopLevelManager());
+			}
 
 			// validate CompilationUnits in FileSpec and SourcePath
 			if (flex2.compiler.API.validateCompilationUnits(s.fileSpec, s.sourceList, s.sourcePath, s.bundlePath, s.resources,
@@ -648,7 +707,11 @@ public class SimpleShell extends Tool
 
 	private static void link(String target, boolean optimize)
 	{
-		Target s = (Target) targets.get(target);
+		link((Target) targets.get(target), optimize);
+	}
+
+	static void link(Target s, boolean optimize)
+	{
 		if (s instanceof SwcTarget)
 		{
 			link_compc((SwcTarget) s);
@@ -735,11 +798,12 @@ public class SimpleShell extends Tool
 	            else
 	            {
 	    			// link
-	    			s.movie = flex2.linker.API.link(s.units, optimize ? new PostLink(s.configuration) : null, s.configuration);
+	    			s.movie = flex2.linker.API.link(s.units, optimize ? new PostLink(s.configuration) : null, s.configuration, s.linkCache);
 
 	                // output SWF
 	    			File file = FileUtil.openFile(s.outputName, true);
-	    			swfOut = new BufferedOutputStream(new FileOutputStream(file));
+	    			FileOutputStream fileOut = new FileOutputStream(file);
+	    			swfOut = new BufferedOutputStream(fileOut);
 	    			
 	                if (projector != null)
 	                {
@@ -747,7 +811,7 @@ public class SimpleShell extends Tool
 	                }
 	                else
 	                {
-	                    flex2.compiler.API.encode(s.movie, swfOut);
+	                    flex2.compiler.API.encode(s.movie, fileOut.getChannel());
 	                }
 
 	    			swfOut.flush();
@@ -780,12 +844,29 @@ public class SimpleShell extends Tool
 	}
 
 	private static void mxmlc(String[] args, int id)
+	{
+		Target s = new Target();
+		s.id = id;
+		s.swcCache = new SwcCache();
+
+		mxmlc(args, s);
+
+		// C: keep the target once its configuration is in, even if the compile failed.
+		if (s.args != null)
+		{
+			targets.put("" + id, s);
+		}
+	}
+
+	/**
+	 * Does a full compile and link of s, loading SWCs through s.swcCache.
+	 * s.args is only set if the configuration could be processed.
+	 */
+	static void mxmlc(String[] args, Target s)
 	{
 		LocalizationManager l10n = ThreadLocalToolkit.getLocalizationManager();
 
         OutputStream swfOut = null;
-		Target s = new Target();
-		s.id = id;
 
 		try
 		{
@@ -812,7 +893,6 @@ public class SimpleShell extends Tool
 			}
 
 			String target = configuration.getTargetFile();
-			targets.put("" + id, s);
 			s.args = args;
 
 			// make sure targetFile abstract pathname is an absolute path...
@@ -882,9 +962,11 @@ public class SimpleShell extends Tool
 			}
 
 			// load SWCs
-			s.swcCache = new SwcCache();
+			s.swcCache.setMaxSize(compilerConfig.getSwcCacheMaxBytes());
+			s.swcMiscData.setMaxSize(compilerConfig.getSwcUnitCacheMaxBytes());
 			CompilerSwcContext swcContext = new CompilerSwcContext(true, true,
 																   configuration.getCompatibilityVersionString());
+			swcContext.setMiscData(s.swcMiscData);
 			swcContext.load( compilerConfig.getLibraryPath(),
 							 Configuration.getAllExcludedLibraries(compilerConfig, configuration),
                              compilerConfig.getThemeFiles(),
@@ -948,11 +1030,12 @@ public class SimpleShell extends Tool
     			s.resources.refresh();
 
     			// link
-    			s.movie = flex2.linker.API.link(units, new PostLink(configuration), configuration);
+    			s.movie = flex2.linker.API.link(units, new PostLink(configuration), configuration, s.linkCache);
 
                 // output SWF
     			File file = FileUtil.openFile(s.outputName, true);
-    			swfOut = new BufferedOutputStream(new FileOutputStream(file));
+    			FileOutputStream fileOut = new FileOutputStream(file);
+    			swfOut = new BufferedOutputStream(fileOut);
     			
                 if (projector != null)
                 {
@@ -960,7 +1043,7 @@ public class SimpleShell extends Tool
                 }
                 else
                 {
-                    flex2.compiler.API.encode(s.movie, swfOut);
+                    flex2.compiler.API.encode(s.movie, fileOut.getChannel());
                 }
 
     			swfOut.flush();
@@ -1011,10 +1094,25 @@ public class SimpleShell extends Tool
 
 	private static void compc(String[] args, int id)
 	{
-		LocalizationManager l10n = ThreadLocalToolkit.getLocalizationManager();
-
 		SwcTarget s = new SwcTarget();
 		s.id = id;
+		s.swcCache = new SwcCache();
+
+		compc(args, s);
+
+		if (s.args != null)
+		{
+			targets.put("" + id, s);
+		}
+	}
+
+	/**
+	 * Does a full compile of s and exports the SWC, loading SWCs through s.swcCache.
+	 * s.args is only set if the configuration could be processed.
+	 */
+	static void compc(String[] args, SwcTarget s)
+	{
+		LocalizationManager l10n = ThreadLocalToolkit.getLocalizationManager();
 
 		try
 		{
@@ -1040,7 +1138,6 @@ public class SimpleShell extends Tool
 				flex2.compiler.API.disableBenchmark();
 			}
 
-			targets.put("" + id, s);
 			s.args = args;
 
 			String[] sourceMimeTypes = flex2.tools.API.getSourcePathMimeTypes();
@@ -1087,9 +1184,11 @@ public class SimpleShell extends Tool
 			}
 
             // load SWCs
-			s.swcCache = new SwcCache();
+            s.swcCache.setMaxSize(compilerConfig.getSwcCacheMaxBytes());
+            s.swcMiscData.setMaxSize(compilerConfig.getSwcUnitCacheMaxBytes());
             CompilerSwcContext swcContext = new CompilerSwcContext(true, true,
 																   configuration.getCompatibilityVersionString());
+            swcContext.setMiscData(s.swcMiscData);
 	        // for compc the theme and include-libraries values have been purposely not passed in below.
 	        // This is done because the theme attribute doesn't make sense and the include-libraries value
 	        // actually causes issues when the default value is used with external libraries.
@@ -1277,4 +1376,32 @@ public class SimpleShell extends Tool
 			super();
 		}
 	}
+
+	public static class Listening extends CompilerMessage.CompilerInfo
+	{
+		private static final long serialVersionUID = -1828160111979527026L;
+
+		public Listening(int port, String tokenFile)
+		{
+			super();
+			this.port = port;
+			this.tokenFile = tokenFile;
+		}
+
+		public final int port;
+		public final String tokenFile;
+	}
+
+	public static class UnknownCommand extends CompilerMessage.CompilerError
+	{
+		private static final long serialVersionUID = 5138471838324804350L;
+
+		public UnknownCommand(String command)
+		{
+			super();
+			this.command = command;
+		}
+
+		public final String command;
+	}
 }
@@ -0,0 +1,596 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.tools;
+
+import flash.localization.LocalizationManager;
+import flex2.compiler.ILocalizableMessage;
+import flex2.compiler.Logger;
+import flex2.compiler.util.AbstractLogger;
+import flex2.compiler.util.ThreadLocalToolkit;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+/**
+ * The daemon mode of fcsh. The targets, SWC cache and font caches of the shell stay warm
+ * for as many clients as care to connect, so build scripts don't pay for a cold JVM on every
+ * compile.
+ *
+ * Clients connect to the loopback address. The first line a client sends must be the token
+ * that the daemon wrote to ~/.fcsh/<port>.token, which only the user can read; the daemon
+ * hangs up on anyone else. After that, clients send fcsh commands, one per line, in UTF-8:
+ *
+ *   mxmlc arg1 arg2 ...
+ *   compc arg1 arg2 ...
+ *   compile id
+ *   clear [id]
+ *   info [id]
+ *   quit                   clears all targets and stops the daemon
+ *
+ * The touch, cp, mv and rm commands of the shell work too. Every command gets one line
+ * back, a JSON object:
+ *
+ *   {"command":"mxmlc","target":"1","success":true,"errors":0,"warnings":1,
+ *    "messages":[{"level":"warning","path":"/src/App.mxml","line":12,"column":4,"text":"..."}]}
+ *
+ * "target" is null when the command didn't use a target. "line" and "column" are left out
+ * when they're unknown. Up to MAX_CLIENTS clients are served at once, each on a thread of its
+ * own, but the commands run one at a time, since the shell's targets and the compiler behind
+ * them aren't thread-safe.
+ *
+ * @see SimpleShell#execute(String)
+ */
+final class SimpleShellServer
+{
+	private static final Set commands = new HashSet(Arrays.asList(new String[] {
+		"mxmlc", "compc", "compile", "clear", "info", "touch", "cp", "mv", "rm", "quit"
+	}));
+
+	/**
+	 * The most clients served at once. Further clients wait in the accept queue.
+	 */
+	private static final int MAX_CLIENTS = 8;
+
+	/**
+	 * How long a client has to send the token, in milliseconds.
+	 */
+	private static final int TOKEN_TIMEOUT = 10000;
+
+	private SimpleShellServer(ServerSocket server, byte[] token, LocalizationManager l10n)
+	{
+		this.server = server;
+		this.token = token;
+		this.l10n = l10n;
+	}
+
+	private final ServerSocket server;
+	private final byte[] token;
+	private final LocalizationManager l10n;
+	private int clients;
+
+	/**
+	 * Accepts clients until one of them sends quit.
+	 *
+	 * @param port the port to listen on; 0 picks a free one, which is printed on stdout
+	 */
+	static void serve(int port, LocalizationManager l10n) throws IOException
+	{
+		ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+
+		byte[] random = new byte[16];
+		new SecureRandom().nextBytes(random);
+		StringBuffer b = new StringBuffer(32);
+		for (int i = 0; i < random.length; i++)
+		{
+			b.append(Character.forDigit((random[i] >> 4) & 0xf, 16)).append(Character.forDigit(random[i] & 0xf, 16));
+		}
+		String token = b.toString();
+
+		File tokenFile = writeToken(server.getLocalPort(), token);
+		System.out.println(l10n.getLocalizedTextString(new SimpleShell.Listening(server.getLocalPort(), tokenFile.getPath())));
+
+		try
+		{
+			new SimpleShellServer(server, token.getBytes("UTF-8"), l10n).run();
+		}
+		finally
+		{
+			server.close();
+			tokenFile.delete();
+		}
+	}
+
+	/**
+	 * Writes the token to a file that only the user can read: on Unix the directory and the
+	 * file are made private before the token goes in; on Windows the user profile already is.
+	 */
+	private static File writeToken(int port, String token) throws IOException
+	{
+		File dir = new File(System.getProperty("user.home"), ".fcsh");
+		if (!dir.isDirectory() && !dir.mkdirs())
+		{
+			throw new IOException("Can't create " + dir);
+		}
+
+		File file = new File(dir, port + ".token");
+		file.delete();
+		new FileOutputStream(file).close();
+		file.deleteOnExit();
+
+		if (!System.getProperty("os.name", "").startsWith("Windows"))
+		{
+			chmod("700", dir);
+			chmod("600", file);
+		}
+
+		Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try
+		{
+			w.write(token);
+		}
+		finally
+		{
+			w.close();
+		}
+
+		return file;
+	}
+
+	private static void chmod(String mode, File f) throws IOException
+	{
+		try
+		{
+			Process p = Runtime.getRuntime().exec(new String[] { "chmod", mode, f.getPath() });
+			if (p.waitFor() != 0)
+			{
+				throw new IOException("chmod " + mode + " " + f + " failed");
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			throw new IOException("chmod " + mode + " " + f + " interrupted");
+		}
+	}
+
+	private void run() throws IOException
+	{
+		for (int i = 1; ; i++)
+		{
+			synchronized (this)
+			{
+				while (clients >= MAX_CLIENTS)
+				{
+					try
+					{
+						wait();
+					}
+					catch (InterruptedException ex)
+					{
+						return;
+					}
+				}
+			}
+
+			final Socket socket;
+			try
+			{
+				socket = server.accept();
+			}
+			catch (IOException ex)
+			{
+				if (server.isClosed())
+				{
+					break;
+				}
+				throw ex;
+			}
+
+			synchronized (this)
+			{
+				clients++;
+			}
+
+			Thread t = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					serve(socket);
+				}
+			}, "fcsh.client." + i);
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+
+	private void serve(Socket socket)
+	{
+		ThreadLocalToolkit.setLocalizationManager(l10n);
+
+		try
+		{
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+
+			socket.setSoTimeout(TOKEN_TIMEOUT);
+			String s = in.readLine();
+			if (s == null || !MessageDigest.isEqual(token, s.trim().getBytes("UTF-8")))
+			{
+				return;
+			}
+			socket.setSoTimeout(0);
+
+			while ((s = in.readLine()) != null)
+			{
+				s = s.trim();
+				if (s.length() == 0)
+				{
+					continue;
+				}
+
+				String command = new StringTokenizer(s).nextToken();
+				Result result = new Result();
+				ThreadLocalToolkit.setLogger(result);
+
+				String target = null;
+				if (commands.contains(command))
+				{
+					try
+					{
+						target = SimpleShell.execute(s);
+					}
+					catch (Throwable t)
+					{
+						result.logError(t.toString());
+					}
+				}
+				else
+				{
+					ThreadLocalToolkit.log(new SimpleShell.UnknownCommand(command));
+				}
+
+				ThreadLocalToolkit.setLogger(null);
+
+				out.write(result.toJSON(command, target));
+				out.write('\n');
+				out.flush();
+
+				if (SimpleShell.isExiting())
+				{
+					server.close();
+					break;
+				}
+			}
+		}
+		catch (IOException ex)
+		{
+			// C: the client went away, nothing to report it to.
+		}
+		finally
+		{
+			try
+			{
+				socket.close();
+			}
+			catch (IOException ex)
+			{
+			}
+			ThreadLocalToolkit.setLocalizationManager(null);
+
+			synchronized (this)
+			{
+				clients--;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Collects the messages of one command.
+	 */
+	private static final class Result extends AbstractLogger implements Logger
+	{
+		Result()
+		{
+			init(ThreadLocalToolkit.getLocalizationManager());
+		}
+
+		private final List messages = new ArrayList(); // List<String>, each one a JSON object
+		private int errorCount, warningCount;
+
+		public int errorCount()
+		{
+			return errorCount;
+		}
+
+		public int warningCount()
+		{
+			return warningCount;
+		}
+
+		String toJSON(String command, String target)
+		{
+			StringBuffer b = new StringBuffer();
+			b.append("{\"command\":");
+			quote(b, command);
+			b.append(",\"target\":");
+			quote(b, target);
+			b.append(",\"success\":").append(errorCount == 0);
+			b.append(",\"errors\":").append(errorCount);
+			b.append(",\"warnings\":").append(warningCount);
+			b.append(",\"messages\":[");
+			for (int i = 0, size = messages.size(); i < size; i++)
+			{
+				if (i > 0)
+				{
+					b.append(',');
+				}
+				b.append((String) messages.get(i));
+			}
+			b.append("]}");
+			return b.toString();
+		}
+
+		private void record(String level, String path, int line, int col, String text)
+		{
+			if ("error".equals(level))
+			{
+				errorCount++;
+			}
+			else if ("warning".equals(level))
+			{
+				warningCount++;
+			}
+
+			StringBuffer b = new StringBuffer();
+			b.append("{\"level\":");
+			quote(b, level);
+			if (path != null)
+			{
+				b.append(",\"path\":");
+				quote(b, path);
+			}
+			if (line != -1)
+			{
+				b.append(",\"line\":").append(line);
+			}
+			if (col != -1)
+			{
+				b.append(",\"column\":").append(col);
+			}
+			b.append(",\"text\":");
+			quote(b, text);
+			b.append('}');
+			messages.add(b.toString());
+		}
+
+		private static void quote(StringBuffer b, String s)
+		{
+			if (s == null)
+			{
+				b.append("null");
+				return;
+			}
+
+			b.append('"');
+			for (int i = 0, length = s.length(); i < length; i++)
+			{
+				char c = s.charAt(i);
+				switch (c)
+				{
+				case '"':
+					b.append("\\\"");
+					break;
+				case '\\':
+					b.append("\\\\");
+					break;
+				case '\n':
+					b.append("\\n");
+					break;
+				case '\r':
+					b.append("\\r");
+					break;
+				case '\t':
+					b.append("\\t");
+					break;
+				default:
+					if (c < 0x20)
+					{
+						String hex = Integer.toHexString(c);
+						b.append("\\u0000".substring(0, 6 - hex.length())).append(hex);
+					}
+					else
+					{
+						b.append(c);
+					}
+				}
+			}
+			b.append('"');
+		}
+
+		public void logInfo(String info)
+		{
+			record("info", null, -1, -1, info);
+		}
+
+		public void logDebug(String debug)
+		{
+			record("debug", null, -1, -1, debug);
+		}
+
+		public void logWarning(String warning)
+		{
+			record("warning", null, -1, -1, warning);
+		}
+
+		public void logError(String error)
+		{
+			record("error", null, -1, -1, error);
+		}
+
+		public void logInfo(String path, String info)
+		{
+			record("info", path, -1, -1, info);
+		}
+
+		public void logDebug(String path, String debug)
+		{
+			record("debug", path, -1, -1, debug);
+		}
+
+		public void logWarning(String path, String warning)
+		{
+			record("warning", path, -1, -1, warning);
+		}
+
+		public void logWarning(String path, String warning, int errorCode)
+		{
+			logWarning(path, warning);
+		}
+
+		public void logError(String path, String error)
+		{
+			record("error", path, -1, -1, error);
+		}
+
+		public void logError(String path, String error, int errorCode)
+		{
+			logError(path, error);
+		}
+
+		public void logInfo(String path, int line, String info)
+		{
+			record("info", path, line, -1, info);
+		}
+
+		public void logDebug(String path, int line, String debug)
+		{
+			record("debug", path, line, -1, debug);
+		}
+
+		public void logWarning(String path, int line, String warning)
+		{
+			record("warning", path, line, -1, warning);
+		}
+
+		public void logWarning(String path, int line, String warning, int errorCode)
+		{
+			logWarning(path, line, warning);
+		}
+
+		public void logError(String path, int line, String error)
+		{
+			record("error", path, line, -1, error);
+		}
+
+		public void logError(String path, int line, String error, int errorCode)
+		{
+			logError(path, line, error);
+		}
+
+		public void logInfo(String path, int line, int col, String info)
+		{
+			record("info", path, line, col, info);
+		}
+
+		public void logDebug(String path, int line, int col, String debug)
+		{
+			record("debug", path, line, col, debug);
+		}
+
+		public void logWarning(String path, int line, int col, String warning)
+		{
+			record("warning", path, line, col, warning);
+		}
+
+		public void logError(String path, int line, int col, String error)
+		{
+			record("error", path, line, col, error);
+		}
+
+		public void logWarning(String path, int line, int col, String warning, String source)
+		{
+			logWarning(path, line, col, warning);
+		}
+
+		public void logWarning(String path, int line, int col, String warning, String source, int errorCode)
+		{
+			logWarning(path, line, col, warning);
+		}
+
+		public void logError(String path, int line, int col, String error, String source)
+		{
+			logError(path, line, col, error);
+		}
+
+		public void logError(String path, int line, int col, String error, String source, int errorCode)
+		{
+			logError(path, line, col, error);
+		}
+
+		public void log(ILocalizableMessage m)
+		{
+			log(m, null);
+		}
+
+		public void log(ILocalizableMessage m, String source)
+		{
+			LocalizationManager loc = getLocalizationManager();
+			String text = loc.getLocalizedTextString(m);
+			if (text == null)
+			{
+				text = m.getClass().getName();
+			}
+			text += formatExceptionDetail(m, loc);
+
+			String level;
+			if (m.getLevel() == ILocalizableMessage.ERROR)
+			{
+				level = "error";
+			}
+			else if (m.getLevel() == ILocalizableMessage.WARNING)
+			{
+				level = "warning";
+			}
+			else
+			{
+				level = "info";
+			}
+
+			record(level, m.getPath(), m.getLine(), m.getColumn(), text);
+		}
+
+		public void needsCompilation(String path, String reason)
+		{
+			record("info", path, -1, -1, RECOMPILE + ". " + REASON + ": " + reason);
+		}
+
+		public void includedFileUpdated(String path)
+		{
+			record("info", path, -1, -1, INCLUDEUPDATED);
+		}
+
+		public void includedFileAffected(String path)
+		{
+			record("info", path, -1, -1, INCLUDEAFFECTED);
+		}
+	}
+}
@@ -19,7 +19,9 @@ import flex2.compiler.SourcePath;
 import flex2.compiler.ResourceBundlePath;
 import flex2.compiler.common.Configuration;
 import flex2.compiler.swc.SwcCache;
+import flex2.compiler.swc.SwcUnitCache;
 import flex2.linker.ConsoleApplication;
+import flex2.linker.LinkCache;
 
 import java.util.List;
 import java.util.Map;
@@ -46,6 +48,8 @@ public class Target
 	public Configuration configuration;
 	public ContextStatics perCompileData;
 	public SwcCache swcCache;
+	public SwcUnitCache swcMiscData = new SwcUnitCache(); // Map<SwcScript, Map>
 	public Movie movie;
 	public ConsoleApplication app;
+	public LinkCache linkCache = new LinkCache();
 }
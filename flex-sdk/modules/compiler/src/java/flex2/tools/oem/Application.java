@@ -519,7 +519,8 @@ public class Application implements Builder
                              data == null ? null : data.movie,
                              data == null ? null : data.configuration,
                              configurationReport,
-                             messages);
+                             messages,
+                             data == null ? null : data.swcCache);
     }
 
     private void setupFontManager(OEMConfiguration c)
@@ -742,6 +743,7 @@ public class Application implements Builder
 
         CompilerSwcContext swcContext = new CompilerSwcContext(false, true,
 															   c.configuration.getCompatibilityVersionString());
+        swcContext.setMiscData(data.swcMiscData);
         try
         {
 	        swcContext.load( compilerConfig.getLibraryPath(),
@@ -759,13 +761,6 @@ public class Application implements Builder
         	return FAIL;
         }
         
-        // save the generated cache if the caller provided a librarySwcCache.
-        if (librarySwcCache != null && 
-            librarySwcCache.getSwcCache() != data.swcCache)
-        {
-            librarySwcCache.setSwcCache(data.swcCache);
-        }
-
         data.includes = new HashSet(swcContext.getIncludes());
         data.excludes = new HashSet(swcContext.getExterns());
         c.configuration.addExterns( swcContext.getExterns() );
@@ -927,21 +922,22 @@ public class Application implements Builder
         // load SWCs
         if (librarySwcCache != null)
         {
-            // if we have a swc cache then clean it before using it again.
-            data.swcCache = librarySwcCache.getSwcCache();
-            if (data.swcCache != null)
-            {
-                data.swcCache.cleanExtraData();                
-            }
+            // the cache may be shared with other Applications, so this one keeps its
+            // compilation units from the SWCs to itself.
+            data.swcCache = librarySwcCache.getSwcCache(compilerConfig.getSwcIndexDirectory(),
+                                                        compilerConfig.getSwcCacheMaxBytes());
         }
-        
-        if (data.swcCache == null)
+        else
         {
             data.swcCache = new SwcCache();            
+            data.swcCache.setIndexDirectory(compilerConfig.getSwcIndexDirectory());
+            data.swcCache.setMaxSize(compilerConfig.getSwcCacheMaxBytes());
         }
         
+        data.swcMiscData.setMaxSize(compilerConfig.getSwcUnitCacheMaxBytes());
         CompilerSwcContext swcContext = new CompilerSwcContext(true, true,
 															   c.configuration.getCompatibilityVersionString());
+        swcContext.setMiscData(data.swcMiscData);
         try
         {
 	        swcContext.load( compilerConfig.getLibraryPath(),
@@ -958,13 +954,6 @@ public class Application implements Builder
         	return FAIL;
         }
         
-        // save the generated swcCache if the class has a librarySwcCache.
-        if (librarySwcCache != null && 
-            librarySwcCache.getSwcCache() != data.swcCache)
-        {
-            librarySwcCache.setSwcCache(data.swcCache);
-        }
-        
         data.includes = new HashSet(swcContext.getIncludes());
         data.excludes = new HashSet(swcContext.getExterns());
         c.configuration.addExterns( swcContext.getExterns() );
@@ -1197,7 +1186,7 @@ public class Application implements Builder
             else
             {
                 SimpleMovie temp = data.movie;
-                data.movie = (FlexMovie) flex2.linker.API.link(data.units, new PostLink(config), config);
+                data.movie = (FlexMovie) flex2.linker.API.link(data.units, new PostLink(config), config, hasChanged ? null : data.linkCache);
                 size = (projector == null) ? encode(out) : encodeProjector(projector, out);
                 if (hasChanged && temp != null)
                 {
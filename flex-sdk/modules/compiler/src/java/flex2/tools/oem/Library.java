@@ -754,6 +754,8 @@ public class Library implements Builder
 
         // load SWCs
         data.swcCache = new SwcCache();
+        data.swcCache.setIndexDirectory(compilerConfig.getSwcIndexDirectory());
+        data.swcCache.setMaxSize(compilerConfig.getSwcCacheMaxBytes());
         CompilerSwcContext swcContext = new CompilerSwcContext(true, true,
 															   compilerConfig.getCompatibilityVersionString());
         try
@@ -900,7 +902,8 @@ public class Library implements Builder
                              data == null ? null : data.movie,
                              data == null ? null : data.configuration,
                              configurationReport,
-                             messages);
+                             messages,
+                             data == null ? null : data.swcCache);
     }
 
     /**
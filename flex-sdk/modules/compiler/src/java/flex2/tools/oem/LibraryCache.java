@@ -16,6 +16,10 @@ import flex2.compiler.swc.SwcCache;
 /**
  * A cache of library files that is narrowly designed to be used to compile Application 
  * objects that use the same library path.
+ * 
+ * A LibraryCache may be shared by Applications that build at the same time on different
+ * threads, e.g. by a Project. Each Application keeps what it compiled from the libraries
+ * to itself, so sharing the cache doesn't make one build depend on another.
  *
  * @since 3.0
  * @author dloverin
@@ -35,7 +39,7 @@ public class LibraryCache
      * cache my be used in another build.
      *
      */
-    public void cleanExtraData()
+    public synchronized void cleanExtraData()
     {
         if (swcCache != null)
         {
@@ -49,19 +53,41 @@ public class LibraryCache
      * 
      * @return the current SwcCache.
      */
-    SwcCache getSwcCache()
+    synchronized SwcCache getSwcCache()
     {
         return swcCache;
     }
 
 
+    /**
+     * Get the SwcCache current being used by this class, creating one if there is none.
+     * 
+     * The settings only apply to a new SwcCache, so they come from the first
+     * Builder that uses this cache.
+     * 
+     * @param indexDirectory the SWC catalog index directory of a new SwcCache, may be null.
+     * @param maxSize the maximum size of a new SwcCache in bytes; -1 for no limit.
+     * @return the current SwcCache.
+     */
+    synchronized SwcCache getSwcCache(String indexDirectory, long maxSize)
+    {
+        if (swcCache == null)
+        {
+            swcCache = new SwcCache();
+            swcCache.setIndexDirectory(indexDirectory);
+            swcCache.setMaxSize(maxSize);
+        }
+        return swcCache;
+    }
+
+
     /**
      * Set the swcCache to be used by this cache. The reference to the
      * previous cache is overwritten.
      * 
      * @param swcCache the new SwcCache object.
      */
-    void setSwcCache(SwcCache swcCache)
+    synchronized void setSwcCache(SwcCache swcCache)
     {
         this.swcCache = swcCache;
     }
@@ -0,0 +1,76 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.tools.oem;
+
+/**
+ * The <code>LibraryCacheReport</code> interface provides statistics about the library cache
+ * that an <code>Application</code> or a <code>Library</code> used. The <code>Report</code> objects
+ * returned by <code>Application.getReport()</code> and <code>Library.getReport()</code> implement it;
+ * for example:
+ * 
+ * <pre>
+ * Report report = app.getReport();
+ * if (report instanceof LibraryCacheReport)
+ * {
+ *     long hits = ((LibraryCacheReport) report).getLibraryCacheHitCount();
+ * }
+ * </pre>
+ * 
+ * @see flex2.tools.oem.Report
+ * @since 3.0
+ */
+public interface LibraryCacheReport
+{
+    /**
+     * Gets the number of times a library was found, up to date, in the library cache that was
+     * used by the last build. Like the other library cache statistics, the count covers every
+     * build that has used the cache, including the builds of other <code>Builder</code> instances
+     * that share a <code>LibraryCache</code>.
+     * 
+     * @since 3.0
+     * @return The number of hits; <code>0</code> if the <code>Builder</code> hasn't been built.
+     */
+    long getLibraryCacheHitCount();
+
+    /**
+     * Gets the number of times a library was read because it was not in the library cache or had
+     * changed.
+     * 
+     * @since 3.0
+     * @return The number of misses; <code>0</code> if the <code>Builder</code> hasn't been built.
+     */
+    long getLibraryCacheMissCount();
+
+    /**
+     * Gets the number of libraries that were evicted from the library cache to stay within its size.
+     * 
+     * @since 3.0
+     * @return The number of evictions; <code>0</code> if the <code>Builder</code> hasn't been built.
+     */
+    long getLibraryCacheEvictionCount();
+
+    /**
+     * Gets the time spent reading libraries into the library cache.
+     * 
+     * @since 3.0
+     * @return The time, in milliseconds; <code>0</code> if the <code>Builder</code> hasn't been built.
+     */
+    long getLibraryCacheLoadTime();
+
+    /**
+     * Gets the uncompressed size of the libraries in the library cache.
+     * 
+     * @since 3.0
+     * @return The size, in bytes; <code>0</code> if the <code>Builder</code> hasn't been built.
+     */
+    long getLibraryCacheSize();
+}
@@ -11,16 +11,24 @@
 
 package flex2.tools.oem;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import flex2.compiler.DependencyGraph;
+import flex2.compiler.io.FileUtil;
 import flex2.compiler.util.Algorithms;
+import flex2.compiler.util.Edge;
 import flex2.compiler.util.Vertex;
 import flex2.compiler.util.Visitor;
+import flex2.tools.oem.internal.OEMConfiguration;
+import flex2.tools.oem.internal.OEMUtil;
 
 /**
  * The <code>Project</code> class groups a number of <code>Builder</code> instances. For example, <code>Application</code>
@@ -57,6 +65,19 @@ import flex2.compiler.util.Visitor;
  * p.build(true);
  * </pre>
  * 
+ * To build independent <code>Builder</code> instances at the same time, set the number of threads
+ * with the <code>setThreads()</code> method; for example:
+ * 
+ * <pre>
+ * p.setThreads(4);
+ * p.build(true);
+ * </pre>
+ * 
+ * With more than one thread, a <code>Builder</code> also depends on every <code>Library</code> in the
+ * <code>Project</code> whose output is on its library path, external library path, included libraries or
+ * runtime shared library path, as set with the <code>Configuration</code> methods of the same names, so it
+ * isn't built while that library is. You don't need to call <code>dependsOn()</code> for those.
+ * 
  * If you want the <code>Project</code> to provide the build order and you want to run the
  * build separately, use the <code>getBuildOrder()</code> method; for example:
  * 
@@ -93,6 +114,7 @@ public class Project
     }
     
     private DependencyGraph dependencies;
+    private int threads = 1;
     
     /**
      * Adds an <code>Application</code> or a <code>Library</code> to the <code>Project</code>.
@@ -142,6 +164,36 @@ public class Project
         }
     }
 
+    /**
+     * Sets the number of <code>Builder</code> instances that the <code>build(boolean)</code> method
+     * may build at the same time. A <code>Builder</code> is started once all the <code>Builder</code>
+     * instances that it depends on are built. The default is <code>1</code>, which builds one
+     * <code>Builder</code> at a time, in build order, on the calling thread.
+     * 
+     * <p>
+     * Each <code>Builder</code> is built on a thread of its own, so the compiler state of one
+     * does not leak into another. <code>Builder</code> instances that are built at the same time
+     * should not share a <code>Logger</code> or <code>ProgressMeter</code> unless it is safe to use
+     * from several threads. They may share a <code>LibraryCache</code>.
+     * 
+     * @param threads The number of <code>Builder</code> instances to build at the same time.
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+    
+    /**
+     * Gets the number of <code>Builder</code> instances that the <code>build(boolean)</code> method
+     * may build at the same time.
+     * 
+     * @return The number of threads.
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
     /**
      * Gets the build order for the <code>Project</code>. The build order is determined by the dependencies among
      * <code>Builder</code> instances.
@@ -151,18 +203,112 @@ public class Project
      */
     public Iterator getBuildOrder()
     {
-        final List buildOrder = new ArrayList(dependencies.size());
+        return getBuildOrder(getDependencies()).iterator();
+    }
+    
+    private List getBuildOrder(final DependencyGraph graph)
+    {
+        final List buildOrder = new ArrayList(graph.size());
         
-        Algorithms.topologicalSort(dependencies, new Visitor()
+        Algorithms.topologicalSort(graph, new Visitor()
         {   
             public void visit(Object v)
             {
                 String name = (String) ((Vertex) v).getWeight();
-                buildOrder.add(dependencies.get(name));
+                buildOrder.add(graph.get(name));
             }
         });
         
-        return buildOrder.iterator();
+        return buildOrder;
+    }
+    
+    /**
+     * Returns the dependencies. With more than one thread, returns a copy with a dependency added
+     * for every <code>Library</code> whose output another <code>Builder</code> links against.
+     */
+    private DependencyGraph getDependencies()
+    {
+        if (threads == 1)
+        {
+            return dependencies;
+        }
+
+        DependencyGraph graph = new DependencyGraph();
+        Map outputs = new HashMap(); // Map<String, String>, canonical output path -> Library
+        
+        for (Iterator i = dependencies.keySet().iterator(); i.hasNext(); )
+        {
+            String name = (String) i.next();
+            Object builder = dependencies.get(name);
+            graph.put(name, builder);
+            graph.addVertex(new Vertex(name));
+            
+            if (builder instanceof Library)
+            {
+                Library lib = (Library) builder;
+                File output = (lib.getOutput() != null) ? lib.getOutput() : lib.getDirectory();
+                String path = (output != null) ? FileUtil.getCanonicalPath(output) : null;
+                if (path != null)
+                {
+                    outputs.put(path, name);
+                }
+            }
+        }
+        
+        for (Iterator i = dependencies.getEdges().iterator(); i.hasNext(); )
+        {
+            Edge e = (Edge) i.next();
+            graph.addDependency((String) e.getHead().getWeight(), (String) e.getTail().getWeight());
+        }
+        
+        for (Iterator i = dependencies.keySet().iterator(); i.hasNext(); )
+        {
+            String head = (String) i.next();
+            Builder builder = (Builder) dependencies.get(head);
+            if (!(builder.getConfiguration() instanceof OEMConfiguration))
+            {
+                continue;
+            }
+            
+            List libraries = ((OEMConfiguration) builder.getConfiguration()).getLibraries();
+            for (int j = 0, size = libraries.size(); j < size; j++)
+            {
+                File f = (File) libraries.get(j);
+                String path = FileUtil.getCanonicalPath(f);
+                if (path == null)
+                {
+                    continue;
+                }
+                
+                String tail = (String) outputs.get(path);
+                if (tail == null && f.isDirectory())
+                {
+                    // C: a directory on the library path links against the SWCs in it.
+                    for (Iterator k = outputs.keySet().iterator(); k.hasNext(); )
+                    {
+                        String output = (String) k.next();
+                        if (path.equals(new File(output).getParent()))
+                        {
+                            addDependency(graph, head, (String) outputs.get(output));
+                        }
+                    }
+                }
+                else if (tail != null)
+                {
+                    addDependency(graph, head, tail);
+                }
+            }
+        }
+        
+        return graph;
+    }
+    
+    private static void addDependency(DependencyGraph graph, String head, String tail)
+    {
+        if (!head.equals(tail) && !graph.dependencyExists(head, tail))
+        {
+            graph.addDependency(head, tail);
+        }
     }
     
     /**
@@ -184,7 +330,7 @@ public class Project
      */
     public Set detectCycles()
     {
-        Set builders = Algorithms.detectCycles(dependencies);
+        Set builders = Algorithms.detectCycles(getDependencies());
         if (builders != null && builders.size() == 0)
         {
             builders = null;
@@ -207,6 +353,13 @@ public class Project
      */
     public void build(boolean incremental) throws IOException
     {
+        if (threads > 1)
+        {
+            DependencyGraph graph = getDependencies();
+            new BuildQueue(graph, getBuildOrder(graph)).build(incremental, threads);
+            return;
+        }
+        
         for (Iterator i = getBuildOrder(); i.hasNext(); )
         {           
             Builder builder = (Builder) i.next();
@@ -249,5 +402,215 @@ public class Project
             }
         }
     }
+    
+    /**
+     * Hands out the <code>Builder</code> instances whose dependencies are built to a few threads,
+     * the calling thread being one of them. Once a build fails, no more are started, and the first
+     * failure is rethrown on the calling thread.
+     */
+    private static class BuildQueue
+    {
+        BuildQueue(DependencyGraph graph, List buildOrder)
+        {
+            waiting = new HashMap();
+            dependents = new HashMap();
+            ready = new LinkedList();
+            
+            Map names = new HashMap(); // Map<String, Builder>
+            for (int i = 0, size = buildOrder.size(); i < size; i++)
+            {
+                Object builder = buildOrder.get(i);
+                if (builder != null)
+                {
+                    names.put(name(builder), builder);
+                }
+            }
+            
+            // C: builders that topologicalSort() left out, because of cycles, are neither built
+            //    nor waited for.
+            for (int i = 0, size = buildOrder.size(); i < size; i++)
+            {
+                Object builder = buildOrder.get(i);
+                if (builder == null)
+                {
+                    continue;
+                }
+                
+                int count = 0;
+                Set predecessors = graph.getVertex(name(builder)).getPredecessors(); // Set<Vertex<String>>
+                for (Iterator j = (predecessors == null) ? null : predecessors.iterator(); j != null && j.hasNext(); )
+                {
+                    Object dependency = names.get(((Vertex) j.next()).getWeight());
+                    if (dependency != null)
+                    {
+                        List list = (List) dependents.get(dependency);
+                        if (list == null)
+                        {
+                            list = new ArrayList();
+                            dependents.put(dependency, list);
+                        }
+                        list.add(builder);
+                        count++;
+                    }
+                }
+                
+                if (count == 0)
+                {
+                    ready.add(builder);
+                }
+                else
+                {
+                    waiting.put(builder, new int[] { count });
+                }
+            }
+            
+            remaining = names.size();
+        }
+        
+        private final Map waiting; // Map<Builder, int[]>, the number of dependencies that aren't built yet
+        private final Map dependents; // Map<Builder, List<Builder>>
+        private final LinkedList ready; // List<Builder>
+        private int remaining;
+        private Throwable failure;
+        
+        private static String name(Object builder)
+        {
+            return Integer.toString(builder.hashCode());
+        }
+        
+        void build(final boolean incremental, int threads) throws IOException
+        {
+            Thread[] workers = new Thread[Math.max(0, Math.min(threads, remaining) - 1)];
+            for (int i = 0; i < workers.length; i++)
+            {
+                workers[i] = new Thread(new Runnable()
+                {
+                    public void run()
+                    {
+                        work(incremental);
+                    }
+                }, "flex2.tools.oem.Project." + i);
+                workers[i].setDaemon(true);
+                workers[i].start();
+            }
+            
+            work(incremental);
+            
+            boolean interrupted = false;
+            for (int i = 0; i < workers.length; i++)
+            {
+                while (workers[i].isAlive())
+                {
+                    try
+                    {
+                        workers[i].join();
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        interrupted = true;
+                    }
+                }
+            }
+            
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+            
+            if (failure instanceof IOException)
+            {
+                throw (IOException) failure;
+            }
+            else if (failure instanceof RuntimeException)
+            {
+                throw (RuntimeException) failure;
+            }
+            else if (failure instanceof Error)
+            {
+                throw (Error) failure;
+            }
+            else if (failure != null)
+            {
+                throw new RuntimeException(failure);
+            }
+        }
+        
+        private void work(boolean incremental)
+        {
+            Builder builder;
+            while ((builder = take()) != null)
+            {
+                boolean built = false;
+                try
+                {
+                    builder.build(incremental);
+                    built = true;
+                }
+                catch (Throwable t)
+                {
+                    fail(t);
+                }
+                finally
+                {
+                    // C: the builder sets up ThreadLocalToolkit for itself. Clear whatever it
+                    //    left behind before the next builder runs on this thread.
+                    OEMUtil.clean();
+                }
+                
+                if (built)
+                {
+                    done(builder);
+                }
+            }
+        }
+        
+        private synchronized Builder take()
+        {
+            while (ready.isEmpty() && remaining > 0 && failure == null)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException ex)
+                {
+                    fail(ex);
+                }
+            }
+            
+            if (failure != null || ready.isEmpty())
+            {
+                return null;
+            }
+            return (Builder) ready.removeFirst();
+        }
+        
+        private synchronized void done(Builder builder)
+        {
+            remaining--;
+            
+            List list = (List) dependents.get(builder);
+            for (int i = 0, size = (list == null) ? 0 : list.size(); i < size; i++)
+            {
+                Object dependent = list.get(i);
+                int[] count = (int[]) waiting.get(dependent);
+                if (--count[0] == 0)
+                {
+                    waiting.remove(dependent);
+                    ready.add(dependent);
+                }
+            }
+            
+            notifyAll();
+        }
+        
+        private synchronized void fail(Throwable t)
+        {
+            if (failure == null)
+            {
+                failure = t;
+            }
+            notifyAll();
+        }
+    }
 }
-
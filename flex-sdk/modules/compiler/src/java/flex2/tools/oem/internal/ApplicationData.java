@@ -25,7 +25,9 @@ import flex2.compiler.SourceList;
 import flex2.compiler.SourcePath;
 import flex2.compiler.common.Configuration;
 import flex2.compiler.swc.SwcCache;
+import flex2.compiler.swc.SwcUnitCache;
 import flex2.linker.ConsoleApplication;
+import flex2.linker.LinkCache;
 import flex2.linker.SimpleMovie;
 
 /**
@@ -76,9 +78,11 @@ public class ApplicationData
 	public Configuration configuration;
 	public ContextStatics perCompileData;
 	public SwcCache swcCache;
+	public SwcUnitCache swcMiscData = new SwcUnitCache(); // Map<SwcScript, Map>
 	
 	public SimpleMovie movie;
 	public ConsoleApplication app;
+	public LinkCache linkCache = new LinkCache();
     public FontManager fontManager;
 
 	/**
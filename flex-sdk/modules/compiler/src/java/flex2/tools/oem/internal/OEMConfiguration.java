@@ -123,6 +123,40 @@ public class OEMConfiguration implements Configuration, ConfigurationConstants
 		return getOptions(linker_args, linker_more, false);
 	}
 	
+	/**
+	 * Returns the SWC files and directories that were set or added to the library path, the external
+	 * library path, the included libraries and the runtime shared library path. The libraries in the
+	 * default configuration are left out.
+	 * 
+	 * @return List<File>
+	 */
+	public List getLibraries()
+	{
+		List libraries = new ArrayList();
+		String[] keys = new String[] { COMPILER_LIBRARY_PATH, COMPILER_EXTERNAL_LIBRARY_PATH, COMPILER_INCLUDE_LIBRARIES };
+		
+		for (int i = 0; i < keys.length; i++)
+		{
+			File[] a = merge((File[]) args.get(keys[i]), (File[]) more.get(keys[i]));
+			for (int j = 0, length = a == null ? 0 : a.length; j < length; j++)
+			{
+				if (a[j] != null)
+				{
+					libraries.add(a[j]);
+				}
+			}
+		}
+		
+		RslPathList rsls = (RslPathList) args.get(RUNTIME_SHARED_LIBRARY_PATH);
+		for (Iterator i = (rsls == null) ? null : rsls.iterator(); i != null && i.hasNext(); )
+		{
+			String[] a = (String[]) i.next();
+			libraries.add(new File(a[0]));
+		}
+		
+		return libraries;
+	}
+	
 	/**
 	 * 
 	 * @return
@@ -28,12 +28,14 @@ import flex2.compiler.CompilationUnit;
 import flex2.compiler.Source;
 import flex2.compiler.common.Configuration;
 import flex2.compiler.io.VirtualFile;
+import flex2.compiler.swc.SwcCache;
 import flex2.compiler.swc.SwcScript;
 import flex2.compiler.util.MultiNameSet;
 import flex2.compiler.util.QName;
 import flex2.compiler.util.QNameList;
 import flex2.linker.SimpleMovie;
 import flex2.tools.VersionInfo;
+import flex2.tools.oem.LibraryCacheReport;
 import flex2.tools.oem.Message;
 import flex2.tools.oem.Report;
 
@@ -42,11 +44,26 @@ import flex2.tools.oem.Report;
  * @version 2.0.1
  * @author Clement Wong
  */
-public class OEMReport implements Report
+public class OEMReport implements Report, LibraryCacheReport
 {
 	public OEMReport(List sources, SimpleMovie movie, Configuration configuration,
 					 String configurationReport, List messages)
 	{
+		this(sources, movie, configuration, configurationReport, messages, null);
+	}
+
+	public OEMReport(List sources, SimpleMovie movie, Configuration configuration,
+					 String configurationReport, List messages, SwcCache swcCache)
+	{
+		if (swcCache != null)
+		{
+			libraryCacheHitCount = swcCache.getHitCount();
+			libraryCacheMissCount = swcCache.getMissCount();
+			libraryCacheEvictionCount = swcCache.getEvictionCount();
+			libraryCacheLoadTime = swcCache.getLoadTime();
+			libraryCacheSize = swcCache.getSize();
+		}
+
 		init(sources, movie == null ? null : movie.getExportedUnits(),
 			 configuration == null ? null : configuration.getResourceBundles());
 
@@ -179,6 +196,34 @@ public class OEMReport implements Report
 	private Message[] messages;
 	
 	private String[][] assetNames, definitionNames;
+
+	private long libraryCacheHitCount, libraryCacheMissCount, libraryCacheEvictionCount,
+				 libraryCacheLoadTime, libraryCacheSize;
+
+	public long getLibraryCacheHitCount()
+	{
+		return libraryCacheHitCount;
+	}
+
+	public long getLibraryCacheMissCount()
+	{
+		return libraryCacheMissCount;
+	}
+
+	public long getLibraryCacheEvictionCount()
+	{
+		return libraryCacheEvictionCount;
+	}
+
+	public long getLibraryCacheLoadTime()
+	{
+		return libraryCacheLoadTime;
+	}
+
+	public long getLibraryCacheSize()
+	{
+		return libraryCacheSize;
+	}
 	
 	public boolean contentUpdated()
 	{
@@ -0,0 +1,132 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flash.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the max weight of LRUCache.
+ */
+public class LRUCacheTest extends TestCase
+{
+    public static Test suite()
+    {
+        return new TestSuite(LRUCacheTest.class);
+    }
+
+    /**
+     * Weighs an Integer by its value and records what gets purged.
+     */
+    private static class WeighingCache extends LRUCache
+    {
+        WeighingCache(int maxSize, long maxWeight)
+        {
+            super(16, maxSize);
+            setMaxWeight(maxWeight);
+        }
+
+        final List purged = new ArrayList(); // List<Object>, the keys
+
+        protected long weigh(Object value)
+        {
+            return (value != null) ? ((Integer) value).intValue() : 0;
+        }
+
+        protected void handleLRUElementPurged(Object key, Object value)
+        {
+            purged.add(key);
+        }
+    }
+
+    public void testEvictByWeight()
+    {
+        WeighingCache cache = new WeighingCache(100, 10);
+        cache.put("a", new Integer(4));
+        cache.put("b", new Integer(4));
+        assertEquals(8, cache.getWeight());
+        assertEquals(0, cache.purged.size());
+
+        cache.put("c", new Integer(4));
+        assertEquals(1, cache.purged.size());
+        assertEquals("a", cache.purged.get(0));
+        assertEquals(8, cache.getWeight());
+        assertEquals(2, cache.size());
+
+        // b is now the most recently used, so c goes next.
+        assertEquals(new Integer(4), cache.get("b"));
+        cache.put("d", new Integer(4));
+        assertEquals(2, cache.purged.size());
+        assertEquals("c", cache.purged.get(1));
+        assertEquals(8, cache.getWeight());
+    }
+
+    public void testNeverEvictNewEntry()
+    {
+        WeighingCache cache = new WeighingCache(100, 10);
+        cache.put("a", new Integer(3));
+        cache.put("b", new Integer(3));
+
+        cache.put("big", new Integer(25));
+        assertEquals(2, cache.purged.size());
+        assertEquals(1, cache.size());
+        assertEquals(25, cache.getWeight());
+        assertEquals(new Integer(25), cache.get("big"));
+
+        // the next entry pushes it out.
+        cache.put("c", new Integer(1));
+        assertEquals("big", cache.purged.get(2));
+        assertEquals(1, cache.getWeight());
+    }
+
+    public void testWeightAfterRemoveAndClear()
+    {
+        WeighingCache cache = new WeighingCache(100, -1);
+        cache.put("a", new Integer(3));
+        cache.put("b", new Integer(5));
+        assertEquals(8, cache.getWeight());
+
+        cache.remove("a");
+        assertEquals(5, cache.getWeight());
+
+        cache.remove("a");
+        assertEquals(5, cache.getWeight());
+
+        // replacing a value replaces its weight.
+        cache.put("b", new Integer(2));
+        assertEquals(2, cache.getWeight());
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.size());
+
+        cache.put("c", new Integer(7));
+        assertEquals(7, cache.getWeight());
+        assertEquals(0, cache.purged.size());
+    }
+
+    public void testMaxSizeKeepsWeight()
+    {
+        WeighingCache cache = new WeighingCache(2, 100);
+        cache.put("a", new Integer(1));
+        cache.put("b", new Integer(2));
+        cache.put("c", new Integer(4));
+        assertEquals(1, cache.purged.size());
+        assertEquals("a", cache.purged.get(0));
+        assertEquals(6, cache.getWeight());
+    }
+}
@@ -0,0 +1,117 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.compiler;
+
+import flash.swf.TagDecoder;
+import flash.swf.TagHandler;
+import flash.swf.tags.DoABC;
+import flex2.compiler.util.ThreadLocalToolkit;
+import flex2.tools.Compc;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Checks that compiler.parallel-threads doesn't change the output: a SWC built from the
+ * framework sources with one thread must have the same ABC as one built with several,
+ * down to the names of the file private namespaces.
+ *
+ * Needs the application.home system property to point at the SDK.
+ */
+public class ParallelParseTest extends TestCase
+{
+    private static final String[] CLASSES = { "mx.controls.Button", "mx.controls.DataGrid",
+                                              "mx.collections.ArrayCollection", "mx.utils.StringUtil" };
+
+    public static Test suite()
+    {
+        return new TestSuite(ParallelParseTest.class);
+    }
+
+    public void testSameOutput() throws Exception
+    {
+        String home = System.getProperty("application.home");
+        assertNotNull("application.home is not set", home);
+
+        List serial = compile(home, 1);
+        List parallel = compile(home, 4);
+
+        assertTrue(serial.size() > 0);
+        assertEquals(serial.size(), parallel.size());
+
+        for (int i = 0, size = serial.size(); i < size; i++)
+        {
+            DoABC s = (DoABC) serial.get(i), p = (DoABC) parallel.get(i);
+            assertEquals(s.name, p.name);
+            assertTrue(s.name + " differs", Arrays.equals(s.abc, p.abc));
+        }
+    }
+
+    private static List compile(String home, int threads) throws Exception
+    {
+        File swc = File.createTempFile("parallel" + threads, ".swc");
+        swc.delete();
+
+        String[] args = new String[8 + CLASSES.length];
+        args[0] = "-load-config=";
+        args[1] = "-external-library-path=" + new File(home, "frameworks/libs/player/10/playerglobal.swc").getPath();
+        args[2] = "-source-path=" + new File(home, "frameworks/projects/framework/src").getPath();
+        args[3] = "-source-path+=" + new File(home, "frameworks/projects/framework/bundles/en_US/src").getPath();
+        args[4] = "-locale=en_US";
+        args[5] = "-compiler.parallel-threads=" + threads;
+        args[6] = "-output=" + swc.getPath();
+        args[7] = "-include-classes";
+        System.arraycopy(CLASSES, 0, args, 8, CLASSES.length);
+
+        try
+        {
+            Compc.compc(args);
+            assertEquals(0, ThreadLocalToolkit.errorCount());
+            assertTrue(swc.exists());
+
+            final List tags = new ArrayList(); // List<DoABC>
+            ZipFile zip = new ZipFile(swc);
+            try
+            {
+                ZipEntry entry = zip.getEntry("library.swf");
+                InputStream in = zip.getInputStream(entry);
+                new TagDecoder(in).parse(new TagHandler()
+                {
+                    public void doABC(DoABC tag)
+                    {
+                        tags.add(tag);
+                    }
+                });
+                in.close();
+            }
+            finally
+            {
+                zip.close();
+            }
+
+            return tags;
+        }
+        finally
+        {
+            swc.delete();
+        }
+    }
+}
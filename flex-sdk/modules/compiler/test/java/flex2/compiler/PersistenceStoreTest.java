@@ -0,0 +1,184 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import flash.localization.LocalizationManager;
+import flash.localization.ResourceBundleLocalizer;
+import flash.localization.XLRLocalizer;
+import flex2.compiler.common.CompilerConfiguration;
+import flex2.compiler.common.Configuration;
+import flex2.compiler.util.MimeMappings;
+import flex2.compiler.util.QName;
+import flex2.compiler.util.ThreadLocalToolkit;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Writes a cache file without compilation units and reads it back: the checksums and the
+ * SWC and archive checksums come back as they were written, a different command line checksum
+ * is reported, and a truncated file or one written by an older version is rejected.
+ */
+public class PersistenceStoreTest extends TestCase
+{
+    private File cache;
+    private RandomAccessFile file;
+
+    public static Test suite()
+    {
+        return new TestSuite(PersistenceStoreTest.class);
+    }
+
+    protected void setUp() throws Exception
+    {
+        LocalizationManager l10n = new LocalizationManager();
+        l10n.addLocalizer(new XLRLocalizer());
+        l10n.addLocalizer(new ResourceBundleLocalizer());
+        ThreadLocalToolkit.setLocalizationManager(l10n);
+
+        cache = File.createTempFile("PersistenceStoreTest", ".cache");
+        file = new RandomAccessFile(cache, "rw");
+    }
+
+    protected void tearDown() throws Exception
+    {
+        file.close();
+        cache.delete();
+        ThreadLocalToolkit.setLocalizationManager(null);
+    }
+
+    public void testRoundTrip() throws Exception
+    {
+        write();
+
+        Map swcDefSignatureChecksums = new HashMap(), swcFileChecksums = new HashMap(), archiveFiles = new HashMap();
+        int[] checksums = { 0, 2, 0, 0 };
+        assertEquals(0, read(checksums, swcDefSignatureChecksums, swcFileChecksums, archiveFiles));
+
+        assertEquals(1, checksums[0]);
+        assertEquals(2, checksums[1]);
+        assertEquals(3, checksums[2]);
+        assertEquals(4, checksums[3]);
+        assertEquals(swcDefSignatureChecksums(), swcDefSignatureChecksums);
+        assertEquals(swcFileChecksums(), swcFileChecksums);
+        assertEquals(archiveFiles(), archiveFiles);
+    }
+
+    public void testCommandLineChanged() throws Exception
+    {
+        write();
+
+        int[] checksums = { 0, 20, 0, 0 };
+        assertEquals(-1, read(checksums, new HashMap(), new HashMap(), new HashMap()));
+        assertEquals(2, checksums[1]);
+    }
+
+    public void testOldVersion() throws Exception
+    {
+        write();
+
+        // the major version comes first.
+        file.seek(0);
+        file.writeInt(3);
+
+        try
+        {
+            read(new int[] { 0, 2, 0, 0 }, new HashMap(), new HashMap(), new HashMap());
+            fail();
+        }
+        catch (IOException ex)
+        {
+        }
+    }
+
+    public void testTruncated() throws Exception
+    {
+        write();
+
+        // cut within the header, the constant pool and the checksums.
+        for (long length = file.length() - 1; length > 0; length--)
+        {
+            file.setLength(length);
+            try
+            {
+                read(new int[] { 0, 2, 0, 0 }, new HashMap(), new HashMap(), new HashMap());
+                fail(length + " bytes");
+            }
+            catch (IOException ex)
+            {
+            }
+        }
+    }
+
+    private void write() throws IOException
+    {
+        file.seek(0);
+        PersistenceStore store = new PersistenceStore(null, file);
+        assertEquals(0, store.write(null, null, sourcePath(), new ResourceContainer(), bundlePath(),
+                                    new ArrayList(), new ArrayList(),
+                                    1, 2, 3, 4, swcDefSignatureChecksums(), swcFileChecksums(), "test",
+                                    archiveFiles()));
+    }
+
+    private int read(int[] checksums, Map swcDefSignatureChecksums, Map swcFileChecksums, Map archiveFiles)
+        throws IOException
+    {
+        file.seek(0);
+        List sources = new ArrayList(), units = new ArrayList();
+        PersistenceStore store = new PersistenceStore(null, file);
+        return store.read(null, null, sourcePath(), new ResourceContainer(), bundlePath(), sources, units,
+                          checksums, swcDefSignatureChecksums, swcFileChecksums, archiveFiles);
+    }
+
+    private static SourcePath sourcePath()
+    {
+        return new SourcePath(new String[] { MimeMappings.AS }, false);
+    }
+
+    private static ResourceBundlePath bundlePath()
+    {
+        CompilerConfiguration config = new Configuration().getCompilerConfiguration();
+        config.cfgTranslationFormat(null, "flex2.compiler.i18n.PropertyTranslationFormat");
+        return new ResourceBundlePath(config, null);
+    }
+
+    private static Map swcDefSignatureChecksums()
+    {
+        Map m = new HashMap(); // Map<QName, Long>
+        m.put(new QName("mx.core", "UIComponent"), new Long(5));
+        m.put(new QName("", "Main"), new Long(-6));
+        return m;
+    }
+
+    private static Map swcFileChecksums()
+    {
+        Map m = new HashMap(); // Map<String, Long>
+        m.put("libs/framework.swc", new Long(7));
+        return m;
+    }
+
+    private static Map archiveFiles()
+    {
+        Map m = new HashMap(); // Map<String, Long>
+        m.put("assets/logo.png", new Long(Long.MAX_VALUE));
+        m.put("assets/icon.png", new Long(8));
+        return m;
+    }
+}
@@ -0,0 +1,109 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flex2.compiler.swc;
+
+import java.util.HashMap;
+
+import flash.swf.tags.DoABC;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Checks that SwcUnitCache weighs scripts by their bytecode and evicts them in LRU order.
+ */
+public class SwcUnitCacheTest extends TestCase
+{
+    public static Test suite()
+    {
+        return new TestSuite(SwcUnitCacheTest.class);
+    }
+
+    public void testNoLimit()
+    {
+        SwcUnitCache cache = new SwcUnitCache();
+        for (int i = 0; i < 10; i++)
+        {
+            cache.put(script("s" + i, 100), new HashMap());
+        }
+        assertEquals(10, cache.size());
+        assertEquals(1000, cache.getSize());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    public void testEvictsLeastRecentlyUsed()
+    {
+        SwcUnitCache cache = new SwcUnitCache();
+        cache.setMaxSize(300);
+
+        SwcScript a = script("a", 100), b = script("b", 100), c = script("c", 100), d = script("d", 150);
+        cache.put(a, new HashMap());
+        cache.put(b, new HashMap());
+        cache.put(c, new HashMap());
+        assertEquals(300, cache.getSize());
+
+        // a was used last, so b and c make room for d.
+        assertNotNull(cache.get(a));
+        cache.put(d, new HashMap());
+        assertTrue(cache.containsKey(a));
+        assertFalse(cache.containsKey(b));
+        assertFalse(cache.containsKey(c));
+        assertTrue(cache.containsKey(d));
+        assertEquals(250, cache.getSize());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    public void testKeepsNewScript()
+    {
+        SwcUnitCache cache = new SwcUnitCache();
+        cache.setMaxSize(100);
+        cache.put(script("a", 50), new HashMap());
+
+        SwcScript big = script("big", 500);
+        cache.put(big, new HashMap());
+        assertEquals(1, cache.size());
+        assertTrue(cache.containsKey(big));
+        assertEquals(500, cache.getSize());
+    }
+
+    public void testRemoveAndClear()
+    {
+        SwcUnitCache cache = new SwcUnitCache();
+        SwcScript a = script("a", 100), b = script("b", 200);
+        cache.put(a, new HashMap());
+        cache.put(b, new HashMap());
+        cache.put(a, new HashMap());
+        assertEquals(300, cache.getSize());
+
+        cache.remove(a);
+        assertEquals(200, cache.getSize());
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+
+        // setting a limit later evicts what's over it.
+        cache.put(a, new HashMap());
+        cache.put(b, new HashMap());
+        cache.setMaxSize(250);
+        assertFalse(cache.containsKey(a));
+        assertEquals(200, cache.getSize());
+    }
+
+    private static SwcScript script(String name, int size)
+    {
+        SwcScript script = new SwcScript(null, name, null, null, 0, null);
+        DoABC doABC = new DoABC(name, 1);
+        doABC.abc = new byte[size];
+        script.setDoABC(doABC);
+        return script;
+    }
+}
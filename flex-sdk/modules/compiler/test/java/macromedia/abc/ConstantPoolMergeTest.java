@@ -0,0 +1,237 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package macromedia.abc;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import macromedia.asc.embedding.avmplus.ActionBlockConstants;
+
+/**
+ * Merges two hand written constant pools and checks the merged pool against the one the
+ * HashMap based merge wrote for them: duplicate ints, doubles, strings, namespaces, namespace
+ * sets and multinames are shared, private namespaces never are.
+ */
+public class ConstantPoolMergeTest extends TestCase
+{
+    private static final int PACKAGE = ActionBlockConstants.CONSTANT_PackageNamespace;
+    private static final int INTERNAL = ActionBlockConstants.CONSTANT_PackageInternalNs;
+    private static final int PRIVATE = ActionBlockConstants.CONSTANT_PrivateNamespace;
+    private static final int QNAME = ActionBlockConstants.CONSTANT_Qname;
+    private static final int MULTINAME = ActionBlockConstants.CONSTANT_Multiname;
+    private static final int MULTINAMEL = ActionBlockConstants.CONSTANT_MultinameL;
+    private static final int RTQNAME = ActionBlockConstants.CONSTANT_RTQname;
+    private static final int TYPENAME = ActionBlockConstants.CONSTANT_TypeName;
+
+    public static Test suite()
+    {
+        return new TestSuite(ConstantPoolMergeTest.class);
+    }
+
+    // "foo" and "oof" have the same letters, so they used to hash alike.
+    private static byte[] first()
+    {
+        return pool(new int[] { 1, 300 },
+                    new long[] { 7 },
+                    new double[] { 1.5 },
+                    new String[] { "", "foo", "bar", "oof" },
+                    new int[][] { { PACKAGE, 2 }, { PRIVATE, 3 }, { INTERNAL, 1 } },
+                    new int[][] { { 1, 2 }, { 3 }, { 1 } },
+                    new int[][] { { QNAME, 1, 3 }, { MULTINAME, 2, 1 }, { RTQNAME, 4 }, { MULTINAMEL, 2 },
+                                  { QNAME, 2, 2 } });
+    }
+
+    // the same constants in a different order, a private namespace with the same name as the
+    // first pool's, and a multiname in that private namespace.
+    private static byte[] second()
+    {
+        return pool(new int[] { 300, 2 },
+                    new long[0],
+                    new double[] { 1.5, 2.5 },
+                    new String[] { "bar", "foo", "baz" },
+                    new int[][] { { PRIVATE, 1 }, { PACKAGE, 2 } },
+                    new int[][] { { 2 } },
+                    new int[][] { { QNAME, 2, 1 }, { MULTINAME, 2, 1 }, { QNAME, 1, 1 }, { TYPENAME, 1, 1, 2 } });
+    }
+
+    private static byte[] merged(int privateName)
+    {
+        return pool(new int[] { 1, 300, 2 },
+                    new long[] { 7 },
+                    new double[] { 1.5, 2.5 },
+                    new String[] { "", "foo", "bar", "oof", "baz" },
+                    new int[][] { { PACKAGE, 2 }, { PRIVATE, privateName }, { INTERNAL, 1 }, { PRIVATE, privateName } },
+                    new int[][] { { 1, 2 }, { 3 }, { 1 } },
+                    new int[][] { { QNAME, 1, 3 }, { MULTINAME, 2, 1 }, { RTQNAME, 4 }, { MULTINAMEL, 2 },
+                                  { QNAME, 2, 2 }, { MULTINAME, 2, 3 }, { QNAME, 4, 3 }, { TYPENAME, 1, 1, 6 } });
+    }
+
+    public void testMerge() throws Exception
+    {
+        ConstantPool pool = merge(1, false);
+        assertTrue(Arrays.equals(merged(3), write(pool)));
+
+        // the second pool's constants, by kind.
+        IndexHistory history = pool.history;
+        assertEquals(2, history.getIndex(1, IndexHistory.cp_int, 1));
+        assertEquals(3, history.getIndex(1, IndexHistory.cp_int, 2));
+        assertEquals(1, history.getIndex(1, IndexHistory.cp_double, 1));
+        assertEquals(3, history.getIndex(1, IndexHistory.cp_string, 1));
+        assertEquals(2, history.getIndex(1, IndexHistory.cp_string, 2));
+        assertEquals(5, history.getIndex(1, IndexHistory.cp_string, 3));
+        assertEquals(4, history.getIndex(1, IndexHistory.cp_ns, 1));
+        assertEquals(1, history.getIndex(1, IndexHistory.cp_ns, 2));
+        assertEquals(3, history.getIndex(1, IndexHistory.cp_nsset, 1));
+        assertEquals(1, history.getIndex(1, IndexHistory.cp_mn, 1));
+        assertEquals(7, history.getIndex(1, IndexHistory.cp_mn, 3));
+    }
+
+    public void testPrivateNamesStripped() throws Exception
+    {
+        // without the names, the private namespaces have the same bytes and still aren't shared.
+        assertTrue(Arrays.equals(merged(0), write(merge(1, true))));
+    }
+
+    public void testHashedAndThreaded() throws Exception
+    {
+        byte[] expected = merged(3);
+        assertTrue(Arrays.equals(expected, write(merge(4, false))));
+
+        ConstantPool[] pools = decode();
+        for (int i = 0; i < pools.length; i++)
+        {
+            pools[i].hashConstants();
+        }
+        assertTrue(Arrays.equals(expected, write(use(ConstantPool.merge(pools), false))));
+    }
+
+    private static ConstantPool[] decode() throws DecoderException
+    {
+        return new ConstantPool[] { new ConstantPool(new BytecodeBuffer(first()), false),
+                                    new ConstantPool(new BytecodeBuffer(second()), false) };
+    }
+
+    private static ConstantPool merge(int threads, boolean stripPrivateNames) throws DecoderException
+    {
+        return use(ConstantPool.merge(decode(), threads), stripPrivateNames);
+    }
+
+    /**
+     * Looks up every constant of every pool, in order, the way the Encoder copies them.
+     */
+    private static ConstantPool use(ConstantPool merged, boolean stripPrivateNames) throws DecoderException
+    {
+        IndexHistory history = merged.history;
+        if (stripPrivateNames)
+        {
+            history.disableDebugging();
+        }
+
+        ConstantPool[] pools = decode();
+        for (int i = 0; i < pools.length; i++)
+        {
+            ConstantPool p = pools[i];
+            int[][] positions = { p.intpositions, p.uintpositions, p.doublepositions, p.decimalpositions,
+                                  p.strpositions, p.nspositions, p.nsspositions, p.mnpositions };
+            for (int kind = IndexHistory.cp_int; kind <= IndexHistory.cp_mn; kind++)
+            {
+                for (int j = 1; j < positions[kind].length; j++)
+                {
+                    history.getIndex(i, kind, j);
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static byte[] write(ConstantPool pool) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pool.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a constant pool without decimals. Namespaces are { kind, name }, namespace sets
+     * list their namespaces, and multinames are their kind followed by their operands.
+     */
+    static byte[] pool(int[] ints, long[] uints, double[] doubles, String[] strings,
+                       int[][] namespaces, int[][] nssets, int[][] multinames)
+    {
+        BytecodeBuffer b = new BytecodeBuffer(256);
+
+        writeCount(b, ints.length);
+        for (int i = 0; i < ints.length; i++)
+        {
+            b.writeU32(ints[i]);
+        }
+
+        writeCount(b, uints.length);
+        for (int i = 0; i < uints.length; i++)
+        {
+            b.writeU32(uints[i]);
+        }
+
+        writeCount(b, doubles.length);
+        for (int i = 0; i < doubles.length; i++)
+        {
+            b.writeDouble(doubles[i]);
+        }
+
+        writeCount(b, strings.length);
+        for (int i = 0; i < strings.length; i++)
+        {
+            b.writeU32(strings[i].length());
+            for (int j = 0; j < strings[i].length(); j++)
+            {
+                b.writeU8(strings[i].charAt(j));
+            }
+        }
+
+        writeCount(b, namespaces.length);
+        for (int i = 0; i < namespaces.length; i++)
+        {
+            b.writeU8(namespaces[i][0]);
+            b.writeU32(namespaces[i][1]);
+        }
+
+        writeCount(b, nssets.length);
+        for (int i = 0; i < nssets.length; i++)
+        {
+            b.writeU32(nssets[i].length);
+            for (int j = 0; j < nssets[i].length; j++)
+            {
+                b.writeU32(nssets[i][j]);
+            }
+        }
+
+        writeCount(b, multinames.length);
+        for (int i = 0; i < multinames.length; i++)
+        {
+            b.writeU8(multinames[i][0]);
+            for (int j = 1; j < multinames[i].length; j++)
+            {
+                b.writeU32(multinames[i][j]);
+            }
+        }
+
+        return b.toByteArray();
+    }
+
+    private static void writeCount(BytecodeBuffer b, int count)
+    {
+        b.writeU32((count == 0) ? 0 : count + 1);
+    }
+}
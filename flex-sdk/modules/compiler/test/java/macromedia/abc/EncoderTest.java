@@ -0,0 +1,207 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package macromedia.abc;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import macromedia.asc.embedding.avmplus.ActionBlockConstants;
+
+/**
+ * Checks that what the Encoder writes into buffers of the size it computed up front is what
+ * growing buffers get: an ABC written by hand into a one byte buffer comes out of a merge
+ * byte for byte, and so do a merged constant pool and a mix of BytecodeBuffer writes.
+ */
+public class EncoderTest extends TestCase
+{
+    public static Test suite()
+    {
+        return new TestSuite(EncoderTest.class);
+    }
+
+    public void testToABC() throws Exception
+    {
+        // the constants are in the order the Encoder first uses them, so it keeps their indices.
+        int[] sizes = { 0, 1, 300 };
+        for (int i = 0; i < sizes.length; i++)
+        {
+            byte[] abc = abc(sizes[i]);
+            byte[] merged = Optimizer.optimize(new BytecodeBuffer[] { new BytecodeBuffer(abc) });
+            assertTrue(sizes[i] + " classes", Arrays.equals(abc, merged));
+        }
+    }
+
+    public void testConstantPool() throws Exception
+    {
+        ConstantPool[] pools = new ConstantPool[4];
+        for (int i = 0; i < pools.length; i++)
+        {
+            pools[i] = new ConstantPool(new BytecodeBuffer(abc(100 * i)), false);
+        }
+        ConstantPool merged = ConstantPool.merge(pools);
+        for (int i = 0; i < pools.length; i++)
+        {
+            for (int j = 1; j < pools[i].mnpositions.length; j++)
+            {
+                merged.history.getIndex(i, IndexHistory.cp_mn, j);
+            }
+        }
+
+        BytecodeBuffer grown = new BytecodeBuffer(1);
+        merged.writeTo(grown);
+        assertEquals(merged.encodedSize(), grown.size());
+
+        BytecodeBuffer sized = new BytecodeBuffer(merged.encodedSize());
+        merged.writeTo(sized);
+        assertEquals(merged.encodedSize(), sized.toByteArray().length);
+        assertTrue(Arrays.equals(grown.toByteArray(), sized.toByteArray()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        merged.writeTo(out);
+        assertTrue(Arrays.equals(grown.toByteArray(), out.toByteArray()));
+    }
+
+    public void testBuffer()
+    {
+        BytecodeBuffer data = new BytecodeBuffer(1);
+        for (int i = 0; i < 5000; i++)
+        {
+            data.writeU8(i);
+        }
+
+        BytecodeBuffer grown = new BytecodeBuffer(1);
+        write(grown, data);
+        BytecodeBuffer sized = new BytecodeBuffer(grown.size());
+        write(sized, data);
+
+        assertEquals(grown.size(), sized.toByteArray().length);
+        assertTrue(Arrays.equals(grown.toByteArray(), sized.toByteArray()));
+    }
+
+    private static void write(BytecodeBuffer b, BytecodeBuffer data)
+    {
+        long[] values = { 0, 1, 0x7F, 0x80, 0x3FFF, 0x4000, 0x1FFFFF, 0x200000, 0xFFFFFFFL, 0x10000000L, 0xFFFFFFFFL };
+        for (int i = 0; i < values.length; i++)
+        {
+            b.writeU8((int) values[i]);
+            b.writeU16((int) values[i]);
+            b.writeS24((int) values[i]);
+            b.writeU32(values[i]);
+            b.writeDouble(values[i] / 3.0);
+        }
+        // more than the buffer grows by on its own
+        b.writeBytes(data, 0, data.size());
+        b.writeBytes(data, 10, 20);
+    }
+
+    /**
+     * An ABC with the given number of classes, each with a slot and a script that defines
+     * them, written into a buffer that starts at one byte.
+     */
+    private static byte[] abc(int classes)
+    {
+        int PACKAGE = ActionBlockConstants.CONSTANT_PackageNamespace;
+        int QNAME = ActionBlockConstants.CONSTANT_Qname;
+
+        // strings "", C0, Object, x, C1, C2...; the multinames C0, Object, x, C1, C2...
+        String[] strings = new String[(classes == 0) ? 0 : classes + 3];
+        int[][] multinames = new int[(classes == 0) ? 0 : classes + 2][];
+        for (int i = 0; i < classes; i++)
+        {
+            int string = (i == 0) ? 2 : i + 4, multiname = (i == 0) ? 1 : i + 3;
+            strings[string - 1] = "C" + i;
+            multinames[multiname - 1] = new int[] { QNAME, 1, string };
+        }
+        if (classes > 0)
+        {
+            strings[0] = "";
+            strings[2] = "Object";
+            strings[3] = "x";
+            multinames[1] = new int[] { QNAME, 1, 3 };
+            multinames[2] = new int[] { QNAME, 1, 4 };
+        }
+        byte[] pool = ConstantPoolMergeTest.pool(new int[0], new long[0], new double[0], strings,
+                                                 (classes == 0) ? new int[0][] : new int[][] { { PACKAGE, 1 } },
+                                                 new int[0][], multinames);
+
+        BytecodeBuffer b = new BytecodeBuffer(1);
+        b.writeU16(16);
+        b.writeU16(46);
+        b.writeBytes(new BytecodeBuffer(pool), 0, pool.length);
+
+        // the script initializer, then an instance and a class initializer for every class
+        int methods = 1 + 2 * classes;
+        b.writeU32(methods);
+        for (int i = 0; i < methods; i++)
+        {
+            b.writeU32(0); // params
+            b.writeU32(0); // return type
+            b.writeU32(0); // name
+            b.writeU8(0);  // flags
+        }
+
+        b.writeU32(0); // metadata
+
+        b.writeU32(classes);
+        for (int i = 0; i < classes; i++)
+        {
+            b.writeU32((i == 0) ? 1 : i + 3); // name
+            b.writeU32(2); // Object
+            b.writeU8(0);
+            b.writeU32(0); // interfaces
+            b.writeU32(1 + 2 * i); // iinit
+            b.writeU32(1); // traits
+            b.writeU32(3); // x
+            b.writeU8(ActionBlockConstants.TRAIT_Var);
+            b.writeU32(1); // slot id
+            b.writeU32(0); // type
+            b.writeU32(0); // value
+        }
+        for (int i = 0; i < classes; i++)
+        {
+            b.writeU32(2 + 2 * i); // cinit
+            b.writeU32(0); // traits
+        }
+
+        b.writeU32(1);
+        b.writeU32(0); // init
+        b.writeU32(classes);
+        for (int i = 0; i < classes; i++)
+        {
+            b.writeU32((i == 0) ? 1 : i + 3);
+            b.writeU8(ActionBlockConstants.TRAIT_Class);
+            b.writeU32(i + 1); // slot id
+            b.writeU32(i);
+        }
+
+        b.writeU32(methods);
+        for (int i = 0; i < methods; i++)
+        {
+            b.writeU32(i);
+            b.writeU32(1); // max stack
+            b.writeU32(1); // locals
+            b.writeU32(0); // init scope depth
+            b.writeU32(1); // max scope depth
+            b.writeU32(3);
+            b.writeU8(ActionBlockConstants.OP_getlocal0);
+            b.writeU8(ActionBlockConstants.OP_pushscope);
+            b.writeU8(ActionBlockConstants.OP_returnvoid);
+            b.writeU32(0); // exceptions
+            b.writeU32(0); // traits
+        }
+
+        return b.toByteArray();
+    }
+}
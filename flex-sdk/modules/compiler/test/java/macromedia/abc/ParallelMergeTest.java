@@ -0,0 +1,218 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package macromedia.abc;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import macromedia.asc.embedding.avmplus.ActionBlockConstants;
+
+/**
+ * Merges a few dozen generated constant pools that share many of their constants, on one
+ * thread and on several, and checks that every constant gets the same merged index and that
+ * the merged pools have the same bytes.  The constants are looked up in a random order, since
+ * the merged indices are handed out in the order of first use.
+ */
+public class ParallelMergeTest extends TestCase
+{
+    private static final int POOLS = 40;
+
+    public static Test suite()
+    {
+        return new TestSuite(ParallelMergeTest.class);
+    }
+
+    public void testThreads() throws Exception
+    {
+        byte[][] input = pools(new Random(1));
+        int[] order = order(input, new Random(2));
+
+        List expectedIndices = new ArrayList();
+        byte[] expected = merge(input, order, 1, expectedIndices);
+
+        int[] threads = { 2, 3, 4, 8, POOLS + 1 };
+        for (int i = 0; i < threads.length; i++)
+        {
+            List indices = new ArrayList();
+            byte[] merged = merge(input, order, threads[i], indices);
+            assertEquals(threads[i] + " threads", expectedIndices, indices);
+            assertTrue(threads[i] + " threads", Arrays.equals(expected, merged));
+        }
+    }
+
+    public void testHashed() throws Exception
+    {
+        // pools whose constants were hashed as they were decoded merge the same way.
+        byte[][] input = pools(new Random(3));
+        int[] order = order(input, new Random(4));
+
+        List expectedIndices = new ArrayList();
+        byte[] expected = merge(input, order, 1, expectedIndices);
+
+        ConstantPool[] pools = decode(input);
+        for (int i = 0; i < pools.length; i++)
+        {
+            pools[i].hashConstants();
+        }
+        List indices = new ArrayList();
+        assertTrue(Arrays.equals(expected, use(ConstantPool.merge(pools, 4), pools, order, indices)));
+        assertEquals(expectedIndices, indices);
+    }
+
+    private static byte[] merge(byte[][] input, int[] order, int threads, List indices) throws Exception
+    {
+        ConstantPool[] pools = decode(input);
+        return use(ConstantPool.merge(pools, threads), pools, order, indices);
+    }
+
+    private static ConstantPool[] decode(byte[][] input) throws DecoderException
+    {
+        ConstantPool[] pools = new ConstantPool[input.length];
+        for (int i = 0; i < input.length; i++)
+        {
+            pools[i] = new ConstantPool(new BytecodeBuffer(input[i]), false);
+        }
+        return pools;
+    }
+
+    /**
+     * Looks up the constants in the given order, each one packed as pool, kind and index, and
+     * writes the merged pool.
+     */
+    private static byte[] use(ConstantPool merged, ConstantPool[] pools, int[] order, List indices) throws Exception
+    {
+        for (int i = 0; i < order.length; i++)
+        {
+            int pool = order[i] >>> 24, kind = (order[i] >>> 20) & 0xF, index = order[i] & 0xFFFFF;
+            indices.add(new Integer(merged.history.getIndex(pool, kind, index)));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        merged.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static int[] order(byte[][] input, Random random) throws DecoderException
+    {
+        ConstantPool[] pools = decode(input);
+        List order = new ArrayList();
+        for (int i = 0; i < pools.length; i++)
+        {
+            ConstantPool p = pools[i];
+            int[][] positions = { p.intpositions, p.uintpositions, p.doublepositions, p.decimalpositions,
+                                  p.strpositions, p.nspositions, p.nsspositions, p.mnpositions };
+            for (int kind = IndexHistory.cp_int; kind <= IndexHistory.cp_mn; kind++)
+            {
+                for (int j = 1; j < positions[kind].length; j++)
+                {
+                    order.add(new Integer((i << 24) | (kind << 20) | j));
+                }
+            }
+        }
+        Collections.shuffle(order, random);
+
+        int[] result = new int[order.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = ((Integer) order.get(i)).intValue();
+        }
+        return result;
+    }
+
+    /**
+     * Each pool takes a few hundred constants out of a common set, so most of them are
+     * duplicated across the pools.
+     */
+    private static byte[][] pools(Random random)
+    {
+        byte[][] pools = new byte[POOLS][];
+        for (int i = 0; i < POOLS; i++)
+        {
+            int[] ints = new int[random.nextInt(50)];
+            for (int j = 0; j < ints.length; j++)
+            {
+                ints[j] = random.nextInt(200) - 100;
+            }
+
+            long[] uints = new long[random.nextInt(20)];
+            for (int j = 0; j < uints.length; j++)
+            {
+                uints[j] = 0xFFFFFF00L + random.nextInt(100);
+            }
+
+            double[] doubles = new double[random.nextInt(30)];
+            for (int j = 0; j < doubles.length; j++)
+            {
+                doubles[j] = random.nextInt(100) / 4.0;
+            }
+
+            String[] strings = new String[1 + random.nextInt(300)];
+            for (int j = 0; j < strings.length; j++)
+            {
+                strings[j] = "s" + random.nextInt(1000);
+            }
+
+            int[][] namespaces = new int[random.nextInt(20)][];
+            int[] kinds = { ActionBlockConstants.CONSTANT_PackageNamespace,
+                            ActionBlockConstants.CONSTANT_PackageInternalNs,
+                            ActionBlockConstants.CONSTANT_PrivateNamespace };
+            for (int j = 0; j < namespaces.length; j++)
+            {
+                namespaces[j] = new int[] { kinds[random.nextInt(kinds.length)], 1 + random.nextInt(strings.length) };
+            }
+
+            int[][] nssets = new int[(namespaces.length == 0) ? 0 : random.nextInt(10)][];
+            for (int j = 0; j < nssets.length; j++)
+            {
+                nssets[j] = new int[1 + random.nextInt(3)];
+                for (int k = 0; k < nssets[j].length; k++)
+                {
+                    nssets[j][k] = 1 + random.nextInt(namespaces.length);
+                }
+            }
+
+            int[][] multinames = new int[(nssets.length == 0) ? 0 : random.nextInt(100)][];
+            for (int j = 0; j < multinames.length; j++)
+            {
+                int name = 1 + random.nextInt(strings.length);
+                switch (random.nextInt(4))
+                {
+                case 0:
+                    multinames[j] = new int[] { ActionBlockConstants.CONSTANT_Qname,
+                                                1 + random.nextInt(namespaces.length), name };
+                    break;
+                case 1:
+                    multinames[j] = new int[] { ActionBlockConstants.CONSTANT_Multiname,
+                                                name, 1 + random.nextInt(nssets.length) };
+                    break;
+                case 2:
+                    multinames[j] = new int[] { ActionBlockConstants.CONSTANT_RTQname, name };
+                    break;
+                default:
+                    multinames[j] = new int[] { ActionBlockConstants.CONSTANT_MultinameL,
+                                                1 + random.nextInt(nssets.length) };
+                    break;
+                }
+            }
+
+            pools[i] = ConstantPoolMergeTest.pool(ints, uints, doubles, strings, namespaces, nssets, multinames);
+        }
+        return pools;
+    }
+}
@@ -13,6 +13,8 @@ package flash.swf;
 
 import flash.swf.types.Rect;
 
+import java.util.zip.Deflater;
+
 /**
  * @author Clement Wong
  */
@@ -30,7 +32,27 @@ public class Header
 		return version >= 6;
 	}
 
+	/**
+	 * The zlib level for compressed movies, BEST_COMPRESSION unless the flex.swf.compression.level
+	 * system property says otherwise.
+	 */
+	public static int getCompressionLevel()
+	{
+		return Integer.getInteger("flex.swf.compression.level", Deflater.BEST_COMPRESSION).intValue();
+	}
+
+	/**
+	 * The number of threads that deflate a compressed movie, 1 unless the flex.swf.compression.threads
+	 * system property says otherwise.
+	 */
+	public static int getCompressionThreads()
+	{
+		return Math.max(1, Integer.getInteger("flex.swf.compression.threads", 1).intValue());
+	}
+
     public boolean compressed;
+	public int compressionLevel = getCompressionLevel();
+	public int compressionThreads = getCompressionThreads();
 	public int version;
 	public long length;
 	public Rect size;
@@ -33,6 +33,31 @@ public class MovieDecoder extends TagHandler
 		this.m = m;
 	}
 
+	private boolean decodeBitmaps = true;
+
+	/**
+	 * Sets whether DefineBitsLossless, DefineBitsLossless2 and DefineBitsJPEG3 are decoded.
+	 * When they aren't, they keep their compressed data, and MovieEncoder writes it back
+	 * without inflating and deflating it again. Worth it for movies that only get relinked.
+	 */
+	public void setDecodeBitmaps(boolean b)
+	{
+		decodeBitmaps = b;
+	}
+
+	public boolean wantsDecoded(int code)
+	{
+		switch (code)
+		{
+		case TagValues.stagDefineBitsLossless:
+		case TagValues.stagDefineBitsLossless2:
+		case TagValues.stagDefineBitsJPEG3:
+			return decodeBitmaps;
+		default:
+			return true;
+		}
+	}
+
 	public void header(Header h)
 	{
 		m.version = h.version;
@@ -30,6 +30,8 @@ public class MovieEncoder
 {
 	private TagHandler handler;
 	private HashSet done;
+	private int compressionLevel = Header.getCompressionLevel();
+	private int compressionThreads = Header.getCompressionThreads();
 
 	public MovieEncoder(TagHandler handler)
 	{
@@ -37,14 +39,27 @@ public class MovieEncoder
 		done = new HashSet();
 	}
 
+	/**
+	 * Trades compression for speed, e.g. Deflater.BEST_SPEED and a few threads for
+	 * development builds.  Release builds should keep the default, BEST_COMPRESSION on one thread.
+	 */
+	public void setCompression(int level, int threads)
+	{
+		compressionLevel = level;
+		compressionThreads = Math.max(1, threads);
+	}
+
 	public void export(Movie m)
 	{
 		// define the header
 		Header h = new Header();
 		h.version = m.version;
 		h.compressed = Header.useCompression(m.version);
+		h.compressionLevel = compressionLevel;
+		h.compressionThreads = compressionThreads;
 		h.size = m.size;
 		h.rate = m.framerate;
+		h.framecount = m.frames.size(); // known up front for TagEncoder.setOutput()
 
 		handler.header(h);
 
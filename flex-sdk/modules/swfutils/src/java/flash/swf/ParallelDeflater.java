@@ -0,0 +1,306 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flash.swf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes one zlib stream for a range of bytes, deflating fixed-size blocks on several threads.
+ * Every block but the last ends with a sync flush, so the raw deflate outputs line up on byte
+ * boundaries and can simply be concatenated between the zlib header and the combined adler32.
+ * Each block is primed with the last 32K of the block before it, so the ratio stays close to
+ * what a single Deflater gets.
+ *
+ * Sync flushing only became public in the Deflater API after 1.4, so it is looked up at runtime.
+ * When isSupported() is false, callers should stick to a single DeflaterOutputStream.
+ *
+ * @see SwfEncoder#setCompression(int, int)
+ */
+final class ParallelDeflater
+{
+    static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final Method deflate;
+    private static final Object SYNC_FLUSH;
+
+    static
+    {
+        Method m = null;
+        Object flush = null;
+        try
+        {
+            flush = Deflater.class.getField("SYNC_FLUSH").get(null);
+            m = Deflater.class.getMethod("deflate", new Class[] { byte[].class, int.class, int.class, int.class });
+        }
+        catch (Exception ex)
+        {
+            m = null;
+        }
+        deflate = m;
+        SYNC_FLUSH = flush;
+    }
+
+    static boolean isSupported()
+    {
+        return deflate != null;
+    }
+
+    private ParallelDeflater(byte[] buf, int off, int len, int level)
+    {
+        this.buf = buf;
+        this.off = off;
+        this.len = len;
+        this.level = level;
+
+        int blocks = (len + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        output = new byte[blocks][];
+        checksums = new long[blocks];
+    }
+
+    private final byte[] buf;
+    private final int off, len, level;
+    private final byte[][] output;
+    private final long[] checksums;
+    private int next;
+    private Throwable failure;
+
+    /**
+     * Writes the zlib stream for buf[off, off+len) to out. All the blocks are deflated before
+     * anything is written, so out may share buf, as it does when SwfEncoder compresses in place.
+     */
+    static void deflate(byte[] buf, int off, int len, int level, int threads, OutputStream out) throws IOException
+    {
+        ParallelDeflater d = new ParallelDeflater(buf, off, len, level);
+        d.run(Math.max(1, Math.min(threads, d.output.length)));
+
+        out.write(0x78);
+        out.write(flags(level));
+
+        long adler = 1;
+        for (int i = 0, size = d.output.length; i < size; i++)
+        {
+            out.write(d.output[i]);
+            int blockLength = Math.min(BLOCK_SIZE, len - i * BLOCK_SIZE);
+            adler = combine(adler, d.checksums[i], blockLength);
+        }
+
+        // an empty range still needs one (final) deflate block
+        if (d.output.length == 0)
+        {
+            Deflater deflater = new Deflater(level, true);
+            deflater.finish();
+            byte[] tmp = new byte[16];
+            while (!deflater.finished())
+            {
+                out.write(tmp, 0, deflater.deflate(tmp));
+            }
+            deflater.end();
+        }
+
+        out.write((int) (adler >>> 24));
+        out.write((int) (adler >>> 16));
+        out.write((int) (adler >>> 8));
+        out.write((int) adler);
+    }
+
+    private void run(int threads) throws IOException
+    {
+        Thread[] workers = new Thread[threads - 1];
+        for (int i = 0; i < workers.length; i++)
+        {
+            workers[i] = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    work();
+                }
+            }, "flash.swf.deflater." + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        work();
+
+        boolean interrupted = false;
+        for (int i = 0; i < workers.length; i++)
+        {
+            while (workers[i].isAlive())
+            {
+                try
+                {
+                    workers[i].join();
+                }
+                catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failure instanceof IOException)
+        {
+            throw (IOException) failure;
+        }
+        else if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException) failure;
+        }
+        else if (failure instanceof Error)
+        {
+            throw (Error) failure;
+        }
+        else if (failure != null)
+        {
+            throw new IOException(failure.toString());
+        }
+    }
+
+    private void work()
+    {
+        while (true)
+        {
+            int block;
+            synchronized (this)
+            {
+                if (next == output.length || failure != null)
+                {
+                    return;
+                }
+                block = next++;
+            }
+
+            try
+            {
+                deflateBlock(block);
+            }
+            catch (Throwable t)
+            {
+                synchronized (this)
+                {
+                    if (failure == null)
+                    {
+                        failure = t;
+                    }
+                }
+            }
+        }
+    }
+
+    private void deflateBlock(int block) throws Exception
+    {
+        int start = off + block * BLOCK_SIZE;
+        int length = Math.min(BLOCK_SIZE, off + len - start);
+        boolean last = (block == output.length - 1);
+
+        Adler32 adler = new Adler32();
+        adler.update(buf, start, length);
+
+        Deflater deflater = new Deflater(level, true);
+        RandomAccessBuffer out = new RandomAccessBuffer(length / 2 + 64);
+        byte[] tmp = new byte[8192];
+        try
+        {
+            if (block > 0)
+            {
+                int size = Math.min(DICTIONARY_SIZE, start - off);
+                deflater.setDictionary(buf, start - size, size);
+            }
+
+            deflater.setInput(buf, start, length);
+
+            if (last)
+            {
+                deflater.finish();
+                while (!deflater.finished())
+                {
+                    out.write(tmp, 0, deflater.deflate(tmp));
+                }
+            }
+            else
+            {
+                Object[] args = new Object[] { tmp, new Integer(0), new Integer(tmp.length), SYNC_FLUSH };
+                int n;
+                do
+                {
+                    n = ((Integer) deflate.invoke(deflater, args)).intValue();
+                    out.write(tmp, 0, n);
+                }
+                while (n == tmp.length);
+            }
+        }
+        finally
+        {
+            deflater.end();
+        }
+
+        output[block] = out.toByteArray();
+        checksums[block] = adler.getValue();
+    }
+
+    /**
+     * The FLG byte of the zlib header: FLEVEL from the compression level and FCHECK
+     * so that CMF * 256 + FLG is a multiple of 31.
+     */
+    private static int flags(int level)
+    {
+        int flevel;
+        if (level == Deflater.DEFAULT_COMPRESSION || level == 6)
+        {
+            flevel = 2;
+        }
+        else if (level < 2)
+        {
+            flevel = 0;
+        }
+        else if (level < 6)
+        {
+            flevel = 1;
+        }
+        else
+        {
+            flevel = 3;
+        }
+
+        int flg = flevel << 6;
+        return flg + (31 - (0x78 * 256 + flg) % 31) % 31;
+    }
+
+    /**
+     * Combines the adler32 of two consecutive ranges, the second one len2 bytes long,
+     * as zlib's adler32_combine() does.
+     */
+    static long combine(long adler1, long adler2, long len2)
+    {
+        final long BASE = 65521;
+
+        long rem = len2 % BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % BASE;
+        sum1 += (adler2 & 0xffff) + BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + BASE - rem;
+        if (sum1 >= BASE) sum1 -= BASE;
+        if (sum1 >= BASE) sum1 -= BASE;
+        if (sum2 >= (BASE << 1)) sum2 -= (BASE << 1);
+        if (sum2 >= BASE) sum2 -= BASE;
+        return sum1 | (sum2 << 16);
+    }
+}
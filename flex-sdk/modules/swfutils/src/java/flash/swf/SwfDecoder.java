@@ -193,6 +193,30 @@ public final class SwfDecoder extends BufferedInputStream
 			return 0;
 		}
 
+		// C: the bits that aren't left over from the last call, rounded up to whole bytes.
+		//    When they're all in the buffer, take them in one go, through a 64 bit word, instead
+		//    of a byte at a time through readUI8().
+		int bytes = (numBits - bitPos + 7) >> 3;
+		if (bytes <= count - pos)
+		{
+			long word = bitBuf;
+			for (int i = 0; i < bytes; i++)
+			{
+				word = (word << 8) | (buf[pos++] & 0xFF);
+			}
+			offset += bytes;
+
+			int available = bitPos + (bytes << 3);
+			bitPos = available - numBits;
+			bitBuf = (int) word & (0xff >> (8 - bitPos));
+			return (int) (word >>> bitPos);
+		}
+
+		return readUBitsSlowly(numBits);
+	}
+
+	private int readUBitsSlowly(int numBits) throws IOException
+	{
 		int bitsLeft = numBits;
 		int result = 0;
 
@@ -14,14 +14,22 @@ package flash.swf;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
 public class SwfEncoder extends RandomAccessBuffer
 {
     private int bitPos = 8; //Must start as a full byte with value of 8
-    private byte currentByte = 0x00;
+    private long bitBuf = 0; // the 8 - bitPos bits written since the last full byte, right justified
     private int compressPos = -1;
+    private int compressionLevel = Deflater.BEST_COMPRESSION;
+    private int compressionThreads = 1;
+    private Deflater drainDeflater;
+    private byte[] drainBuf;
+    private int drained;
 
     final int swfVersion;
 
@@ -94,6 +102,26 @@ public class SwfEncoder extends RandomAccessBuffer
         compressPos = getPos();
     }
 
+    /**
+     * Sets the zlib level and the number of threads used for the marked section.  With more
+     * than one thread, sections bigger than a block are deflated in blocks, concurrently,
+     * into a single zlib stream.
+     *
+     * @see Header#compressionLevel
+     * @see Header#compressionThreads
+     */
+    public void setCompression(int level, int threads)
+    {
+        compressionLevel = level;
+        compressionThreads = threads;
+    }
+
+    private boolean isParallel()
+    {
+        return compressionThreads > 1 && count - compressPos > ParallelDeflater.BLOCK_SIZE &&
+               ParallelDeflater.isSupported();
+    }
+
     /**
      * compress the marked section of our buffer, in place.
      * @throws IOException
@@ -105,7 +133,14 @@ public class SwfEncoder extends RandomAccessBuffer
             // compress in place from compressPos to pos
             pos = compressPos;
 
-            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            if (isParallel())
+            {
+                ParallelDeflater.deflate(buf, compressPos, count-compressPos, compressionLevel, compressionThreads, this);
+                compressPos = -1;
+                return;
+            }
+
+            Deflater deflater = new Deflater(compressionLevel);
 			DeflaterOutputStream deflaterStream = new DeflaterOutputStream(this, deflater);
             deflaterStream.write(buf, compressPos, count-compressPos);
             deflaterStream.finish();
@@ -131,7 +166,13 @@ public class SwfEncoder extends RandomAccessBuffer
             count = pos;
             out.write(buf, 0, compressPos);
 
-            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            if (isParallel())
+            {
+                ParallelDeflater.deflate(buf, compressPos, count-compressPos, compressionLevel, compressionThreads, out);
+                return;
+            }
+
+            Deflater deflater = new Deflater(compressionLevel);
 			DeflaterOutputStream deflaterStream = new DeflaterOutputStream(out, deflater);
 			deflaterStream.write(buf, compressPos, count-compressPos);
 			deflaterStream.finish();
@@ -139,6 +180,83 @@ public class SwfEncoder extends RandomAccessBuffer
         }
     }
 
+    /**
+     * Moves everything written so far to the channel and empties the buffer, so the next
+     * byte goes to position 0 again.  Bytes after the markComp() mark are deflated on the way,
+     * as writeTo() would, by one Deflater that carries on from call to call, so all the calls
+     * add up to a single zlib stream.  Pass finish on the last call to end it.
+     *
+     * Nothing that has been drained can be patched with writeUI16at() and friends any more.
+     *
+     * @see #getDrained()
+     */
+    public synchronized void drainTo(WritableByteChannel channel, boolean finish) throws IOException
+    {
+        assert (bitPos == 8);
+        count = pos;
+
+        int end = (compressPos == -1) ? count : compressPos;
+        writeFully(channel, ByteBuffer.wrap(buf, 0, end));
+
+        if (compressPos != -1 && finish && drainDeflater == null && isParallel())
+        {
+            // nothing has been deflated yet, so the blocks can go to threads
+            ParallelDeflater.deflate(buf, compressPos, count-compressPos, compressionLevel, compressionThreads,
+                                     Channels.newOutputStream(channel));
+            compressPos = -1;
+        }
+        else if (compressPos != -1)
+        {
+            if (drainDeflater == null)
+            {
+                drainDeflater = new Deflater(compressionLevel);
+                drainBuf = new byte[8192];
+            }
+
+            drainDeflater.setInput(buf, compressPos, count - compressPos);
+            if (finish)
+            {
+                drainDeflater.finish();
+            }
+
+            // C: the Deflater has to be done with buf before we reuse it
+            while (finish ? !drainDeflater.finished() : !drainDeflater.needsInput())
+            {
+                int n = drainDeflater.deflate(drainBuf);
+                writeFully(channel, ByteBuffer.wrap(drainBuf, 0, n));
+            }
+
+            if (finish)
+            {
+                drainDeflater.end();
+                drainDeflater = null;
+                drainBuf = null;
+            }
+            compressPos = finish ? -1 : 0;
+        }
+
+        drained += count;
+        count = 0;
+        pos = 0;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer b) throws IOException
+    {
+        while (b.hasRemaining())
+        {
+            channel.write(b);
+        }
+    }
+
+    /**
+     * The number of bytes drainTo() has taken out of the buffer, before compression.  Add it to
+     * getPos() for the offset in the SWF.
+     */
+    public int getDrained()
+    {
+        return drained;
+    }
+
     public void writeBit(boolean data)
     {
         writeBits(data ? 1 : 0, 1);
@@ -147,35 +265,39 @@ public class SwfEncoder extends RandomAccessBuffer
     private void writeBits(int data, int size)
     {
 //        if (print&&size>0) System.out.println("  write"+size+" "+data);
-        while (size > 0)
+        if (size <= 0)
+        {
+            return;
+        }
+
+        // shift the new bits in under the pending ones, then write out
+        // all the full bytes at once
+        long word = (bitBuf << size) | (data & (0xFFFFFFFFL >>> (32 - size)));
+        int bits = 8 - bitPos + size;
+        int bytes = bits >> 3;
+        bits &= 7;
+
+        if (bytes > 0)
         {
-            if (size > bitPos)
+            if (pos == count && count + bytes <= buf.length)
             {
-                //if more bits left to write than shift out what will fit
-                currentByte |= data << (32 - size) >>> (32 - bitPos);
-
-                // shift all the way left, then right to right
-                // justify the data to be or'ed in
-                super.write(currentByte);
-                size -= bitPos;
-                currentByte = 0;
-                bitPos = 8;
+                for (int shift = bits + ((bytes - 1) << 3); shift >= bits; shift -= 8)
+                {
+                    buf[count++] = (byte) (word >>> shift);
+                }
+                pos = count;
             }
-            else // if (size <= bytePos)
+            else
             {
-                currentByte |= data << (32 - size) >>> (32 - bitPos);
-                bitPos -= size;
-                size = 0;
-
-                if (bitPos == 0)
+                for (int shift = bits + ((bytes - 1) << 3); shift >= bits; shift -= 8)
                 {
-                    //if current byte is filled
-                    super.write(currentByte);
-                    currentByte = 0;
-                    bitPos = 8;
+                    super.write((int) (word >>> shift) & 0xFF);
                 }
             }
         }
+
+        bitBuf = word & (0xFF >> (8 - bits));
+        bitPos = 8 - bits;
     }
 
     public void writeUBits(int data, int size)
@@ -194,8 +316,8 @@ public class SwfEncoder extends RandomAccessBuffer
     {
         if (bitPos != 8)
         {
-            super.write(currentByte);
-            currentByte = 0;
+            super.write((int) (bitBuf << bitPos) & 0xFF);
+            bitBuf = 0;
             bitPos = 8;
         }
     }
@@ -204,6 +326,13 @@ public class SwfEncoder extends RandomAccessBuffer
     {
         super.reset();
         compressPos = -1;
+        drained = 0;
+        if (drainDeflater != null)
+        {
+            drainDeflater.end();
+            drainDeflater = null;
+            drainBuf = null;
+        }
     }
 
     public void writeUI8at(int pos, int value)
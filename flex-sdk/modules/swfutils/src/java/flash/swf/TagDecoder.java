@@ -397,6 +397,70 @@ public final class TagDecoder
         return t;
     }
 
+    /**
+     * Reads the body of a bitmap tag after its character id, if the handler doesn't want
+     * the tag decoded.
+     *
+     * @return the body as is, or null if the tag should be decoded
+     */
+    private byte[] decodeRawData(int type, int length) throws IOException
+    {
+        if (handler == null || handler.wantsDecoded(type))
+        {
+            return null;
+        }
+
+        byte[] data = new byte[length - 2];
+        r.readFully(data);
+        return data;
+    }
+
+    private void decodeBitmapHeader(DefineBitsLossless t)
+    {
+        byte[] b = t.rawData;
+        t.format = b[0] & 0xFF;
+        t.width = (b[1] & 0xFF) | (b[2] & 0xFF) << 8;
+        t.height = (b[3] & 0xFF) | (b[4] & 0xFF) << 8;
+    }
+
+    /**
+     * Decodes the body that a bitmap tag kept in rawData into a new tag of the same kind.
+     * @param tag a DefineBitsLossless, DefineBitsLossless2 or DefineBitsJPEG3 with rawData.
+     * @return the decoded tag, with the same name.
+     * @throws IOException if the body is malformed.
+     */
+    public static DefineBits decodeRawBitmap(DefineBits tag) throws IOException
+    {
+        // the character id isn't kept, the tag decoders just skip it.
+        byte[] body = new byte[tag.rawData.length + 2];
+        System.arraycopy(tag.rawData, 0, body, 2, tag.rawData.length);
+
+        // the SWF version only matters for strings, which bitmaps don't have.
+        TagDecoder decoder = new TagDecoder((InputStream) null);
+        decoder.header = new Header();
+        decoder.r = new SwfDecoder(body, decoder.header.version);
+
+        DefineBits t;
+        switch (tag.code)
+        {
+        case stagDefineBitsLossless:
+            t = (DefineBits) decoder.decodeDefineBitsLossless(body.length);
+            break;
+        case stagDefineBitsLossless2:
+            t = (DefineBits) decoder.decodeDefineBitsLossless2(body.length);
+            break;
+        case stagDefineBitsJPEG3:
+            t = (DefineBits) decoder.decodeDefineJPEG3(body.length);
+            break;
+        default:
+            throw new SwfFormatException("Unexpected raw data in tag " + tag.code);
+        }
+
+        t.name = tag.name;
+        t.jpegTables = tag.jpegTables;
+        return t;
+    }
+
     private Tag decodeDefineSceneAndFrameData(int length) throws IOException
     {
         DefineSceneAndFrameLabelData t = new DefineSceneAndFrameLabelData();
@@ -1174,6 +1238,14 @@ public final class TagDecoder
         int pos = r1.getOffset();
 
         int id = r1.readUI16();
+
+        if ((t.rawData = decodeRawData(stagDefineBitsLossless2, length)) != null)
+        {
+            decodeBitmapHeader(t);
+            dict.add(id, t);
+            return t;
+        }
+
         t.format = r1.readUI8();
         t.width = r1.readUI16();
         t.height = r1.readUI16();
@@ -1267,6 +1339,15 @@ public final class TagDecoder
         t = new DefineBitsJPEG3();
         int pos = r.getOffset();
         int id = r.readUI16();
+
+        if ((t.rawData = decodeRawData(stagDefineBitsJPEG3, length)) != null)
+        {
+            byte[] b = t.rawData;
+            t.alphaDataOffset = (b[0] & 0xFFL) | (b[1] & 0xFFL) << 8 | (b[2] & 0xFFL) << 16 | (b[3] & 0xFFL) << 24;
+            dict.add(id, t);
+            return t;
+        }
+
         t.alphaDataOffset = r.readUI32();
 
         t.data = new byte[(int) t.alphaDataOffset];
@@ -1716,6 +1797,14 @@ public final class TagDecoder
         int pos = r1.getOffset();
 
         int id = r1.readUI16();
+
+        if ((t.rawData = decodeRawData(stagDefineBitsLossless, length)) != null)
+        {
+            decodeBitmapHeader(t);
+            dict.add(id, t);
+            return t;
+        }
+
         t.format = r1.readUI8();
         t.width = r1.readUI16();
         t.height = r1.readUI16();
@@ -52,6 +52,10 @@ import flash.swf.types.FocalGradient;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -73,6 +77,14 @@ public class TagEncoder extends TagHandler
     protected Dictionary dict;
     private int uuidOffset;
 
+    // streaming, see setOutput()
+    private static final int STREAM_BLOCK = 64 * 1024;
+    private FileChannel stream;
+    private SwfEncoder streamWriter;
+    private long streamStart;
+    private IOException streamFailure;
+    private int streamLength;
+
     public TagEncoder()
     {
         dict = new Dictionary();
@@ -113,7 +125,7 @@ public class TagEncoder extends TagHandler
 
     public int getPos()
     {
-        return writer.getPos();
+        return writer.getDrained() + writer.getPos();
     }
 
     protected int getSwfVersion()
@@ -154,6 +166,7 @@ public class TagEncoder extends TagHandler
         this.header = header;
         this.writer = createEncoder(swfVersion);
         this.tagw = createEncoder(swfVersion);
+        streamWriter = (stream != null) ? writer : null;
         width = header.size.getWidth();
         height = header.size.getHeight();
         frames = 0;
@@ -167,6 +180,7 @@ public class TagEncoder extends TagHandler
         if (header.compressed)
         {
             writer.markComp();
+            writer.setCompression(header.compressionLevel, header.compressionThreads);
         }
         encodeRect(header.size, writer);
         writer.writeUI8(header.rate >> 8);
@@ -190,6 +204,18 @@ public class TagEncoder extends TagHandler
         // write end marker
         writer.writeUI16(0);
 
+        if (writer.getDrained() > 0)
+        {
+            // the header is in the channel already, writeTo() patches the length there.
+            // a compressed frame count can't be patched, the Header has to have it right.
+            streamLength = getPos();
+            if (frames != header.framecount && header.compressed)
+            {
+                throw new IllegalStateException("Header.framecount is " + header.framecount + ", " + frames + " frames were encoded");
+            }
+            return;
+        }
+
         // update the length
         writer.write32at(4, writer.getPos());
 
@@ -210,9 +236,89 @@ public class TagEncoder extends TagHandler
 
     public void writeTo(OutputStream out) throws IOException
     {
+        if (writer.getDrained() > 0)
+        {
+            throw new IllegalStateException("the SWF was streamed, use writeTo(WritableByteChannel)");
+        }
         writer.writeTo(out);
     }
 
+    /**
+     * Streams the SWF to the channel while it's being encoded, instead of holding on to all of
+     * it until writeTo().  Call it before header(), and call writeTo(channel) after finish() for
+     * the rest.  Whenever 64K of finished tags have piled up, they are written out, deflated
+     * if the SWF is compressed, and dropped.  Peak memory use is then about the size of the
+     * biggest tag, not the size of the SWF.
+     *
+     * The SWF starts at the current position of the channel.  When finished, writeTo() goes
+     * back there to fill in the file length, so only a FileChannel will do; other channels get
+     * the whole SWF at once from writeTo().  Since the frame count is compressed along with the
+     * rest, Header.framecount has to be right up front for compressed SWFs, as MovieEncoder
+     * sets it.  A streamed SWF is deflated on one thread, whatever Header.compressionThreads
+     * says.  SWFs with a DebugID aren't streamed, the id is a digest of the whole SWF.
+     */
+    public void setOutput(WritableByteChannel channel)
+    {
+        assert (writer == null) : "setOutput() must be called before header()";
+        stream = (channel instanceof FileChannel) ? (FileChannel) channel : null;
+    }
+
+    /**
+     * Writes the SWF to the channel.  If it was streamed to the channel with setOutput(), only
+     * the rest is written, and the length in the header is filled in.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException
+    {
+        if (streamFailure != null)
+        {
+            throw streamFailure;
+        }
+
+        if (writer.getDrained() == 0)
+        {
+            writer.drainTo(channel, true);
+            return;
+        }
+
+        if (channel != stream)
+        {
+            throw new IllegalArgumentException("the SWF was streamed to another channel");
+        }
+
+        writer.drainTo(stream, true);
+
+        ByteBuffer b = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(streamLength).flip();
+        stream.write(b, streamStart + 4);
+
+        if (frames != header.framecount)
+        {
+            b.clear();
+            b.putShort((short) frames).flip();
+            stream.write(b, streamStart + framecountPos);
+        }
+    }
+
+    /**
+     * Hands the finished tags to the channel given to setOutput().
+     */
+    private void drain()
+    {
+        try
+        {
+            if (writer.getDrained() == 0)
+            {
+                streamStart = stream.position();
+            }
+            writer.drainTo(stream, false);
+        }
+        catch (IOException ex)
+        {
+            // C: tag handlers can't throw it, writeTo() will
+            streamFailure = ex;
+            streamWriter = null;
+        }
+    }
 
     public void writeDebugTo(OutputStream out) throws IOException
     {
@@ -237,6 +343,10 @@ public class TagEncoder extends TagHandler
 
     public void debugID(DebugID tag)
     {
+        // the id is a digest of the whole SWF, which has to stay in memory for it
+        assert (writer.getDrained() == 0);
+        streamWriter = null;
+
         encodeTagHeader(tag.code, tag.uuid.bytes.length, false);
         uuidOffset = writer.getPos();
         writer.write(tag.uuid.bytes);
@@ -300,6 +410,12 @@ public class TagEncoder extends TagHandler
 
     private void encodeTagHeader(int code, int length, boolean longHeader)
     {
+        // everything before a top level tag header is done with
+        if (writer == streamWriter && writer.getPos() >= STREAM_BLOCK)
+        {
+            drain();
+        }
+
         if (longHeader || length >= 63)
         {
             writer.writeUI16((code << 6) | 63);
@@ -345,6 +461,12 @@ public class TagEncoder extends TagHandler
     {
         int id = dict.add(tag);
         tagw.writeUI16(id);
+        if (tag.rawData != null)
+        {
+            tagw.write(tag.rawData);
+            encodeTag(tag);
+            return;
+        }
         tagw.write32(tag.data.length);
         tagw.write(tag.data);
         tagw.markComp();
@@ -356,6 +478,12 @@ public class TagEncoder extends TagHandler
     {
         int id = dict.add(tag);
         tagw.writeUI16(id);
+        if (tag.rawData != null)
+        {
+            tagw.write(tag.rawData);
+            encodeTag(tag);
+            return;
+        }
         tagw.writeUI8(tag.format);
         tagw.writeUI16(tag.width);
         tagw.writeUI16(tag.height);
@@ -404,6 +532,12 @@ public class TagEncoder extends TagHandler
     {
         int id = dict.add(tag);
         tagw.writeUI16(id);
+        if (tag.rawData != null)
+        {
+            tagw.write(tag.rawData);
+            encodeTag(tag);
+            return;
+        }
         tagw.writeUI8(tag.format);
         tagw.writeUI16(tag.width);
         tagw.writeUI16(tag.height);
@@ -22,6 +22,19 @@ public class TagHandler
 	{
 	}
 
+	/**
+	 * Tells TagDecoder whether this handler wants tags of the given code decoded. Only
+	 * DefineBitsLossless, DefineBitsLossless2 and DefineBitsJPEG3 may be handed over
+	 * undecoded: they keep their compressed body in rawData and TagEncoder writes it back as
+	 * it was read. All other tags are always decoded.
+	 *
+	 * @return true, unless overridden
+	 */
+	public boolean wantsDecoded(int code)
+	{
+		return true;
+	}
+
     public void productInfo(ProductInfo tag)
     {
     }
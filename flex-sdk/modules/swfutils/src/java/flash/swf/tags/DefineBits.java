@@ -11,7 +11,10 @@
 
 package flash.swf.tags;
 
+import java.io.IOException;
+
 import flash.swf.Tag;
+import flash.swf.TagDecoder;
 import flash.util.ArrayUtil;
 
 /**
@@ -58,11 +61,37 @@ public class DefineBits extends DefineTag
     public GenericTag jpegTables;
 	public byte[] data;
 
+	/**
+	 * The body of the tag after the character id, exactly as it was read, if the decoder
+	 * didn't decode it (see TagHandler.wantsDecoded()). Only the fields that come before
+	 * the compressed data are set then.
+	 */
+	public byte[] rawData;
+
     public boolean equals(Object object)
     {
         boolean isEqual = false;
 
-        if (super.equals(object) && (object instanceof DefineBits))
+        if (isRaw(object))
+        {
+            if (object instanceof DefineBits)
+            {
+                DefineBits defineBits = (DefineBits) object;
+
+                if (defineBits.rawData != null && this.rawData != null)
+                {
+                    // Dictionary compares every unnamed bitmap with every other, so two raw
+                    // tags are only compared by their bytes and never inflated.
+                    isEqual = super.equals(object) && ArrayUtil.equals(defineBits.rawData, this.rawData);
+                }
+                else
+                {
+                    DefineBits a = decoded(), b = defineBits.decoded();
+                    isEqual = (a != null) && (b != null) && a.equals(b);
+                }
+            }
+        }
+        else if (super.equals(object) && (object instanceof DefineBits))
         {
             DefineBits defineBits = (DefineBits) object;
 
@@ -75,4 +104,26 @@ public class DefineBits extends DefineTag
 
         return isEqual;
     }
+
+    /**
+     * Whether this tag or the given one kept its body in rawData. Two raw tags are compared by
+     * their bodies. A raw tag and a decoded one are compared by what the raw body decodes to,
+     * so a tag compares the same whichever way it was read.
+     */
+    protected boolean isRaw(Object object)
+    {
+        return rawData != null || (object instanceof DefineBits && ((DefineBits) object).rawData != null);
+    }
+
+    private DefineBits decoded()
+    {
+        try
+        {
+            return (rawData != null) ? TagDecoder.decodeRawBitmap(this) : this;
+        }
+        catch (IOException ex)
+        {
+            return null;
+        }
+    }
 }
@@ -36,7 +36,11 @@ public class DefineBitsJPEG3 extends DefineBits
     {
         boolean isEqual = false;
 
-        if (super.equals(object) && (object instanceof DefineBitsJPEG3))
+        if (isRaw(object))
+        {
+            isEqual = super.equals(object);
+        }
+        else if (super.equals(object) && (object instanceof DefineBitsJPEG3))
         {
             DefineBitsJPEG3 defineBitsJPEG3 = (DefineBitsJPEG3) object;
 
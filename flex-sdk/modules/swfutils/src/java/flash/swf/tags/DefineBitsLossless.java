@@ -46,7 +46,11 @@ public class DefineBitsLossless extends DefineBits
     {
         boolean isEqual = false;
 
-        if (super.equals(object) && (object instanceof DefineBitsLossless))
+        if (isRaw(object))
+        {
+            isEqual = super.equals(object);
+        }
+        else if (super.equals(object) && (object instanceof DefineBitsLossless))
         {
             DefineBitsLossless defineBitsLossless = (DefineBitsLossless) object;
 
@@ -18,7 +18,9 @@ import java.util.Set;
  * Caching data structure that uses a Least Recently Used (LRU) algorithm.
  * This cache has a max size associated with it that is used to determine
  * when objects should be purged from the cache.  Once the max size is reached,
- * the least recently used element will be purged.
+ * the least recently used element will be purged.  A cache may also be given a
+ * max weight, in which case least recently used elements are purged until the
+ * elements, as weighed by weigh(), fit.
  *
  * This class is thread-safe.
  *
@@ -32,6 +34,8 @@ public abstract class LRUCache extends AbstractCache
     private LRUListEntry tail;//the LRU element
     private int maxSize; //the max size of this cache. If this size is exceeded, LRU elements will be purged to free cache space.
     private int purgeSize = 1;//number of objects to purge when the max size is reached.
+    private long maxWeight = -1;//the max total weight of the elements, -1 for no limit.
+    private long weight;//the total weight of the elements.
 
     /**
      * Create a new LRU cache.
@@ -138,12 +142,14 @@ public abstract class LRUCache extends AbstractCache
         //set the entry's value to be the new key.
         entry.value = value;
         entry.key = key;
+        entry.weight = weigh(value);
 
         synchronized (this)
         {
             //insert the entry into the table
             remove(key);
             map.put(key, entry);
+            weight += entry.weight;
 
             //move the new entry to the front of the list
             setMostRecentlyUsed(entry);
@@ -159,6 +165,12 @@ public abstract class LRUCache extends AbstractCache
                 purgeLRUElements();
             }
 
+            //purge the LRU elements, but never the new one, until the weight fits.
+            while (maxWeight >= 0 && weight > maxWeight && tail != null && tail != entry)
+            {
+                purgeLRUElement();
+            }
+
             rmStats(entry);
         }
     }
@@ -173,6 +185,7 @@ public abstract class LRUCache extends AbstractCache
             LRUListEntry entry = (LRUListEntry)map.remove(key);
             if (entry != null)
             {
+                weight -= entry.weight;
                 if (entry == head)
                 {
                     head = entry.next;
@@ -207,6 +220,7 @@ public abstract class LRUCache extends AbstractCache
         map.clear();
         head = null;
         tail = null;
+        weight = 0;
     }
 
     /**
@@ -239,6 +253,31 @@ public abstract class LRUCache extends AbstractCache
         return maxSize;
     }
 
+    /**
+     * Sets the max total weight of the elements, -1 for no limit.  Elements are
+     * purged when the next element is added.
+     */
+    public synchronized void setMaxWeight(long maxWeight)
+    {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the max total weight of the elements, -1 if there is no limit.
+     */
+    public synchronized long getMaxWeight()
+    {
+        return maxWeight;
+    }
+
+    /**
+     * Returns the total weight of the elements in the cache.
+     */
+    public synchronized long getWeight()
+    {
+        return weight;
+    }
+
     /**
      * Returns the number of LRU elements to purge when the max size is reached.
      */
@@ -247,6 +286,16 @@ public abstract class LRUCache extends AbstractCache
         return purgeSize;
     }
 
+    /**
+     * Hook for subclasses that give the cache a max weight.  Returns the weight of a
+     * value, e.g. the number of bytes it holds.  It is called before the value is
+     * added, without holding the cache's lock.
+     */
+    protected long weigh(Object value)
+    {
+        return 0;
+    }
+
     /**
      * Handler hook to signal subclasses that the LRU element has been purged from the cache.
      * This method is triggered when the cache's max size has been exceeded and the LRU
@@ -280,15 +329,20 @@ public abstract class LRUCache extends AbstractCache
         //purge the number of LRU elements specified by the purgeSize.
         for (int i = 0; i < purgeSize && tail != null; i++)
         {
-            Object key = tail.key;
-            Object value = tail.value;
-            remove(tail.key);
-
-            //signal the subclass that the LRU element has been purged.
-            handleLRUElementPurged(key, value);
+            purgeLRUElement();
         }
     }
 
+    private void purgeLRUElement()
+    {
+        Object key = tail.key;
+        Object value = tail.value;
+        remove(tail.key);
+
+        //signal the subclass that the LRU element has been purged.
+        handleLRUElementPurged(key, value);
+    }
+
 
     /*
      * Set the specified entry as the most recently used entry.
@@ -337,6 +391,7 @@ public abstract class LRUCache extends AbstractCache
         Object value;
         Object key;
         int hits;
+        long weight;
         final int penalty = -1;
 
         public String toString()
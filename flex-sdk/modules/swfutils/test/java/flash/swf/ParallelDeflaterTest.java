@@ -0,0 +1,129 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flash.swf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Inflates what ParallelDeflater writes with a plain Inflater, for an empty range, a range
+ * within one block and a range of several blocks, and checks the adler32 combine.
+ */
+public class ParallelDeflaterTest extends TestCase
+{
+    public static Test suite()
+    {
+        return new TestSuite(ParallelDeflaterTest.class);
+    }
+
+    public void testEmpty() throws Exception
+    {
+        if (ParallelDeflater.isSupported())
+        {
+            roundTrip(0, 1);
+            roundTrip(0, 4);
+        }
+    }
+
+    public void testOneBlock() throws Exception
+    {
+        if (ParallelDeflater.isSupported())
+        {
+            roundTrip(1000, 1);
+            roundTrip(ParallelDeflater.BLOCK_SIZE, 4);
+        }
+    }
+
+    public void testManyBlocks() throws Exception
+    {
+        if (ParallelDeflater.isSupported())
+        {
+            int len = 3 * ParallelDeflater.BLOCK_SIZE + 1234;
+            roundTrip(len, 1);
+            roundTrip(len, 2);
+            roundTrip(len, 8);
+        }
+    }
+
+    public void testCombine()
+    {
+        byte[] data = data(100000);
+        int[] splits = { 0, 1, 65521, 65522, 99999, 100000 };
+
+        for (int i = 0; i < splits.length; i++)
+        {
+            int split = splits[i];
+            long first = adler32(data, 0, split);
+            long second = adler32(data, split, data.length - split);
+            assertEquals("split at " + split, adler32(data, 0, data.length),
+                         ParallelDeflater.combine(first, second, data.length - split));
+        }
+    }
+
+    private static void roundTrip(int len, int threads) throws Exception
+    {
+        // the range doesn't start at 0, like the body after an uncompressed SWF header.
+        int off = 8;
+        byte[] buf = new byte[off + len];
+        System.arraycopy(data(len), 0, buf, off, len);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelDeflater.deflate(buf, off, len, Deflater.BEST_COMPRESSION, threads, out);
+
+        InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(out.toByteArray()));
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        byte[] tmp = new byte[8192];
+        int n;
+        while ((n = in.read(tmp)) > 0)
+        {
+            inflated.write(tmp, 0, n);
+        }
+
+        byte[] expected = new byte[len];
+        System.arraycopy(buf, off, expected, 0, len);
+        assertTrue(len + " bytes on " + threads + " threads", Arrays.equals(expected, inflated.toByteArray()));
+    }
+
+    /**
+     * Compressible but not trivially so: runs of a few letters, with random lengths.
+     */
+    private static byte[] data(int len)
+    {
+        Random random = new Random(len);
+        byte[] data = new byte[len];
+        for (int i = 0; i < len; )
+        {
+            byte b = (byte) ('a' + random.nextInt(8));
+            for (int run = random.nextInt(16); run >= 0 && i < len; run--)
+            {
+                data[i++] = b;
+            }
+        }
+        return data;
+    }
+
+    private static long adler32(byte[] data, int off, int len)
+    {
+        Adler32 adler = new Adler32();
+        adler.update(data, off, len);
+        return adler.getValue();
+    }
+}
@@ -0,0 +1,139 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flash.swf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import flash.swf.tags.DefineBits;
+import flash.swf.tags.DefineBitsJPEG3;
+import flash.swf.tags.DefineBitsLossless;
+import flash.swf.types.Rect;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Decodes a movie with its bitmaps left raw, encodes it again and checks that the bytes are
+ * the ones the decoded bitmaps encode to, and that raw bitmaps compare equal to decoded ones.
+ */
+public class RawBitmapTest extends TestCase
+{
+    public static Test suite()
+    {
+        return new TestSuite(RawBitmapTest.class);
+    }
+
+    public void testRoundTrip() throws Exception
+    {
+        byte[] swf = encode(movie());
+        Movie raw = decode(swf, false);
+
+        List bitmaps = bitmaps(raw);
+        assertEquals(3, bitmaps.size());
+        for (Iterator i = bitmaps.iterator(); i.hasNext();)
+        {
+            assertNotNull(((DefineBits) i.next()).rawData);
+        }
+
+        // MovieDecoder keeps an empty frame after the last ShowFrame, so the movie is compared
+        // with one that went through the decoder as well.
+        assertTrue(Arrays.equals(encode(decode(swf, true)), encode(raw)));
+    }
+
+    public void testEquals() throws Exception
+    {
+        byte[] swf = encode(movie());
+        List raw = bitmaps(decode(swf, false));
+        List rawAgain = bitmaps(decode(swf, false));
+        List decoded = bitmaps(decode(swf, true));
+
+        for (int i = 0; i < raw.size(); i++)
+        {
+            for (int j = 0; j < raw.size(); j++)
+            {
+                boolean same = (i == j);
+                assertEquals(same, raw.get(i).equals(rawAgain.get(j)));
+                assertEquals(same, raw.get(i).equals(decoded.get(j)));
+                assertEquals(same, decoded.get(j).equals(raw.get(i)));
+                assertEquals(same, decoded.get(i).equals(decoded.get(j)));
+            }
+        }
+    }
+
+    private static Movie movie()
+    {
+        DefineBitsLossless lossless = new DefineBitsLossless(TagValues.stagDefineBitsLossless);
+        lossless.name = "lossless";
+        lossless.format = 5;
+        lossless.width = 2;
+        lossless.height = 1;
+        lossless.data = new byte[] { 0, 1, 2, 3, 0, 4, 5, 6 };
+
+        DefineBitsLossless lossless2 = new DefineBitsLossless(TagValues.stagDefineBitsLossless2);
+        lossless2.name = "lossless2";
+        lossless2.format = 5;
+        lossless2.width = 1;
+        lossless2.height = 2;
+        lossless2.data = new byte[] { (byte) 255, 1, 2, 3, (byte) 128, 4, 5, 6 };
+
+        DefineBitsJPEG3 jpeg = new DefineBitsJPEG3();
+        jpeg.name = "jpeg";
+        jpeg.data = new byte[] { (byte) 0xFF, (byte) 0xD8, 1, 2, 3, (byte) 0xFF, (byte) 0xD9 };
+        jpeg.alphaData = new byte[] { 10, 20, 30 };
+
+        Frame frame = new Frame();
+        frame.addExport(lossless);
+        frame.addExport(lossless2);
+        frame.addExport(jpeg);
+
+        Movie m = new Movie();
+        m.version = 9;
+        m.size = new Rect(100, 100);
+        m.framerate = 24;
+        m.frames = new ArrayList();
+        m.frames.add(frame);
+        return m;
+    }
+
+    private static byte[] encode(Movie m) throws Exception
+    {
+        TagEncoder encoder = new TagEncoder();
+        new MovieEncoder(encoder).export(m);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static Movie decode(byte[] swf, boolean decodeBitmaps) throws Exception
+    {
+        Movie m = new Movie();
+        MovieDecoder decoder = new MovieDecoder(m);
+        decoder.setDecodeBitmaps(decodeBitmaps);
+        new TagDecoder(new ByteArrayInputStream(swf)).parse(decoder);
+        return m;
+    }
+
+    private static List bitmaps(Movie m)
+    {
+        List bitmaps = new ArrayList();
+        for (Iterator i = ((Frame) m.frames.get(0)).exportIterator(); i.hasNext();)
+        {
+            bitmaps.add(i.next());
+        }
+        return bitmaps;
+    }
+}
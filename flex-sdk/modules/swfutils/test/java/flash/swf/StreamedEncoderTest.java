@@ -0,0 +1,233 @@
+////////////////////////////////////////////////////////////////////////////////
+//
+//  ADOBE SYSTEMS INCORPORATED
+//  Copyright 2007 Adobe Systems Incorporated
+//  All Rights Reserved.
+//
+//  NOTICE: Adobe permits you to use, modify, and distribute this file
+//  in accordance with the terms of the license agreement accompanying it.
+//
+////////////////////////////////////////////////////////////////////////////////
+
+package flash.swf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.InflaterInputStream;
+
+import flash.swf.tags.DefineBinaryData;
+import flash.swf.tags.ShowFrame;
+import flash.swf.types.Rect;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Encodes the same movie in memory and streamed to a file with TagEncoder.setOutput(), and
+ * checks that the file has the same SWF, compressed and uncompressed.  The movie is a few
+ * times bigger than what TagEncoder lets pile up before it drains the tags to the file.
+ */
+public class StreamedEncoderTest extends TestCase
+{
+    // the SWF doesn't start at the beginning of the file.
+    private static final byte[] PREFIX = { 1, 2, 3 };
+
+    private File file;
+
+    public static Test suite()
+    {
+        return new TestSuite(StreamedEncoderTest.class);
+    }
+
+    protected void setUp() throws Exception
+    {
+        file = File.createTempFile("StreamedEncoderTest", ".swf");
+    }
+
+    protected void tearDown() throws Exception
+    {
+        file.delete();
+    }
+
+    public void testUncompressed() throws Exception
+    {
+        Movie m = movie(5);
+        byte[] expected = encode(m);
+        assertEquals('F', expected[0]);
+        assertTrue(Arrays.equals(expected, stream(m, true)));
+    }
+
+    public void testCompressed() throws Exception
+    {
+        Movie m = movie(9);
+        byte[] expected = encode(m);
+        byte[] actual = stream(m, true);
+        assertEquals('C', expected[0]);
+
+        // the header isn't compressed, the rest is compared once it's inflated, since the
+        // streamed SWF is deflated a piece at a time.
+        assertTrue(Arrays.equals(copy(expected, 0, 8), copy(actual, 0, 8)));
+        assertTrue(Arrays.equals(inflate(expected), inflate(actual)));
+    }
+
+    public void testSmall() throws Exception
+    {
+        // nothing is drained before writeTo().
+        Movie m = movie(9);
+        m.frames.subList(1, m.frames.size()).clear();
+        assertTrue(Arrays.equals(encode(m), stream(m, false)));
+    }
+
+    public void testFrameCount() throws Exception
+    {
+        // an uncompressed SWF can be streamed without knowing the frame count up front, it's
+        // filled in at the end like the length.
+        Movie m = movie(9);
+
+        TagEncoder encoder = new TagEncoder();
+        encodeFrames(encoder, m);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeTo(out);
+        byte[] expected = out.toByteArray();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            channel.write(ByteBuffer.wrap(PREFIX));
+
+            encoder = new TagEncoder();
+            encoder.setOutput(channel);
+            encodeFrames(encoder, m);
+            assertTrue(channel.size() > PREFIX.length);
+            encoder.writeTo(channel);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        assertTrue(Arrays.equals(expected, read()));
+    }
+
+    private static void encodeFrames(TagEncoder encoder, Movie m)
+    {
+        Header h = new Header();
+        h.version = m.version;
+        h.compressed = false;
+        h.size = m.size;
+        h.rate = m.framerate;
+        h.framecount = 0;
+
+        encoder.header(h);
+        for (int i = 0; i < m.frames.size(); i++)
+        {
+            encoder.defineBinaryData((DefineBinaryData) ((Frame) m.frames.get(i)).exportIterator().next());
+            encoder.showFrame(new ShowFrame());
+        }
+        encoder.finish();
+    }
+
+    private static Movie movie(int version)
+    {
+        Random random = new Random(version);
+
+        Movie m = new Movie();
+        m.version = version;
+        m.size = new Rect(100, 100);
+        m.framerate = 24 << 8;
+        m.frames = new ArrayList();
+
+        // about 200K, in tags of 40K
+        for (int i = 0; i < 5; i++)
+        {
+            DefineBinaryData data = new DefineBinaryData();
+            data.name = "data" + i;
+            data.data = new byte[40000];
+            for (int j = 0; j < data.data.length; j++)
+            {
+                data.data[j] = (byte) ('a' + random.nextInt(4));
+            }
+
+            Frame frame = new Frame();
+            frame.addExport(data);
+            m.frames.add(frame);
+        }
+        return m;
+    }
+
+    private static byte[] encode(Movie m) throws IOException
+    {
+        TagEncoder encoder = new TagEncoder();
+        new MovieEncoder(encoder).export(m);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private byte[] stream(Movie m, boolean drained) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            channel.write(ByteBuffer.wrap(PREFIX));
+
+            TagEncoder encoder = new TagEncoder();
+            encoder.setOutput(channel);
+            new MovieEncoder(encoder).export(m);
+            assertEquals(drained, channel.size() > PREFIX.length);
+            encoder.writeTo(channel);
+        }
+        finally
+        {
+            raf.close();
+        }
+        return read();
+    }
+
+    private byte[] read() throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            byte[] b = new byte[(int) raf.length()];
+            raf.readFully(b);
+            assertTrue(Arrays.equals(PREFIX, copy(b, 0, PREFIX.length)));
+            return copy(b, PREFIX.length, b.length - PREFIX.length);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    private static byte[] inflate(byte[] swf) throws IOException
+    {
+        InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(swf, 8, swf.length - 8));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] tmp = new byte[8192];
+        int n;
+        while ((n = in.read(tmp)) > 0)
+        {
+            out.write(tmp, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] copy(byte[] b, int off, int len)
+    {
+        byte[] c = new byte[len];
+        System.arraycopy(b, off, c, 0, len);
+        return c;
+    }
+}